@@ -0,0 +1,36 @@
+package com.amine.pfe.georef_module.entity;
+
+import java.util.UUID;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Dernier index de GCP attribué pour une image. La ligne est incrémentée par
+ * un upsert atomique (voir GcpIndexCounterRepository) : deux ajouts
+ * concurrents sur la même image obtiennent des index distincts sans relire
+ * le maximum de la table gcp.
+ *
+ * La clé étrangère vers l'image est en ON DELETE CASCADE : la ligne disparaît
+ * avec l'image, quel que soit le chemin de suppression.
+ */
+@Entity
+@Table(name = "gcp_index_counter", schema = "georef")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor
+public class GcpIndexCounter {
+
+    @Id
+    private UUID imageId;
+
+    @Column(nullable = false)
+    private int lastIndex;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "image_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private GeorefImage image;
+}
@@ -0,0 +1,50 @@
+package com.amine.pfe.georef_module.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+@JsonFormat(shape = JsonFormat.Shape.STRING)
+public enum GcpFileFormat {
+    POINTS("points", "text/plain"),
+    CSV("csv", "text/csv"),
+    VRT("vrt", "application/xml");
+
+    private final String label;
+    private final String contentType;
+
+    GcpFileFormat(String label, String contentType) {
+        this.label = label;
+        this.contentType = contentType;
+    }
+
+    @JsonValue
+    public String getLabel() {
+        return label;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    @JsonCreator
+    public static GcpFileFormat fromLabel(String label) {
+        for (GcpFileFormat format : values()) {
+            if (format.label.equalsIgnoreCase(label)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown GCP file format: " + label);
+    }
+
+    /**
+     * Format déduit de l'extension du fichier (.points, .csv, .vrt).
+     */
+    public static GcpFileFormat fromFilename(String filename) {
+        int dot = filename != null ? filename.lastIndexOf('.') : -1;
+        if (dot < 0) {
+            throw new IllegalArgumentException("Cannot infer the GCP file format of: " + filename);
+        }
+        return fromLabel(filename.substring(dot + 1));
+    }
+}
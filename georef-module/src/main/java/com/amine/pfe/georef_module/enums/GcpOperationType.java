@@ -0,0 +1,33 @@
+package com.amine.pfe.georef_module.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+@JsonFormat(shape = JsonFormat.Shape.STRING)
+public enum GcpOperationType {
+    ADD("add"),
+    UPDATE("update"),
+    DELETE("delete");
+
+    private final String label;
+
+    GcpOperationType(String label) {
+        this.label = label;
+    }
+
+    @JsonValue
+    public String getLabel() {
+        return label;
+    }
+
+    @JsonCreator
+    public static GcpOperationType fromLabel(String label) {
+        for (GcpOperationType type : values()) {
+            if (type.label.equalsIgnoreCase(label)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown GCP operation: " + label);
+    }
+}
@@ -1,5 +1,7 @@
 package com.amine.pfe.georef_module.enums;
 
+import java.util.List;
+
 import lombok.Data;
 
 @Data
@@ -10,5 +12,10 @@ public class GeorefSettings {
     private Srid srid;
     private ResamplingMethod resamplingMethod;
     private Compression compressionType;
+    private RobustMethod robustMethod;
+
+    // Renseigné côté serveur pour Helmert (géotransformation GDAL) et
+    // Projective (homographie) : GDAL applique la transformation calculée
+    private List<Double> transformCoefficients;
 
 }
@@ -0,0 +1,36 @@
+package com.amine.pfe.georef_module.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+@JsonFormat(shape = JsonFormat.Shape.STRING)
+public enum ResidualMode {
+    CLASSIC("classic"),
+    LEAVE_ONE_OUT("leave-one-out");
+
+    private final String label;
+
+    ResidualMode(String label) {
+        this.label = label;
+    }
+
+    @JsonValue
+    public String getLabel() {
+        return label;
+    }
+
+    @JsonCreator
+    public static ResidualMode fromLabel(String label) {
+        for (ResidualMode mode : values()) {
+            if (mode.label.equalsIgnoreCase(label)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown residual mode: " + label);
+    }
+
+    public static ResidualMode getDefault() {
+        return ResidualMode.CLASSIC;
+    }
+}
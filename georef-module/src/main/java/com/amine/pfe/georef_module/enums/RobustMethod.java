@@ -0,0 +1,37 @@
+package com.amine.pfe.georef_module.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+@JsonFormat(shape = JsonFormat.Shape.STRING)
+public enum RobustMethod {
+    NONE("None"),
+    RANSAC("RANSAC"),
+    HUBER("Huber");
+
+    private final String label;
+
+    RobustMethod(String label) {
+        this.label = label;
+    }
+
+    @JsonValue
+    public String getLabel() {
+        return label;
+    }
+
+    @JsonCreator
+    public static RobustMethod fromLabel(String label) {
+        for (RobustMethod method : values()) {
+            if (method.label.equalsIgnoreCase(label)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException("Unknown robust method: " + label);
+    }
+
+    public static RobustMethod getDefault() {
+        return RobustMethod.NONE;
+    }
+}
@@ -14,7 +14,19 @@ public enum TransformationType {
     POLYNOMIALE_2("Polynomiale 2"),
     
     @JsonProperty("Polynomiale 3")
-    POLYNOMIALE_3("Polynomiale 3");
+    POLYNOMIALE_3("Polynomiale 3"),
+    
+    @JsonProperty("Thin Plate Spline")
+    THIN_PLATE_SPLINE("Thin Plate Spline"),
+    
+    @JsonProperty("Affine par morceaux")
+    PIECEWISE_AFFINE("Affine par morceaux"),
+    
+    @JsonProperty("Helmert")
+    HELMERT("Helmert"),
+    
+    @JsonProperty("Projective")
+    PROJECTIVE("Projective");
     
     private final String label;
     
@@ -3,21 +3,40 @@ package com.amine.pfe.georef_module.gcp.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.UUID;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.amine.pfe.georef_module.enums.GcpFileFormat;
+import com.amine.pfe.georef_module.enums.Srid;
 import com.amine.pfe.georef_module.exception.ImageNotFoundException;
+import com.amine.pfe.georef_module.gcp.dto.BatchResidualsRequest;
+import com.amine.pfe.georef_module.gcp.dto.DegreeSelectionRequest;
+import com.amine.pfe.georef_module.gcp.dto.DegreeSelectionResult;
+import com.amine.pfe.georef_module.gcp.dto.DistortionGridRequest;
 import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.dto.GcpImportResponse;
+import com.amine.pfe.georef_module.gcp.dto.GcpSyncRequest;
+import com.amine.pfe.georef_module.gcp.dto.ImageResidualsResponse;
+import com.amine.pfe.georef_module.gcp.dto.InverseTransformRequest;
+import com.amine.pfe.georef_module.gcp.dto.InverseTransformResponse;
 import com.amine.pfe.georef_module.gcp.dto.LoadGcpsRequest;
+import com.amine.pfe.georef_module.gcp.dto.NearestGcpDto;
 import com.amine.pfe.georef_module.gcp.dto.ResidualsRequest;
 import com.amine.pfe.georef_module.gcp.dto.ResidualsResponse;
 import com.amine.pfe.georef_module.gcp.exceptions.DuplicateGcpIndexException;
 import com.amine.pfe.georef_module.gcp.exceptions.GcpNotFoundException;
+import com.amine.pfe.georef_module.gcp.service.BatchResidualsService;
+import com.amine.pfe.georef_module.gcp.service.ResidualsStreamService;
 import com.amine.pfe.georef_module.gcp.service.GcpService;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -25,6 +44,7 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import reactor.core.publisher.Flux;
 
 @RestController
 @RequestMapping("/georef/gcp")
@@ -34,6 +54,8 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 public class GcpController {
 
     private final GcpService gcpService;
+    private final BatchResidualsService batchResidualsService;
+    private final ResidualsStreamService residualsStreamService;
 
     @Operation(summary = "Ajouter un GCP", description = "Permet d'ajouter un GCP à une image géoréférencée.", responses = {
             @ApiResponse(responseCode = "200", description = "GCP ajouté avec succès"),
@@ -197,6 +219,234 @@ public class GcpController {
         }
     }
 
+    @Operation(summary = "Sync GCPs", description = "Apply an ordered list of add, update and delete operations on the GCPs of an image in one transaction, then recompute the residuals once", responses = {
+            @ApiResponse(responseCode = "200", description = "GCPs synchronized and residuals updated successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "404", description = "Image or GCP not found"),
+            @ApiResponse(responseCode = "500", description = "Unexpected error during GCP synchronization")
+    })
+    @PatchMapping(value = "/sync", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResidualsResponse> syncGcps(@RequestBody GcpSyncRequest request) {
+        try {
+
+            ResidualsResponse residualsResponse = gcpService.syncGcps(request);
+            log.info("{} GCP operations applied for image ID {}", request.getOperations().size(),
+                    request.getImageId());
+            return ResponseEntity.ok(residualsResponse);
+
+        } catch (IllegalArgumentException e) {
+
+            log.error("Invalid input data: {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(null);
+
+        } catch (ImageNotFoundException | GcpNotFoundException e) {
+
+            log.error("Image or GCP not found: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+
+        } catch (Exception e) {
+
+            log.error("Unexpected error during GCP synchronization: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+
+        }
+    }
+
+    @Operation(summary = "Select Polynomial Degree", description = "Fit polynomial transformations of degree 1, 2 and 3 on the GCPs of an image and compare their RMSE, leave-one-out RMSE, AIC and BIC", responses = {
+            @ApiResponse(responseCode = "200", description = "Degrees compared successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "404", description = "Image or GCPs not found"),
+            @ApiResponse(responseCode = "500", description = "Unexpected error during degree selection")
+    })
+    @PostMapping(value = "/residuals/degrees", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DegreeSelectionResult> selectPolynomialDegree(@RequestBody DegreeSelectionRequest request) {
+        try {
+
+            DegreeSelectionResult result = gcpService.selectPolynomialDegree(request);
+            log.info("Polynomial degrees compared for image ID {}: recommended {}", request.getImageId(),
+                    result.getRecommended());
+            return ResponseEntity.ok(result);
+
+        } catch (IllegalArgumentException e) {
+
+            log.error("Invalid input data: {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(null);
+
+        } catch (ImageNotFoundException | GcpNotFoundException e) {
+
+            log.error("Image or GCPs not found: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+
+        } catch (Exception e) {
+
+            log.error("Unexpected error during degree selection: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+
+        }
+    }
+
+    @Operation(summary = "Distortion Grid", description = "Evaluate the local scale, rotation and positional uncertainty of the fitted polynomial on a grid over the image pixel extent (row 0 at the top, sampled at sourceY = -line as for GCPs). The body is little-endian binary: cols and rows (int32), cell width and height (float32), then the scale, rotation (degrees) and sigma bands as row-major float32.", responses = {
+            @ApiResponse(responseCode = "200", description = "Grid computed successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "404", description = "Image or GCPs not found"),
+            @ApiResponse(responseCode = "500", description = "Unexpected error during grid evaluation")
+    })
+    @PostMapping(value = "/residuals/distortion", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> computeDistortionGrid(@RequestBody DistortionGridRequest request) {
+        try {
+
+            byte[] grid = gcpService.computeDistortionGrid(request);
+            log.info("Distortion grid computed for image ID {} ({} bytes)", request.getImageId(), grid.length);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).body(grid);
+
+        } catch (IllegalArgumentException e) {
+
+            log.error("Invalid input data: {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(null);
+
+        } catch (ImageNotFoundException | GcpNotFoundException e) {
+
+            log.error("Image or GCPs not found: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+
+        } catch (Exception e) {
+
+            log.error("Unexpected error during distortion grid evaluation: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+
+        }
+    }
+
+    @Operation(summary = "Inverse Transform", description = "Convert map coordinates to source pixel coordinates with the inverse of the fitted polynomial, refined by Newton iterations", responses = {
+            @ApiResponse(responseCode = "200", description = "Coordinates converted successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "404", description = "Image or GCPs not found"),
+            @ApiResponse(responseCode = "500", description = "Unexpected error during inverse transform")
+    })
+    @PostMapping(value = "/inverse", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<InverseTransformResponse> inverseTransform(@RequestBody InverseTransformRequest request) {
+        try {
+
+            InverseTransformResponse response = gcpService.inverseTransform(request);
+            log.info("Inverse transform computed for image ID {} ({} points)", request.getImageId(),
+                    response.getSourceX().length);
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+
+            log.error("Invalid input data: {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(null);
+
+        } catch (ImageNotFoundException | GcpNotFoundException e) {
+
+            log.error("Image or GCPs not found: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+
+        } catch (Exception e) {
+
+            log.error("Unexpected error during inverse transform: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+
+        }
+    }
+
+    @Operation(summary = "Update Residuals (batch)", description = "Recompute the residuals of several images in parallel. One NDJSON line is streamed per image as soon as its residuals are stored.", responses = {
+            @ApiResponse(responseCode = "200", description = "Per-image results streamed"),
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "500", description = "Unexpected error during batch residuals update")
+    })
+    @PostMapping(value = "/residuals/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<ImageResidualsResponse>> updateResidualsBatch(@RequestBody BatchResidualsRequest request) {
+        try {
+
+            Flux<ImageResidualsResponse> results = batchResidualsService.updateResiduals(request)
+                    .doOnComplete(() -> log.info("Batch residuals updated for {} images", request.getImageIds().size()));
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(results);
+
+        } catch (IllegalArgumentException e) {
+
+            log.error("Invalid input data: {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(null);
+
+        } catch (Exception e) {
+
+            log.error("Unexpected error during batch residuals update: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+
+        }
+    }
+
+    @Operation(summary = "Stream Residuals", description = "Server-Sent Events stream of the GCPs, residuals and RMSE of an image. A new event is pushed after every GCP change, debounced so that a burst of edits produces a single computation shared by all subscribers.", responses = {
+            @ApiResponse(responseCode = "200", description = "Residuals stream opened"),
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "404", description = "Not Found Image"),
+            @ApiResponse(responseCode = "500", description = "Unexpected error while opening residuals stream")
+    })
+    @GetMapping(value = "/stream/{imageId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<ImageResidualsResponse>>> streamResiduals(@PathVariable UUID imageId) {
+        try {
+
+            Flux<ServerSentEvent<ImageResidualsResponse>> events = residualsStreamService.subscribe(imageId)
+                    .doFinally(signal -> log.info("Residuals stream closed for image ID {} ({})", imageId, signal));
+            log.info("Residuals stream opened for image ID {}", imageId);
+            return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(events);
+
+        } catch (IllegalArgumentException e) {
+
+            log.error("Invalid input data: {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(null);
+
+        } catch (ImageNotFoundException e) {
+
+            log.error("Not Found Image : {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+
+        } catch (Exception e) {
+
+            log.error("Unexpected error while opening residuals stream: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+
+        }
+    }
+
+    @Operation(summary = "Find Nearest GCPs", description = "Return the existing GCPs of all images within a radius (in metres) of a map point, nearest first, so that operators can snap to known control points. Backed by a PostGIS GiST index; returned map coordinates are expressed in the requested SRID.", responses = {
+            @ApiResponse(responseCode = "200", description = "Nearest GCPs found"),
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "503", description = "Spatial search unavailable (PostGIS missing)"),
+            @ApiResponse(responseCode = "500", description = "Unexpected error while searching nearest GCPs")
+    })
+    @GetMapping(value = "/nearest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<NearestGcpDto>> findNearestGcps(@RequestParam("mapX") Double mapX,
+            @RequestParam("mapY") Double mapY,
+            @RequestParam(value = "srid", required = false) Integer srid,
+            @RequestParam("radius") Double radius,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "excludeImageId", required = false) UUID excludeImageId) {
+        try {
+
+            List<NearestGcpDto> gcps = gcpService.findNearestGcps(mapX, mapY,
+                    srid != null ? Srid.fromCode(srid) : null, radius, limit, excludeImageId);
+            log.info("{} GCPs found within {} m of ({}, {})", gcps.size(), radius, mapX, mapY);
+            return ResponseEntity.ok(gcps);
+
+        } catch (IllegalArgumentException e) {
+
+            log.error("Invalid input data: {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(null);
+
+        } catch (IllegalStateException e) {
+
+            log.error("Spatial search unavailable: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(null);
+
+        } catch (Exception e) {
+
+            log.error("Unexpected error while searching nearest GCPs: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+
+        }
+    }
+
     @Operation(summary = "Load GCPs", description = "Load a list of GCPs via a JSON file.", responses = {
             @ApiResponse(responseCode = "200", description = "GCPs added successfully"),
             @ApiResponse(responseCode = "400", description = "Invalid input data"),
@@ -235,6 +485,89 @@ public class GcpController {
         }
     }
 
+    @Operation(summary = "Import GCPs", description = "Import GCPs from a QGIS .points file, a CSV file or GDAL VRT GCP elements. The file is parsed line by line and inserted in JDBC batches; the format defaults to the file extension", responses = {
+            @ApiResponse(responseCode = "200", description = "GCPs imported successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid file, format or input data"),
+            @ApiResponse(responseCode = "404", description = "Not Found Image"),
+            @ApiResponse(responseCode = "409", description = "Duplicated GCP Index"),
+            @ApiResponse(responseCode = "500", description = "Unexpected error while importing GCPs")
+    })
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<GcpImportResponse> importGcps(@RequestParam("file") MultipartFile file,
+            @RequestParam("imageId") UUID imageId,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = "overwrite", defaultValue = "false") boolean overwrite) {
+        try (InputStream input = file.getInputStream()) {
+
+            GcpFileFormat fileFormat = format != null
+                    ? GcpFileFormat.fromLabel(format)
+                    : GcpFileFormat.fromFilename(file.getOriginalFilename());
+            GcpImportResponse response = gcpService.importGcps(imageId, fileFormat, input, overwrite);
+            log.info("{} GCPs imported for image ID {} ({} skipped)", response.getImported(), imageId,
+                    response.getSkipped());
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+
+            log.error("Invalid input data : {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(null);
+
+        } catch (ImageNotFoundException e) {
+
+            log.error("Not Found Image : {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+
+        } catch (DuplicateGcpIndexException e) {
+
+            log.error("Duplicated GCP Index : {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(null);
+
+        } catch (Exception e) {
+
+            log.error("Unexpected error while importing GCPs : {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+
+        }
+    }
+
+    @Operation(summary = "Export GCPs", description = "Stream the GCPs of an image as a QGIS .points file, a CSV file or a GDAL VRT GCPList, read from a database cursor", responses = {
+            @ApiResponse(responseCode = "200", description = "GCPs exported successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid format or input data"),
+            @ApiResponse(responseCode = "404", description = "Not Found Image"),
+            @ApiResponse(responseCode = "500", description = "Unexpected error while exporting GCPs")
+    })
+    @GetMapping(value = "/export/{imageId}")
+    public ResponseEntity<StreamingResponseBody> exportGcps(@PathVariable UUID imageId,
+            @RequestParam(value = "format", defaultValue = "points") String format) {
+        try {
+
+            GcpFileFormat fileFormat = GcpFileFormat.fromLabel(format);
+            Srid srid = gcpService.prepareExport(imageId);
+            StreamingResponseBody body = output -> gcpService.exportGcps(imageId, fileFormat, srid, output);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(fileFormat.getContentType()))
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"gcps-" + imageId + "." + fileFormat.getLabel() + "\"")
+                    .body(body);
+
+        } catch (IllegalArgumentException e) {
+
+            log.error("Invalid input data : {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(null);
+
+        } catch (ImageNotFoundException e) {
+
+            log.error("Not Found Image : {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+
+        } catch (Exception e) {
+
+            log.error("Unexpected error while exporting GCPs : {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+
+        }
+    }
+
     @Operation(summary = "Supprimer tous les GCPs", description = "Supprimer tous les GCPs par ID d'image")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "Tous les GCPs supprimés avec succès"),
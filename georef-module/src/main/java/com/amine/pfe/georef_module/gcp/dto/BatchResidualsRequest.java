@@ -0,0 +1,17 @@
+package com.amine.pfe.georef_module.gcp.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+import com.amine.pfe.georef_module.enums.Srid;
+import com.amine.pfe.georef_module.enums.TransformationType;
+
+import lombok.Data;
+
+@Data
+public class BatchResidualsRequest {
+    private List<UUID> imageIds;
+    // Facultatifs : à défaut, le type et le SRID enregistrés sur chaque image
+    private TransformationType type;
+    private Srid srid;
+}
@@ -0,0 +1,17 @@
+package com.amine.pfe.georef_module.gcp.dto;
+
+import com.amine.pfe.georef_module.enums.TransformationType;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data @NoArgsConstructor @AllArgsConstructor
+public class DegreeFit {
+    private TransformationType type;
+    private int parameters;
+    private double rmse;
+    private Double looRmse;
+    private Double aic;
+    private Double bic;
+}
@@ -0,0 +1,13 @@
+package com.amine.pfe.georef_module.gcp.dto;
+
+import java.util.UUID;
+
+import com.amine.pfe.georef_module.enums.Srid;
+
+import lombok.Data;
+
+@Data
+public class DegreeSelectionRequest {
+    private UUID imageId;
+    private Srid srid;
+}
@@ -0,0 +1,15 @@
+package com.amine.pfe.georef_module.gcp.dto;
+
+import java.util.List;
+
+import com.amine.pfe.georef_module.enums.TransformationType;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data @NoArgsConstructor @AllArgsConstructor
+public class DegreeSelectionResult {
+    private List<DegreeFit> fits;
+    private TransformationType recommended;
+}
@@ -0,0 +1,17 @@
+package com.amine.pfe.georef_module.gcp.dto;
+
+import java.util.UUID;
+
+import com.amine.pfe.georef_module.enums.TransformationType;
+
+import lombok.Data;
+
+@Data
+public class DistortionGridRequest {
+    private UUID imageId;
+    private TransformationType type;
+    private Integer width;
+    private Integer height;
+    private Integer cols;
+    private Integer rows;
+}
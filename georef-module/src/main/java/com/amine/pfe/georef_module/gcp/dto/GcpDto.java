@@ -14,6 +14,16 @@ public class GcpDto {
     private Double mapY;
     private int index;
     private Double residual;
+    private Double looResidual;
+
+    /**
+     * Constructeur des projections JPQL (GcpRepository.findDtosByImageId) :
+     * le résidu LOO n'est pas stocké.
+     */
+    public GcpDto(UUID id, UUID imageId, Double sourceX, Double sourceY, Double mapX, Double mapY, int index,
+            Double residual) {
+        this(id, imageId, sourceX, sourceY, mapX, mapY, index, residual, null);
+    }
 
     public GcpDto(Double sourceX, Double sourceY, Double mapX, Double mapY) {
         this.sourceX = sourceX;
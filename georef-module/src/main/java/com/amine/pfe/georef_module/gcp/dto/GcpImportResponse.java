@@ -0,0 +1,15 @@
+package com.amine.pfe.georef_module.gcp.dto;
+
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data @NoArgsConstructor @AllArgsConstructor
+public class GcpImportResponse {
+    private UUID imageId;
+    private int imported;
+    // Points désactivés dans le fichier (.points, enable = 0)
+    private int skipped;
+}
@@ -0,0 +1,13 @@
+package com.amine.pfe.georef_module.gcp.dto;
+
+import com.amine.pfe.georef_module.enums.GcpOperationType;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data @NoArgsConstructor @AllArgsConstructor
+public class GcpOperation {
+    private GcpOperationType op;
+    private GcpDto gcp;
+}
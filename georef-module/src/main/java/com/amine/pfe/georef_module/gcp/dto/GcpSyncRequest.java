@@ -0,0 +1,21 @@
+package com.amine.pfe.georef_module.gcp.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+import com.amine.pfe.georef_module.enums.ResidualMode;
+import com.amine.pfe.georef_module.enums.Srid;
+import com.amine.pfe.georef_module.enums.TransformationType;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data @NoArgsConstructor @AllArgsConstructor
+public class GcpSyncRequest {
+    private UUID imageId;
+    private List<GcpOperation> operations;
+    private TransformationType type;
+    private Srid srid;
+    private ResidualMode mode;
+}
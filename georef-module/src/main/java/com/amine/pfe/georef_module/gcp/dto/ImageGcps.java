@@ -0,0 +1,18 @@
+package com.amine.pfe.georef_module.gcp.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+import com.amine.pfe.georef_module.enums.Srid;
+import com.amine.pfe.georef_module.enums.TransformationType;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter @AllArgsConstructor
+public class ImageGcps {
+    private UUID imageId;
+    private TransformationType transformationType;
+    private Srid srid;
+    private List<GcpDto> gcps;
+}
@@ -0,0 +1,18 @@
+package com.amine.pfe.georef_module.gcp.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data @NoArgsConstructor @AllArgsConstructor
+public class ImageResidualsResponse {
+    private UUID imageId;
+    private boolean success;
+    private List<GcpDto> gcpDtos;
+    private Double rmse;
+    private int minPointsRequired;
+    private String message;
+}
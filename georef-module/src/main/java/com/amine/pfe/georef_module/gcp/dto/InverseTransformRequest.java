@@ -0,0 +1,15 @@
+package com.amine.pfe.georef_module.gcp.dto;
+
+import java.util.UUID;
+
+import com.amine.pfe.georef_module.enums.TransformationType;
+
+import lombok.Data;
+
+@Data
+public class InverseTransformRequest {
+    private UUID imageId;
+    private TransformationType type;
+    private double[] mapX;
+    private double[] mapY;
+}
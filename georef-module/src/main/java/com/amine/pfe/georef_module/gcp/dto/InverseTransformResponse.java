@@ -0,0 +1,12 @@
+package com.amine.pfe.georef_module.gcp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data @NoArgsConstructor @AllArgsConstructor
+public class InverseTransformResponse {
+    private double[] sourceX;
+    private double[] sourceY;
+    private boolean[] converged;
+}
@@ -0,0 +1,19 @@
+package com.amine.pfe.georef_module.gcp.dto;
+
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data @NoArgsConstructor @AllArgsConstructor
+public class NearestGcpDto {
+    private UUID id;
+    private UUID imageId;
+    private int index;
+    // Coordonnées carte dans le SRID de la recherche
+    private double mapX;
+    private double mapY;
+    // Distance géodésique au point recherché, en mètres
+    private double distance;
+}
@@ -2,6 +2,8 @@ package com.amine.pfe.georef_module.gcp.dto;
 
 import java.util.UUID;
 
+import com.amine.pfe.georef_module.enums.ResidualMode;
+import com.amine.pfe.georef_module.enums.RobustMethod;
 import com.amine.pfe.georef_module.enums.Srid;
 import com.amine.pfe.georef_module.enums.TransformationType;
 
@@ -12,4 +14,6 @@ public class ResidualsRequest {
     private UUID imageId;
     private TransformationType type;
     private Srid srid;
+    private ResidualMode mode;
+    private RobustMethod robustMethod;
 }
\ No newline at end of file
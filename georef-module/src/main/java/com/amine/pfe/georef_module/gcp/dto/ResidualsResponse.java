@@ -10,5 +10,14 @@ public class ResidualsResponse {
     private boolean success;
     private List<GcpDto> gcpDtos;
     private Double rmse;
+    private Double looRmse;
     private int minPointsRequired;
+    // Renseignés pour un ajustement robuste (ResidualsRequest.robustMethod)
+    private List<Boolean> inliers;
+    private List<Double> weights;
+    private Double robustScale;
+
+    public ResidualsResponse(boolean success, List<GcpDto> gcpDtos, Double rmse, int minPointsRequired) {
+        this(success, gcpDtos, rmse, null, minPointsRequired, null, null, null);
+    }
 }
@@ -9,9 +9,25 @@ import lombok.Setter;
 public class ResidualsResult {
     private List<Double> residuals;
     private double rmse;
+    private List<Double> looResiduals;
+    private Double looRmse;
+    private List<Boolean> inliers;
+    private List<Double> weights;
+    private Double robustScale;
+    // Position de chaque GCP par la transformation robuste (unités de la carte)
+    private List<Double> fittedMapX;
+    private List<Double> fittedMapY;
+    private List<Double> coefficients;
 
     public ResidualsResult(List<Double> residuals, double rmse) {
         this.residuals = residuals;
         this.rmse = rmse;
     }
+
+    public ResidualsResult(List<Double> residuals, double rmse, List<Double> looResiduals, Double looRmse) {
+        this.residuals = residuals;
+        this.rmse = rmse;
+        this.looResiduals = looResiduals;
+        this.looRmse = looRmse;
+    }
 }
@@ -0,0 +1,122 @@
+package com.amine.pfe.georef_module.gcp.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Locale;
+
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+
+/**
+ * Fichiers .points de QGIS et CSV : lignes de commentaire "#" (dont
+ * "#CRS: ..."), puis un en-tête nommant les colonnes, séparées par une
+ * virgule, un point-virgule ou une tabulation.
+ *
+ * Colonnes reconnues (casse ignorée) : mapX, mapY, sourceX ou pixelX,
+ * sourceY ou pixelY et, facultative, enable. Les coordonnées source sont
+ * reprises telles quelles (convention QGIS, ligne négative).
+ */
+final class DelimitedGcpReader implements GcpFileReader {
+
+    private final BufferedReader reader;
+    private int lineNumber;
+    private int skipped;
+
+    private String delimiter;
+    private int columns;
+    private int mapX = -1;
+    private int mapY = -1;
+    private int sourceX = -1;
+    private int sourceY = -1;
+    private int enable = -1;
+
+    DelimitedGcpReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public GcpDto next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (delimiter == null) {
+                readHeader(line);
+                continue;
+            }
+
+            String[] fields = line.split(delimiter, -1);
+            if (fields.length < columns) {
+                throw invalid(columns + " colonnes attendues, " + fields.length + " trouvées");
+            }
+            if (enable >= 0 && number(fields, enable, "enable") == 0.0) {
+                skipped++;
+                continue;
+            }
+            return new GcpDto(
+                    number(fields, sourceX, "sourceX"),
+                    number(fields, sourceY, "sourceY"),
+                    number(fields, mapX, "mapX"),
+                    number(fields, mapY, "mapY"));
+        }
+        return null;
+    }
+
+    @Override
+    public int getSkipped() {
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void readHeader(String line) {
+        delimiter = line.indexOf(';') >= 0 ? ";" : line.indexOf('\t') >= 0 ? "\t" : ",";
+        String[] names = line.split(delimiter, -1);
+        for (int i = 0; i < names.length; i++) {
+            switch (unquote(names[i]).toLowerCase(Locale.ROOT)) {
+                case "mapx" -> mapX = i;
+                case "mapy" -> mapY = i;
+                case "sourcex", "pixelx" -> sourceX = i;
+                case "sourcey", "pixely" -> sourceY = i;
+                case "enable", "enabled" -> enable = i;
+                default -> {
+                }
+            }
+        }
+        if (mapX < 0 || mapY < 0 || sourceX < 0 || sourceY < 0) {
+            throw invalid("l'en-tête doit nommer les colonnes mapX, mapY, sourceX (ou pixelX) et sourceY (ou pixelY)");
+        }
+        columns = Math.max(Math.max(mapX, mapY), Math.max(Math.max(sourceX, sourceY), enable)) + 1;
+    }
+
+    private double number(String[] fields, int column, String name) {
+        String value = unquote(fields[column]);
+        double number;
+        try {
+            number = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw invalid(name + " n'est pas un nombre : '" + value + "'");
+        }
+        if (!Double.isFinite(number)) {
+            throw invalid(name + " n'est pas fini");
+        }
+        return number;
+    }
+
+    private IllegalArgumentException invalid(String message) {
+        return new IllegalArgumentException("Ligne " + lineNumber + " : " + message);
+    }
+
+    private static String unquote(String value) {
+        String stripped = value.strip();
+        if (stripped.length() >= 2 && stripped.charAt(0) == '"' && stripped.charAt(stripped.length() - 1) == '"') {
+            return stripped.substring(1, stripped.length() - 1).strip();
+        }
+        return stripped;
+    }
+}
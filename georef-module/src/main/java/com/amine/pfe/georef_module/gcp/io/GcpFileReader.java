@@ -0,0 +1,36 @@
+package com.amine.pfe.georef_module.gcp.io;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+import com.amine.pfe.georef_module.enums.GcpFileFormat;
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+
+/**
+ * Lecture en flux d'un fichier de GCPs : une ligne est lue, validée et
+ * convertie à chaque appel de next(), sans jamais charger le fichier entier.
+ *
+ * Une ligne invalide lève une IllegalArgumentException indiquant son numéro.
+ */
+public interface GcpFileReader extends Closeable {
+
+    /**
+     * @return le GCP suivant (sans ID ni index), ou null en fin de fichier
+     */
+    GcpDto next() throws IOException;
+
+    /**
+     * @return le nombre de points ignorés car désactivés (colonne enable à 0)
+     */
+    int getSkipped();
+
+    static GcpFileReader open(GcpFileFormat format, Reader reader) {
+        BufferedReader buffered = reader instanceof BufferedReader b ? b : new BufferedReader(reader);
+        return switch (format) {
+            case POINTS, CSV -> new DelimitedGcpReader(buffered);
+            case VRT -> new VrtGcpReader(buffered);
+        };
+    }
+}
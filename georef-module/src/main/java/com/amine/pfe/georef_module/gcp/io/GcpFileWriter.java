@@ -0,0 +1,115 @@
+package com.amine.pfe.georef_module.gcp.io;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+
+import com.amine.pfe.georef_module.enums.GcpFileFormat;
+import com.amine.pfe.georef_module.enums.Srid;
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+
+/**
+ * Écriture en flux des GCPs d'une image dans l'un des formats d'import :
+ * l'en-tête est écrit à l'ouverture, chaque GCP dès sa lecture et la fin de
+ * document (VRT) à la fermeture.
+ *
+ * Le fichier .points suit QGIS 3 : ligne "#CRS: " suivie du WKT du système
+ * de la carte, puis les colonnes mapX,mapY,sourceX,sourceY,enable,dX,dY,
+ * residual. Les nombres sont écrits en notation décimale, sans exposant
+ * (Double.toString passe en notation scientifique dès 1e7, courant en
+ * mètres).
+ */
+public final class GcpFileWriter implements Closeable {
+
+    private static final String WKT_4326 = "GEOGCS[\"WGS 84\",DATUM[\"WGS_1984\","
+            + "SPHEROID[\"WGS 84\",6378137,298.257223563,AUTHORITY[\"EPSG\",\"7030\"]],"
+            + "AUTHORITY[\"EPSG\",\"6326\"]],PRIMEM[\"Greenwich\",0,AUTHORITY[\"EPSG\",\"8901\"]],"
+            + "UNIT[\"degree\",0.0174532925199433,AUTHORITY[\"EPSG\",\"9122\"]],"
+            + "AXIS[\"Latitude\",NORTH],AXIS[\"Longitude\",EAST],AUTHORITY[\"EPSG\",\"4326\"]]";
+
+    private static final String WKT_3857 = "PROJCS[\"WGS 84 / Pseudo-Mercator\",GEOGCS[\"WGS 84\","
+            + "DATUM[\"WGS_1984\",SPHEROID[\"WGS 84\",6378137,298.257223563,AUTHORITY[\"EPSG\",\"7030\"]],"
+            + "AUTHORITY[\"EPSG\",\"6326\"]],PRIMEM[\"Greenwich\",0,AUTHORITY[\"EPSG\",\"8901\"]],"
+            + "UNIT[\"degree\",0.0174532925199433,AUTHORITY[\"EPSG\",\"9122\"]],"
+            + "AUTHORITY[\"EPSG\",\"4326\"]],PROJECTION[\"Mercator_1SP\"],"
+            + "PARAMETER[\"central_meridian\",0],PARAMETER[\"scale_factor\",1],"
+            + "PARAMETER[\"false_easting\",0],PARAMETER[\"false_northing\",0],"
+            + "UNIT[\"metre\",1,AUTHORITY[\"EPSG\",\"9001\"]],AXIS[\"Easting\",EAST],AXIS[\"Northing\",NORTH],"
+            + "EXTENSION[\"PROJ4\",\"+proj=merc +a=6378137 +b=6378137 +lat_ts=0 +lon_0=0 +x_0=0 +y_0=0 +k=1 "
+            + "+units=m +nadgrids=@null +wkt +no_defs\"],AUTHORITY[\"EPSG\",\"3857\"]]";
+
+    private final GcpFileFormat format;
+    private final BufferedWriter writer;
+
+    private GcpFileWriter(GcpFileFormat format, Writer writer) {
+        this.format = format;
+        this.writer = writer instanceof BufferedWriter b ? b : new BufferedWriter(writer);
+    }
+
+    /**
+     * @param srid système de la carte, écrit dans la ligne #CRS du .points et
+     *             la projection du VRT ; null si inconnu
+     */
+    public static GcpFileWriter open(GcpFileFormat format, Writer writer, Srid srid) throws IOException {
+        GcpFileWriter gcpWriter = new GcpFileWriter(format, writer);
+        gcpWriter.writeHeader(srid);
+        return gcpWriter;
+    }
+
+    public void write(GcpDto gcp) throws IOException {
+        switch (format) {
+            case POINTS -> writer.write(decimal(gcp.getMapX()) + "," + decimal(gcp.getMapY()) + ","
+                    + decimal(gcp.getSourceX()) + "," + decimal(gcp.getSourceY()) + ",1,0,0,"
+                    + decimal(gcp.getResidual() != null ? gcp.getResidual() : 0.0));
+            case CSV -> writer.write(gcp.getIndex() + "," + decimal(gcp.getSourceX()) + ","
+                    + decimal(gcp.getSourceY()) + "," + decimal(gcp.getMapX()) + "," + decimal(gcp.getMapY()) + ","
+                    + (gcp.getResidual() != null ? decimal(gcp.getResidual()) : ""));
+            case VRT -> writer.write("  <GCP Id=\"" + gcp.getIndex() + "\" Pixel=\"" + decimal(gcp.getSourceX())
+                    + "\" Line=\"" + decimal(-gcp.getSourceY()) + "\" X=\"" + decimal(gcp.getMapX())
+                    + "\" Y=\"" + decimal(gcp.getMapY()) + "\"/>");
+        }
+        writer.newLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (format == GcpFileFormat.VRT) {
+            writer.write("</GCPList>");
+            writer.newLine();
+        }
+        writer.close();
+    }
+
+    private void writeHeader(Srid srid) throws IOException {
+        switch (format) {
+            case POINTS -> {
+                if (srid != null) {
+                    writer.write("#CRS: " + crsWkt(srid));
+                    writer.newLine();
+                }
+                writer.write("mapX,mapY,sourceX,sourceY,enable,dX,dY,residual");
+            }
+            case CSV -> writer.write("index,sourceX,sourceY,mapX,mapY,residual");
+            case VRT -> writer.write(srid != null
+                    ? "<GCPList Projection=\"EPSG:" + srid.getCode() + "\">"
+                    : "<GCPList>");
+        }
+        writer.newLine();
+    }
+
+    private static String crsWkt(Srid srid) {
+        return switch (srid) {
+            case _4326 -> WKT_4326;
+            case _3857 -> WKT_3857;
+        };
+    }
+
+    /**
+     * Écriture décimale la plus courte qui relit la même valeur.
+     */
+    private static String decimal(double value) {
+        return BigDecimal.valueOf(value).toPlainString();
+    }
+}
@@ -0,0 +1,91 @@
+package com.amine.pfe.georef_module.gcp.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+
+/**
+ * Éléments GCP d'un VRT GDAL (fichier complet, bloc GCPList ou simples
+ * lignes "<GCP .../>"), lus ligne à ligne comme les écrit GDAL : un
+ * élément ne doit pas être coupé sur plusieurs lignes.
+ *
+ * GDAL compte les lignes vers le bas ; sourceY vaut -Line, comme dans les
+ * fichiers .points de QGIS.
+ */
+final class VrtGcpReader implements GcpFileReader {
+
+    private static final Pattern GCP_ELEMENT = Pattern.compile("<GCP\\b([^>]*)>");
+    private static final Pattern ATTRIBUTE = Pattern.compile("(\\w+)\\s*=\\s*[\"']([^\"']*)[\"']");
+
+    private final BufferedReader reader;
+    private int lineNumber;
+    private Matcher elements;
+
+    VrtGcpReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public GcpDto next() throws IOException {
+        while (true) {
+            if (elements != null && elements.find()) {
+                return toGcp(elements.group(1));
+            }
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+            elements = GCP_ELEMENT.matcher(line);
+        }
+    }
+
+    @Override
+    public int getSkipped() {
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private GcpDto toGcp(String attributes) {
+        Double pixel = null;
+        Double line = null;
+        Double x = null;
+        Double y = null;
+        Matcher attribute = ATTRIBUTE.matcher(attributes);
+        while (attribute.find()) {
+            switch (attribute.group(1)) {
+                case "Pixel" -> pixel = number(attribute);
+                case "Line" -> line = number(attribute);
+                case "X" -> x = number(attribute);
+                case "Y" -> y = number(attribute);
+                default -> {
+                }
+            }
+        }
+        if (pixel == null || line == null || x == null || y == null) {
+            throw new IllegalArgumentException(
+                    "Ligne " + lineNumber + " : un GCP doit porter les attributs Pixel, Line, X et Y");
+        }
+        return new GcpDto(pixel, -line, x, y);
+    }
+
+    private double number(Matcher attribute) {
+        try {
+            double number = Double.parseDouble(attribute.group(2).strip());
+            if (Double.isFinite(number)) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // signalé ci-dessous
+        }
+        throw new IllegalArgumentException("Ligne " + lineNumber + " : " + attribute.group(1)
+                + " n'est pas un nombre fini : '" + attribute.group(2) + "'");
+    }
+}
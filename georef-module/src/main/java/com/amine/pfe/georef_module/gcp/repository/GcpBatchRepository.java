@@ -0,0 +1,221 @@
+package com.amine.pfe.georef_module.gcp.repository;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.amine.pfe.georef_module.enums.Srid;
+import com.amine.pfe.georef_module.enums.TransformationType;
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.dto.ImageGcps;
+import com.amine.pfe.georef_module.gcp.dto.ImageResidualsResponse;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Accès JDBC pour les traitements de masse : une seule requête pour charger
+ * les GCPs de plusieurs images, des écritures groupées (batch JDBC) pour les
+ * résidus et les imports, une copie INSERT ... SELECT pour les
+ * re-géoréférencements et une lecture par curseur pour les exports.
+ */
+@Repository
+@RequiredArgsConstructor
+public class GcpBatchRepository {
+
+    static final int JDBC_BATCH_SIZE = 500;
+    static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Charge les images demandées et leurs GCPs (triés par index). Les images
+     * inexistantes sont absentes de la map.
+     */
+    public Map<UUID, ImageGcps> findByImageIds(Collection<UUID> imageIds) {
+        String sql = "SELECT i.id AS img_id, i.transformation_type, i.srid, "
+                + "g.id AS gcp_id, g.source_x, g.source_y, g.map_x, g.map_y, g.index, g.residual "
+                + "FROM georef.georef_images i "
+                + "LEFT JOIN georef.gcp g ON g.image_id = i.id "
+                + "WHERE i.id = ANY (?) "
+                + "ORDER BY i.id, g.index";
+
+        Map<UUID, ImageGcps> images = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(sql);
+                    Array ids = con.createArrayOf("uuid", imageIds.toArray());
+                    ps.setArray(1, ids);
+                    return ps;
+                },
+                rs -> {
+                    UUID imageId = rs.getObject("img_id", UUID.class);
+                    ImageGcps image = images.get(imageId);
+                    if (image == null) {
+                        String type = rs.getString("transformation_type");
+                        String srid = rs.getString("srid");
+                        image = new ImageGcps(
+                                imageId,
+                                type != null ? TransformationType.valueOf(type) : null,
+                                srid != null ? Srid.valueOf(srid) : null,
+                                new ArrayList<>());
+                        images.put(imageId, image);
+                    }
+                    UUID gcpId = rs.getObject("gcp_id", UUID.class);
+                    if (gcpId != null) {
+                        image.getGcps().add(GcpDto.builder()
+                                .id(gcpId)
+                                .imageId(imageId)
+                                .sourceX(rs.getDouble("source_x"))
+                                .sourceY(rs.getDouble("source_y"))
+                                .mapX(rs.getDouble("map_x"))
+                                .mapY(rs.getDouble("map_y"))
+                                .index(rs.getInt("index"))
+                                .residual(rs.getObject("residual", Double.class))
+                                .build());
+                    }
+                });
+        return images;
+    }
+
+    /**
+     * Écrit les résidus des GCPs et le résidu moyen des images calculées
+     * avec succès, en une transaction.
+     */
+    @Transactional
+    public void updateResiduals(List<ImageResidualsResponse> results) {
+        List<GcpDto> gcps = new ArrayList<>();
+        List<ImageResidualsResponse> computed = new ArrayList<>();
+        for (ImageResidualsResponse result : results) {
+            if (result.getGcpDtos() != null) {
+                gcps.addAll(result.getGcpDtos());
+            }
+            if (result.isSuccess()) {
+                computed.add(result);
+            }
+        }
+
+        jdbcTemplate.batchUpdate(
+                "UPDATE georef.gcp SET residual = ? WHERE id = ?",
+                gcps,
+                JDBC_BATCH_SIZE,
+                (ps, gcp) -> {
+                    if (gcp.getResidual() != null) {
+                        ps.setDouble(1, gcp.getResidual());
+                    } else {
+                        ps.setNull(1, Types.DOUBLE);
+                    }
+                    ps.setObject(2, gcp.getId());
+                });
+
+        jdbcTemplate.batchUpdate(
+                "UPDATE georef.georef_images SET mean_residual = ? WHERE id = ?",
+                computed,
+                JDBC_BATCH_SIZE,
+                (ps, result) -> {
+                    ps.setDouble(1, result.getRmse());
+                    ps.setObject(2, result.getImageId());
+                });
+    }
+
+    /**
+     * Insère un lot de GCPs avec des index consécutifs à partir de firstIndex,
+     * en un batch JDBC (réécrit en INSERT multi-lignes par le driver).
+     */
+    public void insertGcps(UUID imageId, List<GcpDto> gcps, int firstIndex) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO georef.gcp (id, image_id, source_x, source_y, map_x, map_y, index) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        GcpDto gcp = gcps.get(i);
+                        ps.setObject(1, UUID.randomUUID());
+                        ps.setObject(2, imageId);
+                        ps.setDouble(3, gcp.getSourceX());
+                        ps.setDouble(4, gcp.getSourceY());
+                        ps.setDouble(5, gcp.getMapX());
+                        ps.setDouble(6, gcp.getMapY());
+                        ps.setInt(7, firstIndex + i);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return gcps.size();
+                    }
+                });
+    }
+
+    /**
+     * Copie en une instruction (INSERT ... SELECT) tous les GCPs d'une image
+     * vers une autre, avec les mêmes index et sans résidu, et renvoie les
+     * copies triées par index. L'image cible doit déjà être écrite en base.
+     */
+    public List<GcpDto> cloneGcps(UUID sourceImageId, UUID targetImageId) {
+        List<GcpDto> clones = jdbcTemplate.query(
+                "INSERT INTO georef.gcp (id, image_id, source_x, source_y, map_x, map_y, index) "
+                        + "SELECT gen_random_uuid(), ?, source_x, source_y, map_x, map_y, index "
+                        + "FROM georef.gcp WHERE image_id = ? "
+                        + "RETURNING id, source_x, source_y, map_x, map_y, index",
+                (rs, rowNum) -> new GcpDto(
+                        rs.getObject("id", UUID.class),
+                        targetImageId,
+                        rs.getDouble("source_x"),
+                        rs.getDouble("source_y"),
+                        rs.getDouble("map_x"),
+                        rs.getDouble("map_y"),
+                        rs.getInt("index"),
+                        null,
+                        null),
+                targetImageId, sourceImageId);
+        // RETURNING ne garantit pas l'ordre
+        clones.sort(Comparator.comparingInt(GcpDto::getIndex));
+        return clones;
+    }
+
+    /**
+     * Parcourt les GCPs d'une image par ordre d'index, FETCH_SIZE lignes à la
+     * fois. PostgreSQL n'ouvre un curseur qu'hors autocommit : appeler dans
+     * une transaction. Le même GcpDto est réutilisé d'une ligne à l'autre et
+     * ne doit pas être conservé par le consommateur.
+     */
+    public void streamByImageId(UUID imageId, Consumer<GcpDto> consumer) {
+        GcpDto gcp = new GcpDto();
+        gcp.setImageId(imageId);
+        jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(
+                            "SELECT id, source_x, source_y, map_x, map_y, index, residual "
+                                    + "FROM georef.gcp WHERE image_id = ? ORDER BY index",
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(FETCH_SIZE);
+                    ps.setObject(1, imageId);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> {
+                    gcp.setId(rs.getObject("id", UUID.class));
+                    gcp.setSourceX(rs.getDouble("source_x"));
+                    gcp.setSourceY(rs.getDouble("source_y"));
+                    gcp.setMapX(rs.getDouble("map_x"));
+                    gcp.setMapY(rs.getDouble("map_y"));
+                    gcp.setIndex(rs.getInt("index"));
+                    gcp.setResidual(rs.getObject("residual", Double.class));
+                    consumer.accept(gcp);
+                });
+    }
+}
@@ -0,0 +1,47 @@
+package com.amine.pfe.georef_module.gcp.repository;
+
+import java.util.UUID;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import com.amine.pfe.georef_module.entity.GcpIndexCounter;
+
+import jakarta.persistence.QueryHint;
+
+public interface GcpIndexCounterRepository extends JpaRepository<GcpIndexCounter, UUID> {
+
+    /**
+     * Réserve count index consécutifs et renvoie le dernier. Le compteur est
+     * créé au premier appel à partir du maximum existant ; ensuite l'upsert
+     * verrouille la seule ligne de l'image jusqu'à la fin de la transaction,
+     * les ajouts concurrents s'enchaînent donc sans erreur ni nouvel essai.
+     *
+     * Comme resynchronize, les écritures en attente sont envoyées avant
+     * l'upsert, qui lit le maximum de la table gcp. La requête ne peut pas
+     * être @Modifying, qui renverrait le nombre de lignes au lieu de
+     * last_index : le flush est demandé par le mode ALWAYS.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "ALWAYS"))
+    @Query(value = "INSERT INTO georef.gcp_index_counter AS c (image_id, last_index) "
+            + "VALUES (:imageId, (SELECT COALESCE(MAX(index), 0) FROM georef.gcp WHERE image_id = :imageId) + :count) "
+            + "ON CONFLICT (image_id) DO UPDATE SET last_index = c.last_index + :count "
+            + "RETURNING last_index", nativeQuery = true)
+    int allocate(@Param("imageId") UUID imageId, @Param("count") int count);
+
+    /**
+     * Recale le compteur sur le plus grand index présent après une
+     * suppression ou une renumérotation. Appelé en début de transaction, il
+     * pose aussi le verrou de la ligne : aucune allocation ne s'intercale
+     * alors entre la suppression et la renumérotation.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO georef.gcp_index_counter AS c (image_id, last_index) "
+            + "VALUES (:imageId, (SELECT COALESCE(MAX(index), 0) FROM georef.gcp WHERE image_id = :imageId)) "
+            + "ON CONFLICT (image_id) DO UPDATE SET last_index = EXCLUDED.last_index", nativeQuery = true)
+    int resynchronize(@Param("imageId") UUID imageId);
+}
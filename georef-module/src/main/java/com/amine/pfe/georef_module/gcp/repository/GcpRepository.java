@@ -5,22 +5,60 @@ import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import com.amine.pfe.georef_module.entity.Gcp;
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
 
 public interface GcpRepository extends JpaRepository<Gcp, UUID> {
     List<Gcp> findByImageId(UUID imageId);
 
-    boolean existsByImageIdAndIndex(UUID imageId, int index);
-
     List<Gcp> findAllByImageIdOrderByIndex(UUID imageId);
 
-    @Query("SELECT MAX(g.index) FROM Gcp g WHERE g.image.id = :imageId")
-    Optional<Integer> findMaxIndexByImageId(@Param("imageId") UUID imageId);
+    /**
+     * Lecture seule des GCPs d'une image : une seule requête sur la table gcp
+     * (l'ID d'image est la clé étrangère, sans jointure) et aucune entité
+     * chargée dans le contexte de persistance.
+     */
+    @Query("SELECT new com.amine.pfe.georef_module.gcp.dto.GcpDto("
+            + "g.id, g.image.id, g.sourceX, g.sourceY, g.mapX, g.mapY, g.index, g.residual) "
+            + "FROM Gcp g WHERE g.image.id = :imageId ORDER BY g.index")
+    List<GcpDto> findDtosByImageId(@Param("imageId") UUID imageId);
+
+    /**
+     * Image propriétaire d'un GCP, sans charger l'entité : vérifie l'existence
+     * du GCP avant un déplacement en écriture différée.
+     */
+    @Query("SELECT g.image.id FROM Gcp g WHERE g.id = :id")
+    Optional<UUID> findImageIdById(@Param("id") UUID id);
+
+    /**
+     * Première phase de la renumérotation : chaque GCP dont l'index diffère de
+     * son rang reçoit l'opposé de son rang. Les valeurs négatives ne peuvent
+     * pas entrer en collision avec les index existants, la contrainte
+     * (image_id, index) reste donc satisfaite ligne à ligne.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE georef.gcp g SET index = -r.rn "
+            + "FROM (SELECT id, ROW_NUMBER() OVER (ORDER BY index) AS rn "
+            + "FROM georef.gcp WHERE image_id = :imageId) r "
+            + "WHERE g.id = r.id AND g.index <> r.rn", nativeQuery = true)
+    int stageRenumbering(@Param("imageId") UUID imageId);
+
+    /**
+     * Seconde phase : les rangs négatifs posés par stageRenumbering deviennent
+     * les index définitifs.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE georef.gcp SET index = -index WHERE image_id = :imageId AND index < 0",
+            nativeQuery = true)
+    int applyRenumbering(@Param("imageId") UUID imageId);
 
-    void deleteByImageId(UUID imageId);
+    @Modifying
+    @Query("DELETE FROM Gcp g WHERE g.image.id = :imageId")
+    int deleteByImageId(@Param("imageId") UUID imageId);
 
     List<Gcp> findAllByImageId(UUID imageId);
 }
@@ -0,0 +1,174 @@
+package com.amine.pfe.georef_module.gcp.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.amine.pfe.georef_module.enums.Srid;
+import com.amine.pfe.georef_module.gcp.dto.NearestGcpDto;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Index spatial PostGIS des coordonnées carte des GCPs.
+ *
+ * La colonne georef.gcp.map_geog (geography WGS84) n'est pas mappée par JPA :
+ * elle est créée au démarrage et tenue à jour par des triggers, quel que soit
+ * le chemin d'écriture (JPA, batch JDBC, INSERT ... SELECT), à partir de
+ * map_x/map_y et du SRID de l'image. Un index GiST sert les recherches de
+ * voisins (ST_DWithin + tri KNN <->). Un GCP dont les coordonnées ne peuvent
+ * pas être ramenées en WGS84 garde map_geog à NULL et n'est jamais proposé
+ * comme voisin.
+ *
+ * Si PostGIS n'est pas disponible, l'initialisation est abandonnée sans
+ * bloquer l'application et la recherche de voisins est désactivée.
+ */
+@Repository
+@Slf4j
+public class GcpSpatialRepository {
+
+    // Le SRID est stocké par JPA sous le nom de l'enum ("_3857")
+    private static final String[] SCHEMA_STATEMENTS = {
+            "ALTER TABLE georef.gcp ADD COLUMN IF NOT EXISTS map_geog geography(Point, 4326)",
+
+            // STABLE et non IMMUTABLE : ST_Transform lit spatial_ref_sys. Un point
+            // hors du domaine du SRID, ou un SRID inconnu, donne NULL au lieu de
+            // faire échouer l'écriture du GCP
+            "CREATE OR REPLACE FUNCTION georef.gcp_map_geog(x double precision, y double precision, srid varchar) "
+                    + "RETURNS geography LANGUAGE plpgsql STABLE AS $$ "
+                    + "DECLARE p geometry; "
+                    + "BEGIN "
+                    + "IF x IS NULL OR y IS NULL OR NOT (abs(x) < 'Infinity' AND abs(y) < 'Infinity') THEN "
+                    + "RETURN NULL; "
+                    + "END IF; "
+                    + "p := ST_Transform(ST_SetSRID(ST_MakePoint(x, y), "
+                    + "COALESCE(NULLIF(ltrim(srid, '_'), '')::int, 3857)), 4326); "
+                    + "IF ST_X(p) NOT BETWEEN -180 AND 180 OR ST_Y(p) NOT BETWEEN -90 AND 90 THEN "
+                    + "RETURN NULL; "
+                    + "END IF; "
+                    + "RETURN p::geography; "
+                    + "EXCEPTION WHEN OTHERS THEN "
+                    + "RETURN NULL; "
+                    + "END $$",
+
+            "CREATE OR REPLACE FUNCTION georef.gcp_sync_map_geog() RETURNS trigger LANGUAGE plpgsql AS $$ "
+                    + "BEGIN "
+                    + "NEW.map_geog := georef.gcp_map_geog(NEW.map_x, NEW.map_y, "
+                    + "(SELECT i.srid FROM georef.georef_images i WHERE i.id = NEW.image_id)); "
+                    + "RETURN NEW; "
+                    + "END $$",
+
+            "DROP TRIGGER IF EXISTS gcp_sync_map_geog ON georef.gcp",
+
+            "CREATE TRIGGER gcp_sync_map_geog BEFORE INSERT OR UPDATE OF map_x, map_y, image_id "
+                    + "ON georef.gcp FOR EACH ROW EXECUTE FUNCTION georef.gcp_sync_map_geog()",
+
+            "CREATE OR REPLACE FUNCTION georef.gcp_resync_image_geog() RETURNS trigger LANGUAGE plpgsql AS $$ "
+                    + "BEGIN "
+                    + "UPDATE georef.gcp SET map_geog = georef.gcp_map_geog(map_x, map_y, NEW.srid) "
+                    + "WHERE image_id = NEW.id; "
+                    + "RETURN NEW; "
+                    + "END $$",
+
+            "DROP TRIGGER IF EXISTS gcp_resync_image_geog ON georef.georef_images",
+
+            "CREATE TRIGGER gcp_resync_image_geog AFTER UPDATE OF srid ON georef.georef_images "
+                    + "FOR EACH ROW WHEN (NEW.srid IS DISTINCT FROM OLD.srid) "
+                    + "EXECUTE FUNCTION georef.gcp_resync_image_geog()",
+
+            // Rattrapage des GCPs écrits avant l'installation des triggers
+            "UPDATE georef.gcp g SET map_geog = georef.gcp_map_geog(g.map_x, g.map_y, i.srid) "
+                    + "FROM georef.georef_images i WHERE i.id = g.image_id AND g.map_geog IS NULL",
+
+            "CREATE INDEX IF NOT EXISTS gcp_map_geog_gist ON georef.gcp USING GIST (map_geog)"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile boolean available;
+
+    public GcpSpatialRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Lancé une fois le schéma JPA à jour. Chaque instruction est idempotente.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS postgis");
+        } catch (DataAccessException e) {
+            // Droits insuffisants : l'extension a pu être installée par un administrateur
+            log.debug("CREATE EXTENSION postgis failed: {}", e.getMessage());
+        }
+
+        try {
+            Integer installed = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM pg_extension WHERE extname = 'postgis'", Integer.class);
+            if (installed == null || installed == 0) {
+                log.warn("PostGIS is not installed: nearest GCP search is disabled");
+                return;
+            }
+            for (String statement : SCHEMA_STATEMENTS) {
+                jdbcTemplate.execute(statement);
+            }
+            available = true;
+            log.info("GCP spatial index ready");
+
+        } catch (DataAccessException e) {
+            log.warn("GCP spatial index initialization failed, nearest GCP search is disabled: {}",
+                    e.getMessage());
+        }
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * GCPs de toutes les images à moins de radius mètres du point, du plus
+     * proche au plus lointain. Les coordonnées carte renvoyées sont exprimées
+     * dans le SRID du point recherché.
+     *
+     * @param excludeImageId image dont les GCPs sont ignorés, ou null
+     */
+    public List<NearestGcpDto> findNearest(double mapX, double mapY, Srid srid, double radius, int limit,
+            UUID excludeImageId) {
+        List<Object> params = new ArrayList<>();
+        params.add(mapX);
+        params.add(mapY);
+        params.add(srid.name());
+        params.add(srid.getCode());
+        params.add(srid.getCode());
+        params.add(radius);
+
+        StringBuilder sql = new StringBuilder()
+                .append("WITH q AS (SELECT georef.gcp_map_geog(?, ?, ?) AS p) ")
+                .append("SELECT g.id, g.image_id, g.index, ")
+                .append("ST_X(ST_Transform(g.map_geog::geometry, ?)) AS map_x, ")
+                .append("ST_Y(ST_Transform(g.map_geog::geometry, ?)) AS map_y, ")
+                .append("ST_Distance(g.map_geog, q.p) AS distance ")
+                .append("FROM georef.gcp g, q ")
+                .append("WHERE ST_DWithin(g.map_geog, q.p, ?) ");
+        if (excludeImageId != null) {
+            sql.append("AND g.image_id <> ? ");
+            params.add(excludeImageId);
+        }
+        sql.append("ORDER BY g.map_geog <-> q.p LIMIT ?");
+        params.add(limit);
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new NearestGcpDto(
+                rs.getObject("id", UUID.class),
+                rs.getObject("image_id", UUID.class),
+                rs.getInt("index"),
+                rs.getDouble("map_x"),
+                rs.getDouble("map_y"),
+                rs.getDouble("distance")), params.toArray());
+    }
+}
@@ -0,0 +1,152 @@
+package com.amine.pfe.georef_module.gcp.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+
+import com.amine.pfe.georef_module.enums.Srid;
+import com.amine.pfe.georef_module.enums.TransformationType;
+import com.amine.pfe.georef_module.gcp.dto.BatchResidualsRequest;
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.dto.ImageGcps;
+import com.amine.pfe.georef_module.gcp.dto.ImageResidualsResponse;
+import com.amine.pfe.georef_module.gcp.dto.ResidualsResult;
+import com.amine.pfe.georef_module.gcp.repository.GcpBatchRepository;
+import com.amine.pfe.georef_module.gcp.service.impl.GcpWorkingSetCache;
+import com.amine.pfe.georef_module.gcp.service.port.ResidualsService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Recalcul des résidus pour un lot d'images.
+ *
+ * Les GCPs de toutes les images sont chargés en une requête, les
+ * ajustements sont répartis sur tous les cœurs, et les résultats sont
+ * écrits par paquets (batch JDBC) avant d'être émis au fur et à mesure.
+ *
+ * Les déplacements en attente d'écriture sont écrits avant la lecture, et
+ * les résidus enregistrés sont reportés dans le cache d'édition.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchResidualsService {
+
+    static final int WRITE_BATCH_SIZE = 32;
+    static final Duration WRITE_BATCH_TIMEOUT = Duration.ofMillis(200);
+
+    private final GcpBatchRepository gcpBatchRepository;
+    private final ResidualsService residualsService;
+    private final GcpWorkingSetCache gcpWorkingSetCache;
+
+    public Flux<ImageResidualsResponse> updateResiduals(BatchResidualsRequest request) {
+        if (request.getImageIds() == null || request.getImageIds().isEmpty()) {
+            throw new IllegalArgumentException("La liste des IDs d'images ne peut pas être vide.");
+        }
+        List<UUID> imageIds = new ArrayList<>(new LinkedHashSet<>(request.getImageIds()));
+        if (imageIds.contains(null)) {
+            throw new IllegalArgumentException("Image ID cannot be null.");
+        }
+
+        return Mono.fromCallable(() -> {
+                    imageIds.forEach(gcpWorkingSetCache::flush);
+                    return gcpBatchRepository.findByImageIds(imageIds);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(images -> Flux.fromIterable(imageIds)
+                        .map(imageId -> new Job(imageId, images)))
+                .parallel()
+                .runOn(Schedulers.parallel())
+                .map(job -> compute(job, request))
+                .sequential()
+                .bufferTimeout(WRITE_BATCH_SIZE, WRITE_BATCH_TIMEOUT)
+                .publishOn(Schedulers.boundedElastic())
+                .concatMapIterable(batch -> {
+                    gcpBatchRepository.updateResiduals(batch);
+                    for (ImageResidualsResponse result : batch) {
+                        if (result.getGcpDtos() != null) {
+                            gcpWorkingSetCache.updateResiduals(result.getImageId(), result.getGcpDtos());
+                        }
+                    }
+                    return batch;
+                });
+    }
+
+    private ImageResidualsResponse compute(Job job, BatchResidualsRequest request) {
+        return evaluate(job.imageId, job.images.get(job.imageId), request.getType(), request.getSrid(), false);
+    }
+
+    /**
+     * Calcule les résidus d'une image sans les écrire. Le type et le SRID
+     * demandés, s'ils sont null, reprennent ceux de l'image.
+     *
+     * @param incremental true pour une image en cours d'édition, dont la
+     *                    factorisation est réutilisée d'un appel à l'autre ;
+     *                    false pour un lot, qui ne doit pas évincer ces états
+     */
+    ImageResidualsResponse evaluate(UUID imageId, ImageGcps image, TransformationType requestedType,
+            Srid requestedSrid, boolean incremental) {
+        if (image == null) {
+            return failure(imageId, null, 0, "Image avec l'ID " + imageId + " introuvable.");
+        }
+
+        TransformationType type = requestedType != null ? requestedType : image.getTransformationType();
+        Srid srid = requestedSrid != null ? requestedSrid : image.getSrid();
+        if (type == null || srid == null) {
+            return failure(image.getImageId(), null, 0,
+                    "Type de transformation ou SRID non défini pour l'image " + image.getImageId() + ".");
+        }
+
+        List<GcpDto> gcps = image.getGcps();
+        int minPointsRequired = residualsService.getMinimumPointsRequired(type);
+
+        try {
+            if (!residualsService.hasEnoughGCPs(gcps, type)) {
+                gcps.forEach(gcp -> gcp.setResidual(null));
+                return failure(image.getImageId(), gcps, minPointsRequired,
+                        type.getLabel() + " : Au moins " + minPointsRequired + " points de contrôle requis");
+            }
+
+            ResidualsResult result = incremental
+                    ? residualsService.computeResiduals(gcps, type, srid)
+                    : residualsService.computeStatelessResiduals(gcps, type, srid);
+            for (int i = 0; i < gcps.size(); i++) {
+                gcps.get(i).setResidual(round(result.getResiduals().get(i)));
+            }
+            return new ImageResidualsResponse(image.getImageId(), true, gcps, round(result.getRmse()),
+                    minPointsRequired, null);
+
+        } catch (Exception e) {
+            log.error("Erreur lors du calcul des résidus pour l'image {} : {}", image.getImageId(), e.getMessage(), e);
+            return failure(image.getImageId(), null, minPointsRequired, e.getMessage());
+        }
+    }
+
+    private static ImageResidualsResponse failure(UUID imageId, List<GcpDto> gcps, int minPointsRequired,
+            String message) {
+        return new ImageResidualsResponse(imageId, false, gcps, null, minPointsRequired, message);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10000.0) / 10000.0;
+    }
+
+    private static final class Job {
+        private final UUID imageId;
+        private final Map<UUID, ImageGcps> images;
+
+        Job(UUID imageId, Map<UUID, ImageGcps> images) {
+            this.imageId = imageId;
+            this.images = images;
+        }
+    }
+}
@@ -1,24 +1,56 @@
 package com.amine.pfe.georef_module.gcp.service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.amine.pfe.georef_module.entity.Gcp;
 import com.amine.pfe.georef_module.entity.GeorefImage;
+import com.amine.pfe.georef_module.enums.GcpFileFormat;
+import com.amine.pfe.georef_module.enums.GcpOperationType;
+import com.amine.pfe.georef_module.enums.ResidualMode;
+import com.amine.pfe.georef_module.enums.RobustMethod;
+import com.amine.pfe.georef_module.enums.Srid;
+import com.amine.pfe.georef_module.enums.TransformationType;
 import com.amine.pfe.georef_module.exception.ImageNotFoundException;
+import com.amine.pfe.georef_module.gcp.dto.DegreeSelectionRequest;
+import com.amine.pfe.georef_module.gcp.dto.DegreeSelectionResult;
+import com.amine.pfe.georef_module.gcp.dto.DistortionGridRequest;
 import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.dto.GcpImportResponse;
+import com.amine.pfe.georef_module.gcp.dto.GcpOperation;
+import com.amine.pfe.georef_module.gcp.dto.GcpSyncRequest;
+import com.amine.pfe.georef_module.gcp.dto.ImageResidualsResponse;
+import com.amine.pfe.georef_module.gcp.dto.InverseTransformRequest;
+import com.amine.pfe.georef_module.gcp.dto.InverseTransformResponse;
 import com.amine.pfe.georef_module.gcp.dto.LoadGcpsRequest;
+import com.amine.pfe.georef_module.gcp.dto.NearestGcpDto;
 import com.amine.pfe.georef_module.gcp.dto.ResidualsRequest;
 import com.amine.pfe.georef_module.gcp.dto.ResidualsResponse;
 import com.amine.pfe.georef_module.gcp.dto.ResidualsResult;
 import com.amine.pfe.georef_module.gcp.exceptions.DuplicateGcpIndexException;
 import com.amine.pfe.georef_module.gcp.exceptions.GcpNotFoundException;
+import com.amine.pfe.georef_module.gcp.io.GcpFileReader;
+import com.amine.pfe.georef_module.gcp.io.GcpFileWriter;
 import com.amine.pfe.georef_module.gcp.mapper.GcpMapper;
+import com.amine.pfe.georef_module.gcp.repository.GcpBatchRepository;
+import com.amine.pfe.georef_module.gcp.repository.GcpIndexCounterRepository;
 import com.amine.pfe.georef_module.gcp.repository.GcpRepository;
+import com.amine.pfe.georef_module.gcp.repository.GcpSpatialRepository;
+import com.amine.pfe.georef_module.gcp.service.impl.GcpWorkingSetCache;
 import com.amine.pfe.georef_module.gcp.service.port.GcpFactory;
 import com.amine.pfe.georef_module.gcp.service.port.ResidualsService;
 import com.amine.pfe.georef_module.image.repository.GeorefImageRepository;
@@ -29,11 +61,23 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class GcpService {
 
+        private static final int DEFAULT_GRID_SIZE = 64;
+        private static final int MAX_GRID_SIZE = 1024;
+        private static final int IMPORT_BATCH_SIZE = 500;
+        private static final int DEFAULT_NEAREST_LIMIT = 10;
+        private static final int MAX_NEAREST_LIMIT = 100;
+        private static final double MAX_NEAREST_RADIUS = 50_000;
+
         private final GcpRepository gcpRepository;
+        private final GcpBatchRepository gcpBatchRepository;
+        private final GcpSpatialRepository gcpSpatialRepository;
         private final GeorefImageRepository imageRepository;
+        private final GcpIndexCounterRepository gcpIndexCounterRepository;
         private final GcpFactory gcpFactory;
         private final ResidualsService residualsService;
+        private final GcpWorkingSetCache gcpWorkingSetCache;
 
+        @Transactional
         public GcpDto addGcp(GcpDto gcpDto) {
 
                 UUID imageId = gcpDto.getImageId();
@@ -45,13 +89,7 @@ public class GcpService {
                                                         "Image avec l'ID " + imageId + " introuvable.");
                                 });
 
-                Integer nextIndex = gcpRepository.findMaxIndexByImageId(imageId)
-                                .map(maxIndex -> maxIndex + 1)
-                                .orElse(1);
-
-                if (gcpRepository.existsByImageIdAndIndex(imageId, nextIndex)) {
-                        throw new DuplicateGcpIndexException("Un GCP avec ce même index existe déjà pour cette image.");
-                }
+                int nextIndex = gcpIndexCounterRepository.allocate(imageId, 1);
 
                 Gcp gcp = gcpFactory.createGcp(image,
                                 gcpDto.getSourceX(),
@@ -60,7 +98,13 @@ public class GcpService {
                                 gcpDto.getMapY(),
                                 nextIndex);
 
-                Gcp saved = gcpRepository.save(gcp);
+                Gcp saved;
+                try {
+                        saved = gcpRepository.saveAndFlush(gcp);
+                } catch (DataIntegrityViolationException e) {
+                        throw new DuplicateGcpIndexException("Un GCP avec ce même index existe déjà pour cette image.");
+                }
+                gcpWorkingSetCache.invalidate(imageId);
                 return GcpMapper.toDto(saved);
         }
 
@@ -68,14 +112,13 @@ public class GcpService {
 
                 validateImageIdNotNull(imageId);
 
-                GeorefImage image = imageRepository.findById(imageId)
-                                .orElseThrow(() -> {
-                                        return new ImageNotFoundException(
-                                                        "Image avec l'ID " + imageId + " introuvable.");
-                                });
-
-                List<Gcp> gcps = gcpRepository.findByImageId(image.getId());
-                return GcpMapper.toGcpDtoList(gcps);
+                // Cache ou projection en une requête ; l'existence de l'image n'est
+                // vérifiée que si aucun GCP n'est trouvé
+                List<GcpDto> gcpDtos = workingSet(imageId);
+                if (gcpDtos.isEmpty() && !imageRepository.existsById(imageId)) {
+                        throw new ImageNotFoundException("Image avec l'ID " + imageId + " introuvable.");
+                }
+                return gcpDtos;
         }
 
         @Transactional
@@ -84,19 +127,23 @@ public class GcpService {
                                 .orElseThrow(() -> new GcpNotFoundException("GCP non trouvé avec l'id : " + gcpId));
 
                 UUID imageId = gcpToDelete.getImage().getId();
-                int indexToDelete = gcpToDelete.getIndex();
+                gcpWorkingSetCache.flush(imageId);
 
-                gcpRepository.delete(gcpToDelete);
+                // Verrouille le compteur d'index : aucun ajout ne s'intercale
+                // pendant la renumérotation
+                gcpIndexCounterRepository.resynchronize(imageId);
 
-                List<Gcp> remainingGcps = gcpRepository.findAllByImageIdOrderByIndex(imageId);
+                gcpRepository.delete(gcpToDelete);
 
-                if (indexToDelete < remainingGcps.size() + 1) {
-                        for (int i = 0; i < remainingGcps.size(); i++) {
-                                remainingGcps.get(i).setIndex(i + 1);
-                        }
-                        remainingGcps = gcpRepository.saveAll(remainingGcps);
+                // Renumérotation 1..n en deux UPDATE ensemblistes (passage par des
+                // index négatifs), quel que soit le nombre de GCPs restants
+                if (gcpRepository.stageRenumbering(imageId) > 0) {
+                        gcpRepository.applyRenumbering(imageId);
                 }
+                gcpIndexCounterRepository.resynchronize(imageId);
+                gcpWorkingSetCache.invalidate(imageId);
 
+                List<Gcp> remainingGcps = gcpRepository.findAllByImageIdOrderByIndex(imageId);
                 return GcpMapper.toGcpDtoList(remainingGcps);
         }
 
@@ -106,15 +153,38 @@ public class GcpService {
                         throw new IllegalArgumentException("GCP ID cannot be null.");
                 }
 
+                // Même contrôle que l'écriture directe : le GCP doit exister et
+                // appartenir à l'image indiquée, le cache peut être en retard
+                UUID ownerId = gcpRepository.findImageIdById(gcpDto.getId())
+                                .orElseThrow(() -> new GcpNotFoundException(
+                                                "GCP not found : " + gcpDto.getId()));
+                if (gcpDto.getImageId() == null) {
+                        gcpDto.setImageId(ownerId);
+                } else if (!gcpDto.getImageId().equals(ownerId)) {
+                        throw new GcpNotFoundException("GCP non trouvé pour l'image " + gcpDto.getImageId()
+                                        + " avec l'id : " + gcpDto.getId());
+                }
+
+                // Image en cours d'édition : le déplacement est écrit en différé
+                GcpDto staged = gcpWorkingSetCache.stageUpdate(gcpDto);
+                if (staged != null) {
+                        return staged;
+                }
+
                 Gcp gcpToUpdate = gcpRepository.findById(gcpDto.getId())
                                 .orElseThrow(() -> new GcpNotFoundException(
                                                 "GCP not found : " + gcpDto.getId()));
 
+                // Un déplacement plus ancien encore en file ne doit pas écraser celui-ci
+                UUID imageId = gcpToUpdate.getImage().getId();
+                gcpWorkingSetCache.flush(imageId);
+
                 gcpToUpdate.setSourceX(gcpDto.getSourceX());
                 gcpToUpdate.setSourceY(gcpDto.getSourceY());
                 gcpToUpdate.setMapX(gcpDto.getMapX());
                 gcpToUpdate.setMapY(gcpDto.getMapY());
 
+                gcpWorkingSetCache.invalidate(imageId);
                 return GcpMapper.toDto(gcpToUpdate);
         }
 
@@ -126,26 +196,185 @@ public class GcpService {
                                 .orElseThrow(() -> new ImageNotFoundException(
                                                 "Image avec l'ID " + residualsRequest.getImageId() + " introuvable."));
 
-                List<Gcp> gcps = getGcpsForImage(residualsRequest.getImageId());
+                // GCPs du cache d'édition, déplacements en attente compris : seuls
+                // les résidus sont écrits, les coordonnées restent à la file
+                List<GcpDto> gcpDtos = getGcpDtosForImage(image.getId());
+
+                ResidualsResponse response = computeResiduals(image, gcpDtos, residualsRequest.getType(),
+                                residualsRequest.getSrid(), residualsRequest.getMode(),
+                                residualsRequest.getRobustMethod());
+                Double meanResidual = response.isSuccess() ? round(response.getRmse()) : null;
+                gcpBatchRepository.updateResiduals(List.of(new ImageResidualsResponse(image.getId(),
+                                response.isSuccess(), response.getGcpDtos(), meanResidual,
+                                response.getMinPointsRequired(), null)));
+                gcpWorkingSetCache.updateResiduals(image.getId(), response.getGcpDtos());
+                return response;
+        }
+
+        /**
+         * Applique une suite ordonnée d'ajouts, de modifications et de
+         * suppressions de GCPs en une transaction, puis recalcule les résidus une
+         * seule fois sur l'état final.
+         *
+         * Les nouveaux GCPs reçoivent une plage d'index réservée au compteur de
+         * l'image et les modifications ne touchent pas aux index : les écritures,
+         * groupées en batch JDBC au flush, ne peuvent pas heurter la contrainte
+         * (image_id, index). Après des suppressions, les index sont resserrés par
+         * la renumérotation ensembliste ; la réponse porte déjà les index finaux.
+         */
+        @Transactional
+        public ResidualsResponse syncGcps(GcpSyncRequest request) {
+                UUID imageId = request.getImageId();
+                validateImageIdNotNull(imageId);
+
+                if (request.getOperations() == null || request.getOperations().isEmpty()) {
+                        throw new IllegalArgumentException("La liste des opérations ne peut pas être vide.");
+                }
+
+                GeorefImage image = imageRepository.findById(imageId)
+                                .orElseThrow(() -> new ImageNotFoundException(
+                                                "Image avec l'ID " + imageId + " introuvable."));
+
+                boolean hasDeletions = false;
+                int additions = 0;
+                for (GcpOperation operation : request.getOperations()) {
+                        if (operation == null || operation.getOp() == null || operation.getGcp() == null) {
+                                throw new IllegalArgumentException("Chaque opération doit préciser son type et son GCP.");
+                        }
+                        hasDeletions |= operation.getOp() == GcpOperationType.DELETE;
+                        additions += operation.getOp() == GcpOperationType.ADD ? 1 : 0;
+                }
+
+                gcpWorkingSetCache.flush(imageId);
+
+                // Avec des suppressions, le compteur est verrouillé avant de lire
+                // les GCPs : la renumérotation finale ne croise aucun ajout concurrent
+                if (hasDeletions) {
+                        gcpIndexCounterRepository.resynchronize(imageId);
+                }
+
+                List<Gcp> current = gcpRepository.findAllByImageIdOrderByIndex(imageId);
+                Map<UUID, Gcp> gcpsById = new LinkedHashMap<>();
+                for (Gcp gcp : current) {
+                        gcpsById.put(gcp.getId(), gcp);
+                }
+                int nextIndex = additions > 0
+                                ? gcpIndexCounterRepository.allocate(imageId, additions) - additions + 1
+                                : 0;
+
+                List<Gcp> added = new ArrayList<>();
+                List<Gcp> deleted = new ArrayList<>();
+
+                for (GcpOperation operation : request.getOperations()) {
+                        GcpDto dto = operation.getGcp();
+                        switch (operation.getOp()) {
+                                case ADD -> added.add(gcpFactory.createGcp(
+                                                image,
+                                                dto.getSourceX(),
+                                                dto.getSourceY(),
+                                                dto.getMapX(),
+                                                dto.getMapY(),
+                                                nextIndex++));
+                                case UPDATE -> {
+                                        Gcp gcp = requireSyncedGcp(gcpsById, dto.getId());
+                                        gcp.setSourceX(dto.getSourceX());
+                                        gcp.setSourceY(dto.getSourceY());
+                                        gcp.setMapX(dto.getMapX());
+                                        gcp.setMapY(dto.getMapY());
+                                }
+                                case DELETE -> {
+                                        deleted.add(requireSyncedGcp(gcpsById, dto.getId()));
+                                        gcpsById.remove(dto.getId());
+                                }
+                        }
+                }
+
+                List<Gcp> remaining = new ArrayList<>(gcpsById.values());
+                remaining.addAll(added);
+
+                gcpRepository.deleteAll(deleted);
+                remaining = gcpRepository.saveAll(remaining);
 
-                List<GcpDto> gcpDtos = GcpMapper.toGcpDtoList(gcps);
+                ResidualsResponse response = refreshResiduals(image, remaining, request.getType(), request.getSrid(),
+                                request.getMode());
 
-                int minPointsRequired = residualsService.getMinimumPointsRequired(residualsRequest.getType());
+                gcpRepository.flush();
+                if (hasDeletions) {
+                        if (gcpRepository.stageRenumbering(imageId) > 0) {
+                                gcpRepository.applyRenumbering(imageId);
+                        }
+                        gcpIndexCounterRepository.resynchronize(imageId);
+                }
+                gcpWorkingSetCache.invalidate(imageId);
 
-                if (!residualsService.hasEnoughGCPs(gcpDtos, residualsRequest.getType())) {
-                        List<Gcp> clearedGcps = clearResiduals(gcps);
-                        return buildResponse(false, clearedGcps, null, minPointsRequired);
+                List<GcpDto> gcpDtos = response.getGcpDtos();
+                for (int i = 0; i < gcpDtos.size(); i++) {
+                        gcpDtos.get(i).setIndex(i + 1);
                 }
+                return response;
+        }
 
-                ResidualsResult result = residualsService.computeResiduals(
-                                gcpDtos,
-                                residualsRequest.getType(),
-                                residualsRequest.getSrid());
+        @Transactional
+        public DegreeSelectionResult selectPolynomialDegree(DegreeSelectionRequest request) {
+                validateImageIdNotNull(request.getImageId());
 
-                List<Gcp> updatedGcps = updateResidualsInGcps(gcps, result.getResiduals());
-                updateMeanResidualForImage(image, result.getRmse());
+                if (!imageRepository.existsById(request.getImageId())) {
+                        throw new ImageNotFoundException(
+                                        "Image avec l'ID " + request.getImageId() + " introuvable.");
+                }
 
-                return buildResponse(true, updatedGcps, result.getRmse(), minPointsRequired);
+                List<GcpDto> gcpDtos = getGcpDtosForImage(request.getImageId());
+                return residualsService.selectPolynomialDegree(gcpDtos, request.getSrid());
+        }
+
+        @Transactional
+        public byte[] computeDistortionGrid(DistortionGridRequest request) {
+                validateImageIdNotNull(request.getImageId());
+
+                if (request.getWidth() == null || request.getHeight() == null
+                                || request.getWidth() <= 0 || request.getHeight() <= 0) {
+                        throw new IllegalArgumentException("Les dimensions de l'image doivent être positives.");
+                }
+                int cols = request.getCols() != null ? request.getCols() : DEFAULT_GRID_SIZE;
+                int rows = request.getRows() != null ? request.getRows() : DEFAULT_GRID_SIZE;
+                if (cols < 1 || rows < 1 || cols > MAX_GRID_SIZE || rows > MAX_GRID_SIZE) {
+                        throw new IllegalArgumentException(
+                                        "La grille doit compter entre 1 et " + MAX_GRID_SIZE + " cellules par côté.");
+                }
+
+                GeorefImage image = imageRepository.findById(request.getImageId())
+                                .orElseThrow(() -> new ImageNotFoundException(
+                                                "Image avec l'ID " + request.getImageId() + " introuvable."));
+
+                TransformationType type = resolveType(request.getType(), image);
+
+                List<GcpDto> gcpDtos = getGcpDtosForImage(request.getImageId());
+                requireEnoughGcps(gcpDtos, type);
+
+                return residualsService.computeDistortionGrid(gcpDtos, type, request.getWidth(), request.getHeight(),
+                                cols, rows).toByteArray();
+        }
+
+        @Transactional
+        public InverseTransformResponse inverseTransform(InverseTransformRequest request) {
+                validateImageIdNotNull(request.getImageId());
+
+                if (request.getMapX() == null || request.getMapY() == null
+                                || request.getMapX().length != request.getMapY().length) {
+                        throw new IllegalArgumentException(
+                                        "Les coordonnées carte doivent être fournies par paires (mapX, mapY).");
+                }
+
+                GeorefImage image = imageRepository.findById(request.getImageId())
+                                .orElseThrow(() -> new ImageNotFoundException(
+                                                "Image avec l'ID " + request.getImageId() + " introuvable."));
+
+                TransformationType type = resolveType(request.getType(), image);
+
+                List<GcpDto> gcpDtos = getGcpDtosForImage(request.getImageId());
+                requireEnoughGcps(gcpDtos, type);
+
+                return residualsService.inverseTransform(gcpDtos, type, request.getMapX(), request.getMapY());
         }
 
         @Transactional
@@ -162,21 +391,19 @@ public class GcpService {
                                                 "Image avec l'ID " + imageId + " introuvable."));
 
                 if (request.isOverwrite()) {
+                        gcpIndexCounterRepository.resynchronize(imageId);
                         gcpRepository.deleteByImageId(imageId);
+                        gcpIndexCounterRepository.resynchronize(imageId);
                 }
 
-                Integer startIndex = gcpRepository.findMaxIndexByImageId(imageId)
-                                .map(maxIndex -> maxIndex + 1)
-                                .orElse(1);
+                // La plage d'index est réservée en une fois par le compteur de l'image
+                int count = request.getGcps().size();
+                int startIndex = gcpIndexCounterRepository.allocate(imageId, count) - count + 1;
 
-                List<Gcp> newGcps = new ArrayList<>();
-                Integer index = startIndex;
+                List<Gcp> newGcps = new ArrayList<>(count);
+                int index = startIndex;
 
                 for (GcpDto dto : request.getGcps()) {
-                        if (gcpRepository.existsByImageIdAndIndex(imageId, index)) {
-                                throw new DuplicateGcpIndexException("Un GCP avec l'index " + index + " existe déjà.");
-                        }
-
                         Gcp gcp = gcpFactory.createGcp(
                                         image,
                                         dto.getSourceX(),
@@ -187,12 +414,22 @@ public class GcpService {
                         newGcps.add(gcp);
                 }
 
-                List<Gcp> savedGcps = gcpRepository.saveAll(newGcps);
+                // Insertions groupées (hibernate.jdbc.batch_size), flush immédiat pour
+                // remonter ici une violation de la contrainte d'unicité
+                List<Gcp> savedGcps;
+                try {
+                        savedGcps = gcpRepository.saveAllAndFlush(newGcps);
+                } catch (DataIntegrityViolationException e) {
+                        throw new DuplicateGcpIndexException("Les index " + startIndex + " à " + (index - 1)
+                                        + " sont déjà utilisés pour l'image " + imageId + ".");
+                }
+                gcpWorkingSetCache.invalidate(imageId);
                 return GcpMapper.toGcpDtoList(savedGcps);
         }
 
         @Transactional
         public boolean deleteAllGcpsByImageId(UUID imageId) {
+                gcpIndexCounterRepository.resynchronize(imageId);
                 List<Gcp> gcpList = gcpRepository.findAllByImageId(imageId);
 
                 if (gcpList.isEmpty()) {
@@ -200,48 +437,310 @@ public class GcpService {
                 }
 
                 gcpRepository.deleteAll(gcpList);
+                gcpIndexCounterRepository.resynchronize(imageId);
+                gcpWorkingSetCache.invalidate(imageId);
                 return true;
         }
 
+        /**
+         * Importe un fichier de GCPs (.points, CSV ou VRT) en un seul passage :
+         * chaque ligne est lue, validée puis ajoutée au lot courant, inséré en
+         * batch JDBC dès qu'il atteint IMPORT_BATCH_SIZE points. La mémoire
+         * utilisée ne dépend pas de la taille du fichier.
+         */
+        @Transactional(rollbackFor = IOException.class)
+        public GcpImportResponse importGcps(UUID imageId, GcpFileFormat format, InputStream input, boolean overwrite)
+                        throws IOException {
+                validateImageIdNotNull(imageId);
+
+                if (!imageRepository.existsById(imageId)) {
+                        throw new ImageNotFoundException("Image avec l'ID " + imageId + " introuvable.");
+                }
+
+                gcpWorkingSetCache.flush(imageId);
+                if (overwrite) {
+                        gcpIndexCounterRepository.resynchronize(imageId);
+                        gcpRepository.deleteByImageId(imageId);
+                        gcpIndexCounterRepository.resynchronize(imageId);
+                }
+
+                int imported = 0;
+                int skipped;
+                List<GcpDto> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+                try (GcpFileReader reader = GcpFileReader.open(format,
+                                new InputStreamReader(input, StandardCharsets.UTF_8))) {
+                        GcpDto gcp;
+                        while ((gcp = reader.next()) != null) {
+                                batch.add(gcp);
+                                if (batch.size() == IMPORT_BATCH_SIZE) {
+                                        imported += insertImportBatch(imageId, batch);
+                                        batch.clear();
+                                }
+                        }
+                        if (!batch.isEmpty()) {
+                                imported += insertImportBatch(imageId, batch);
+                        }
+                        skipped = reader.getSkipped();
+                }
+
+                if (imported == 0) {
+                        throw new IllegalArgumentException("Aucun GCP trouvé dans le fichier.");
+                }
+
+                gcpWorkingSetCache.invalidate(imageId);
+                return new GcpImportResponse(imageId, imported, skipped);
+        }
+
+        /**
+         * Copie tous les GCPs d'une image vers une nouvelle image
+         * (re-géoréférencement), en une seule instruction. Les déplacements en
+         * attente de l'image source doivent avoir été écrits (flushPendingEdits).
+         */
+        @Transactional
+        public List<GcpDto> cloneGcps(UUID sourceImageId, UUID targetImageId) {
+                validateImageIdNotNull(sourceImageId);
+                validateImageIdNotNull(targetImageId);
+
+                List<GcpDto> clones = gcpBatchRepository.cloneGcps(sourceImageId, targetImageId);
+                gcpWorkingSetCache.invalidate(targetImageId);
+                return clones;
+        }
+
+        /**
+         * GCPs de toutes les images proches d'un point carte, pour s'accrocher
+         * à des points d'appui déjà saisis (index spatial PostGIS). Les
+         * déplacements encore en attente d'écriture n'y figurent pas.
+         *
+         * @param radius rayon de recherche en mètres
+         */
+        public List<NearestGcpDto> findNearestGcps(Double mapX, Double mapY, Srid srid, Double radius, Integer limit,
+                        UUID excludeImageId) {
+                if (mapX == null || mapY == null || !Double.isFinite(mapX) || !Double.isFinite(mapY)) {
+                        throw new IllegalArgumentException("Les coordonnées carte (mapX, mapY) sont obligatoires.");
+                }
+                if (radius == null || !(radius > 0) || radius > MAX_NEAREST_RADIUS) {
+                        throw new IllegalArgumentException(
+                                        "Le rayon doit être compris entre 0 et " + MAX_NEAREST_RADIUS + " mètres.");
+                }
+                int k = limit != null ? limit : DEFAULT_NEAREST_LIMIT;
+                if (k < 1 || k > MAX_NEAREST_LIMIT) {
+                        throw new IllegalArgumentException(
+                                        "Le nombre de GCPs doit être compris entre 1 et " + MAX_NEAREST_LIMIT + ".");
+                }
+                if (!gcpSpatialRepository.isAvailable()) {
+                        throw new IllegalStateException("La recherche spatiale des GCPs n'est pas disponible (PostGIS).");
+                }
+
+                return gcpSpatialRepository.findNearest(mapX, mapY, srid != null ? srid : Srid.getDefault(), radius, k,
+                                excludeImageId);
+        }
+
+        /**
+         * Vérifie l'image et écrit ses déplacements en attente avant un export.
+         *
+         * @return le SRID de l'image, éventuellement null
+         */
+        public Srid prepareExport(UUID imageId) {
+                validateImageIdNotNull(imageId);
+
+                GeorefImage image = imageRepository.findById(imageId)
+                                .orElseThrow(() -> new ImageNotFoundException(
+                                                "Image avec l'ID " + imageId + " introuvable."));
+
+                gcpWorkingSetCache.flush(imageId);
+                return image.getSrid();
+        }
+
+        /**
+         * Écrit les GCPs de l'image dans le flux au fil de la lecture du curseur.
+         */
+        @Transactional(readOnly = true)
+        public void exportGcps(UUID imageId, GcpFileFormat format, Srid srid, OutputStream output)
+                        throws IOException {
+                try (GcpFileWriter writer = GcpFileWriter.open(format,
+                                new OutputStreamWriter(output, StandardCharsets.UTF_8), srid)) {
+                        gcpBatchRepository.streamByImageId(imageId, gcp -> {
+                                try {
+                                        writer.write(gcp);
+                                } catch (IOException e) {
+                                        throw new UncheckedIOException(e);
+                                }
+                        });
+                } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                }
+        }
+
+        /**
+         * Écrit les déplacements de GCPs encore en file pour l'image, avant une
+         * opération qui relit les GCPs en base (géoréférencement).
+         */
+        public void flushPendingEdits(UUID imageId) {
+                validateImageIdNotNull(imageId);
+                gcpWorkingSetCache.flush(imageId);
+        }
+
         private void validateImageIdNotNull(UUID imageId) {
                 if (imageId == null) {
                         throw new IllegalArgumentException("L'ID de l'image ne peut pas être null.");
                 }
         }
 
-        private List<Gcp> getGcpsForImage(UUID imageId) {
-                List<Gcp> gcps = gcpRepository.findByImageId(imageId);
-                if (gcps.isEmpty()) {
+        private TransformationType resolveType(TransformationType requested, GeorefImage image) {
+                if (requested != null) {
+                        return requested;
+                }
+                return image.getTransformationType() != null ? image.getTransformationType()
+                                : TransformationType.getDefault();
+        }
+
+        private void requireEnoughGcps(List<GcpDto> gcpDtos, TransformationType type) {
+                if (!residualsService.hasEnoughGCPs(gcpDtos, type)) {
+                        throw new IllegalArgumentException("Pas assez de GCPs pour la transformation " + type.getLabel()
+                                        + " (minimum " + residualsService.getMinimumPointsRequired(type) + ").");
+                }
+        }
+
+        /**
+         * GCPs de l'image pour les calculs en lecture seule : depuis le cache
+         * d'édition, sinon par projection (mise en cache).
+         */
+        private List<GcpDto> workingSet(UUID imageId) {
+                List<GcpDto> gcpDtos = gcpWorkingSetCache.get(imageId);
+                if (gcpDtos == null) {
+                        long generation = gcpWorkingSetCache.generation(imageId);
+                        gcpDtos = gcpRepository.findDtosByImageId(imageId);
+                        if (!gcpDtos.isEmpty()) {
+                                gcpDtos = gcpWorkingSetCache.put(imageId, gcpDtos, generation);
+                        }
+                }
+                return gcpDtos;
+        }
+
+        private List<GcpDto> getGcpDtosForImage(UUID imageId) {
+                List<GcpDto> gcpDtos = workingSet(imageId);
+                if (gcpDtos.isEmpty()) {
                         throw new GcpNotFoundException("Aucun GCP trouvé pour l'image avec l'ID : " + imageId);
                 }
-                return gcps;
+                return gcpDtos;
         }
 
-        private List<Gcp> clearResiduals(List<Gcp> gcps) {
-                gcps.forEach(gcp -> gcp.setResidual(null));
-                List<Gcp> updatedGcps = gcpRepository.saveAll(gcps);
-                return updatedGcps;
+        private int insertImportBatch(UUID imageId, List<GcpDto> batch) {
+                int count = batch.size();
+                int firstIndex = gcpIndexCounterRepository.allocate(imageId, count) - count + 1;
+                try {
+                        gcpBatchRepository.insertGcps(imageId, batch, firstIndex);
+                } catch (DataIntegrityViolationException e) {
+                        throw new DuplicateGcpIndexException("Les index " + firstIndex + " à " + (firstIndex + count - 1)
+                                        + " sont déjà utilisés pour l'image " + imageId + ".");
+                }
+                return count;
         }
 
-        private List<Gcp> updateResidualsInGcps(List<Gcp> gcps, List<Double> residuals) {
-                if (gcps.size() != residuals.size()) {
+        /**
+         * Recalcule et enregistre les résidus des GCPs de l'image. Le type et le
+         * SRID non précisés sont ceux de l'image ; sans assez de GCPs, les
+         * résidus sont effacés. Les GCPs sont des entités gérées : les résidus
+         * sont écrits par le dirty checking au flush, sans nouveau saveAll.
+         */
+        private ResidualsResponse refreshResiduals(GeorefImage image, List<Gcp> gcps, TransformationType type,
+                        Srid srid, ResidualMode mode) {
+                ResidualsResponse response = computeResiduals(image, GcpMapper.toGcpDtoList(gcps), type, srid,
+                                mode, null);
+                List<GcpDto> gcpDtos = response.getGcpDtos();
+                for (int i = 0; i < gcps.size(); i++) {
+                        gcps.get(i).setResidual(gcpDtos.get(i).getResidual());
+                }
+                if (response.isSuccess()) {
+                        image.setMeanResidual(round(response.getRmse()));
+                }
+                return response;
+        }
+
+        /**
+         * Calcule les résidus des GCPs donnés sans rien écrire : ils sont
+         * reportés (arrondis) sur gcpDtos, ou effacés s'il n'y a pas assez de
+         * GCPs.
+         *
+         * Avec une méthode robuste, le mode est ignoré : la réponse porte le
+         * masque des inliers, les poids et l'échelle robuste. Une méthode
+         * robuste sur une transformation qui n'en a pas est refusée.
+         */
+        private ResidualsResponse computeResiduals(GeorefImage image, List<GcpDto> gcpDtos, TransformationType type,
+                        Srid srid, ResidualMode mode, RobustMethod robustMethod) {
+                type = resolveType(type, image);
+                if (srid == null) {
+                        srid = image.getSrid();
+                }
+                boolean robust = robustMethod != null && robustMethod != RobustMethod.NONE;
+                if (robust && !residualsService.supportsRobustFit(type)) {
+                        throw new IllegalArgumentException("Estimation robuste " + robustMethod.getLabel()
+                                        + " non disponible pour la transformation " + type.getLabel());
+                }
+
+                int minPointsRequired = residualsService.getMinimumPointsRequired(type);
+
+                if (!residualsService.hasEnoughGCPs(gcpDtos, type)) {
+                        gcpDtos.forEach(gcp -> gcp.setResidual(null));
+                        return new ResidualsResponse(false, gcpDtos, null, minPointsRequired);
+                }
+
+                if (mode == null) {
+                        mode = ResidualMode.getDefault();
+                }
+
+                ResidualsResult result;
+                if (robust) {
+                        result = residualsService.computeRobustResiduals(gcpDtos, type, srid, robustMethod);
+                } else if (mode == ResidualMode.CLASSIC) {
+                        result = residualsService.computeResiduals(gcpDtos, type, srid);
+                } else {
+                        result = residualsService.computeResiduals(gcpDtos, type, srid, mode);
+                }
+
+                List<Double> residuals = result.getResiduals();
+                if (gcpDtos.size() != residuals.size()) {
                         throw new IllegalStateException("Number of residuals does not match number of GCPs.");
                 }
-                for (int i = 0; i < gcps.size(); i++) {
-                        double residual = Math.round(residuals.get(i) * 10000.0) / 10000.0;
-                        gcps.get(i).setResidual(residual);
+                for (int i = 0; i < gcpDtos.size(); i++) {
+                        gcpDtos.get(i).setResidual(round(residuals.get(i)));
                 }
-                List<Gcp> updatedGcps = gcpRepository.saveAll(gcps);
-                return updatedGcps;
+
+                ResidualsResponse response = new ResidualsResponse(true, gcpDtos, result.getRmse(), minPointsRequired);
+                if (result.getLooResiduals() != null) {
+                        applyLeaveOneOut(response, result);
+                }
+                response.setInliers(result.getInliers());
+                response.setWeights(result.getWeights());
+                if (result.getRobustScale() != null) {
+                        response.setRobustScale(round(result.getRobustScale()));
+                }
+                return response;
         }
 
-        private void updateMeanResidualForImage(GeorefImage image, double meanResidual) {
-                double roundedMeanResidual = Math.round(meanResidual * 10000.0) / 10000.0;
-                image.setMeanResidual(roundedMeanResidual);
+        private Gcp requireSyncedGcp(Map<UUID, Gcp> gcpsById, UUID gcpId) {
+                if (gcpId == null) {
+                        throw new IllegalArgumentException("GCP ID cannot be null.");
+                }
+                Gcp gcp = gcpsById.get(gcpId);
+                if (gcp == null) {
+                        throw new GcpNotFoundException("GCP non trouvé pour cette image avec l'id : " + gcpId);
+                }
+                return gcp;
+        }
+
+        private void applyLeaveOneOut(ResidualsResponse response, ResidualsResult result) {
+                List<GcpDto> gcpDtos = response.getGcpDtos();
+                for (int i = 0; i < gcpDtos.size(); i++) {
+                        Double looResidual = result.getLooResiduals().get(i);
+                        gcpDtos.get(i).setLooResidual(looResidual != null ? round(looResidual) : null);
+                }
+                if (result.getLooRmse() != null) {
+                        response.setLooRmse(round(result.getLooRmse()));
+                }
         }
 
-        private ResidualsResponse buildResponse(boolean success, List<Gcp> gcps, Double rmse, int minRequired) {
-                List<GcpDto> gcpDtos = GcpMapper.toGcpDtoList(gcps);
-                return new ResidualsResponse(success, gcpDtos, rmse, minRequired);
+        private static double round(double value) {
+                return Math.round(value * 10000.0) / 10000.0;
         }
 }
@@ -0,0 +1,161 @@
+package com.amine.pfe.georef_module.gcp.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+
+import com.amine.pfe.georef_module.exception.ImageNotFoundException;
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.dto.ImageGcps;
+import com.amine.pfe.georef_module.gcp.dto.ImageResidualsResponse;
+import com.amine.pfe.georef_module.gcp.repository.GcpBatchRepository;
+import com.amine.pfe.georef_module.gcp.service.impl.GcpWorkingSetCache;
+import com.amine.pfe.georef_module.image.repository.GeorefImageRepository;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Flux SSE des GCPs et résidus d'une image, partagé par tous ses abonnés.
+ *
+ * Chaque modification des GCPs (signalée par GcpWorkingSetCache, y compris
+ * depuis une autre instance) relance le calcul après un délai de calme :
+ * une rafale de modifications ne produit qu'un calcul, diffusé à tous les
+ * abonnés. Un nouvel abonné reçoit tout de suite le dernier état calculé.
+ * Le canal d'une image est fermé au départ de son dernier abonné.
+ */
+@Service
+@Slf4j
+public class ResidualsStreamService {
+
+    static final String EVENT_NAME = "residuals";
+    static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+
+    private final GeorefImageRepository imageRepository;
+    private final GcpBatchRepository gcpBatchRepository;
+    private final GcpWorkingSetCache gcpWorkingSetCache;
+    private final BatchResidualsService batchResidualsService;
+    private final Duration debounce;
+
+    private final Map<UUID, Channel> channels = new ConcurrentHashMap<>();
+
+    public ResidualsStreamService(GeorefImageRepository imageRepository,
+            GcpBatchRepository gcpBatchRepository,
+            GcpWorkingSetCache gcpWorkingSetCache,
+            BatchResidualsService batchResidualsService,
+            @Value("${georef.gcp.stream.debounce-ms:300}") long debounceMs) {
+        this.imageRepository = imageRepository;
+        this.gcpBatchRepository = gcpBatchRepository;
+        this.gcpWorkingSetCache = gcpWorkingSetCache;
+        this.batchResidualsService = batchResidualsService;
+        this.debounce = Duration.ofMillis(debounceMs);
+
+        gcpWorkingSetCache.addChangeListener(this::notifyChanged);
+    }
+
+    public Flux<ServerSentEvent<ImageResidualsResponse>> subscribe(UUID imageId) {
+        if (imageId == null) {
+            throw new IllegalArgumentException("Image ID cannot be null.");
+        }
+        if (!imageRepository.existsById(imageId)) {
+            throw new ImageNotFoundException("Image avec l'ID " + imageId + " introuvable.");
+        }
+
+        // compute() est atomique par clé : pas de canal fermé pendant qu'on s'y abonne
+        Channel channel = channels.compute(imageId, (id, existing) -> {
+            Channel c = existing != null ? existing : new Channel(id);
+            c.subscribers++;
+            return c;
+        });
+
+        Flux<ServerSentEvent<ImageResidualsResponse>> heartbeats = Flux.interval(HEARTBEAT_INTERVAL)
+                .map(tick -> ServerSentEvent.<ImageResidualsResponse>builder().comment("keep-alive").build());
+
+        return Flux.merge(channel.events, heartbeats)
+                .doFinally(signal -> release(channel));
+    }
+
+    void notifyChanged(UUID imageId) {
+        Channel channel = channels.get(imageId);
+        if (channel != null) {
+            synchronized (channel) {
+                channel.changes.tryEmitNext(Boolean.TRUE);
+            }
+        }
+    }
+
+    private void release(Channel channel) {
+        channels.computeIfPresent(channel.imageId, (id, c) -> --c.subscribers == 0 ? null : c);
+    }
+
+    private ImageResidualsResponse snapshot(UUID imageId) {
+        try {
+            return batchResidualsService.evaluate(imageId, load(imageId), null, null, true);
+
+        } catch (RuntimeException e) {
+            log.error("Erreur lors du calcul des résidus diffusés pour l'image {} : {}", imageId, e.getMessage(), e);
+            return new ImageResidualsResponse(imageId, false, null, null, 0, e.getMessage());
+        }
+    }
+
+    /**
+     * GCPs de l'image depuis le cache d'édition, déplacements en attente
+     * compris : rien n'est écrit ni relu pour chaque calcul diffusé. Hors
+     * cache, une seule requête charge l'image et ses GCPs, puis les met en
+     * cache.
+     */
+    private ImageGcps load(UUID imageId) {
+        List<GcpDto> cached = gcpWorkingSetCache.get(imageId);
+        if (cached != null) {
+            return imageRepository.findById(imageId)
+                    .map(image -> new ImageGcps(imageId, image.getTransformationType(), image.getSrid(), cached))
+                    .orElse(null);
+        }
+
+        long generation = gcpWorkingSetCache.generation(imageId);
+        ImageGcps image = gcpBatchRepository.findByImageIds(List.of(imageId)).get(imageId);
+        if (image == null || image.getGcps().isEmpty()) {
+            return image;
+        }
+        List<GcpDto> gcps = gcpWorkingSetCache.put(imageId, image.getGcps(), generation);
+        return new ImageGcps(imageId, image.getTransformationType(), image.getSrid(), gcps);
+    }
+
+    private final class Channel {
+
+        private final UUID imageId;
+        private final Sinks.Many<Boolean> changes = Sinks.many().multicast().directBestEffort();
+        private final Flux<ServerSentEvent<ImageResidualsResponse>> events;
+        // Modifié uniquement dans compute()/computeIfPresent() de channels
+        private int subscribers;
+
+        Channel(UUID imageId) {
+            this.imageId = imageId;
+            AtomicLong sequence = new AtomicLong();
+            this.events = changes.asFlux()
+                    // Anti-rebond : émis après un délai sans nouvelle modification
+                    .sampleTimeout(change -> Mono.delay(debounce))
+                    .startWith(Boolean.TRUE)
+                    // Pendant un calcul, seule la dernière modification reste en attente
+                    .onBackpressureLatest()
+                    .concatMap(change -> Mono.fromCallable(() -> snapshot(imageId))
+                            .subscribeOn(Schedulers.boundedElastic()), 1)
+                    .map(response -> ServerSentEvent.builder(response)
+                            .id(Long.toString(sequence.incrementAndGet()))
+                            .event(EVENT_NAME)
+                            .build())
+                    .replay(1)
+                    .refCount();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.amine.pfe.georef_module.gcp.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import com.amine.pfe.georef_module.enums.ResidualMode;
+import com.amine.pfe.georef_module.enums.RobustMethod;
+import com.amine.pfe.georef_module.enums.Srid;
+import com.amine.pfe.georef_module.enums.TransformationType;
+import com.amine.pfe.georef_module.gcp.dto.DegreeSelectionResult;
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.dto.InverseTransformResponse;
+import com.amine.pfe.georef_module.gcp.dto.ResidualsResult;
+import com.amine.pfe.georef_module.gcp.service.port.ResidualsService;
+import com.amine.pfe.georef_module.gcp.solver.DistortionGrid;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Mémoïsation des calculs de résidus devant ResidualsServiceImpl.
+ *
+ * La clé est faite des coordonnées des GCPs (dans l'ordre, les ID et index
+ * n'interviennent pas), du type de transformation, du SRID et du mode (null
+ * valant le mode par défaut) : un hachage rapide sert à la recherche,
+ * l'égalité compare les coordonnées. Le cache est un LRU borné ; des
+ * demandes identiques simultanées attendent le même calcul. Chaque appelant
+ * reçoit sa propre copie du résultat mis en cache.
+ *
+ * Les autres opérations sont déléguées telles quelles.
+ */
+@Service
+@Primary
+public class CachingResidualsService implements ResidualsService {
+
+    private final ResidualsServiceImpl delegate;
+    private final int maxEntries;
+    private final Counter hits;
+    private final Counter misses;
+
+    private final Map<Key, CompletableFuture<ResidualsResult>> entries;
+
+    public CachingResidualsService(ResidualsServiceImpl delegate,
+            MeterRegistry meterRegistry,
+            @Value("${georef.residuals.cache.max-entries:1024}") int maxEntries) {
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<ResidualsResult>> eldest) {
+                return size() > CachingResidualsService.this.maxEntries;
+            }
+        };
+        this.hits = Counter.builder("georef.residuals.cache")
+                .tag("result", "hit")
+                .description("Calculs de résidus servis par le cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("georef.residuals.cache")
+                .tag("result", "miss")
+                .description("Calculs de résidus effectués")
+                .register(meterRegistry);
+        Gauge.builder("georef.residuals.cache.size", this, CachingResidualsService::size)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ResidualsResult computeResiduals(List<GcpDto> gcps, TransformationType type, Srid srid) {
+        return memoize(gcps, type, srid, ResidualMode.getDefault(),
+                () -> delegate.computeResiduals(gcps, type, srid));
+    }
+
+    @Override
+    public ResidualsResult computeResiduals(List<GcpDto> gcps, TransformationType type, Srid srid,
+            ResidualMode mode) {
+        return memoize(gcps, type, srid, mode != null ? mode : ResidualMode.getDefault(),
+                () -> delegate.computeResiduals(gcps, type, srid, mode));
+    }
+
+    // Lots et calculs ponctuels : rien à réutiliser, le cache n'est pas sollicité
+    @Override
+    public ResidualsResult computeStatelessResiduals(List<GcpDto> gcps, TransformationType type, Srid srid) {
+        return delegate.computeStatelessResiduals(gcps, type, srid);
+    }
+
+    @Override
+    public ResidualsResult computeRobustResiduals(List<GcpDto> gcps, TransformationType type, Srid srid,
+            RobustMethod method) {
+        return delegate.computeRobustResiduals(gcps, type, srid, method);
+    }
+
+    @Override
+    public DegreeSelectionResult selectPolynomialDegree(List<GcpDto> gcps, Srid srid) {
+        return delegate.selectPolynomialDegree(gcps, srid);
+    }
+
+    @Override
+    public DistortionGrid computeDistortionGrid(List<GcpDto> gcps, TransformationType type, double width,
+            double height, int cols, int rows) {
+        return delegate.computeDistortionGrid(gcps, type, width, height, cols, rows);
+    }
+
+    @Override
+    public InverseTransformResponse inverseTransform(List<GcpDto> gcps, TransformationType type, double[] mapX,
+            double[] mapY) {
+        return delegate.inverseTransform(gcps, type, mapX, mapY);
+    }
+
+    @Override
+    public int getMinimumPointsRequired(TransformationType transformationType) {
+        return delegate.getMinimumPointsRequired(transformationType);
+    }
+
+    @Override
+    public boolean supportsRobustFit(TransformationType type) {
+        return delegate.supportsRobustFit(type);
+    }
+
+    @Override
+    public boolean hasEnoughGCPs(List<GcpDto> gcps, TransformationType type) {
+        return delegate.hasEnoughGCPs(gcps, type);
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private ResidualsResult memoize(List<GcpDto> gcps, TransformationType type, Srid srid, ResidualMode mode,
+            Computation computation) {
+        Key key = maxEntries > 0 ? Key.of(gcps, type, srid, mode) : null;
+        if (key == null) {
+            return computation.compute();
+        }
+
+        CompletableFuture<ResidualsResult> future;
+        boolean owner = false;
+        synchronized (entries) {
+            future = entries.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                entries.put(key, future);
+                owner = true;
+            }
+        }
+
+        if (!owner) {
+            hits.increment();
+            try {
+                return copyOf(future.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        misses.increment();
+        try {
+            // Le cache garde sa propre copie, que les appelants ne voient pas
+            ResidualsResult snapshot = copyOf(computation.compute());
+            future.complete(snapshot);
+            return copyOf(snapshot);
+        } catch (Throwable e) {
+            // Une erreur n'est pas mise en cache : la demande suivante recalcule,
+            // et les demandes en attente ne restent pas bloquées
+            synchronized (entries) {
+                entries.remove(key, future);
+            }
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static ResidualsResult copyOf(ResidualsResult result) {
+        if (result == null) {
+            return null;
+        }
+        ResidualsResult copy = new ResidualsResult(copyOf(result.getResiduals()), result.getRmse(),
+                copyOf(result.getLooResiduals()), result.getLooRmse());
+        copy.setInliers(copyOf(result.getInliers()));
+        copy.setWeights(copyOf(result.getWeights()));
+        copy.setRobustScale(result.getRobustScale());
+        copy.setFittedMapX(copyOf(result.getFittedMapX()));
+        copy.setFittedMapY(copyOf(result.getFittedMapY()));
+        copy.setCoefficients(copyOf(result.getCoefficients()));
+        return copy;
+    }
+
+    private static <T> List<T> copyOf(List<T> values) {
+        // Les listes peuvent contenir des null (résidus LOO indéfinis)
+        return values != null ? new ArrayList<>(values) : null;
+    }
+
+    @FunctionalInterface
+    private interface Computation {
+        ResidualsResult compute();
+    }
+
+    private static final class Key {
+
+        private final TransformationType type;
+        private final Srid srid;
+        private final ResidualMode mode;
+        private final double[] coordinates;
+        private final int hash;
+
+        private Key(TransformationType type, Srid srid, ResidualMode mode, double[] coordinates) {
+            this.type = type;
+            this.srid = srid;
+            this.mode = mode;
+            this.coordinates = coordinates;
+            long h = mix(Objects.hash(type, srid, mode));
+            for (double value : coordinates) {
+                h = mix(h ^ Double.doubleToLongBits(value));
+            }
+            this.hash = (int) (h ^ (h >>> 32));
+        }
+
+        /**
+         * @return la clé, ou null si un GCP est incomplet (le calcul n'est
+         *         alors pas mis en cache et échoue normalement)
+         */
+        static Key of(List<GcpDto> gcps, TransformationType type, Srid srid, ResidualMode mode) {
+            if (gcps == null) {
+                return null;
+            }
+            double[] coordinates = new double[gcps.size() * 4];
+            int i = 0;
+            for (GcpDto gcp : gcps) {
+                if (gcp == null || gcp.getSourceX() == null || gcp.getSourceY() == null
+                        || gcp.getMapX() == null || gcp.getMapY() == null) {
+                    return null;
+                }
+                coordinates[i++] = gcp.getSourceX();
+                coordinates[i++] = gcp.getSourceY();
+                coordinates[i++] = gcp.getMapX();
+                coordinates[i++] = gcp.getMapY();
+            }
+            return new Key(type, srid, mode, coordinates);
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key other)) {
+                return false;
+            }
+            return hash == other.hash && type == other.type && srid == other.srid && mode == other.mode
+                    && Arrays.equals(coordinates, other.coordinates);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.amine.pfe.georef_module.gcp.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.amine.pfe.georef_module.entity.Gcp;
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.repository.GcpRepository;
+import com.amine.pfe.georef_module.gcp.service.port.GcpCacheNotifier;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache des GCPs par image pendant une session d'édition, avec écriture
+ * différée des déplacements.
+ *
+ * - Les listes de GCPs sont conservées par image (LRU, durée de vie bornée)
+ *   et servent les lectures et les calculs de résidus.
+ * - Un déplacement d'un GCP présent dans le cache est appliqué au cache et
+ *   mis en file ; les déplacements successifs d'un même GCP sont fusionnés
+ *   et la file est écrite par lots, périodiquement ou à la demande (flush)
+ *   avant toute opération qui relit les GCPs en base.
+ * - Toute autre écriture invalide l'entrée localement puis, au commit, sur
+ *   les autres instances via GcpCacheNotifier.
+ * - Les abonnés (addChangeListener) sont prévenus de chaque modification
+ *   des GCPs d'une image, locale ou venant d'une autre instance.
+ *
+ * La file d'écriture n'existe que dans la JVM : une autre instance lirait
+ * la base sans les déplacements en attente. L'écriture différée n'est donc
+ * active qu'avec georef.gcp.cache.single-instance=true, et elle est coupée
+ * (file écrite aussitôt) dès qu'une notification d'une autre instance
+ * révèle que la base est partagée. Sinon, chaque déplacement est écrit
+ * directement et seul le cache des lectures reste actif.
+ *
+ * Une lecture en base ne remplit le cache que si aucune écriture de l'image
+ * n'a eu lieu depuis son début (generation) : sinon elle pourrait y
+ * réinstaller un état déjà périmé.
+ */
+@Component
+@Slf4j
+public class GcpWorkingSetCache {
+
+    static final int MAX_CACHED_IMAGES = 256;
+    static final int GENERATION_STRIPES = 64;
+
+    private final GcpRepository gcpRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final GcpCacheNotifier notifier;
+    private final long ttlNanos;
+    private final ScheduledExecutorService flusher;
+
+    private final Map<UUID, WorkingSet> workingSets = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, WorkingSet> eldest) {
+            return size() > MAX_CACHED_IMAGES;
+        }
+    };
+
+    // Dernier déplacement en attente par GCP, regroupé par image
+    private final Map<UUID, Map<UUID, GcpDto>> pending = new HashMap<>();
+
+    private final List<Consumer<UUID>> changeListeners = new CopyOnWriteArrayList<>();
+
+    // Compteurs d'écritures par groupe d'images, protégés par workingSets
+    private final long[] generations = new long[GENERATION_STRIPES];
+
+    // Sérialise les écritures : un flush à la demande attend celui en cours
+    private final Object flushLock = new Object();
+
+    private volatile boolean writeBehind;
+
+    public GcpWorkingSetCache(GcpRepository gcpRepository,
+            PlatformTransactionManager transactionManager,
+            GcpCacheNotifier notifier,
+            @Value("${georef.gcp.cache.ttl-seconds:300}") long ttlSeconds,
+            @Value("${georef.gcp.cache.flush-interval-ms:2000}") long flushIntervalMs,
+            @Value("${georef.gcp.cache.single-instance:false}") boolean singleInstance) {
+        this.gcpRepository = gcpRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.notifier = notifier;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.writeBehind = singleInstance;
+
+        if (singleInstance && flushIntervalMs > 0) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "gcp-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flusher.scheduleWithFixedDelay(this::flushAll, flushIntervalMs, flushIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+
+        notifier.subscribe(this::onRemoteChange);
+    }
+
+    public void addChangeListener(Consumer<UUID> listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * @return une copie des GCPs de l'image, ou null si l'image n'est pas en
+     *         cache ou si son entrée a expiré
+     */
+    public List<GcpDto> get(UUID imageId) {
+        synchronized (workingSets) {
+            WorkingSet workingSet = workingSets.get(imageId);
+            if (workingSet == null) {
+                return null;
+            }
+            if (System.nanoTime() - workingSet.loadedAt > ttlNanos) {
+                workingSets.remove(imageId);
+                return null;
+            }
+            return copyOf(workingSet.gcps.values());
+        }
+    }
+
+    /**
+     * Génération courante de l'image, à relever avant de lire ses GCPs en
+     * base puis à passer à put.
+     */
+    public long generation(UUID imageId) {
+        synchronized (workingSets) {
+            return generations[stripe(imageId)];
+        }
+    }
+
+    /**
+     * Met en cache les GCPs lus en base, sauf si l'image a été écrite depuis
+     * generation. Les déplacements encore en attente y sont reportés : la
+     * base ne les contient pas encore.
+     *
+     * @return une copie des GCPs lus, déplacements en attente compris
+     */
+    public List<GcpDto> put(UUID imageId, List<GcpDto> gcps, long generation) {
+        WorkingSet workingSet = new WorkingSet();
+        for (GcpDto gcp : copyOf(gcps)) {
+            workingSet.gcps.put(gcp.getId(), gcp);
+        }
+        synchronized (workingSets) {
+            Map<UUID, GcpDto> edits = pending.get(imageId);
+            if (edits != null) {
+                for (GcpDto edit : edits.values()) {
+                    GcpDto gcp = workingSet.gcps.get(edit.getId());
+                    if (gcp != null) {
+                        applyCoordinates(edit, gcp);
+                    }
+                }
+            }
+            if (generations[stripe(imageId)] == generation) {
+                workingSets.put(imageId, workingSet);
+            }
+            return copyOf(workingSet.gcps.values());
+        }
+    }
+
+    /**
+     * Reporte dans le cache les résidus calculés et enregistrés pour l'image,
+     * sans toucher aux coordonnées ; les autres instances relisent la base.
+     */
+    public void updateResiduals(UUID imageId, List<GcpDto> gcps) {
+        synchronized (workingSets) {
+            WorkingSet workingSet = workingSets.get(imageId);
+            if (workingSet != null) {
+                for (GcpDto gcp : gcps) {
+                    GcpDto cached = workingSet.gcps.get(gcp.getId());
+                    if (cached != null) {
+                        cached.setResidual(gcp.getResidual());
+                    }
+                }
+            }
+        }
+        notifier.publish(imageId);
+    }
+
+    /**
+     * Applique un déplacement au cache et le met en file d'écriture.
+     *
+     * @return le GCP modifié, ou null si l'écriture différée est inactive,
+     *         si l'image n'est pas en cache ou ne contient pas ce GCP :
+     *         l'appelant doit alors écrire en base
+     */
+    public GcpDto stageUpdate(GcpDto edit) {
+        if (!writeBehind || edit.getId() == null || edit.getImageId() == null) {
+            return null;
+        }
+        GcpDto staged;
+        synchronized (workingSets) {
+            WorkingSet workingSet = workingSets.get(edit.getImageId());
+            GcpDto gcp = workingSet != null ? workingSet.gcps.get(edit.getId()) : null;
+            if (gcp == null) {
+                return null;
+            }
+            applyCoordinates(edit, gcp);
+            pending.computeIfAbsent(edit.getImageId(), id -> new LinkedHashMap<>())
+                    .put(edit.getId(), copyOf(gcp));
+            staged = copyOf(gcp);
+        }
+        fireChanged(edit.getImageId());
+        return staged;
+    }
+
+    /**
+     * Écrit immédiatement les déplacements en attente de l'image. Appelé
+     * avant toute lecture des GCPs en base (résidus, géoréférencement,
+     * suppression...).
+     */
+    public void flush(UUID imageId) {
+        synchronized (flushLock) {
+            Map<UUID, GcpDto> edits;
+            synchronized (workingSets) {
+                edits = pending.remove(imageId);
+                if (edits != null) {
+                    // Une lecture commencée avant l'écriture ne doit pas remplir le cache
+                    generations[stripe(imageId)]++;
+                }
+            }
+            if (edits != null && !edits.isEmpty()) {
+                write(imageId, edits);
+            }
+        }
+    }
+
+    public void flushAll() {
+        List<UUID> imageIds;
+        synchronized (workingSets) {
+            imageIds = new ArrayList<>(pending.keySet());
+        }
+        for (UUID imageId : imageIds) {
+            try {
+                flush(imageId);
+            } catch (RuntimeException e) {
+                log.error("Write-behind flush failed for image {}: {}", imageId, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Invalide l'entrée de l'image après une écriture en base : tout de
+     * suite, puis de nouveau au commit (une lecture concurrente a pu
+     * recharger l'ancien état entre-temps), et sur les autres instances.
+     * Les abonnés ne sont prévenus qu'une fois la modification visible.
+     */
+    public void invalidate(UUID imageId) {
+        evict(imageId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(imageId);
+                    fireChanged(imageId);
+                }
+            });
+        } else {
+            fireChanged(imageId);
+        }
+        notifier.publish(imageId);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flushAll();
+    }
+
+    private void onRemoteChange(UUID imageId) {
+        if (writeBehind) {
+            writeBehind = false;
+            log.warn("GCP change received from another instance: write-behind disabled, "
+                    + "set georef.gcp.cache.single-instance=false for shared databases");
+            flushAll();
+        }
+        evict(imageId);
+        fireChanged(imageId);
+    }
+
+    private void evict(UUID imageId) {
+        synchronized (workingSets) {
+            workingSets.remove(imageId);
+            generations[stripe(imageId)]++;
+        }
+    }
+
+    private static int stripe(UUID imageId) {
+        return imageId.hashCode() & (GENERATION_STRIPES - 1);
+    }
+
+    private void fireChanged(UUID imageId) {
+        for (Consumer<UUID> listener : changeListeners) {
+            try {
+                listener.accept(imageId);
+            } catch (RuntimeException e) {
+                log.error("GCP change listener failed for image {}: {}", imageId, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void write(UUID imageId, Map<UUID, GcpDto> edits) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Gcp> gcps = gcpRepository.findAllById(edits.keySet());
+                for (Gcp gcp : gcps) {
+                    GcpDto edit = edits.get(gcp.getId());
+                    gcp.setSourceX(edit.getSourceX());
+                    gcp.setSourceY(edit.getSourceY());
+                    gcp.setMapX(edit.getMapX());
+                    gcp.setMapY(edit.getMapY());
+                }
+                gcpRepository.saveAll(gcps);
+                notifier.publish(imageId);
+            });
+        } catch (RuntimeException e) {
+            // Remise en file, sans écraser un déplacement plus récent
+            synchronized (workingSets) {
+                Map<UUID, GcpDto> queue = pending.computeIfAbsent(imageId, id -> new LinkedHashMap<>());
+                edits.forEach(queue::putIfAbsent);
+            }
+            throw e;
+        }
+    }
+
+    private static void applyCoordinates(GcpDto source, GcpDto target) {
+        target.setSourceX(source.getSourceX());
+        target.setSourceY(source.getSourceY());
+        target.setMapX(source.getMapX());
+        target.setMapY(source.getMapY());
+    }
+
+    private static List<GcpDto> copyOf(Collection<GcpDto> gcps) {
+        List<GcpDto> copies = new ArrayList<>(gcps.size());
+        for (GcpDto gcp : gcps) {
+            copies.add(copyOf(gcp));
+        }
+        return copies;
+    }
+
+    private static GcpDto copyOf(GcpDto gcp) {
+        return new GcpDto(gcp.getId(), gcp.getImageId(), gcp.getSourceX(), gcp.getSourceY(), gcp.getMapX(),
+                gcp.getMapY(), gcp.getIndex(), gcp.getResidual(), gcp.getLooResidual());
+    }
+
+    private static final class WorkingSet {
+
+        private final long loadedAt = System.nanoTime();
+        private final Map<UUID, GcpDto> gcps = new LinkedHashMap<>();
+    }
+}
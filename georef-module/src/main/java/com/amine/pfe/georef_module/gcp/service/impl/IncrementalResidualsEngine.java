@@ -0,0 +1,310 @@
+package com.amine.pfe.georef_module.gcp.service.impl;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.stereotype.Component;
+
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.solver.PolynomialBasis;
+import com.amine.pfe.georef_module.gcp.solver.PolynomialFit;
+import com.amine.pfe.georef_module.gcp.solver.UpdatableLeastSquares;
+
+/**
+ * Moteur d'ajustement incrémental des transformations polynomiales.
+ *
+ * Une factorisation est conservée par image. À chaque calcul, la liste des
+ * GCPs est comparée à celle déjà intégrée (par ID) : un ajout, un
+ * déplacement ou une suppression se traduit par une mise à jour ou une
+ * "downdate" de rang un en O(p²). Au-delà de quelques changements, ou si
+ * le facteur devient mal conditionné, on reconstruit entièrement.
+ *
+ * Un jeu de GCPs mal conditionné en soi (points presque alignés) est laissé
+ * à l'ajustement complet de l'appelant : l'état le retient pour ne pas
+ * reconstruire à chaque appel tant que le jeu change peu.
+ */
+@Component
+public class IncrementalResidualsEngine {
+
+    static final int MAX_CACHED_IMAGES = 256;
+    static final int MAX_INCREMENTAL_CHANGES = 3;
+    static final int MAX_UPDATES_BEFORE_REFIT = 64;
+    static final double MAX_CONDITION = 1e10;
+
+    private final Map<UUID, ImageState> states = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, ImageState> eldest) {
+            return size() > MAX_CACHED_IMAGES;
+        }
+    };
+
+    /**
+     * Ajuste la transformation de degré donné sur les GCPs d'une image.
+     *
+     * @return l'ajustement, ou null si les GCPs ne sont pas identifiables
+     *         (ID ou imageId manquant) : l'appelant doit alors faire un
+     *         ajustement complet classique.
+     */
+    public PolynomialFit fit(List<GcpDto> gcps, int degree) {
+        UUID imageId = commonImageId(gcps);
+        if (imageId == null) {
+            return null;
+        }
+
+        ImageState state;
+        synchronized (states) {
+            state = states.get(imageId);
+            if (state == null || state.degree != degree) {
+                state = new ImageState(degree);
+                states.put(imageId, state);
+            }
+        }
+
+        synchronized (state) {
+            return state.refresh(gcps);
+        }
+    }
+
+    public void invalidate(UUID imageId) {
+        synchronized (states) {
+            states.remove(imageId);
+        }
+    }
+
+    private static UUID commonImageId(List<GcpDto> gcps) {
+        if (gcps.isEmpty()) {
+            return null;
+        }
+        UUID imageId = gcps.get(0).getImageId();
+        for (GcpDto gcp : gcps) {
+            if (gcp.getId() == null || gcp.getImageId() == null || !gcp.getImageId().equals(imageId)) {
+                return null;
+            }
+        }
+        return imageId;
+    }
+
+    private static final class ImageState {
+
+        private final int degree;
+        private final int p;
+        private final double[] terms;
+        // Lignes intégrées au facteur, mises à jour sur place d'un appel à l'autre
+        private final Map<UUID, Row> rows = new HashMap<>();
+        private int epoch;
+        private UpdatableLeastSquares factor;
+        private double cx;
+        private double cy;
+        private double scale;
+        private int updatesSinceRefit;
+        private boolean illConditioned;
+        private int changesSinceIllConditioned;
+
+        ImageState(int degree) {
+            this.degree = degree;
+            this.p = PolynomialBasis.termCount(degree);
+            this.terms = new double[p];
+        }
+
+        /**
+         * Met l'état en phase avec gcps et retourne l'ajustement, ou null si
+         * le système est trop mal conditionné pour être suivi.
+         */
+        PolynomialFit refresh(List<GcpDto> gcps) {
+            if (illConditioned) {
+                // Pas de reconstruction tant que le jeu n'a pas sensiblement changé :
+                // elle s'ajouterait à l'ajustement complet de l'appelant
+                changesSinceIllConditioned += countChanges(gcps);
+                syncRows(gcps);
+                if (changesSinceIllConditioned <= MAX_INCREMENTAL_CHANGES) {
+                    return null;
+                }
+                illConditioned = false;
+            }
+
+            boolean rebuilt = false;
+            if (factor == null || !applyChanges(gcps)) {
+                rebuild(gcps);
+                rebuilt = true;
+            }
+            if (!rebuilt && factor.conditionEstimate() > MAX_CONDITION) {
+                // Peut venir de la dérive des downdates : un facteur reconstruit tranche
+                rebuild(gcps);
+            }
+            if (factor.conditionEstimate() > MAX_CONDITION) {
+                factor = null;
+                illConditioned = true;
+                changesSinceIllConditioned = 0;
+                return null;
+            }
+
+            double[] paramsX = new double[p];
+            double[] paramsY = new double[p];
+            factor.solve(paramsX, paramsY);
+            return PolynomialFit.of(degree, cx, cy, scale, paramsX, paramsY, factor.copy());
+        }
+
+        /**
+         * Applique au facteur les écarts entre gcps et rows. Seuls les GCPs
+         * ajoutés ou déplacés allouent : le cas courant (un déplacement) ne
+         * recopie pas l'ensemble des lignes.
+         */
+        private boolean applyChanges(List<GcpDto> gcps) {
+            if (gcps.size() < p) {
+                return false;
+            }
+
+            int changes = countChanges(gcps);
+            if (changes == 0) {
+                return true;
+            }
+            if (changes > MAX_INCREMENTAL_CHANGES
+                    || updatesSinceRefit + changes > MAX_UPDATES_BEFORE_REFIT) {
+                return false;
+            }
+
+            // Les ajouts passent avant les retraits : la downdate est plus
+            // stable sur un système plus grand.
+            double[][] moved = new double[changes][];
+            int movedCount = 0;
+            for (GcpDto gcp : gcps) {
+                Row row = rows.get(gcp.getId());
+                if (row == null) {
+                    row = new Row();
+                    row.set(gcp);
+                    row.seen = epoch;
+                    rows.put(gcp.getId(), row);
+                    add(row.values);
+                } else if (!row.matches(gcp)) {
+                    moved[movedCount++] = row.values.clone();
+                    row.set(gcp);
+                    add(row.values);
+                }
+            }
+            Iterator<Row> it = rows.values().iterator();
+            while (it.hasNext()) {
+                Row row = it.next();
+                if (row.seen != epoch) {
+                    if (!remove(row.values)) {
+                        return false;
+                    }
+                    it.remove();
+                }
+            }
+            for (int i = 0; i < movedCount; i++) {
+                if (!remove(moved[i])) {
+                    return false;
+                }
+            }
+
+            updatesSinceRefit += changes;
+            return true;
+        }
+
+        private void rebuild(List<GcpDto> gcps) {
+            int m = gcps.size();
+            cx = 0.0;
+            cy = 0.0;
+            for (GcpDto gcp : gcps) {
+                cx += gcp.getSourceX();
+                cy += gcp.getSourceY();
+            }
+            cx /= m;
+            cy /= m;
+            scale = 0.0;
+            for (GcpDto gcp : gcps) {
+                scale = Math.max(scale,
+                        Math.max(Math.abs(gcp.getSourceX() - cx), Math.abs(gcp.getSourceY() - cy)));
+            }
+            if (scale == 0.0) {
+                scale = 1.0;
+            }
+
+            factor = new UpdatableLeastSquares(p);
+            syncRows(gcps);
+            for (GcpDto gcp : gcps) {
+                add(rows.get(gcp.getId()).values);
+            }
+            updatesSinceRefit = 0;
+        }
+
+        /**
+         * Nombre de GCPs ajoutés, déplacés ou retirés par rapport à rows. Les
+         * lignes retrouvées sont marquées de l'époque courante : les autres
+         * sont celles des GCPs retirés.
+         */
+        private int countChanges(List<GcpDto> gcps) {
+            epoch++;
+            int changes = 0;
+            int matched = 0;
+            for (GcpDto gcp : gcps) {
+                Row row = rows.get(gcp.getId());
+                if (row == null) {
+                    changes++;
+                    continue;
+                }
+                if (row.seen != epoch) {
+                    row.seen = epoch;
+                    matched++;
+                }
+                if (!row.matches(gcp)) {
+                    changes++;
+                }
+            }
+            return changes + rows.size() - matched;
+        }
+
+        /**
+         * Aligne rows sur gcps sans toucher au facteur, en réutilisant les
+         * lignes existantes.
+         */
+        private void syncRows(List<GcpDto> gcps) {
+            epoch++;
+            for (GcpDto gcp : gcps) {
+                Row row = rows.get(gcp.getId());
+                if (row == null) {
+                    row = new Row();
+                    rows.put(gcp.getId(), row);
+                }
+                row.set(gcp);
+                row.seen = epoch;
+            }
+            rows.values().removeIf(row -> row.seen != epoch);
+        }
+
+        private void add(double[] row) {
+            PolynomialBasis.fillTerms((row[0] - cx) / scale, (row[1] - cy) / scale, degree, terms);
+            factor.addRow(terms, row[2], row[3]);
+        }
+
+        private boolean remove(double[] row) {
+            PolynomialBasis.fillTerms((row[0] - cx) / scale, (row[1] - cy) / scale, degree, terms);
+            return factor.removeRow(terms, row[2], row[3]);
+        }
+    }
+
+    /**
+     * Coordonnées (sourceX, sourceY, mapX, mapY) d'un GCP intégré au facteur.
+     */
+    private static final class Row {
+
+        private final double[] values = new double[4];
+        private int seen;
+
+        void set(GcpDto gcp) {
+            values[0] = gcp.getSourceX();
+            values[1] = gcp.getSourceY();
+            values[2] = gcp.getMapX();
+            values[3] = gcp.getMapY();
+        }
+
+        boolean matches(GcpDto gcp) {
+            return values[0] == gcp.getSourceX() && values[1] == gcp.getSourceY()
+                    && values[2] == gcp.getMapX() && values[3] == gcp.getMapY();
+        }
+    }
+}
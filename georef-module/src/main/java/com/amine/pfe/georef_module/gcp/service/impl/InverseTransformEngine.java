@@ -0,0 +1,134 @@
+package com.amine.pfe.georef_module.gcp.service.impl;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.stereotype.Component;
+
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.solver.PolynomialFit;
+import com.amine.pfe.georef_module.gcp.solver.PolynomialInverse;
+
+/**
+ * Transformations inverses (carte -> pixel) des images.
+ *
+ * L'ajustement direct vient du cache de IncrementalResidualsEngine ; le
+ * polynôme inverse de départ est conservé par image avec une empreinte des
+ * GCPs (ID et coordonnées) et n'est réajusté que si elle change.
+ */
+@Component
+public class InverseTransformEngine {
+
+    static final int MAX_CACHED_IMAGES = 256;
+
+    private final IncrementalResidualsEngine incrementalEngine;
+
+    private final Map<UUID, CachedInverse> inverses = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, CachedInverse> eldest) {
+            return size() > MAX_CACHED_IMAGES;
+        }
+    };
+
+    public InverseTransformEngine(IncrementalResidualsEngine incrementalEngine) {
+        this.incrementalEngine = incrementalEngine;
+    }
+
+    public PolynomialInverse inverse(List<GcpDto> gcps, int degree) {
+        UUID imageId = commonImageId(gcps);
+        long fingerprint = fingerprint(gcps);
+        if (imageId != null) {
+            synchronized (inverses) {
+                CachedInverse cached = inverses.get(imageId);
+                if (cached != null && cached.degree == degree && cached.fingerprint == fingerprint) {
+                    return cached.inverse;
+                }
+            }
+        }
+
+        int n = gcps.size();
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        for (int i = 0; i < n; i++) {
+            GcpDto gcp = gcps.get(i);
+            x[i] = gcp.getSourceX();
+            y[i] = gcp.getSourceY();
+            mapX[i] = gcp.getMapX();
+            mapY[i] = gcp.getMapY();
+        }
+
+        PolynomialFit forward = incrementalEngine.fit(gcps, degree);
+        if (forward == null) {
+            forward = PolynomialFit.fit(x, y, mapX, mapY, degree);
+        }
+        PolynomialInverse inverse = PolynomialInverse.of(forward, x, y, mapX, mapY);
+
+        if (imageId != null) {
+            synchronized (inverses) {
+                inverses.put(imageId, new CachedInverse(degree, fingerprint, inverse));
+            }
+        }
+        return inverse;
+    }
+
+    public void invalidate(UUID imageId) {
+        synchronized (inverses) {
+            inverses.remove(imageId);
+        }
+    }
+
+    private static UUID commonImageId(List<GcpDto> gcps) {
+        if (gcps.isEmpty()) {
+            return null;
+        }
+        UUID imageId = gcps.get(0).getImageId();
+        for (GcpDto gcp : gcps) {
+            if (gcp.getId() == null || gcp.getImageId() == null || !gcp.getImageId().equals(imageId)) {
+                return null;
+            }
+        }
+        return imageId;
+    }
+
+    /**
+     * Empreinte indépendante de l'ordre des GCPs : somme des hachages
+     * mélangés de chaque point.
+     */
+    private static long fingerprint(List<GcpDto> gcps) {
+        long sum = gcps.size();
+        for (GcpDto gcp : gcps) {
+            long h = gcp.getId() != null
+                    ? gcp.getId().getMostSignificantBits() * 31 + gcp.getId().getLeastSignificantBits()
+                    : 0L;
+            h = mix(h ^ Double.doubleToLongBits(gcp.getSourceX()));
+            h = mix(h ^ Double.doubleToLongBits(gcp.getSourceY()));
+            h = mix(h ^ Double.doubleToLongBits(gcp.getMapX()));
+            h = mix(h ^ Double.doubleToLongBits(gcp.getMapY()));
+            sum += h;
+        }
+        return sum;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static final class CachedInverse {
+
+        private final int degree;
+        private final long fingerprint;
+        private final PolynomialInverse inverse;
+
+        CachedInverse(int degree, long fingerprint, PolynomialInverse inverse) {
+            this.degree = degree;
+            this.fingerprint = fingerprint;
+            this.inverse = inverse;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.amine.pfe.georef_module.gcp.service.impl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.stereotype.Component;
+
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.solver.DelaunayTriangulation;
+import com.amine.pfe.georef_module.gcp.solver.PiecewiseAffine;
+import com.amine.pfe.georef_module.gcp.solver.PolynomialFit;
+
+/**
+ * Ajustement des transformations affines par morceaux.
+ *
+ * La triangulation de Delaunay est conservée par image et mise à jour au
+ * fil des modifications de GCPs (par ID) : un ajout est une insertion, une
+ * suppression retriangule le voisinage du sommet, un déplacement côté
+ * source fait les deux. Un déplacement côté carte ne touche pas la
+ * triangulation. Au-delà de MAX_INCREMENTAL_CHANGES, on reconstruit.
+ *
+ * Les identifiants des sommets supprimés ne sont pas réattribués : on
+ * reconstruit aussi quand ils dépassent le nombre de sommets vivants (et
+ * MIN_RECLAIMABLE_VERTICES), pour borner la taille des tableaux pendant une
+ * longue session d'édition.
+ */
+@Component
+public class PiecewiseAffineEngine {
+
+    static final int MAX_CACHED_IMAGES = 64;
+    static final int MAX_INCREMENTAL_CHANGES = 32;
+    static final int MIN_RECLAIMABLE_VERTICES = 64;
+
+    private final Map<UUID, ImageState> states = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, ImageState> eldest) {
+            return size() > MAX_CACHED_IMAGES;
+        }
+    };
+
+    /**
+     * Ajuste la transformation sur les GCPs. Si errX et errY sont fournis,
+     * ils reçoivent les erreurs leave-one-out de chaque point.
+     *
+     * @throws IllegalArgumentException si des points source sont dupliqués ou
+     *                                  tous alignés
+     */
+    public PiecewiseAffine fit(List<GcpDto> gcps, double[] errX, double[] errY) {
+        UUID imageId = commonImageId(gcps);
+        if (imageId == null) {
+            ImageState state = new ImageState();
+            return state.fit(gcps, errX, errY);
+        }
+
+        ImageState state;
+        synchronized (states) {
+            state = states.computeIfAbsent(imageId, id -> new ImageState());
+        }
+        synchronized (state) {
+            try {
+                return state.fit(gcps, errX, errY);
+            } catch (IllegalArgumentException e) {
+                synchronized (states) {
+                    states.remove(imageId);
+                }
+                throw e;
+            }
+        }
+    }
+
+    public void invalidate(UUID imageId) {
+        synchronized (states) {
+            states.remove(imageId);
+        }
+    }
+
+    private static UUID commonImageId(List<GcpDto> gcps) {
+        if (gcps.isEmpty()) {
+            return null;
+        }
+        UUID imageId = gcps.get(0).getImageId();
+        for (GcpDto gcp : gcps) {
+            if (gcp.getId() == null || gcp.getImageId() == null || !gcp.getImageId().equals(imageId)) {
+                return null;
+            }
+        }
+        return imageId;
+    }
+
+    private static final class ImageState {
+
+        private DelaunayTriangulation triangulation;
+        private Map<UUID, Integer> vertexOf = new HashMap<>();
+        private Map<UUID, double[]> sourceOf = new HashMap<>();
+        private double cx;
+        private double cy;
+        private double scale;
+
+        PiecewiseAffine fit(List<GcpDto> gcps, double[] errX, double[] errY) {
+            int n = gcps.size();
+            double[] x = new double[n];
+            double[] y = new double[n];
+            double[] mapX = new double[n];
+            double[] mapY = new double[n];
+            for (int i = 0; i < n; i++) {
+                GcpDto gcp = gcps.get(i);
+                x[i] = gcp.getSourceX();
+                y[i] = gcp.getSourceY();
+                mapX[i] = gcp.getMapX();
+                mapY[i] = gcp.getMapY();
+            }
+
+            int[] vertices = triangulation == null || needsCompaction() || !applyChanges(gcps)
+                    ? rebuild(gcps, x, y)
+                    : verticesOf(gcps);
+
+            double[] mapXByVertex = new double[triangulation.vertexCapacity()];
+            double[] mapYByVertex = new double[triangulation.vertexCapacity()];
+            for (int i = 0; i < n; i++) {
+                mapXByVertex[vertices[i]] = mapX[i];
+                mapYByVertex[vertices[i]] = mapY[i];
+            }
+
+            PolynomialFit affine = PolynomialFit.fit(x, y, mapX, mapY, 1);
+            PiecewiseAffine transform = PiecewiseAffine.build(triangulation, cx, cy, scale,
+                    mapXByVertex, mapYByVertex, affine);
+            if (errX != null && errY != null) {
+                transform.leaveOneOutErrors(triangulation, vertices, x, y, mapXByVertex, mapYByVertex, errX, errY);
+            }
+            return transform;
+        }
+
+        /**
+         * Vrai si les identifiants de sommets supprimés l'emportent sur les
+         * sommets vivants.
+         */
+        private boolean needsCompaction() {
+            int live = vertexOf.size();
+            int reclaimable = triangulation.vertexCapacity() - DelaunayTriangulation.SUPER_VERTICES - live;
+            return reclaimable > Math.max(live, MIN_RECLAIMABLE_VERTICES);
+        }
+
+        private int[] verticesOf(List<GcpDto> gcps) {
+            int[] vertices = new int[gcps.size()];
+            for (int i = 0; i < vertices.length; i++) {
+                vertices[i] = vertexOf.get(gcps.get(i).getId());
+            }
+            return vertices;
+        }
+
+        /**
+         * Répercute sur la triangulation les GCPs ajoutés, supprimés ou
+         * déplacés côté source. Retourne false s'il faut reconstruire.
+         */
+        private boolean applyChanges(List<GcpDto> gcps) {
+            Map<UUID, double[]> current = new HashMap<>(gcps.size() * 2);
+            for (GcpDto gcp : gcps) {
+                if (gcp.getId() == null || current.put(gcp.getId(), source(gcp)) != null) {
+                    return false;
+                }
+            }
+
+            int changes = 0;
+            for (Map.Entry<UUID, double[]> entry : current.entrySet()) {
+                double[] previous = sourceOf.get(entry.getKey());
+                if (previous == null || !sameSource(previous, entry.getValue())) {
+                    changes++;
+                }
+            }
+            for (UUID id : sourceOf.keySet()) {
+                if (!current.containsKey(id)) {
+                    changes++;
+                }
+            }
+            if (changes == 0) {
+                return true;
+            }
+            if (changes > MAX_INCREMENTAL_CHANGES) {
+                return false;
+            }
+
+            try {
+                for (Map.Entry<UUID, double[]> entry : sourceOf.entrySet()) {
+                    double[] now = current.get(entry.getKey());
+                    if (now == null || !sameSource(entry.getValue(), now)) {
+                        triangulation.remove(vertexOf.remove(entry.getKey()));
+                    }
+                }
+                for (Map.Entry<UUID, double[]> entry : current.entrySet()) {
+                    if (!vertexOf.containsKey(entry.getKey())) {
+                        double[] s = entry.getValue();
+                        int v = triangulation.insert((s[0] - cx) / scale, (s[1] - cy) / scale);
+                        if (v < 0) {
+                            return false;
+                        }
+                        vertexOf.put(entry.getKey(), v);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                // Sommet déjà supprimé ou inconnu de la triangulation : l'état
+                // ne correspond plus aux GCPs, on repart de zéro
+                return false;
+            }
+            sourceOf = current;
+            return true;
+        }
+
+        private int[] rebuild(List<GcpDto> gcps, double[] x, double[] y) {
+            int n = x.length;
+            cx = 0.0;
+            cy = 0.0;
+            for (int i = 0; i < n; i++) {
+                cx += x[i];
+                cy += y[i];
+            }
+            cx /= n;
+            cy /= n;
+            scale = 0.0;
+            for (int i = 0; i < n; i++) {
+                scale = Math.max(scale, Math.max(Math.abs(x[i] - cx), Math.abs(y[i] - cy)));
+            }
+            if (scale == 0.0) {
+                scale = 1.0;
+            }
+
+            triangulation = new DelaunayTriangulation();
+            vertexOf = new HashMap<>(n * 2);
+            sourceOf = new HashMap<>(n * 2);
+            int[] vertices = new int[n];
+            for (int i : insertionOrder(x, y)) {
+                int v = triangulation.insert((x[i] - cx) / scale, (y[i] - cy) / scale);
+                if (v < 0) {
+                    triangulation = null;
+                    throw new IllegalArgumentException("Points source dupliqués : triangulation impossible");
+                }
+                vertices[i] = v;
+                UUID id = gcps.get(i).getId();
+                if (id != null) {
+                    vertexOf.put(id, v);
+                    sourceOf.put(id, new double[] { x[i], y[i] });
+                }
+            }
+            return vertices;
+        }
+
+        /**
+         * Ordre d'insertion en serpentin sur une grille d'environ sqrt(n)
+         * bandes : deux points consécutifs sont voisins, la marche de
+         * localisation reste courte.
+         */
+        private int[] insertionOrder(double[] x, double[] y) {
+            int n = x.length;
+            int bands = Math.max(1, (int) Math.sqrt(n / 2.0));
+            double[] key = new double[n];
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                double v = (y[i] - cy) / scale;
+                int band = Math.min(bands - 1, (int) ((v + 1.0) / 2.0 * bands));
+                double u = (x[i] - cx) / scale;
+                key[i] = band * 4.0 + (band % 2 == 0 ? u + 1.0 : 1.0 - u);
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingDouble(i -> key[i]));
+            int[] result = new int[n];
+            for (int i = 0; i < n; i++) {
+                result[i] = order[i];
+            }
+            return result;
+        }
+
+        private static double[] source(GcpDto gcp) {
+            return new double[] { gcp.getSourceX(), gcp.getSourceY() };
+        }
+
+        private static boolean sameSource(double[] a, double[] b) {
+            return a[0] == b[0] && a[1] == b[1];
+        }
+    }
+}
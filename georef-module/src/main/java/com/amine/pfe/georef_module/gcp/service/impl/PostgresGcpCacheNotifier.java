@@ -0,0 +1,167 @@
+package com.amine.pfe.georef_module.gcp.service.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.amine.pfe.georef_module.gcp.service.port.GcpCacheNotifier;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Invalidation inter-instances par LISTEN/NOTIFY PostgreSQL.
+ *
+ * La charge utile est "instance:imageId" ; les notifications émises par
+ * l'instance elle-même sont ignorées. Une connexion dédiée écoute le canal ;
+ * si la base n'est pas PostgreSQL ou devient indisponible, l'écoute est
+ * abandonnée ou relancée sans bloquer l'application (le cache reste alors
+ * borné par sa durée de vie).
+ */
+@Component
+@Slf4j
+public class PostgresGcpCacheNotifier implements GcpCacheNotifier {
+
+    static final int POLL_TIMEOUT_MS = 5000;
+    static final long RECONNECT_DELAY_MS = 10000;
+
+    private final DataSource dataSource;
+    private final String channel;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final List<Consumer<UUID>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public PostgresGcpCacheNotifier(DataSource dataSource,
+            @Value("${georef.gcp.cache.channel:gcp_working_set}") String channel) {
+        // LISTEN n'accepte pas de paramètre : le nom du canal est injecté tel quel
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid notification channel: " + channel);
+        }
+        this.dataSource = dataSource;
+        this.channel = channel;
+    }
+
+    /**
+     * Dans une transaction, la notification part après le commit : les autres
+     * instances ne relisent pas un état non validé, et un échec de pg_notify
+     * ne laisse pas la transaction de l'appelant avortée.
+     */
+    @Override
+    public void publish(UUID imageId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(imageId);
+                }
+            });
+            return;
+        }
+        send(imageId);
+    }
+
+    // Connexion propre au pool : après le commit, celle de la transaction est
+    // encore liée au thread mais ne sera plus validée
+    private void send(UUID imageId) {
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            statement.setString(1, channel);
+            statement.setString(2, instanceId + ":" + imageId);
+            statement.execute();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            log.debug("GCP cache notification not sent for image {}: {}", imageId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<UUID> listener) {
+        listeners.add(listener);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        listenerThread = new Thread(this::listen, "gcp-cache-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                if (!connection.isWrapperFor(PGConnection.class)) {
+                    log.info("GCP cache invalidation disabled: the datasource is not PostgreSQL");
+                    return;
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            dispatch(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("GCP cache listener disconnected, retrying in {} ms: {}", RECONNECT_DELAY_MS,
+                        e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void dispatch(String payload) {
+        int separator = payload.indexOf(':');
+        if (separator < 0 || payload.substring(0, separator).equals(instanceId)) {
+            return;
+        }
+        UUID imageId;
+        try {
+            imageId = UUID.fromString(payload.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        for (Consumer<UUID> listener : listeners) {
+            listener.accept(imageId);
+        }
+    }
+}
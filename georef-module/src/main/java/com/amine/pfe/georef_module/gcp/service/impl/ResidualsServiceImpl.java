@@ -3,17 +3,87 @@ package com.amine.pfe.georef_module.gcp.service.impl;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.amine.pfe.georef_module.enums.ResidualMode;
+import com.amine.pfe.georef_module.enums.RobustMethod;
 import com.amine.pfe.georef_module.enums.Srid;
 import com.amine.pfe.georef_module.enums.TransformationType;
+import com.amine.pfe.georef_module.gcp.dto.DegreeFit;
+import com.amine.pfe.georef_module.gcp.dto.DegreeSelectionResult;
 import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.dto.InverseTransformResponse;
 import com.amine.pfe.georef_module.gcp.dto.ResidualsResult;
 import com.amine.pfe.georef_module.gcp.service.port.ResidualsService;
+import com.amine.pfe.georef_module.gcp.solver.DistortionGrid;
+import com.amine.pfe.georef_module.gcp.solver.Helmert;
+import com.amine.pfe.georef_module.gcp.solver.LeastSquaresMethod;
+import com.amine.pfe.georef_module.gcp.solver.NestedPolynomialFits;
+import com.amine.pfe.georef_module.gcp.solver.PiecewiseAffine;
+import com.amine.pfe.georef_module.gcp.solver.PolynomialBasis;
+import com.amine.pfe.georef_module.gcp.solver.PolynomialFit;
+import com.amine.pfe.georef_module.gcp.solver.PolynomialInverse;
+import com.amine.pfe.georef_module.gcp.solver.ProjectiveDlt;
+import com.amine.pfe.georef_module.gcp.solver.ResidualKernels;
+import com.amine.pfe.georef_module.gcp.solver.RobustFit;
+import com.amine.pfe.georef_module.gcp.solver.ThinPlateSpline;
+import com.amine.pfe.georef_module.gcp.solver.ThinPlateSplineSystem;
 
 @Service
 public class ResidualsServiceImpl implements ResidualsService {
 
+    private static final double LEVERAGE_TOLERANCE = 1e-8;
+
+    // Position dans PolynomialBasis de chaque colonne de la matrice historique
+    // (x³, y³, x²y, xy², x², y², xy, x, y, 1 pour le degré 3)
+    private static final int[][] LEGACY_TERM_ORDER = {
+            { 1, 2, 0 },
+            { 3, 5, 4, 1, 2, 0 },
+            { 6, 9, 7, 8, 3, 5, 4, 1, 2, 0 }
+    };
+
+    // Tableaux de travail des transformations en forme close, réutilisés d'un appel à l'autre
+    private static final ThreadLocal<ClosedFormWorkspace> CLOSED_FORM_WORKSPACE =
+            ThreadLocal.withInitial(ClosedFormWorkspace::new);
+
+    private final LeastSquaresMethod solver;
+    private final IncrementalResidualsEngine incrementalEngine;
+    private final RobustEstimator robustEstimator;
+    private final ThinPlateSplineEngine thinPlateSplineEngine;
+    private final PiecewiseAffineEngine piecewiseAffineEngine;
+    private final InverseTransformEngine inverseTransformEngine;
+    private final ResidualKernels kernels;
+
+    public ResidualsServiceImpl() {
+        this(LeastSquaresMethod.HOUSEHOLDER);
+    }
+
+    public ResidualsServiceImpl(LeastSquaresMethod solver) {
+        this(solver, new IncrementalResidualsEngine());
+    }
+
+    private ResidualsServiceImpl(LeastSquaresMethod solver, IncrementalResidualsEngine incrementalEngine) {
+        this(solver, incrementalEngine, new RobustEstimator(), new ThinPlateSplineEngine(),
+                new PiecewiseAffineEngine(), new InverseTransformEngine(incrementalEngine), false);
+    }
+
+    @Autowired
+    public ResidualsServiceImpl(@Value("${georef.residuals.solver:HOUSEHOLDER}") LeastSquaresMethod solver,
+            IncrementalResidualsEngine incrementalEngine, RobustEstimator robustEstimator,
+            ThinPlateSplineEngine thinPlateSplineEngine, PiecewiseAffineEngine piecewiseAffineEngine,
+            InverseTransformEngine inverseTransformEngine,
+            @Value("${georef.residuals.simd:false}") boolean simd) {
+        this.solver = solver;
+        this.incrementalEngine = incrementalEngine;
+        this.robustEstimator = robustEstimator;
+        this.thinPlateSplineEngine = thinPlateSplineEngine;
+        this.piecewiseAffineEngine = piecewiseAffineEngine;
+        this.inverseTransformEngine = inverseTransformEngine;
+        this.kernels = ResidualKernels.create(simd);
+    }
+
     @Override
     public int getMinimumPointsRequired(TransformationType transformationType) {
         switch (transformationType) {
@@ -23,11 +93,25 @@ public class ResidualsServiceImpl implements ResidualsService {
                 return 6;
             case POLYNOMIALE_3:
                 return 10;
+            case THIN_PLATE_SPLINE:
+                return ThinPlateSplineSystem.MIN_POINTS;
+            case PIECEWISE_AFFINE:
+                return 3;
+            case HELMERT:
+                return Helmert.MIN_POINTS;
+            case PROJECTIVE:
+                return ProjectiveDlt.MIN_POINTS;
             default:
                 return 3;
         }
     }
 
+    @Override
+    public boolean supportsRobustFit(TransformationType type) {
+        return type == TransformationType.POLYNOMIALE_1 || type == TransformationType.POLYNOMIALE_2
+                || type == TransformationType.POLYNOMIALE_3;
+    }
+
     @Override
     public boolean hasEnoughGCPs(List<GcpDto> gcps, TransformationType type) {
         int minPoints = getMinimumPointsRequired(type);
@@ -36,100 +120,539 @@ public class ResidualsServiceImpl implements ResidualsService {
 
     @Override
     public ResidualsResult computeResiduals(List<GcpDto> gcps, TransformationType type, Srid srid) {
-        int degree = switch (type) {
-            case POLYNOMIALE_1 -> 1;
-            case POLYNOMIALE_2 -> 2;
-            case POLYNOMIALE_3 -> 3;
-        };
+        return computeResiduals(gcps, type, srid, ResidualMode.CLASSIC);
+    }
+
+    @Override
+    public ResidualsResult computeResiduals(List<GcpDto> gcps, TransformationType type, Srid srid,
+            ResidualMode mode) {
+        return computeResiduals(gcps, type, srid, mode, true);
+    }
+
+    /**
+     * Ajustement ponctuel : ni lecture ni mise à jour de l'état incrémental
+     * par image, qu'un lot de plusieurs centaines d'images viderait.
+     */
+    @Override
+    public ResidualsResult computeStatelessResiduals(List<GcpDto> gcps, TransformationType type, Srid srid) {
+        return computeResiduals(gcps, type, srid, ResidualMode.CLASSIC, false);
+    }
+
+    private ResidualsResult computeResiduals(List<GcpDto> gcps, TransformationType type, Srid srid,
+            ResidualMode mode, boolean incremental) {
+        if (type == TransformationType.THIN_PLATE_SPLINE) {
+            return computeThinPlateSplineResiduals(gcps, srid, mode);
+        }
+        if (type == TransformationType.PIECEWISE_AFFINE) {
+            return computePiecewiseAffineResiduals(gcps, srid, mode);
+        }
+        if (type == TransformationType.HELMERT || type == TransformationType.PROJECTIVE) {
+            return computeClosedFormResiduals(gcps, type, srid, mode);
+        }
+        int degree = degreeOf(type);
 
         int n = gcps.size();
         double[] X = new double[n];
         double[] Y = new double[n];
         double[] mapX = new double[n];
         double[] mapY = new double[n];
+        extractCoordinates(gcps, X, Y, mapX, mapY);
 
+        double[] estimatedX = new double[n];
+        double[] estimatedY = new double[n];
+
+        boolean leaveOneOut = mode == ResidualMode.LEAVE_ONE_OUT;
+        PolynomialFit fit = null;
+
+        // Le leave-one-out a besoin du facteur R : il passe toujours par le solveur économique
+        if (solver == LeastSquaresMethod.FULL_QR && !leaveOneOut) {
+            estimateWithFullQR(X, Y, mapX, mapY, degree, estimatedX, estimatedY);
+        } else {
+            // Réutilise la factorisation de l'image si seuls quelques GCPs ont changé,
+            // sinon une seule factorisation pour les deux composantes
+            fit = incremental ? incrementalEngine.fit(gcps, degree) : null;
+            if (fit == null) {
+                fit = PolynomialFit.fit(X, Y, mapX, mapY, degree, kernels);
+            }
+            fit.transform(kernels, X, Y, estimatedX, estimatedY);
+        }
+
+        ResidualsResult result = residualsResult(srid, mapX, mapY, estimatedX, estimatedY);
+        if (!leaveOneOut) {
+            return result;
+        }
+
+        // Pour un ajustement linéaire, l'erreur de prédiction du point i quand il
+        // est exclu vaut e_i / (1 - h_ii), h_ii étant la diagonale de la matrice
+        // chapeau tirée du facteur R déjà calculé. Un point de levier h_ii ≈ 1
+        // détermine seul un paramètre : son résidu LOO n'est pas défini.
+        double[] errX = new double[n];
+        double[] errY = new double[n];
         for (int i = 0; i < n; i++) {
-            GcpDto gcp = gcps.get(i);
-            X[i] = gcp.getSourceX();
-            Y[i] = gcp.getSourceY();
-            mapX[i] = gcp.getMapX();
-            mapY[i] = gcp.getMapY();
+            double oneMinusH = 1.0 - fit.leverage(X[i], Y[i]);
+            if (oneMinusH < LEVERAGE_TOLERANCE) {
+                errX[i] = Double.NaN;
+                errY[i] = Double.NaN;
+            } else {
+                errX[i] = (mapX[i] - estimatedX[i]) / oneMinusH;
+                errY[i] = (mapY[i] - estimatedY[i]) / oneMinusH;
+            }
         }
+        applyLeaveOneOut(result, srid, mapX, mapY, errX, errY);
+        return result;
+    }
 
-        // Création de la matrice A (matrice de design)
-        double[][] A = buildDesignMatrix(X, Y, degree);
+    /**
+     * Spline en plaque mince : l'interpolation est exacte, les résidus
+     * classiques sont donc nuls ; le mode leave-one-out (formule de Rippa)
+     * est le seul indicateur de qualité utile.
+     */
+    private ResidualsResult computeThinPlateSplineResiduals(List<GcpDto> gcps, Srid srid, ResidualMode mode) {
+        int n = gcps.size();
+        double[] X = new double[n];
+        double[] Y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        extractCoordinates(gcps, X, Y, mapX, mapY);
 
-        // Résolution des moindres carrés avec une méthode plus robuste
-        double[] paramsX = solveLeastSquaresQR(A, mapX);
-        double[] paramsY = solveLeastSquaresQR(A, mapY);
+        ThinPlateSpline spline = thinPlateSplineEngine.fit(X, Y, mapX, mapY);
 
-        // Application de la transformation pour obtenir les points estimés
         double[] estimatedX = new double[n];
         double[] estimatedY = new double[n];
+        spline.transform(X, Y, estimatedX, estimatedY);
+
+        ResidualsResult result = residualsResult(srid, mapX, mapY, estimatedX, estimatedY);
+        if (mode == ResidualMode.LEAVE_ONE_OUT) {
+            double[] errX = new double[n];
+            double[] errY = new double[n];
+            spline.leaveOneOutErrors(errX, errY);
+            applyLeaveOneOut(result, srid, mapX, mapY, errX, errY);
+        }
+        return result;
+    }
 
-        for (int i = 0; i < n; i++) {
-            double[] features = getFeatures(X[i], Y[i], degree);
-            estimatedX[i] = dotProduct(features, paramsX);
-            estimatedY[i] = dotProduct(features, paramsY);
+    /**
+     * Affine par morceaux : chaque GCP est un sommet de la triangulation, les
+     * résidus classiques sont nuls par construction. En leave-one-out, chaque
+     * point est prédit par la triangulation de ses voisins.
+     */
+    private ResidualsResult computePiecewiseAffineResiduals(List<GcpDto> gcps, Srid srid, ResidualMode mode) {
+        int n = gcps.size();
+        double[] X = new double[n];
+        double[] Y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        extractCoordinates(gcps, X, Y, mapX, mapY);
+
+        boolean leaveOneOut = mode == ResidualMode.LEAVE_ONE_OUT;
+        double[] errX = leaveOneOut ? new double[n] : null;
+        double[] errY = leaveOneOut ? new double[n] : null;
+        PiecewiseAffine transform = piecewiseAffineEngine.fit(gcps, errX, errY);
+
+        double[] estimatedX = new double[n];
+        double[] estimatedY = new double[n];
+        transform.transform(X, Y, estimatedX, estimatedY);
+
+        ResidualsResult result = residualsResult(srid, mapX, mapY, estimatedX, estimatedY);
+        if (leaveOneOut) {
+            applyLeaveOneOut(result, srid, mapX, mapY, errX, errY);
+        }
+        return result;
+    }
+
+    /**
+     * Helmert (forme close) et projective (DLT normalisée). Le résultat porte
+     * aussi les coefficients transmis à GDAL : géotransformation
+     * (tx, a, -b, ty, b, a) pour Helmert, homographie h0..h8 pour projective.
+     *
+     * L'ajustement travaille dans les tableaux du thread ; restent alloués
+     * les tableaux de coordonnées de taille n, partagés avec le calcul des
+     * distances, et le résultat lui-même.
+     */
+    private ResidualsResult computeClosedFormResiduals(List<GcpDto> gcps, TransformationType type, Srid srid,
+            ResidualMode mode) {
+        int n = gcps.size();
+        double[] X = new double[n];
+        double[] Y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        extractCoordinates(gcps, X, Y, mapX, mapY);
+
+        double[] estimatedX = new double[n];
+        double[] estimatedY = new double[n];
+        boolean leaveOneOut = mode == ResidualMode.LEAVE_ONE_OUT;
+        double[] errX = leaveOneOut ? new double[n] : null;
+        double[] errY = leaveOneOut ? new double[n] : null;
+        ClosedFormWorkspace workspace = CLOSED_FORM_WORKSPACE.get();
+        List<Double> coefficients;
+
+        if (type == TransformationType.HELMERT) {
+            double[] params = workspace.helmert;
+            Helmert.fit(X, Y, mapX, mapY, params);
+            Helmert.transform(params, X, Y, estimatedX, estimatedY);
+            if (leaveOneOut) {
+                Helmert.leaveOneOutErrors(X, Y, mapX, mapY, errX, errY);
+            }
+            coefficients = List.of(params[2], params[0], -params[1], params[3], params[1], params[0]);
+        } else {
+            ProjectiveDlt dlt = workspace.dlt;
+            double[] h = workspace.homography;
+            dlt.fit(X, Y, mapX, mapY, -1, h);
+            ProjectiveDlt.transform(h, X, Y, estimatedX, estimatedY);
+            if (leaveOneOut) {
+                dlt.leaveOneOutErrors(X, Y, mapX, mapY, errX, errY);
+            }
+            coefficients = List.of(h[0], h[1], h[2], h[3], h[4], h[5], h[6], h[7], h[8]);
+        }
+
+        ResidualsResult result = residualsResult(srid, mapX, mapY, estimatedX, estimatedY);
+        result.setCoefficients(coefficients);
+        if (leaveOneOut) {
+            applyLeaveOneOut(result, srid, mapX, mapY, errX, errY);
         }
+        return result;
+    }
 
-        // Calcul des résidus
-        List<Double> residuals = new ArrayList<>();
+    /**
+     * Ajustement robuste (RANSAC ou Huber) : les résidus sont donnés pour tous
+     * les points par rapport à la transformation robuste, mais le RMSE n'est
+     * calculé que sur les inliers. Le résultat porte aussi le masque des
+     * inliers, le poids final de chaque point, l'échelle robuste et la
+     * position de chaque point par la transformation robuste.
+     *
+     * Seules les transformations polynomiales ont un estimateur robuste : une
+     * spline en plaque mince ou une affinité par morceaux interpole chaque
+     * point, Helmert et projective n'en ont pas encore. Ces combinaisons sont
+     * refusées plutôt que ramenées en silence à un ajustement classique.
+     */
+    @Override
+    public ResidualsResult computeRobustResiduals(List<GcpDto> gcps, TransformationType type, Srid srid,
+            RobustMethod method) {
+        if (!supportsRobustFit(type)) {
+            throw new IllegalArgumentException(
+                    "Estimation robuste non disponible pour la transformation " + type.getLabel());
+        }
+        int degree = degreeOf(type);
+
+        int n = gcps.size();
+        double[] X = new double[n];
+        double[] Y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        extractCoordinates(gcps, X, Y, mapX, mapY);
+
+        RobustFit robust = robustEstimator.fit(X, Y, mapX, mapY, degree,
+                method != null ? method : RobustMethod.getDefault());
+
+        double[] estimatedX = new double[n];
+        double[] estimatedY = new double[n];
+        robust.getFit().transform(kernels, X, Y, estimatedX, estimatedY);
+        double[] distances = new double[n];
+        distances(srid, mapX, mapY, estimatedX, estimatedY, distances);
+
+        List<Double> residuals = new ArrayList<>(n);
+        List<Boolean> inliers = new ArrayList<>(n);
+        List<Double> weights = new ArrayList<>(n);
         double sumSquaredResiduals = 0.0;
+        int inlierCount = 0;
 
         for (int i = 0; i < n; i++) {
-            double residual;
-            if (srid == Srid._4326) {
-                residual = haversineDistance(mapY[i], mapX[i], estimatedY[i], estimatedX[i]);
-            } else {
-                residual = euclideanDistance(mapX[i], mapY[i], estimatedX[i], estimatedY[i]);
+            double residual = distances[i];
+            residuals.add(residual);
+            inliers.add(robust.isInlier(i));
+            weights.add(robust.getWeight(i));
+            if (robust.isInlier(i)) {
+                sumSquaredResiduals += residual * residual;
+                inlierCount++;
             }
+        }
+
+        double rmse = inlierCount > 0 ? Math.sqrt(sumSquaredResiduals / inlierCount) : 0.0;
+
+        List<Double> fittedX = new ArrayList<>(n);
+        List<Double> fittedY = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            fittedX.add(estimatedX[i]);
+            fittedY.add(estimatedY[i]);
+        }
+
+        ResidualsResult result = new ResidualsResult(residuals, rmse);
+        result.setInliers(inliers);
+        result.setWeights(weights);
+        result.setRobustScale(robust.getScale());
+        result.setFittedMapX(fittedX);
+        result.setFittedMapY(fittedY);
+        return result;
+    }
+
+    /**
+     * Compare les transformations polynomiales 1, 2 et 3 sur les mêmes GCPs à
+     * partir d'une seule factorisation QR du degré le plus élevé admissible.
+     *
+     * Pour chaque degré : RMSE, RMSE leave-one-out et critères AIC / BIC
+     * calculés sur les 2m observations (x et y) avec 2p paramètres. Le degré
+     * recommandé est celui de plus faible RMSE LOO parmi ceux dont tous les
+     * résidus LOO sont définis (le plus bas en cas d'égalité), sinon celui de
+     * plus faible BIC, sinon le plus bas degré ajusté.
+     */
+    @Override
+    public DegreeSelectionResult selectPolynomialDegree(List<GcpDto> gcps, Srid srid) {
+        int n = gcps.size();
+        double[] X = new double[n];
+        double[] Y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        extractCoordinates(gcps, X, Y, mapX, mapY);
+
+        NestedPolynomialFits fits = NestedPolynomialFits.fit(X, Y, mapX, mapY, PolynomialBasis.MAX_DEGREE);
+        if (fits.getMaxDegree() == 0) {
+            throw new IllegalArgumentException(
+                    "Les GCPs ne permettent d'ajuster aucune transformation polynomiale");
+        }
+
+        double observations = 2.0 * n;
+        double[] estimatedX = new double[n];
+        double[] estimatedY = new double[n];
+        double[] errX = new double[n];
+        double[] errY = new double[n];
+        List<DegreeFit> degreeFits = new ArrayList<>(fits.getMaxDegree());
+        TransformationType byLoo = null;
+        double bestLoo = Double.POSITIVE_INFINITY;
+        TransformationType byBic = null;
+        double bestBic = Double.POSITIVE_INFINITY;
+
+        for (int degree = 1; degree <= fits.getMaxDegree(); degree++) {
+            TransformationType type = polynomialType(degree);
+            int parameters = 2 * PolynomialBasis.termCount(degree);
+
+            fits.transform(degree, X, Y, estimatedX, estimatedY);
+            ResidualsResult result = residualsResult(srid, mapX, mapY, estimatedX, estimatedY);
+            fits.leaveOneOutErrors(degree, X, Y, mapX, mapY, LEVERAGE_TOLERANCE, errX, errY);
+            applyLeaveOneOut(result, srid, mapX, mapY, errX, errY);
+
+            // Un ajustement exact (RSS nul) rend les critères d'information non définis
+            double rss = result.getRmse() * result.getRmse() * n;
+            Double aic = null;
+            Double bic = null;
+            if (rss > 0.0) {
+                double logLikelihood = observations * Math.log(rss / observations);
+                aic = logLikelihood + 2.0 * parameters;
+                bic = logLikelihood + parameters * Math.log(observations);
+                if (bic < bestBic) {
+                    bestBic = bic;
+                    byBic = type;
+                }
+            }
+
+            boolean looDefined = !result.getLooResiduals().contains(null);
+            if (looDefined && result.getLooRmse() < bestLoo) {
+                bestLoo = result.getLooRmse();
+                byLoo = type;
+            }
+
+            degreeFits.add(new DegreeFit(type, parameters, result.getRmse(), result.getLooRmse(), aic, bic));
+        }
+
+        TransformationType recommended = byLoo != null ? byLoo
+                : byBic != null ? byBic
+                        : TransformationType.POLYNOMIALE_1;
+        return new DegreeSelectionResult(degreeFits, recommended);
+    }
+
+    /**
+     * Grille d'échelle, de rotation et d'incertitude de position de la
+     * transformation polynomiale ajustée sur les GCPs. La variance résiduelle
+     * est estimée sur les deux composantes avec m - p degrés de liberté
+     * chacune ; sans redondance, l'incertitude n'est pas définie (NaN).
+     */
+    @Override
+    public DistortionGrid computeDistortionGrid(List<GcpDto> gcps, TransformationType type, double width,
+            double height, int cols, int rows) {
+        int degree = degreeOf(type);
+
+        int n = gcps.size();
+        double[] X = new double[n];
+        double[] Y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        extractCoordinates(gcps, X, Y, mapX, mapY);
+
+        PolynomialFit fit = PolynomialFit.fit(X, Y, mapX, mapY, degree);
+        double[] estimatedX = new double[n];
+        double[] estimatedY = new double[n];
+        fit.transform(X, Y, estimatedX, estimatedY);
+
+        double rss = 0.0;
+        for (int i = 0; i < n; i++) {
+            double dx = mapX[i] - estimatedX[i];
+            double dy = mapY[i] - estimatedY[i];
+            rss += dx * dx + dy * dy;
+        }
+        int dof = n - PolynomialBasis.termCount(degree);
+        double residualVariance = dof > 0 ? rss / (2.0 * dof) : Double.NaN;
+
+        return DistortionGrid.evaluate(fit, residualVariance, width, height, cols, rows);
+    }
+
+    /**
+     * Coordonnées pixel des points carte donnés, par inversion de la
+     * transformation polynomiale ajustée sur les GCPs.
+     */
+    @Override
+    public InverseTransformResponse inverseTransform(List<GcpDto> gcps, TransformationType type, double[] mapX,
+            double[] mapY) {
+        int degree = degreeOf(type);
+        PolynomialInverse inverse = inverseTransformEngine.inverse(gcps, degree);
+
+        int n = mapX.length;
+        double[] sourceX = new double[n];
+        double[] sourceY = new double[n];
+        boolean[] converged = new boolean[n];
+        inverse.invert(mapX, mapY, sourceX, sourceY, converged);
+        return new InverseTransformResponse(sourceX, sourceY, converged);
+    }
+
+    private TransformationType polynomialType(int degree) {
+        return switch (degree) {
+            case 1 -> TransformationType.POLYNOMIALE_1;
+            case 2 -> TransformationType.POLYNOMIALE_2;
+            case 3 -> TransformationType.POLYNOMIALE_3;
+            default -> throw new IllegalArgumentException("Degré polynomial non supporté : " + degree);
+        };
+    }
+
+    private int degreeOf(TransformationType type) {
+        return switch (type) {
+            case POLYNOMIALE_1 -> 1;
+            case POLYNOMIALE_2 -> 2;
+            case POLYNOMIALE_3 -> 3;
+            case THIN_PLATE_SPLINE -> throw new IllegalArgumentException(
+                    "Thin Plate Spline n'est pas une transformation polynomiale");
+            case PIECEWISE_AFFINE -> throw new IllegalArgumentException(
+                    "Affine par morceaux n'est pas une transformation polynomiale");
+            case HELMERT, PROJECTIVE -> throw new IllegalArgumentException(
+                    type.getLabel() + " n'est pas une transformation polynomiale");
+        };
+    }
+
+    private void extractCoordinates(List<GcpDto> gcps, double[] X, double[] Y, double[] mapX, double[] mapY) {
+        for (int i = 0; i < gcps.size(); i++) {
+            GcpDto gcp = gcps.get(i);
+            X[i] = gcp.getSourceX();
+            Y[i] = gcp.getSourceY();
+            mapX[i] = gcp.getMapX();
+            mapY[i] = gcp.getMapY();
+        }
+    }
+
+    private ResidualsResult residualsResult(Srid srid, double[] mapX, double[] mapY,
+            double[] estimatedX, double[] estimatedY) {
+        int n = mapX.length;
+        double[] distances = new double[n];
+        distances(srid, mapX, mapY, estimatedX, estimatedY, distances);
+        List<Double> residuals = new ArrayList<>(n);
+        double sumSquaredResiduals = 0.0;
+
+        for (int i = 0; i < n; i++) {
+            double residual = distances[i];
 
             residuals.add(residual);
             sumSquaredResiduals += residual * residual;
         }
 
         double rmse = Math.sqrt(sumSquaredResiduals / n);
-
         return new ResidualsResult(residuals, rmse);
     }
 
+    /**
+     * Complète le résultat avec les résidus leave-one-out, à partir de l'écart
+     * (errX, errY) entre chaque point carte et sa prédiction sans lui. Un
+     * écart NaN signale un résidu non défini (null), exclu du RMSE LOO.
+     */
+    private void applyLeaveOneOut(ResidualsResult result, Srid srid, double[] mapX, double[] mapY,
+            double[] errX, double[] errY) {
+        int n = mapX.length;
+        double[] predictedX = new double[n];
+        double[] predictedY = new double[n];
+        for (int i = 0; i < n; i++) {
+            predictedX[i] = mapX[i] - errX[i];
+            predictedY[i] = mapY[i] - errY[i];
+        }
+        double[] distances = new double[n];
+        distances(srid, mapX, mapY, predictedX, predictedY, distances);
+
+        List<Double> looResiduals = new ArrayList<>(n);
+        double sumSquared = 0.0;
+        int defined = 0;
+
+        for (int i = 0; i < n; i++) {
+            if (Double.isNaN(errX[i]) || Double.isNaN(errY[i])) {
+                looResiduals.add(null);
+                continue;
+            }
+            double residual = distances[i];
+
+            looResiduals.add(residual);
+            sumSquared += residual * residual;
+            defined++;
+        }
+
+        result.setLooResiduals(looResiduals);
+        result.setLooRmse(defined > 0 ? Math.sqrt(sumSquared / defined) : null);
+    }
+
+    /**
+     * Distances entre points carte et points estimés pour tout le lot :
+     * orthodromiques en EPSG:4326, euclidiennes sinon.
+     */
+    private void distances(Srid srid, double[] mapX, double[] mapY, double[] estimatedX, double[] estimatedY,
+            double[] out) {
+        if (srid == Srid._4326) {
+            kernels.haversine(mapX, mapY, estimatedX, estimatedY, out);
+        } else {
+            kernels.euclidean(mapX, mapY, estimatedX, estimatedY, out);
+        }
+    }
+
+    private void estimateWithFullQR(double[] X, double[] Y, double[] mapX, double[] mapY, int degree,
+            double[] estimatedX, double[] estimatedY) {
+        // Création de la matrice A (matrice de design)
+        double[][] A = buildDesignMatrix(X, Y, degree);
+
+        // Résolution des moindres carrés avec une méthode plus robuste
+        double[] paramsX = solveLeastSquaresQR(A, mapX);
+        double[] paramsY = solveLeastSquaresQR(A, mapY);
+
+        // Application de la transformation pour obtenir les points estimés,
+        // paramètres remis dans l'ordre de PolynomialBasis
+        int[] order = LEGACY_TERM_ORDER[degree - 1];
+        double[] gradedX = new double[order.length];
+        double[] gradedY = new double[order.length];
+        for (int j = 0; j < order.length; j++) {
+            gradedX[order[j]] = paramsX[j];
+            gradedY[order[j]] = paramsY[j];
+        }
+        kernels.evaluate(gradedX, gradedY, degree, 0.0, 0.0, 1.0, X, Y, estimatedX, estimatedY);
+    }
+
+    /**
+     * Matrice de design historique (coordonnées brutes, termes du plus haut
+     * degré au terme constant), remplie ligne par ligne à partir des colonnes
+     * calculées par les noyaux.
+     */
     private double[][] buildDesignMatrix(double[] X, double[] Y, int degree) {
         int n = X.length;
-        double[][] A;
-        if (degree == 1) {
-            A = new double[n][3];
-            for (int i = 0; i < n; i++) {
-                A[i][0] = X[i];
-                A[i][1] = Y[i];
-                A[i][2] = 1;
-            }
-        } else if (degree == 2) {
-            A = new double[n][6];
+        int[] order = LEGACY_TERM_ORDER[degree - 1];
+        int p = order.length;
+        double[] columns = new double[n * p];
+        kernels.designMatrix(X, Y, n, degree, 0.0, 0.0, 1.0, columns);
+
+        double[][] A = new double[n][p];
+        for (int j = 0; j < p; j++) {
+            int offset = order[j] * n;
             for (int i = 0; i < n; i++) {
-                A[i][0] = X[i] * X[i];
-                A[i][1] = Y[i] * Y[i];
-                A[i][2] = X[i] * Y[i];
-                A[i][3] = X[i];
-                A[i][4] = Y[i];
-                A[i][5] = 1;
+                A[i][j] = columns[offset + i];
             }
-        } else if (degree == 3) {
-            A = new double[n][10];
-            for (int i = 0; i < n; i++) {
-                A[i][0] = X[i] * X[i] * X[i];
-                A[i][1] = Y[i] * Y[i] * Y[i];
-                A[i][2] = X[i] * X[i] * Y[i];
-                A[i][3] = X[i] * Y[i] * Y[i];
-                A[i][4] = X[i] * X[i];
-                A[i][5] = Y[i] * Y[i];
-                A[i][6] = X[i] * Y[i];
-                A[i][7] = X[i];
-                A[i][8] = Y[i];
-                A[i][9] = 1;
-            }
-        } else {
-            throw new IllegalArgumentException("Degree must be 1, 2 or 3");
         }
         return A;
     }
@@ -270,45 +793,10 @@ public class ResidualsServiceImpl implements ResidualsService {
      * }
      */
 
-    private double[] getFeatures(double x, double y, int degree) {
-        if (degree == 1) {
-            return new double[] { x, y, 1 };
-        } else if (degree == 2) {
-            return new double[] { x * x, y * y, x * y, x, y, 1 };
-        } else {
-            return new double[] {
-                    x * x * x, y * y * y, x * x * y, x * y * y, x * x, y * y, x * y, x, y, 1
-            };
-        }
-    }
-
-    private double dotProduct(double[] a, double[] b) {
-        double sum = 0;
-        for (int i = 0; i < a.length; i++) {
-            sum += a[i] * b[i];
-        }
-        return sum;
-    }
-
-    private double euclideanDistance(double x1, double y1, double x2, double y2) {
-        double dx = x2 - x1;
-        double dy = y2 - y1;
-        return Math.sqrt(dx * dx + dy * dy);
-    }
-
-    private double haversineDistance(double lat1, double lon1, double lat2, double lon2) {
-        final double R = 6371000; // Rayon Terre en mètres
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double rLat1 = Math.toRadians(lat1);
-        double rLat2 = Math.toRadians(lat2);
-
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                Math.cos(rLat1) * Math.cos(rLat2) *
-                        Math.sin(dLon / 2) * Math.sin(dLon / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    private static final class ClosedFormWorkspace {
 
-        return R * c;
+        private final ProjectiveDlt dlt = new ProjectiveDlt();
+        private final double[] helmert = new double[Helmert.PARAMETERS];
+        private final double[] homography = new double[ProjectiveDlt.PARAMETERS];
     }
 }
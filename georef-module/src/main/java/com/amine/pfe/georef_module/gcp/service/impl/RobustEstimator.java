@@ -0,0 +1,65 @@
+package com.amine.pfe.georef_module.gcp.service.impl;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.amine.pfe.georef_module.enums.RobustMethod;
+import com.amine.pfe.georef_module.gcp.solver.HuberIrls;
+import com.amine.pfe.georef_module.gcp.solver.PolynomialFit;
+import com.amine.pfe.georef_module.gcp.solver.Ransac;
+import com.amine.pfe.georef_module.gcp.solver.RobustFit;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Estimation robuste des transformations polynomiales (RANSAC ou Huber).
+ *
+ * Les hypothèses RANSAC sont évaluées sur le pool commun, ou sur un
+ * ForkJoinPool dédié si georef.residuals.robust.parallelism est fixé, pour ne
+ * pas concurrencer le reste de l'application. Le pool dédié est arrêté avec
+ * le contexte Spring.
+ */
+@Component
+public class RobustEstimator {
+
+    static final int DEFAULT_RANSAC_ITERATIONS = 2000;
+
+    private final ForkJoinPool pool;
+    private final Ransac ransac;
+    private final HuberIrls huber;
+
+    public RobustEstimator() {
+        this(DEFAULT_RANSAC_ITERATIONS, 0.0, 0);
+    }
+
+    @Autowired
+    public RobustEstimator(
+            @Value("${georef.residuals.robust.ransac-iterations:2000}") int ransacIterations,
+            @Value("${georef.residuals.robust.ransac-threshold:0}") double ransacThreshold,
+            @Value("${georef.residuals.robust.parallelism:0}") int parallelism) {
+        this.pool = parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool.commonPool();
+        this.ransac = new Ransac(ransacIterations, ransacThreshold);
+        this.huber = new HuberIrls();
+    }
+
+    public RobustFit fit(double[] x, double[] y, double[] mapX, double[] mapY, int degree, RobustMethod method) {
+        switch (method) {
+            case RANSAC:
+                return ransac.fit(x, y, mapX, mapY, degree, pool);
+            case HUBER:
+                return huber.fit(x, y, mapX, mapY, degree);
+            default:
+                return RobustFit.allInliers(PolynomialFit.fit(x, y, mapX, mapY, degree), x, y, mapX, mapY);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != ForkJoinPool.commonPool()) {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.amine.pfe.georef_module.gcp.service.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.amine.pfe.georef_module.gcp.solver.ThinPlateSpline;
+import com.amine.pfe.georef_module.gcp.solver.ThinPlateSplineSystem;
+
+/**
+ * Ajustement des splines en plaque mince avec cache des factorisations.
+ *
+ * La factorisation O(n³) ne dépend que des coordonnées source : elle est
+ * conservée par jeu de points source, et un déplacement côté carte ne coûte
+ * plus qu'une résolution O(n²). Comme dans CachingResidualsService, chaque
+ * jeu a sa CompletableFuture : des demandes simultanées sur les mêmes points
+ * attendent la factorisation en cours au lieu de la refaire.
+ *
+ * Le cache est borné par le nombre total de cellules des matrices
+ * factorisées, (n+3)² par entrée, et non par nombre d'entrées. Un système
+ * plus grand que la borne est factorisé sans être conservé.
+ */
+@Component
+public class ThinPlateSplineEngine {
+
+    // 4 Mi cellules, soit 32 Mo de matrices LU
+    static final long DEFAULT_MAX_CACHED_CELLS = 4L * 1024 * 1024;
+
+    private final long maxCachedCells;
+    private final Map<SourceKey, CompletableFuture<ThinPlateSplineSystem>> systems =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedCells;
+
+    public ThinPlateSplineEngine() {
+        this(DEFAULT_MAX_CACHED_CELLS);
+    }
+
+    @Autowired
+    public ThinPlateSplineEngine(
+            @Value("${georef.residuals.tps.max-cached-cells:4194304}") long maxCachedCells) {
+        this.maxCachedCells = maxCachedCells;
+    }
+
+    public ThinPlateSpline fit(double[] x, double[] y, double[] mapX, double[] mapY) {
+        return system(x, y).solve(mapX, mapY);
+    }
+
+    /**
+     * Cellules occupées par les factorisations en cache, en cours comprises.
+     */
+    public long cachedCells() {
+        synchronized (systems) {
+            return cachedCells;
+        }
+    }
+
+    private ThinPlateSplineSystem system(double[] x, double[] y) {
+        SourceKey key = new SourceKey(x.clone(), y.clone());
+        if (key.cells > maxCachedCells) {
+            return ThinPlateSplineSystem.factor(x, y);
+        }
+
+        CompletableFuture<ThinPlateSplineSystem> future;
+        boolean owner = false;
+        synchronized (systems) {
+            future = systems.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                systems.put(key, future);
+                cachedCells += key.cells;
+                evict(key);
+                owner = true;
+            }
+        }
+
+        if (!owner) {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            ThinPlateSplineSystem system = ThinPlateSplineSystem.factor(x, y);
+            future.complete(system);
+            return system;
+        } catch (Throwable e) {
+            // Points alignés ou dupliqués : rien n'est gardé, les demandes en
+            // attente reçoivent la même erreur
+            synchronized (systems) {
+                if (systems.remove(key, future)) {
+                    cachedCells -= key.cells;
+                }
+            }
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Retire les entrées les moins récemment utilisées jusqu'à revenir sous
+     * la borne, sans toucher à celle qui vient d'être ajoutée. Appelé sous le
+     * verrou de systems.
+     */
+    private void evict(SourceKey added) {
+        Iterator<SourceKey> it = systems.keySet().iterator();
+        while (cachedCells > maxCachedCells && it.hasNext()) {
+            SourceKey eldest = it.next();
+            if (eldest != added) {
+                it.remove();
+                cachedCells -= eldest.cells;
+            }
+        }
+    }
+
+    private static final class SourceKey {
+        private final double[] x;
+        private final double[] y;
+        private final int hash;
+        // Taille de la matrice factorisée : (n+3)² cellules
+        private final long cells;
+
+        SourceKey(double[] x, double[] y) {
+            this.x = x;
+            this.y = y;
+            this.hash = 31 * Arrays.hashCode(x) + Arrays.hashCode(y);
+            this.cells = (long) (x.length + 3) * (x.length + 3);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SourceKey)) {
+                return false;
+            }
+            SourceKey other = (SourceKey) o;
+            return hash == other.hash && Arrays.equals(x, other.x) && Arrays.equals(y, other.y);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.amine.pfe.georef_module.gcp.service.port;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Diffusion des invalidations du cache des GCPs entre instances.
+ */
+public interface GcpCacheNotifier {
+
+    /**
+     * Signale aux autres instances que les GCPs de l'image ont changé. Dans
+     * une transaction, l'envoi n'a lieu qu'au commit.
+     */
+    void publish(UUID imageId);
+
+    void subscribe(Consumer<UUID> listener);
+}
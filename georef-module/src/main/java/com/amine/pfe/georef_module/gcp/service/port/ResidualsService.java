@@ -2,13 +2,25 @@ package com.amine.pfe.georef_module.gcp.service.port;
 
 import java.util.List;
 
+import com.amine.pfe.georef_module.enums.ResidualMode;
+import com.amine.pfe.georef_module.enums.RobustMethod;
 import com.amine.pfe.georef_module.enums.Srid;
 import com.amine.pfe.georef_module.enums.TransformationType;
+import com.amine.pfe.georef_module.gcp.dto.DegreeSelectionResult;
 import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.dto.InverseTransformResponse;
 import com.amine.pfe.georef_module.gcp.dto.ResidualsResult;
+import com.amine.pfe.georef_module.gcp.solver.DistortionGrid;
 
 public interface ResidualsService {
     public ResidualsResult computeResiduals(List<GcpDto> gcps, TransformationType Type, Srid srid);
+    public ResidualsResult computeResiduals(List<GcpDto> gcps, TransformationType Type, Srid srid, ResidualMode mode);
+    public ResidualsResult computeStatelessResiduals(List<GcpDto> gcps, TransformationType type, Srid srid);
+    public ResidualsResult computeRobustResiduals(List<GcpDto> gcps, TransformationType type, Srid srid, RobustMethod method);
+    public DegreeSelectionResult selectPolynomialDegree(List<GcpDto> gcps, Srid srid);
+    public DistortionGrid computeDistortionGrid(List<GcpDto> gcps, TransformationType type, double width, double height, int cols, int rows);
+    public InverseTransformResponse inverseTransform(List<GcpDto> gcps, TransformationType type, double[] mapX, double[] mapY);
     public int getMinimumPointsRequired(TransformationType transformationType);
+    public boolean supportsRobustFit(TransformationType type);
     public boolean hasEnoughGCPs(List<GcpDto> gcps, TransformationType type);
 }
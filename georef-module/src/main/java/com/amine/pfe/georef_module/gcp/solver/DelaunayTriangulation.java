@@ -0,0 +1,676 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Triangulation de Delaunay incrémentale (Bowyer-Watson) avec suppression
+ * de sommets.
+ *
+ * Les triangles sont stockés dans des tableaux plats : sommets (v0, v1, v2)
+ * dans le sens trigonométrique et, pour chacun, le voisin opposé au sommet
+ * de même rang (-1 sur le bord du super-triangle). L'insertion localise le
+ * point par marche orientée depuis le dernier triangle créé puis remplace la
+ * cavité des triangles dont le cercle circonscrit contient le point. La
+ * suppression retriangule le polygone formé par les voisins du sommet.
+ *
+ * Trois sommets fictifs (0, 1, 2) forment un super-triangle englobant. Ils
+ * sont placés à l'infini (x() et y() rendent leur direction) et les
+ * prédicats géométriques les traitent symboliquement : les triangles sans
+ * sommet fictif forment exactement la triangulation de Delaunay des points,
+ * enveloppe convexe comprise, quelle que soit leur étendue.
+ */
+public final class DelaunayTriangulation {
+
+    public static final int SUPER_VERTICES = 3;
+    private static final double ORIENT_ERROR = 3.3306690738754716e-16;
+    private static final double IN_CIRCLE_ERROR = 1.1102230246251577e-15;
+
+    private double[] vx = new double[64];
+    private double[] vy = new double[64];
+    private int[] vertexTriangle = new int[64];
+    private boolean[] removed = new boolean[64];
+    private int vertexCount;
+
+    private int[] tv = new int[3 * 128];
+    private int[] tn = new int[3 * 128];
+    private boolean[] dead = new boolean[128];
+    private int triangleSlots;
+    private int[] free = new int[16];
+    private int freeCount;
+
+    private int[] mark = new int[128];
+    private int stamp;
+    private int lastTriangle;
+
+    public DelaunayTriangulation() {
+        addVertex(0.0, 2.0);
+        addVertex(-2.0, -1.0);
+        addVertex(2.0, -1.0);
+        lastTriangle = newTriangle(0, 1, 2, -1, -1, -1);
+    }
+
+    public double x(int v) {
+        return vx[v];
+    }
+
+    public double y(int v) {
+        return vy[v];
+    }
+
+    /**
+     * Nombre d'identifiants de sommets attribués, sommets fictifs et
+     * supprimés compris.
+     */
+    public int vertexCapacity() {
+        return vertexCount;
+    }
+
+    public static boolean isSuperVertex(int v) {
+        return v < SUPER_VERTICES;
+    }
+
+    /**
+     * Insère un point.
+     *
+     * @return l'identifiant du sommet, ou -1 si un sommet existe déjà à ces
+     *         coordonnées exactes
+     */
+    public int insert(double x, double y) {
+        int t = locate(x, y);
+        for (int k = 0; k < 3; k++) {
+            int w = tv[3 * t + k];
+            if (!isSuperVertex(w) && vx[w] == x && vy[w] == y) {
+                return -1;
+            }
+        }
+
+        int v = addVertex(x, y);
+
+        // Cavité : triangles dont le cercle circonscrit contient le point
+        nextStamp();
+        int[] stack = new int[16];
+        int top = 0;
+        List<Integer> bad = new ArrayList<>();
+        stack[top++] = t;
+        mark[t] = stamp;
+        bad.add(t);
+        while (top > 0) {
+            int cur = stack[--top];
+            for (int k = 0; k < 3; k++) {
+                int nb = tn[3 * cur + k];
+                if (nb < 0 || mark[nb] == stamp) {
+                    continue;
+                }
+                boolean onEdge = orient(tv[3 * cur + (k + 1) % 3], tv[3 * cur + (k + 2) % 3], x, y) == 0.0;
+                if (onEdge || inCircle(nb, x, y)) {
+                    mark[nb] = stamp;
+                    bad.add(nb);
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top * 2);
+                    }
+                    stack[top++] = nb;
+                }
+            }
+        }
+
+        // Bord de la cavité : un nouveau triangle (a, b, v) par arête
+        Map<Integer, Integer> startsAt = new HashMap<>();
+        Map<Integer, Integer> endsAt = new HashMap<>();
+        List<Integer> created = new ArrayList<>();
+        for (int cur : bad) {
+            for (int k = 0; k < 3; k++) {
+                int nb = tn[3 * cur + k];
+                if (nb >= 0 && mark[nb] == stamp) {
+                    continue;
+                }
+                int a = tv[3 * cur + (k + 1) % 3];
+                int b = tv[3 * cur + (k + 2) % 3];
+                int nt = newTriangle(a, b, v, -1, -1, nb);
+                if (nb >= 0) {
+                    replaceNeighbor(nb, cur, nt);
+                }
+                startsAt.put(a, nt);
+                endsAt.put(b, nt);
+                created.add(nt);
+            }
+        }
+        for (int nt : created) {
+            int a = tv[3 * nt];
+            int b = tv[3 * nt + 1];
+            tn[3 * nt] = startsAt.get(b);
+            tn[3 * nt + 1] = endsAt.get(a);
+            vertexTriangle[a] = nt;
+            vertexTriangle[b] = nt;
+        }
+        for (int cur : bad) {
+            release(cur);
+        }
+        vertexTriangle[v] = created.get(0);
+        lastTriangle = created.get(0);
+        return v;
+    }
+
+    /**
+     * Supprime un sommet réel et retriangule le trou laissé.
+     */
+    public void remove(int v) {
+        if (isSuperVertex(v) || removed[v]) {
+            throw new IllegalArgumentException("Sommet invalide : " + v);
+        }
+        Link link = link(v);
+        int[] hole = fillHole(link.ring);
+
+        Map<Long, Integer> edges = new HashMap<>();
+        int holeCount = hole.length / 3;
+        int[] created = new int[holeCount];
+        for (int h = 0; h < holeCount; h++) {
+            int nt = newTriangle(hole[3 * h], hole[3 * h + 1], hole[3 * h + 2], -1, -1, -1);
+            created[h] = nt;
+            for (int k = 0; k < 3; k++) {
+                edges.put(edgeKey(tv[3 * nt + (k + 1) % 3], tv[3 * nt + (k + 2) % 3]), 3 * nt + k);
+            }
+        }
+
+        int ringSize = link.ring.length;
+        for (int nt : created) {
+            for (int k = 0; k < 3; k++) {
+                int a = tv[3 * nt + (k + 1) % 3];
+                int b = tv[3 * nt + (k + 2) % 3];
+                Integer twin = edges.get(edgeKey(b, a));
+                if (twin != null) {
+                    tn[3 * nt + k] = twin / 3;
+                    continue;
+                }
+                // Arête du polygone : on se raccorde au triangle extérieur
+                for (int i = 0; i < ringSize; i++) {
+                    if (link.ring[i] == a && link.ring[(i + 1) % ringSize] == b) {
+                        int outer = link.outer[i];
+                        tn[3 * nt + k] = outer;
+                        if (outer >= 0) {
+                            replaceNeighbor(outer, link.triangles[i], nt);
+                        }
+                        break;
+                    }
+                }
+            }
+            for (int k = 0; k < 3; k++) {
+                vertexTriangle[tv[3 * nt + k]] = nt;
+            }
+        }
+
+        for (int t : link.triangles) {
+            release(t);
+        }
+        removed[v] = true;
+        lastTriangle = created[0];
+    }
+
+    /**
+     * Triangles qui rempliraient le trou si le sommet v était supprimé, sans
+     * modifier la triangulation. Tableau plat de triplets de sommets ; des
+     * sommets fictifs peuvent y figurer si v est sur l'enveloppe convexe.
+     */
+    public int[] linkTriangulation(int v) {
+        return fillHole(link(v).ring);
+    }
+
+    /**
+     * Triangles réels (sans sommet fictif), en triplets de sommets.
+     */
+    public int[] triangles() {
+        int count = 0;
+        int[] out = new int[3 * triangleSlots];
+        for (int t = 0; t < triangleSlots; t++) {
+            if (dead[t]) {
+                continue;
+            }
+            int a = tv[3 * t];
+            int b = tv[3 * t + 1];
+            int c = tv[3 * t + 2];
+            if (isSuperVertex(a) || isSuperVertex(b) || isSuperVertex(c)) {
+                continue;
+            }
+            out[3 * count] = a;
+            out[3 * count + 1] = b;
+            out[3 * count + 2] = c;
+            count++;
+        }
+        return Arrays.copyOf(out, 3 * count);
+    }
+
+    // ---------------------------
+    // Localisation et prédicats
+    // ---------------------------
+
+    private int locate(double x, double y) {
+        int t = lastTriangle;
+        if (dead[t]) {
+            t = firstAlive();
+        }
+        int maxSteps = 4 * triangleSlots + 16;
+        int start = 0;
+        for (int step = 0; step < maxSteps; step++) {
+            boolean moved = false;
+            for (int i = 0; i < 3; i++) {
+                int k = (start + i) % 3;
+                int a = tv[3 * t + (k + 1) % 3];
+                int b = tv[3 * t + (k + 2) % 3];
+                if (orient(a, b, x, y) < 0.0) {
+                    t = tn[3 * t + k];
+                    moved = true;
+                    break;
+                }
+            }
+            if (!moved) {
+                return t;
+            }
+            start = (start + 1) % 3;
+        }
+        return locateLinear(x, y);
+    }
+
+    private int locateLinear(double x, double y) {
+        for (int t = 0; t < triangleSlots; t++) {
+            if (!dead[t]
+                    && orient(tv[3 * t], tv[3 * t + 1], x, y) >= 0.0
+                    && orient(tv[3 * t + 1], tv[3 * t + 2], x, y) >= 0.0
+                    && orient(tv[3 * t + 2], tv[3 * t], x, y) >= 0.0) {
+                return t;
+            }
+        }
+        throw new IllegalStateException("Point non localisé dans la triangulation");
+    }
+
+    private int firstAlive() {
+        for (int t = 0; t < triangleSlots; t++) {
+            if (!dead[t]) {
+                return t;
+            }
+        }
+        throw new IllegalStateException("Triangulation vide");
+    }
+
+    /**
+     * Orientation robuste : le résultat flottant n'est gardé que si son signe
+     * est certain (borne d'erreur de Shewchuk), sinon il est recalculé
+     * exactement. Sans cela, des GCPs alignés sur le bord de l'image donnent
+     * des tests contradictoires et une enveloppe convexe trouée.
+     */
+    static double orient(double ax, double ay, double bx, double by, double cx, double cy) {
+        double left = (bx - ax) * (cy - ay);
+        double right = (by - ay) * (cx - ax);
+        double det = left - right;
+        if (Math.abs(det) > ORIENT_ERROR * (Math.abs(left) + Math.abs(right))) {
+            return det;
+        }
+        return exact(bx, ax).multiply(exact(cy, ay)).subtract(exact(by, ay).multiply(exact(cx, ax))).doubleValue();
+    }
+
+    /**
+     * d x (u - v), avec le même filtre que orient.
+     */
+    private static double cross(double dx, double dy, double ux, double uy, double vx, double vy) {
+        double left = dx * (uy - vy);
+        double right = dy * (ux - vx);
+        double det = left - right;
+        if (Math.abs(det) > ORIENT_ERROR * (Math.abs(left) + Math.abs(right))) {
+            return det;
+        }
+        return new BigDecimal(dx).multiply(exact(uy, vy))
+                .subtract(new BigDecimal(dy).multiply(exact(ux, vx))).doubleValue();
+    }
+
+    private static double cross(double ax, double ay, double bx, double by) {
+        return cross(ax, ay, bx, by, 0.0, 0.0);
+    }
+
+    private static BigDecimal exact(double a, double b) {
+        return new BigDecimal(a).subtract(new BigDecimal(b));
+    }
+
+    /**
+     * Orientation de (a, b, p). Un sommet fictif S est le point R·d avec
+     * R -> infini : orient(S, b, p) a le signe de d x (b - p), puis de b x p
+     * en cas d'égalité.
+     */
+    private double orient(int a, int b, double x, double y) {
+        boolean sa = isSuperVertex(a);
+        boolean sb = isSuperVertex(b);
+        if (!sa && !sb) {
+            return orient(vx[a], vy[a], vx[b], vy[b], x, y);
+        }
+        if (sa && sb) {
+            return cross(vx[a], vy[a], vx[b], vy[b]);
+        }
+        if (sa) {
+            double s = cross(vx[a], vy[a], vx[b], vy[b], x, y);
+            return s != 0.0 ? s : cross(vx[b], vy[b], x, y);
+        }
+        // orient(a, S, p) = orient(S, p, a)
+        double s = cross(vx[b], vy[b], x, y, vx[a], vy[a]);
+        return s != 0.0 ? s : cross(x, y, vx[a], vy[a]);
+    }
+
+    private double orient(int a, int b, int c) {
+        if (!isSuperVertex(c)) {
+            return orient(a, b, vx[c], vy[c]);
+        }
+        if (!isSuperVertex(a)) {
+            return orient(b, c, vx[a], vy[a]);
+        }
+        if (!isSuperVertex(b)) {
+            return orient(c, a, vx[b], vy[b]);
+        }
+        return orient(vx[a], vy[a], vx[b], vy[b], vx[c], vy[c]);
+    }
+
+    private boolean inCircle(int t, double x, double y) {
+        return inCircle(tv[3 * t], tv[3 * t + 1], tv[3 * t + 2], x, y);
+    }
+
+    /**
+     * Vrai si (x, y) est strictement dans le cercle circonscrit de (a, b, c),
+     * supposé dans le sens trigonométrique.
+     *
+     * Avec un sommet fictif, le cercle tend vers le demi-plan situé du côté
+     * du sommet fictif : c'est ce qui rend l'enveloppe convexe exacte. Avec
+     * deux, il tend vers le demi-plan c·(p - a) > 0, c étant la direction du
+     * centre du cercle passant par l'origine et les deux directions.
+     */
+    private boolean inCircle(int a, int b, int c, double x, double y) {
+        int supers = (isSuperVertex(a) ? 1 : 0) + (isSuperVertex(b) ? 1 : 0) + (isSuperVertex(c) ? 1 : 0);
+        if (supers == 3) {
+            return true;
+        }
+        // Rotation : sommet fictif en dernier (un seul) ou sommet réel en premier (deux)
+        while (supers == 1 ? !isSuperVertex(c) : supers == 2 && isSuperVertex(a)) {
+            int tmp = a;
+            a = b;
+            b = c;
+            c = tmp;
+        }
+        if (supers == 1) {
+            double side = orient(vx[a], vy[a], vx[b], vy[b], x, y);
+            if (side != 0.0) {
+                return side > 0.0;
+            }
+            // Point sur la droite (a, b) : dans le cercle s'il est entre a et b
+            return (x - vx[a]) * (vx[b] - vx[a]) + (y - vy[a]) * (vy[b] - vy[a]) > 0.0
+                    && (x - vx[b]) * (vx[a] - vx[b]) + (y - vy[b]) * (vy[a] - vy[b]) > 0.0;
+        }
+        if (supers == 2) {
+            // c·(p - a) = (c_y, -c_x) x (p - a)
+            double[] center = farCenter(b, c);
+            return cross(center[1], -center[0], x, y, vx[a], vy[a]) > 0.0;
+        }
+
+        double adx = vx[a] - x;
+        double ady = vy[a] - y;
+        double bdx = vx[b] - x;
+        double bdy = vy[b] - y;
+        double cdx = vx[c] - x;
+        double cdy = vy[c] - y;
+        double alift = adx * adx + ady * ady;
+        double blift = bdx * bdx + bdy * bdy;
+        double clift = cdx * cdx + cdy * cdy;
+        double det = alift * (bdx * cdy - cdx * bdy)
+                + blift * (cdx * ady - adx * cdy)
+                + clift * (adx * bdy - bdx * ady);
+        double permanent = alift * (Math.abs(bdx * cdy) + Math.abs(cdx * bdy))
+                + blift * (Math.abs(cdx * ady) + Math.abs(adx * cdy))
+                + clift * (Math.abs(adx * bdy) + Math.abs(bdx * ady));
+        if (Math.abs(det) > IN_CIRCLE_ERROR * permanent) {
+            return det > 0.0;
+        }
+        return exactInCircle(vx[a], vy[a], vx[b], vy[b], vx[c], vy[c], x, y) > 0;
+    }
+
+    private static int exactInCircle(double ax, double ay, double bx, double by, double cx, double cy,
+            double x, double y) {
+        BigDecimal adx = exact(ax, x);
+        BigDecimal ady = exact(ay, y);
+        BigDecimal bdx = exact(bx, x);
+        BigDecimal bdy = exact(by, y);
+        BigDecimal cdx = exact(cx, x);
+        BigDecimal cdy = exact(cy, y);
+        BigDecimal alift = adx.multiply(adx).add(ady.multiply(ady));
+        BigDecimal blift = bdx.multiply(bdx).add(bdy.multiply(bdy));
+        BigDecimal clift = cdx.multiply(cdx).add(cdy.multiply(cdy));
+        return alift.multiply(bdx.multiply(cdy).subtract(cdx.multiply(bdy)))
+                .add(blift.multiply(cdx.multiply(ady).subtract(adx.multiply(cdy))))
+                .add(clift.multiply(adx.multiply(bdy).subtract(bdx.multiply(ady))))
+                .signum();
+    }
+
+    /**
+     * Vrai si le sommet fictif d est dans le cercle circonscrit de (a, b, c).
+     * Seuls les cercles passant eux-mêmes par l'infini peuvent le contenir ;
+     * on compare alors à l'échelle R, où les sommets réels sont à l'origine.
+     */
+    private boolean superInCircle(int a, int b, int c, int d) {
+        int supers = (isSuperVertex(a) ? 1 : 0) + (isSuperVertex(b) ? 1 : 0) + (isSuperVertex(c) ? 1 : 0);
+        if (supers == 0) {
+            return false;
+        }
+        while (supers == 1 ? !isSuperVertex(c) : isSuperVertex(a)) {
+            int tmp = a;
+            a = b;
+            b = c;
+            c = tmp;
+        }
+        double dd = vx[d] * vx[d] + vy[d] * vy[d];
+        if (supers == 2) {
+            double[] center = farCenter(b, c);
+            return dd < 2.0 * (center[0] * vx[d] + center[1] * vy[d]);
+        }
+        // Cercle tangent à (a, b) en l'origine, passant par la direction de c
+        double nx = vy[a] - vy[b];
+        double ny = vx[b] - vx[a];
+        double nc = nx * vx[c] + ny * vy[c];
+        if (nc == 0.0) {
+            return false;
+        }
+        double t = (vx[c] * vx[c] + vy[c] * vy[c]) / (2.0 * nc);
+        return dd < 2.0 * t * (nx * vx[d] + ny * vy[d]);
+    }
+
+    /**
+     * Centre du cercle passant par l'origine et les directions des sommets
+     * fictifs i et j : solution de c·d_i = |d_i|²/2, c·d_j = |d_j|²/2.
+     */
+    private double[] farCenter(int i, int j) {
+        double ax = vx[i];
+        double ay = vy[i];
+        double bx = vx[j];
+        double by = vy[j];
+        double ra = (ax * ax + ay * ay) / 2.0;
+        double rb = (bx * bx + by * by) / 2.0;
+        double det = ax * by - ay * bx;
+        return new double[] { (ra * by - rb * ay) / det, (ax * rb - bx * ra) / det };
+    }
+
+    // ---------------------------
+    // Voisinage d'un sommet
+    // ---------------------------
+
+    private static final class Link {
+        private final int[] ring;
+        private final int[] outer;
+        private final int[] triangles;
+
+        Link(int[] ring, int[] outer, int[] triangles) {
+            this.ring = ring;
+            this.outer = outer;
+            this.triangles = triangles;
+        }
+    }
+
+    /**
+     * Parcourt les triangles incidents à v dans le sens trigonométrique :
+     * sommets du polygone voisin, triangle extérieur de chaque arête et
+     * triangle incident correspondant.
+     */
+    private Link link(int v) {
+        int t0 = vertexTriangle[v];
+        List<Integer> ring = new ArrayList<>();
+        List<Integer> outer = new ArrayList<>();
+        List<Integer> incident = new ArrayList<>();
+        int t = t0;
+        do {
+            int k = indexOf(t, v);
+            ring.add(tv[3 * t + (k + 1) % 3]);
+            outer.add(tn[3 * t + k]);
+            incident.add(t);
+            t = tn[3 * t + (k + 1) % 3];
+        } while (t != t0);
+
+        int size = ring.size();
+        int[] r = new int[size];
+        int[] o = new int[size];
+        int[] in = new int[size];
+        for (int i = 0; i < size; i++) {
+            r[i] = ring.get(i);
+            o[i] = outer.get(i);
+            in[i] = incident.get(i);
+        }
+        return new Link(r, o, in);
+    }
+
+    /**
+     * Triangulation de Delaunay d'un polygone étoilé (sens trigonométrique)
+     * par suppression d'oreilles : une oreille convexe dont le cercle
+     * circonscrit ne contient aucun autre sommet du polygone est un triangle
+     * de Delaunay.
+     */
+    private int[] fillHole(int[] ring) {
+        List<Integer> poly = new ArrayList<>(ring.length);
+        for (int r : ring) {
+            poly.add(r);
+        }
+        int[] out = new int[3 * (ring.length - 2)];
+        int count = 0;
+        while (poly.size() > 3) {
+            int size = poly.size();
+            int ear = -1;
+            int fallback = -1;
+            for (int i = 0; i < size && ear < 0; i++) {
+                int a = poly.get(i);
+                int b = poly.get((i + 1) % size);
+                int c = poly.get((i + 2) % size);
+                if (orient(a, b, c) <= 0.0) {
+                    continue;
+                }
+                if (fallback < 0) {
+                    fallback = i;
+                }
+                boolean empty = true;
+                for (int j = 0; j < size && empty; j++) {
+                    int d = poly.get(j);
+                    if (d == a || d == b || d == c) {
+                        continue;
+                    }
+                    if (isSuperVertex(d) ? superInCircle(a, b, c, d) : inCircle(a, b, c, vx[d], vy[d])) {
+                        empty = false;
+                    }
+                }
+                if (empty) {
+                    ear = i;
+                }
+            }
+            if (ear < 0) {
+                ear = fallback >= 0 ? fallback : 0;
+            }
+            out[count++] = poly.get(ear);
+            out[count++] = poly.get((ear + 1) % size);
+            out[count++] = poly.get((ear + 2) % size);
+            poly.remove((ear + 1) % size);
+        }
+        out[count++] = poly.get(0);
+        out[count++] = poly.get(1);
+        out[count] = poly.get(2);
+        return out;
+    }
+
+    // ---------------------------
+    // Stockage
+    // ---------------------------
+
+    private int addVertex(double x, double y) {
+        if (vertexCount == vx.length) {
+            int cap = vertexCount * 2;
+            vx = Arrays.copyOf(vx, cap);
+            vy = Arrays.copyOf(vy, cap);
+            vertexTriangle = Arrays.copyOf(vertexTriangle, cap);
+            removed = Arrays.copyOf(removed, cap);
+        }
+        vx[vertexCount] = x;
+        vy[vertexCount] = y;
+        return vertexCount++;
+    }
+
+    private int newTriangle(int a, int b, int c, int na, int nb, int nc) {
+        int t;
+        if (freeCount > 0) {
+            t = free[--freeCount];
+        } else {
+            if (triangleSlots == dead.length) {
+                int cap = triangleSlots * 2;
+                tv = Arrays.copyOf(tv, 3 * cap);
+                tn = Arrays.copyOf(tn, 3 * cap);
+                dead = Arrays.copyOf(dead, cap);
+                mark = Arrays.copyOf(mark, cap);
+            }
+            t = triangleSlots++;
+        }
+        tv[3 * t] = a;
+        tv[3 * t + 1] = b;
+        tv[3 * t + 2] = c;
+        tn[3 * t] = na;
+        tn[3 * t + 1] = nb;
+        tn[3 * t + 2] = nc;
+        dead[t] = false;
+        mark[t] = 0;
+        return t;
+    }
+
+    private void release(int t) {
+        dead[t] = true;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = t;
+    }
+
+    private void replaceNeighbor(int t, int oldNeighbor, int newNeighbor) {
+        for (int k = 0; k < 3; k++) {
+            if (tn[3 * t + k] == oldNeighbor) {
+                tn[3 * t + k] = newNeighbor;
+                return;
+            }
+        }
+    }
+
+    private int indexOf(int t, int v) {
+        if (tv[3 * t] == v) {
+            return 0;
+        }
+        return tv[3 * t + 1] == v ? 1 : 2;
+    }
+
+    private void nextStamp() {
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            stamp = 1;
+        }
+    }
+
+    private static long edgeKey(int a, int b) {
+        return ((long) a << 32) | (b & 0xffffffffL);
+    }
+}
@@ -0,0 +1,120 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.stream.IntStream;
+
+/**
+ * Grille de distorsion et d'incertitude d'une transformation polynomiale,
+ * évaluée au centre de cols x rows cellules couvrant l'étendue pixel de
+ * l'image.
+ *
+ * Les coordonnées source suivent la convention du module (QGIS, GDAL) :
+ * sourceX = colonne, sourceY = -ligne. La ligne 0 de la grille est le haut
+ * de l'image, son centre est évalué en sourceY = -0.5 · cellHeight.
+ *
+ * Pour chaque cellule :
+ * - échelle locale sqrt(|det J|), en unités carte par pixel ;
+ * - rotation des lignes de l'image sur la carte, atan2(dY/dx, dX/dx), en degrés ;
+ * - écart-type de position sigma * sqrt(2 h(t)), h(t) étant le levier du
+ *   point et sigma² la variance résiduelle par composante.
+ *
+ * Les lignes sont réparties en blocs évalués en parallèle, chaque bloc
+ * réutilisant ses propres tampons de termes.
+ */
+public final class DistortionGrid {
+
+    /** Taille de l'en-tête binaire : cols, rows (int32), cellWidth, cellHeight (float32). */
+    public static final int HEADER_BYTES = 16;
+
+    private final int cols;
+    private final int rows;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final float[] scale;
+    private final float[] rotation;
+    private final float[] sigma;
+
+    private DistortionGrid(int cols, int rows, double cellWidth, double cellHeight) {
+        this.cols = cols;
+        this.rows = rows;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.scale = new float[cols * rows];
+        this.rotation = new float[cols * rows];
+        this.sigma = new float[cols * rows];
+    }
+
+    /**
+     * @param residualVariance variance résiduelle par composante, NaN si elle
+     *                         n'est pas estimable (autant de points que de
+     *                         paramètres)
+     */
+    public static DistortionGrid evaluate(PolynomialFit fit, double residualVariance,
+            double width, double height, int cols, int rows) {
+        if (cols < 1 || rows < 1) {
+            throw new IllegalArgumentException("Grid must have at least one column and one row");
+        }
+        DistortionGrid grid = new DistortionGrid(cols, rows, width / cols, height / rows);
+        int p = PolynomialBasis.termCount(fit.getDegree());
+        int blocks = Math.min(rows, Runtime.getRuntime().availableProcessors() * 4);
+
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            double[] du = new double[p];
+            double[] dv = new double[p];
+            double[] terms = new double[p];
+            double[] work = new double[p];
+            double[] jacobian = new double[4];
+            int from = block * rows / blocks;
+            int to = (block + 1) * rows / blocks;
+            for (int row = from; row < to; row++) {
+                double y = -(row + 0.5) * grid.cellHeight;
+                int offset = row * cols;
+                for (int col = 0; col < cols; col++) {
+                    double x = (col + 0.5) * grid.cellWidth;
+                    fit.jacobian(x, y, du, dv, jacobian);
+                    double det = jacobian[0] * jacobian[3] - jacobian[1] * jacobian[2];
+                    grid.scale[offset + col] = (float) Math.sqrt(Math.abs(det));
+                    grid.rotation[offset + col] = (float) Math.toDegrees(Math.atan2(jacobian[2], jacobian[0]));
+                    grid.sigma[offset + col] = (float) Math.sqrt(
+                            2.0 * residualVariance * fit.leverage(x, y, terms, work));
+                }
+            }
+        });
+        return grid;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public float scale(int col, int row) {
+        return scale[row * cols + col];
+    }
+
+    public float rotation(int col, int row) {
+        return rotation[row * cols + col];
+    }
+
+    public float sigma(int col, int row) {
+        return sigma[row * cols + col];
+    }
+
+    /**
+     * Encodage binaire little-endian : en-tête (cols, rows en int32,
+     * largeur et hauteur de cellule en float32) suivi des trois bandes
+     * échelle, rotation et sigma, chacune en float32 ligne par ligne.
+     */
+    public byte[] toByteArray() {
+        int cells = cols * rows;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 3 * cells * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(cols).putInt(rows).putFloat((float) cellWidth).putFloat((float) cellHeight);
+        buffer.asFloatBuffer().put(scale).put(rotation).put(sigma);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,159 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+/**
+ * Transformation de Helmert (similitude à 4 paramètres) en forme close.
+ *
+ * X = a·x - b·y + tx, Y = b·x + a·y + ty. Après centrage, les moindres
+ * carrés se réduisent à quelques sommes : pas de matrice de design, pas
+ * d'allocation. Les sommes étant additives, le leave-one-out retire la
+ * contribution de chaque point en O(1).
+ */
+public final class Helmert {
+
+    public static final int MIN_POINTS = 2;
+    public static final int PARAMETERS = 4;
+
+    private static final double DEGENERATE = 1e-12;
+
+    private Helmert() {
+    }
+
+    /**
+     * @param params reçoit (a, b, tx, ty)
+     * @throws IllegalArgumentException si les points source sont confondus
+     */
+    public static void fit(double[] x, double[] y, double[] mapX, double[] mapY, double[] params) {
+        int n = x.length;
+        double ox = 0.0;
+        double oy = 0.0;
+        double oX = 0.0;
+        double oY = 0.0;
+        for (int i = 0; i < n; i++) {
+            ox += x[i];
+            oy += y[i];
+            oX += mapX[i];
+            oY += mapY[i];
+        }
+        ox /= n;
+        oy /= n;
+        oX /= n;
+        oY /= n;
+
+        double sq = 0.0;
+        double p = 0.0;
+        double q = 0.0;
+        for (int i = 0; i < n; i++) {
+            double u = x[i] - ox;
+            double v = y[i] - oy;
+            double du = mapX[i] - oX;
+            double dv = mapY[i] - oY;
+            sq += u * u + v * v;
+            p += u * du + v * dv;
+            q += u * dv - v * du;
+        }
+        if (sq <= DEGENERATE * (ox * ox + oy * oy + 1.0)) {
+            throw new IllegalArgumentException("Helmert : points source confondus");
+        }
+
+        double a = p / sq;
+        double b = q / sq;
+        params[0] = a;
+        params[1] = b;
+        params[2] = oX - a * ox + b * oy;
+        params[3] = oY - b * ox - a * oy;
+    }
+
+    public static double transformX(double[] params, double x, double y) {
+        return params[0] * x - params[1] * y + params[2];
+    }
+
+    public static double transformY(double[] params, double x, double y) {
+        return params[1] * x + params[0] * y + params[3];
+    }
+
+    public static void transform(double[] params, double[] x, double[] y, double[] outX, double[] outY) {
+        double a = params[0];
+        double b = params[1];
+        for (int i = 0; i < x.length; i++) {
+            outX[i] = a * x[i] - b * y[i] + params[2];
+            outY[i] = b * x[i] + a * y[i] + params[3];
+        }
+    }
+
+    /**
+     * Erreurs leave-one-out (observé - prédit sans le point). Les sommes
+     * sont accumulées une fois autour du centroïde global, puis chaque point
+     * en est retiré. NaN si le reste ne détermine pas la transformation.
+     */
+    public static void leaveOneOutErrors(double[] x, double[] y, double[] mapX, double[] mapY,
+            double[] errX, double[] errY) {
+        int n = x.length;
+        double ox = 0.0;
+        double oy = 0.0;
+        double oX = 0.0;
+        double oY = 0.0;
+        for (int i = 0; i < n; i++) {
+            ox += x[i];
+            oy += y[i];
+            oX += mapX[i];
+            oY += mapY[i];
+        }
+        ox /= n;
+        oy /= n;
+        oX /= n;
+        oY /= n;
+
+        // Sommes brutes en coordonnées centrées
+        double su = 0.0;
+        double sv = 0.0;
+        double sU = 0.0;
+        double sV = 0.0;
+        double sq = 0.0;
+        double p = 0.0;
+        double q = 0.0;
+        for (int i = 0; i < n; i++) {
+            double u = x[i] - ox;
+            double v = y[i] - oy;
+            double du = mapX[i] - oX;
+            double dv = mapY[i] - oY;
+            su += u;
+            sv += v;
+            sU += du;
+            sV += dv;
+            sq += u * u + v * v;
+            p += u * du + v * dv;
+            q += u * dv - v * du;
+        }
+
+        int m = n - 1;
+        for (int i = 0; i < n; i++) {
+            double u = x[i] - ox;
+            double v = y[i] - oy;
+            double du = mapX[i] - oX;
+            double dv = mapY[i] - oY;
+            if (m < MIN_POINTS) {
+                errX[i] = Double.NaN;
+                errY[i] = Double.NaN;
+                continue;
+            }
+
+            double mu = (su - u) / m;
+            double mv = (sv - v) / m;
+            double mU = (sU - du) / m;
+            double mV = (sV - dv) / m;
+            double den = (sq - u * u - v * v) - m * (mu * mu + mv * mv);
+            if (den <= DEGENERATE * sq) {
+                errX[i] = Double.NaN;
+                errY[i] = Double.NaN;
+                continue;
+            }
+            double a = ((p - u * du - v * dv) - m * (mu * mU + mv * mV)) / den;
+            double b = ((q - u * dv + v * du) - m * (mu * mV - mv * mU)) / den;
+
+            double predictedU = mU + a * (u - mu) - b * (v - mv);
+            double predictedV = mV + b * (u - mu) + a * (v - mv);
+            errX[i] = du - predictedU;
+            errY[i] = dv - predictedV;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+/**
+ * Factorisation QR "économique" par réflexions de Householder.
+ *
+ * La matrice m x n est stockée en colonnes dans un tableau plat et
+ * factorisée sur place : R occupe le triangle supérieur, les vecteurs de
+ * Householder le triangle inférieur. Q n'est jamais formée ; les
+ * réflexions sont appliquées directement aux seconds membres, soit O(m·n)
+ * en mémoire et O(m·n²) en calcul au lieu de O(m²) et O(m²·n).
+ *
+ * Le pivotage de colonnes est optionnel. Il permet de traiter les
+ * systèmes de rang déficient (points alignés) en annulant les paramètres
+ * des colonnes dépendantes.
+ */
+public final class HouseholderQr implements TriangularFactor {
+
+    private final int m;
+    private final int n;
+    private final double[] qr;
+    private final double[] rDiag;
+    private final int[] perm;
+    private final int rank;
+
+    /**
+     * @param a        matrice m x n en colonnes, écrasée par la factorisation
+     * @param pivoting active le pivotage de colonnes
+     */
+    public HouseholderQr(double[] a, int m, int n, boolean pivoting) {
+        if (m < n) {
+            throw new IllegalArgumentException("La matrice doit avoir au moins autant de lignes que de colonnes");
+        }
+        this.m = m;
+        this.n = n;
+        this.qr = a;
+        this.rDiag = new double[n];
+        this.perm = new int[n];
+        for (int j = 0; j < n; j++) {
+            perm[j] = j;
+        }
+
+        for (int k = 0; k < n; k++) {
+            if (pivoting) {
+                pivot(k);
+            }
+
+            int ck = k * m;
+            double nrm = 0.0;
+            for (int i = k; i < m; i++) {
+                nrm += qr[ck + i] * qr[ck + i];
+            }
+            nrm = Math.sqrt(nrm);
+
+            if (nrm != 0.0) {
+                if (qr[ck + k] < 0) {
+                    nrm = -nrm;
+                }
+                for (int i = k; i < m; i++) {
+                    qr[ck + i] /= nrm;
+                }
+                qr[ck + k] += 1.0;
+
+                for (int j = k + 1; j < n; j++) {
+                    int cj = j * m;
+                    double s = 0.0;
+                    for (int i = k; i < m; i++) {
+                        s += qr[ck + i] * qr[cj + i];
+                    }
+                    s = -s / qr[ck + k];
+                    for (int i = k; i < m; i++) {
+                        qr[cj + i] += s * qr[ck + i];
+                    }
+                }
+            }
+            rDiag[k] = -nrm;
+        }
+
+        this.rank = computeRank(pivoting);
+    }
+
+    private void pivot(int k) {
+        int best = k;
+        double bestNorm = -1.0;
+        for (int j = k; j < n; j++) {
+            int cj = j * m;
+            double s = 0.0;
+            for (int i = k; i < m; i++) {
+                s += qr[cj + i] * qr[cj + i];
+            }
+            if (s > bestNorm) {
+                bestNorm = s;
+                best = j;
+            }
+        }
+        if (best != k) {
+            int cb = best * m;
+            int ck = k * m;
+            for (int i = 0; i < m; i++) {
+                double tmp = qr[ck + i];
+                qr[ck + i] = qr[cb + i];
+                qr[cb + i] = tmp;
+            }
+            int tp = perm[k];
+            perm[k] = perm[best];
+            perm[best] = tp;
+        }
+    }
+
+    private int computeRank(boolean pivoting) {
+        double max = 0.0;
+        for (double d : rDiag) {
+            max = Math.max(max, Math.abs(d));
+        }
+        double tol = Math.max(m, n) * Math.ulp(1.0) * max;
+        int r = 0;
+        for (int k = 0; k < n; k++) {
+            if (Math.abs(rDiag[k]) > tol) {
+                r++;
+            } else if (pivoting) {
+                break;
+            }
+        }
+        return r;
+    }
+
+    public int rows() {
+        return m;
+    }
+
+    public int cols() {
+        return n;
+    }
+
+    public int rank() {
+        return rank;
+    }
+
+    public boolean isFullRank() {
+        return rank == n;
+    }
+
+    /**
+     * Élément R[i][j] (i <= j) dans l'ordre des colonnes pivotées.
+     */
+    public double r(int i, int j) {
+        return i == j ? rDiag[i] : qr[j * m + i];
+    }
+
+    /**
+     * Indice d'origine de la k-ième colonne pivotée.
+     */
+    public int permutation(int k) {
+        return perm[k];
+    }
+
+    /**
+     * Applique Q^T sur place aux seconds membres fournis, en un seul
+     * passage par réflexion.
+     */
+    public void applyQt(double[]... rhs) {
+        for (int k = 0; k < n; k++) {
+            if (rDiag[k] == 0.0) {
+                continue;
+            }
+            int ck = k * m;
+            double hk = qr[ck + k];
+            for (double[] b : rhs) {
+                double s = 0.0;
+                for (int i = k; i < m; i++) {
+                    s += qr[ck + i] * b[i];
+                }
+                s = -s / hk;
+                for (int i = k; i < m; i++) {
+                    b[i] += s * qr[ck + i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Résout R x = (Q^T b)[0..rank-1] par substitution arrière. qtb doit déjà
+     * contenir Q^T b. Les paramètres des colonnes hors rang sont mis à zéro et
+     * x est rendu dans l'ordre d'origine des colonnes.
+     */
+    public void backSubstitute(double[] qtb, double[] x) {
+        double[] y = new double[n];
+        for (int k = rank - 1; k >= 0; k--) {
+            double sum = qtb[k];
+            for (int j = k + 1; j < rank; j++) {
+                sum -= qr[j * m + k] * y[j];
+            }
+            y[k] = sum / rDiag[k];
+        }
+        for (int k = 0; k < n; k++) {
+            x[perm[k]] = y[k];
+        }
+    }
+
+    @Override
+    public double leverage(double[] terms, double[] w) {
+        double h = 0.0;
+        for (int k = 0; k < rank; k++) {
+            double sum = terms[perm[k]];
+            for (int i = 0; i < k; i++) {
+                sum -= qr[k * m + i] * w[i];
+            }
+            w[k] = sum / rDiag[k];
+            h += w[k] * w[k];
+        }
+        return h;
+    }
+
+    /**
+     * Résout au sens des moindres carrés A x1 = b1 et A x2 = b2 avec la même
+     * factorisation. b1 et b2 sont écrasés par Q^T b.
+     */
+    public void solve(double[] b1, double[] b2, double[] x1, double[] x2) {
+        applyQt(b1, b2);
+        backSubstitute(b1, x1);
+        backSubstitute(b2, x2);
+    }
+}
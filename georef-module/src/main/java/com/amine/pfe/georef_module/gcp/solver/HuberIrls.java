@@ -0,0 +1,68 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import java.util.Arrays;
+
+/**
+ * Moindres carrés itérativement repondérés (IRLS) avec la perte de Huber.
+ *
+ * À chaque itération, l'échelle σ est réestimée à partir de la médiane des
+ * distances de résidus (RobustScale.sigma) ; un point à moins de k·σ garde
+ * un poids de 1, au-delà son poids décroît en k·σ / d. Un point dont la
+ * distance finale dépasse 3·σ est marqué comme aberrant.
+ */
+public final class HuberIrls {
+
+    public static final double DEFAULT_K = 1.345;
+    static final double OUTLIER_CUTOFF = 3.0;
+
+    private final double k;
+    private final int maxIterations;
+    private final double tolerance;
+
+    public HuberIrls() {
+        this(DEFAULT_K, 50, 1e-6);
+    }
+
+    public HuberIrls(double k, int maxIterations, double tolerance) {
+        this.k = k;
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+    }
+
+    public RobustFit fit(double[] x, double[] y, double[] mapX, double[] mapY, int degree) {
+        int m = x.length;
+        double[] weights = new double[m];
+        Arrays.fill(weights, 1.0);
+
+        PolynomialFit fit = PolynomialFit.fit(x, y, mapX, mapY, degree);
+        double[] d = RobustScale.distances(fit, x, y, mapX, mapY);
+        double sigma = RobustScale.sigma(d);
+
+        for (int iter = 0; iter < maxIterations && sigma > 0.0; iter++) {
+            double maxChange = 0.0;
+            for (int i = 0; i < m; i++) {
+                double w = d[i] <= k * sigma ? 1.0 : k * sigma / d[i];
+                maxChange = Math.max(maxChange, Math.abs(w - weights[i]));
+                weights[i] = w;
+            }
+
+            fit = PolynomialFit.fit(x, y, mapX, mapY, weights, degree);
+            d = RobustScale.distances(fit, x, y, mapX, mapY);
+            sigma = RobustScale.sigma(d);
+
+            if (maxChange < tolerance) {
+                break;
+            }
+        }
+
+        boolean[] inliers = new boolean[m];
+        for (int i = 0; i < m; i++) {
+            // σ nul : plus de la moitié des points sont ajustés exactement
+            inliers[i] = sigma > 0.0 ? d[i] <= OUTLIER_CUTOFF * sigma : d[i] == 0.0;
+            if (sigma == 0.0 && !inliers[i]) {
+                weights[i] = 0.0;
+            }
+        }
+        return new RobustFit(fit, inliers, weights, sigma);
+    }
+}
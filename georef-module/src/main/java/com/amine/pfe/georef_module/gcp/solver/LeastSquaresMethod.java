@@ -0,0 +1,11 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+/**
+ * Solveur utilisé par ResidualsServiceImpl (propriété georef.residuals.solver).
+ */
+public enum LeastSquaresMethod {
+    /** QR économique : une factorisation pour mapX et mapY, sans matrice Q. */
+    HOUSEHOLDER,
+    /** QR historique : Q complète m x m, une factorisation par composante. */
+    FULL_QR
+}
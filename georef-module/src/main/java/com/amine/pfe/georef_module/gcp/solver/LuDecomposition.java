@@ -0,0 +1,102 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+/**
+ * Décomposition LU avec pivotage partiel d'une matrice carrée n x n stockée
+ * par lignes dans un tableau plat, factorisée sur place.
+ *
+ * Adaptée aux systèmes symétriques indéfinis (noyau de spline) pour
+ * lesquels Cholesky ne s'applique pas.
+ */
+public final class LuDecomposition {
+
+    private final int n;
+    private final double[] lu;
+    private final int[] piv;
+
+    /**
+     * @param a matrice n x n par lignes, écrasée par la factorisation
+     * @throws IllegalArgumentException si la matrice est singulière
+     */
+    public LuDecomposition(double[] a, int n) {
+        this.n = n;
+        this.lu = a;
+        this.piv = new int[n];
+
+        double max = 0.0;
+        for (double value : a) {
+            max = Math.max(max, Math.abs(value));
+        }
+        double tol = n * Math.ulp(1.0) * max;
+
+        for (int k = 0; k < n; k++) {
+            int p = k;
+            double best = Math.abs(lu[k * n + k]);
+            for (int i = k + 1; i < n; i++) {
+                double v = Math.abs(lu[i * n + k]);
+                if (v > best) {
+                    best = v;
+                    p = i;
+                }
+            }
+            if (best <= tol) {
+                throw new IllegalArgumentException("Matrice singulière");
+            }
+            piv[k] = p;
+            int rk = k * n;
+            if (p != k) {
+                int rp = p * n;
+                for (int j = 0; j < n; j++) {
+                    double tmp = lu[rk + j];
+                    lu[rk + j] = lu[rp + j];
+                    lu[rp + j] = tmp;
+                }
+            }
+
+            double pivot = lu[rk + k];
+            for (int i = k + 1; i < n; i++) {
+                int ri = i * n;
+                double f = lu[ri + k] / pivot;
+                lu[ri + k] = f;
+                if (f != 0.0) {
+                    for (int j = k + 1; j < n; j++) {
+                        lu[ri + j] -= f * lu[rk + j];
+                    }
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Résout A x = b sur place (b est remplacé par x).
+     */
+    public void solve(double[] b) {
+        for (int k = 0; k < n; k++) {
+            int p = piv[k];
+            if (p != k) {
+                double tmp = b[k];
+                b[k] = b[p];
+                b[p] = tmp;
+            }
+        }
+        for (int i = 1; i < n; i++) {
+            int ri = i * n;
+            double sum = b[i];
+            for (int j = 0; j < i; j++) {
+                sum -= lu[ri + j] * b[j];
+            }
+            b[i] = sum;
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            int ri = i * n;
+            double sum = b[i];
+            for (int j = i + 1; j < n; j++) {
+                sum -= lu[ri + j] * b[j];
+            }
+            b[i] = sum / lu[ri + i];
+        }
+    }
+}
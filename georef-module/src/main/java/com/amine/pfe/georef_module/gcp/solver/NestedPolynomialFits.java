@@ -0,0 +1,197 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+/**
+ * Ajustements polynomiaux de tous les degrés admissibles à partir d'une
+ * seule factorisation QR.
+ *
+ * La base étant graduée, les colonnes du degré d forment un préfixe de la
+ * matrice de design du degré maximal. Sans pivotement, R[0..p_d-1][0..p_d-1]
+ * et les p_d premières composantes de Q^T b sont exactement ceux qu'aurait
+ * donnés la factorisation du seul degré d : une substitution arrière sur ce
+ * préfixe suffit pour chaque degré. De même, la substitution avant
+ * R^T w = a_i est triangulaire, et le levier du degré d est la somme
+ * cumulée des w_k² jusqu'à p_d.
+ */
+public final class NestedPolynomialFits {
+
+    private final int m;
+    private final int maxDegree;
+    private final double cx;
+    private final double cy;
+    private final double scale;
+    private final double[][] paramsX;
+    private final double[][] paramsY;
+    // leverages[d - 1][i] : levier du point i pour le degré d
+    private final double[][] leverages;
+
+    private NestedPolynomialFits(int m, int maxDegree, double cx, double cy, double scale,
+            double[][] paramsX, double[][] paramsY, double[][] leverages) {
+        this.m = m;
+        this.maxDegree = maxDegree;
+        this.cx = cx;
+        this.cy = cy;
+        this.scale = scale;
+        this.paramsX = paramsX;
+        this.paramsY = paramsY;
+        this.leverages = leverages;
+    }
+
+    /**
+     * Ajuste les degrés 1..maxDegree. Un degré n'est retenu que s'il a au
+     * moins autant de points que de paramètres et si les colonnes de son
+     * préfixe sont numériquement indépendantes ; les degrés supérieurs à
+     * un degré rejeté le sont aussi.
+     */
+    public static NestedPolynomialFits fit(double[] x, double[] y, double[] mapX, double[] mapY,
+            int maxDegree) {
+        int m = x.length;
+        int top = 0;
+        for (int d = 1; d <= maxDegree; d++) {
+            if (PolynomialBasis.termCount(d) <= m) {
+                top = d;
+            }
+        }
+        if (top == 0) {
+            return new NestedPolynomialFits(m, 0, 0.0, 0.0, 1.0,
+                    new double[0][], new double[0][], new double[0][]);
+        }
+
+        double cx = 0.0;
+        double cy = 0.0;
+        for (int i = 0; i < m; i++) {
+            cx += x[i];
+            cy += y[i];
+        }
+        cx /= m;
+        cy /= m;
+
+        double scale = 0.0;
+        for (int i = 0; i < m; i++) {
+            scale = Math.max(scale, Math.max(Math.abs(x[i] - cx), Math.abs(y[i] - cy)));
+        }
+        if (scale == 0.0) {
+            scale = 1.0;
+        }
+
+        int p = PolynomialBasis.termCount(top);
+        double[] a = PolynomialBasis.designMatrix(x, y, m, top, cx, cy, scale);
+        HouseholderQr qr = new HouseholderQr(a, m, p, false);
+
+        double maxDiag = 0.0;
+        for (int k = 0; k < p; k++) {
+            maxDiag = Math.max(maxDiag, Math.abs(qr.r(k, k)));
+        }
+        double tol = Math.max(m, p) * Math.ulp(1.0) * maxDiag;
+        int independent = 0;
+        while (independent < p && Math.abs(qr.r(independent, independent)) > tol) {
+            independent++;
+        }
+        int admissible = 0;
+        for (int d = 1; d <= top; d++) {
+            if (PolynomialBasis.termCount(d) <= independent) {
+                admissible = d;
+            }
+        }
+        if (admissible == 0) {
+            return new NestedPolynomialFits(m, 0, cx, cy, scale,
+                    new double[0][], new double[0][], new double[0][]);
+        }
+
+        double[] qtbX = mapX.clone();
+        double[] qtbY = mapY.clone();
+        qr.applyQt(qtbX, qtbY);
+
+        double[][] paramsX = new double[admissible][];
+        double[][] paramsY = new double[admissible][];
+        for (int d = 1; d <= admissible; d++) {
+            int pd = PolynomialBasis.termCount(d);
+            paramsX[d - 1] = backSubstitute(qr, qtbX, pd);
+            paramsY[d - 1] = backSubstitute(qr, qtbY, pd);
+        }
+
+        int pMax = PolynomialBasis.termCount(admissible);
+        double[][] leverages = new double[admissible][m];
+        double[] terms = new double[pMax];
+        double[] w = new double[pMax];
+        double inv = 1.0 / scale;
+        for (int i = 0; i < m; i++) {
+            PolynomialBasis.fillTerms((x[i] - cx) * inv, (y[i] - cy) * inv, admissible, terms);
+            double h = 0.0;
+            int d = 1;
+            for (int k = 0; k < pMax; k++) {
+                double sum = terms[k];
+                for (int j = 0; j < k; j++) {
+                    sum -= qr.r(j, k) * w[j];
+                }
+                w[k] = sum / qr.r(k, k);
+                h += w[k] * w[k];
+                if (k + 1 == PolynomialBasis.termCount(d)) {
+                    leverages[d - 1][i] = h;
+                    d++;
+                }
+            }
+        }
+
+        return new NestedPolynomialFits(m, admissible, cx, cy, scale, paramsX, paramsY, leverages);
+    }
+
+    private static double[] backSubstitute(HouseholderQr qr, double[] qtb, int p) {
+        double[] params = new double[p];
+        for (int k = p - 1; k >= 0; k--) {
+            double sum = qtb[k];
+            for (int j = k + 1; j < p; j++) {
+                sum -= qr.r(k, j) * params[j];
+            }
+            params[k] = sum / qr.r(k, k);
+        }
+        return params;
+    }
+
+    /**
+     * Plus haut degré ajusté, 0 si même l'affinité est indéterminée.
+     */
+    public int getMaxDegree() {
+        return maxDegree;
+    }
+
+    public void transform(int degree, double[] x, double[] y, double[] outX, double[] outY) {
+        checkDegree(degree);
+        double[] px = paramsX[degree - 1];
+        double[] py = paramsY[degree - 1];
+        double inv = 1.0 / scale;
+        for (int i = 0; i < x.length; i++) {
+            double u = (x[i] - cx) * inv;
+            double v = (y[i] - cy) * inv;
+            outX[i] = PolynomialBasis.evaluate(px, u, v, degree);
+            outY[i] = PolynomialBasis.evaluate(py, u, v, degree);
+        }
+    }
+
+    /**
+     * Erreurs de prédiction leave-one-out e_i / (1 - h_ii) des points
+     * d'ajustement pour le degré donné ; NaN quand 1 - h_ii < tolerance.
+     */
+    public void leaveOneOutErrors(int degree, double[] x, double[] y, double[] mapX, double[] mapY,
+            double tolerance, double[] errX, double[] errY) {
+        double[] estX = new double[m];
+        double[] estY = new double[m];
+        transform(degree, x, y, estX, estY);
+        double[] h = leverages[degree - 1];
+        for (int i = 0; i < m; i++) {
+            double oneMinusH = 1.0 - h[i];
+            if (oneMinusH < tolerance) {
+                errX[i] = Double.NaN;
+                errY[i] = Double.NaN;
+            } else {
+                errX[i] = (mapX[i] - estX[i]) / oneMinusH;
+                errY[i] = (mapY[i] - estY[i]) / oneMinusH;
+            }
+        }
+    }
+
+    private void checkDegree(int degree) {
+        if (degree < 1 || degree > maxDegree) {
+            throw new IllegalArgumentException("Degree " + degree + " was not fitted");
+        }
+    }
+}
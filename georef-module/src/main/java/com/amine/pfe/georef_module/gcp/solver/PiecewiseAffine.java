@@ -0,0 +1,259 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import java.util.Arrays;
+
+/**
+ * Transformation affine par morceaux : chaque triangle de la triangulation
+ * de Delaunay des GCPs porte l'affinité qui envoie ses trois sommets sur
+ * leurs coordonnées carte.
+ *
+ * La transformation passe exactement par tous les points de contrôle. Les
+ * points hors de l'enveloppe convexe sont transformés par l'affinité
+ * globale ajustée par moindres carrés sur tous les GCPs.
+ */
+public final class PiecewiseAffine {
+
+    private static final double DEGENERATE_AREA = 1e-10;
+
+    private final double cx;
+    private final double cy;
+    private final double scale;
+    private final double[] coeffX;
+    private final double[] coeffY;
+    private final TriangleLocator locator;
+    private final PolynomialFit outside;
+
+    private PiecewiseAffine(double cx, double cy, double scale, double[] coeffX, double[] coeffY,
+            TriangleLocator locator, PolynomialFit outside) {
+        this.cx = cx;
+        this.cy = cy;
+        this.scale = scale;
+        this.coeffX = coeffX;
+        this.coeffY = coeffY;
+        this.locator = locator;
+        this.outside = outside;
+    }
+
+    /**
+     * Triangule les points source et construit la transformation.
+     *
+     * @throws IllegalArgumentException si des points source sont dupliqués ou
+     *                                  tous alignés
+     */
+    public static PiecewiseAffine fit(double[] x, double[] y, double[] mapX, double[] mapY) {
+        int n = x.length;
+        double cx = 0.0;
+        double cy = 0.0;
+        for (int i = 0; i < n; i++) {
+            cx += x[i];
+            cy += y[i];
+        }
+        cx /= n;
+        cy /= n;
+        double scale = 0.0;
+        for (int i = 0; i < n; i++) {
+            scale = Math.max(scale, Math.max(Math.abs(x[i] - cx), Math.abs(y[i] - cy)));
+        }
+        if (scale == 0.0) {
+            scale = 1.0;
+        }
+
+        DelaunayTriangulation dt = new DelaunayTriangulation();
+        double[] mapXByVertex = new double[n + DelaunayTriangulation.SUPER_VERTICES];
+        double[] mapYByVertex = new double[n + DelaunayTriangulation.SUPER_VERTICES];
+        for (int i = 0; i < n; i++) {
+            int v = dt.insert((x[i] - cx) / scale, (y[i] - cy) / scale);
+            if (v < 0) {
+                throw new IllegalArgumentException("Points source dupliqués : triangulation impossible");
+            }
+            mapXByVertex[v] = mapX[i];
+            mapYByVertex[v] = mapY[i];
+        }
+        return build(dt, cx, cy, scale, mapXByVertex, mapYByVertex, PolynomialFit.fit(x, y, mapX, mapY, 1));
+    }
+
+    /**
+     * @param dt           triangulation en coordonnées normalisées (x - cx) / scale
+     * @param mapXByVertex coordonnée carte X indexée par sommet de dt
+     * @param mapYByVertex coordonnée carte Y indexée par sommet de dt
+     * @param outside      affinité globale utilisée hors de l'enveloppe
+     */
+    public static PiecewiseAffine build(DelaunayTriangulation dt, double cx, double cy, double scale,
+            double[] mapXByVertex, double[] mapYByVertex, PolynomialFit outside) {
+        int[] triangles = dt.triangles();
+        int count = triangles.length / 3;
+        double[] coords = new double[6 * count];
+        double[] coeffX = new double[3 * count];
+        double[] coeffY = new double[3 * count];
+        int n = 0;
+        for (int t = 0; t < count; t++) {
+            int a = triangles[3 * t];
+            int b = triangles[3 * t + 1];
+            int c = triangles[3 * t + 2];
+            coords[6 * n] = dt.x(a);
+            coords[6 * n + 1] = dt.y(a);
+            coords[6 * n + 2] = dt.x(b);
+            coords[6 * n + 3] = dt.y(b);
+            coords[6 * n + 4] = dt.x(c);
+            coords[6 * n + 5] = dt.y(c);
+            if (isDegenerate(coords, 6 * n)) {
+                continue;
+            }
+            affine(coords, 6 * n, mapXByVertex[a], mapXByVertex[b], mapXByVertex[c], coeffX, 3 * n);
+            affine(coords, 6 * n, mapYByVertex[a], mapYByVertex[b], mapYByVertex[c], coeffY, 3 * n);
+            n++;
+        }
+        if (n == 0) {
+            throw new IllegalArgumentException("Triangulation impossible : points source alignés");
+        }
+        coeffX = Arrays.copyOf(coeffX, 3 * n);
+        coeffY = Arrays.copyOf(coeffY, 3 * n);
+        return new PiecewiseAffine(cx, cy, scale, coeffX, coeffY, new TriangleLocator(coords, n), outside);
+    }
+
+    /**
+     * Triangle plat (points source quasi alignés sur l'enveloppe) : son
+     * affinité est mal conditionnée, il est laissé à l'affinité globale.
+     */
+    private static boolean isDegenerate(double[] coords, int o) {
+        double du1 = coords[o + 2] - coords[o];
+        double dv1 = coords[o + 3] - coords[o + 1];
+        double du2 = coords[o + 4] - coords[o];
+        double dv2 = coords[o + 5] - coords[o + 1];
+        double du3 = coords[o + 4] - coords[o + 2];
+        double dv3 = coords[o + 5] - coords[o + 3];
+        double longest = Math.max(du1 * du1 + dv1 * dv1, Math.max(du2 * du2 + dv2 * dv2, du3 * du3 + dv3 * dv3));
+        return Math.abs(du1 * dv2 - dv1 * du2) <= DEGENERATE_AREA * longest;
+    }
+
+    /**
+     * Coefficients (c0, c1, c2) de f = c0 + c1 u + c2 v passant par les
+     * valeurs fa, fb, fc aux trois sommets.
+     */
+    private static void affine(double[] coords, int o, double fa, double fb, double fc, double[] out, int k) {
+        double ua = coords[o];
+        double va = coords[o + 1];
+        double du1 = coords[o + 2] - ua;
+        double dv1 = coords[o + 3] - va;
+        double du2 = coords[o + 4] - ua;
+        double dv2 = coords[o + 5] - va;
+        double det = du1 * dv2 - dv1 * du2;
+        double c1 = ((fb - fa) * dv2 - dv1 * (fc - fa)) / det;
+        double c2 = (du1 * (fc - fa) - (fb - fa) * du2) / det;
+        out[k] = fa - c1 * ua - c2 * va;
+        out[k + 1] = c1;
+        out[k + 2] = c2;
+    }
+
+    public int triangleCount() {
+        return coeffX.length / 3;
+    }
+
+    public double transformX(double x, double y) {
+        double[] out = new double[2];
+        transform(x, y, out);
+        return out[0];
+    }
+
+    public double transformY(double x, double y) {
+        double[] out = new double[2];
+        transform(x, y, out);
+        return out[1];
+    }
+
+    private void transform(double x, double y, double[] out) {
+        double u = (x - cx) / scale;
+        double v = (y - cy) / scale;
+        int t = locator.find(u, v);
+        if (t < 0) {
+            out[0] = outside.transformX(x, y);
+            out[1] = outside.transformY(x, y);
+        } else {
+            out[0] = coeffX[3 * t] + coeffX[3 * t + 1] * u + coeffX[3 * t + 2] * v;
+            out[1] = coeffY[3 * t] + coeffY[3 * t + 1] * u + coeffY[3 * t + 2] * v;
+        }
+    }
+
+    /**
+     * Applique la transformation à un lot de points. Le dernier triangle
+     * trouvé est testé en premier : pour des centres de pixels parcourus
+     * ligne par ligne, la plupart des points évitent la descente dans
+     * l'index.
+     */
+    public void transform(double[] x, double[] y, double[] outX, double[] outY) {
+        double inv = 1.0 / scale;
+        int last = -1;
+        for (int i = 0; i < x.length; i++) {
+            double u = (x[i] - cx) * inv;
+            double v = (y[i] - cy) * inv;
+            int t = last >= 0 && locator.contains(last, u, v) ? last : locator.find(u, v);
+            if (t < 0) {
+                outX[i] = outside.transformX(x[i], y[i]);
+                outY[i] = outside.transformY(x[i], y[i]);
+                continue;
+            }
+            outX[i] = coeffX[3 * t] + coeffX[3 * t + 1] * u + coeffX[3 * t + 2] * v;
+            outY[i] = coeffY[3 * t] + coeffY[3 * t + 1] * u + coeffY[3 * t + 2] * v;
+            last = t;
+        }
+    }
+
+    /**
+     * Erreurs "leave-one-out" (observé - prédit sans le point).
+     *
+     * Chaque sommet est retiré virtuellement : son voisinage est retriangulé
+     * et le point est interpolé dans le triangle qui le contient. Si le
+     * point sort de l'enveloppe des autres (sommet de l'enveloppe convexe),
+     * on prend l'erreur leave-one-out de l'affinité globale, e / (1 - h).
+     *
+     * @param dt       triangulation ayant servi à construire cette transformation
+     * @param vertices sommet de dt associé à chaque GCP
+     */
+    public void leaveOneOutErrors(DelaunayTriangulation dt, int[] vertices, double[] x, double[] y,
+            double[] mapXByVertex, double[] mapYByVertex, double[] errX, double[] errY) {
+        for (int i = 0; i < vertices.length; i++) {
+            int v = vertices[i];
+            double u = dt.x(v);
+            double w = dt.y(v);
+            double mx = mapXByVertex[v];
+            double my = mapYByVertex[v];
+
+            int[] hole = dt.linkTriangulation(v);
+            double[] coords = new double[6];
+            int hit = -1;
+            for (int h = 0; h < hole.length && hit < 0; h += 3) {
+                if (DelaunayTriangulation.isSuperVertex(hole[h])
+                        || DelaunayTriangulation.isSuperVertex(hole[h + 1])
+                        || DelaunayTriangulation.isSuperVertex(hole[h + 2])) {
+                    continue;
+                }
+                for (int k = 0; k < 3; k++) {
+                    coords[2 * k] = dt.x(hole[h + k]);
+                    coords[2 * k + 1] = dt.y(hole[h + k]);
+                }
+                if (!isDegenerate(coords, 0) && TriangleLocator.contains(
+                        coords[0], coords[1], coords[2], coords[3], coords[4], coords[5], u, w)) {
+                    hit = h;
+                }
+            }
+
+            if (hit < 0) {
+                double denom = 1.0 - outside.leverage(x[i], y[i]);
+                if (denom < 1e-8) {
+                    errX[i] = Double.NaN;
+                    errY[i] = Double.NaN;
+                } else {
+                    errX[i] = (mx - outside.transformX(x[i], y[i])) / denom;
+                    errY[i] = (my - outside.transformY(x[i], y[i])) / denom;
+                }
+                continue;
+            }
+
+            double[] c = new double[3];
+            affine(coords, 0, mapXByVertex[hole[hit]], mapXByVertex[hole[hit + 1]], mapXByVertex[hole[hit + 2]], c, 0);
+            errX[i] = mx - (c[0] + c[1] * u + c[2] * w);
+            affine(coords, 0, mapYByVertex[hole[hit]], mapYByVertex[hole[hit + 1]], mapYByVertex[hole[hit + 2]], c, 0);
+            errY[i] = my - (c[0] + c[1] * u + c[2] * w);
+        }
+    }
+}
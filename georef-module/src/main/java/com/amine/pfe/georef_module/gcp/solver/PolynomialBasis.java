@@ -0,0 +1,104 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+/**
+ * Base des monômes utilisée par les transformations polynomiales.
+ *
+ * Les termes sont rangés par degré croissant :
+ * 1, x, y, x², xy, y², x³, x²y, xy², y³.
+ * Les 3 (resp. 6) premières colonnes forment donc exactement la base
+ * du degré 1 (resp. 2), ce qui permet de réutiliser une factorisation
+ * du degré 3 pour les degrés inférieurs.
+ */
+public final class PolynomialBasis {
+
+    public static final int MAX_DEGREE = 3;
+
+    private PolynomialBasis() {
+    }
+
+    public static int termCount(int degree) {
+        if (degree < 1 || degree > MAX_DEGREE) {
+            throw new IllegalArgumentException("Degree must be 1, 2 or 3");
+        }
+        return (degree + 1) * (degree + 2) / 2;
+    }
+
+    /**
+     * Remplit une matrice de design m x p stockée en colonnes (colonne j à
+     * l'offset j * m). Les coordonnées sont normalisées à la volée :
+     * (x - cx) / scale.
+     */
+    public static double[] designMatrix(double[] x, double[] y, int m, int degree,
+            double cx, double cy, double scale) {
+        double[] a = new double[m * termCount(degree)];
+        ResidualKernels.scalar().designMatrix(x, y, m, degree, cx, cy, scale, a);
+        return a;
+    }
+
+    /**
+     * Écrit les termes du point (u, v), déjà normalisé, dans out[0..p-1].
+     */
+    public static void fillTerms(double u, double v, int degree, double[] out) {
+        out[0] = 1.0;
+        out[1] = u;
+        out[2] = v;
+        if (degree >= 2) {
+            out[3] = u * u;
+            out[4] = u * v;
+            out[5] = v * v;
+        }
+        if (degree == 3) {
+            out[6] = u * u * u;
+            out[7] = u * u * v;
+            out[8] = u * v * v;
+            out[9] = v * v * v;
+        }
+    }
+
+    /**
+     * Évalue le polynôme de coefficients params au point (u, v) normalisé.
+     */
+    public static double evaluate(double[] params, double u, double v, int degree) {
+        double value = params[0] + params[1] * u + params[2] * v;
+        if (degree >= 2) {
+            value += params[3] * u * u + params[4] * u * v + params[5] * v * v;
+        }
+        if (degree == 3) {
+            double uu = u * u;
+            double vv = v * v;
+            value += params[6] * uu * u + params[7] * uu * v + params[8] * u * vv + params[9] * vv * v;
+        }
+        return value;
+    }
+
+    /**
+     * Écrit les dérivées des termes par rapport à u (du) et à v (dv) au
+     * point (u, v) normalisé, dans le même ordre que fillTerms.
+     */
+    public static void fillGradients(double u, double v, int degree, double[] du, double[] dv) {
+        du[0] = 0.0;
+        du[1] = 1.0;
+        du[2] = 0.0;
+        dv[0] = 0.0;
+        dv[1] = 0.0;
+        dv[2] = 1.0;
+        if (degree >= 2) {
+            du[3] = 2.0 * u;
+            du[4] = v;
+            du[5] = 0.0;
+            dv[3] = 0.0;
+            dv[4] = u;
+            dv[5] = 2.0 * v;
+        }
+        if (degree == 3) {
+            du[6] = 3.0 * u * u;
+            du[7] = 2.0 * u * v;
+            du[8] = v * v;
+            du[9] = 0.0;
+            dv[6] = 0.0;
+            dv[7] = u * u;
+            dv[8] = 2.0 * u * v;
+            dv[9] = 3.0 * v * v;
+        }
+    }
+}
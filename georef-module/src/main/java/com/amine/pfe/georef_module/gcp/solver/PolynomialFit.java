@@ -0,0 +1,180 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+/**
+ * Transformation polynomiale (pixel -> carte) ajustée par moindres carrés.
+ *
+ * Les coordonnées source sont centrées et mises à l'échelle avant la
+ * construction de la matrice de design, ce qui garde les colonnes du
+ * degré 3 dans le même ordre de grandeur. La matrice est factorisée une
+ * seule fois pour les deux composantes (mapX, mapY).
+ */
+public final class PolynomialFit {
+
+    private final int degree;
+    private final double cx;
+    private final double cy;
+    private final double scale;
+    private final double[] paramsX;
+    private final double[] paramsY;
+    private final TriangularFactor factor;
+
+    private PolynomialFit(int degree, double cx, double cy, double scale,
+            double[] paramsX, double[] paramsY, TriangularFactor factor) {
+        this.degree = degree;
+        this.cx = cx;
+        this.cy = cy;
+        this.scale = scale;
+        this.paramsX = paramsX;
+        this.paramsY = paramsY;
+        this.factor = factor;
+    }
+
+    public static PolynomialFit fit(double[] x, double[] y, double[] mapX, double[] mapY, int degree) {
+        return fit(x, y, mapX, mapY, null, degree, ResidualKernels.scalar());
+    }
+
+    public static PolynomialFit fit(double[] x, double[] y, double[] mapX, double[] mapY, int degree,
+            ResidualKernels kernels) {
+        return fit(x, y, mapX, mapY, null, degree, kernels);
+    }
+
+    /**
+     * Ajustement par moindres carrés pondérés : chaque ligne de A et de b est
+     * multipliée par sqrt(w_i). weights peut être null (poids unitaires).
+     */
+    public static PolynomialFit fit(double[] x, double[] y, double[] mapX, double[] mapY,
+            double[] weights, int degree) {
+        return fit(x, y, mapX, mapY, weights, degree, ResidualKernels.scalar());
+    }
+
+    private static PolynomialFit fit(double[] x, double[] y, double[] mapX, double[] mapY,
+            double[] weights, int degree, ResidualKernels kernels) {
+        int m = x.length;
+        int p = PolynomialBasis.termCount(degree);
+
+        double cx = 0.0;
+        double cy = 0.0;
+        for (int i = 0; i < m; i++) {
+            cx += x[i];
+            cy += y[i];
+        }
+        cx /= m;
+        cy /= m;
+
+        double scale = 0.0;
+        for (int i = 0; i < m; i++) {
+            scale = Math.max(scale, Math.max(Math.abs(x[i] - cx), Math.abs(y[i] - cy)));
+        }
+        if (scale == 0.0) {
+            scale = 1.0;
+        }
+
+        double[] a = new double[m * p];
+        kernels.designMatrix(x, y, m, degree, cx, cy, scale, a);
+        double[] bx = mapX.clone();
+        double[] by = mapY.clone();
+        if (weights != null) {
+            for (int i = 0; i < m; i++) {
+                double sw = Math.sqrt(weights[i]);
+                for (int j = 0; j < p; j++) {
+                    a[j * m + i] *= sw;
+                }
+                bx[i] *= sw;
+                by[i] *= sw;
+            }
+        }
+        HouseholderQr qr = new HouseholderQr(a, m, p, true);
+
+        double[] paramsX = new double[p];
+        double[] paramsY = new double[p];
+        qr.solve(bx, by, paramsX, paramsY);
+
+        return new PolynomialFit(degree, cx, cy, scale, paramsX, paramsY, qr);
+    }
+
+    /**
+     * Construit un ajustement à partir de paramètres déjà calculés dans le
+     * repère normalisé (cx, cy, scale) et du facteur R correspondant.
+     */
+    public static PolynomialFit of(int degree, double cx, double cy, double scale,
+            double[] paramsX, double[] paramsY, TriangularFactor factor) {
+        return new PolynomialFit(degree, cx, cy, scale, paramsX, paramsY, factor);
+    }
+
+    public int getDegree() {
+        return degree;
+    }
+
+    public TriangularFactor getFactor() {
+        return factor;
+    }
+
+    /**
+     * Levier (diagonale de la matrice chapeau) d'un point d'ajustement.
+     */
+    public double leverage(double x, double y) {
+        double[] terms = new double[PolynomialBasis.termCount(degree)];
+        PolynomialBasis.fillTerms(normalizeX(x), normalizeY(y), degree, terms);
+        return factor.leverage(terms);
+    }
+
+    /**
+     * Levier d'un point quelconque sans allocation : terms reçoit les termes
+     * du point et work sert à la substitution avant (p éléments chacun).
+     */
+    public double leverage(double x, double y, double[] terms, double[] work) {
+        PolynomialBasis.fillTerms(normalizeX(x), normalizeY(y), degree, terms);
+        return factor.leverage(terms, work);
+    }
+
+    /**
+     * Jacobienne de la transformation au point pixel (x, y), écrite dans
+     * out = { dX/dx, dX/dy, dY/dx, dY/dy }. du et dv (p éléments) reçoivent
+     * les dérivées des termes.
+     */
+    public void jacobian(double x, double y, double[] du, double[] dv, double[] out) {
+        PolynomialBasis.fillGradients(normalizeX(x), normalizeY(y), degree, du, dv);
+        double xu = 0.0;
+        double xv = 0.0;
+        double yu = 0.0;
+        double yv = 0.0;
+        for (int j = 1; j < paramsX.length; j++) {
+            xu += paramsX[j] * du[j];
+            xv += paramsX[j] * dv[j];
+            yu += paramsY[j] * du[j];
+            yv += paramsY[j] * dv[j];
+        }
+        double inv = 1.0 / scale;
+        out[0] = xu * inv;
+        out[1] = xv * inv;
+        out[2] = yu * inv;
+        out[3] = yv * inv;
+    }
+
+    public double normalizeX(double x) {
+        return (x - cx) / scale;
+    }
+
+    public double normalizeY(double y) {
+        return (y - cy) / scale;
+    }
+
+    public double transformX(double x, double y) {
+        return PolynomialBasis.evaluate(paramsX, normalizeX(x), normalizeY(y), degree);
+    }
+
+    public double transformY(double x, double y) {
+        return PolynomialBasis.evaluate(paramsY, normalizeX(x), normalizeY(y), degree);
+    }
+
+    /**
+     * Applique la transformation à un lot de points.
+     */
+    public void transform(double[] x, double[] y, double[] outX, double[] outY) {
+        transform(ResidualKernels.scalar(), x, y, outX, outY);
+    }
+
+    public void transform(ResidualKernels kernels, double[] x, double[] y, double[] outX, double[] outY) {
+        kernels.evaluate(paramsX, paramsY, degree, cx, cy, scale, x, y, outX, outY);
+    }
+}
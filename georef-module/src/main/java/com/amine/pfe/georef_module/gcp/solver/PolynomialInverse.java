@@ -0,0 +1,86 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+/**
+ * Inverse (carte -> pixel) d'une transformation polynomiale.
+ *
+ * Un polynôme inverse de même degré, ajusté sur les mêmes GCPs en
+ * échangeant source et carte, donne le point de départ. Chaque point est
+ * ensuite raffiné par quelques itérations de Newton sur la transformation
+ * directe, de sorte que forward(pixel) retombe sur la coordonnée carte
+ * demandée et non sur l'approximation de l'inverse ajusté.
+ */
+public final class PolynomialInverse {
+
+    static final int MAX_ITERATIONS = 10;
+    // Pas de Newton (en pixels) en dessous duquel le point est considéré convergé
+    static final double STEP_TOLERANCE = 1e-7;
+
+    private final PolynomialFit forward;
+    private final PolynomialFit guess;
+
+    private PolynomialInverse(PolynomialFit forward, PolynomialFit guess) {
+        this.forward = forward;
+        this.guess = guess;
+    }
+
+    public static PolynomialInverse fit(double[] x, double[] y, double[] mapX, double[] mapY, int degree) {
+        return of(PolynomialFit.fit(x, y, mapX, mapY, degree), x, y, mapX, mapY);
+    }
+
+    /**
+     * Construit l'inverse d'un ajustement direct existant ; seul le polynôme
+     * de départ est ajusté.
+     */
+    public static PolynomialInverse of(PolynomialFit forward, double[] x, double[] y,
+            double[] mapX, double[] mapY) {
+        return new PolynomialInverse(forward, PolynomialFit.fit(mapX, mapY, x, y, forward.getDegree()));
+    }
+
+    public PolynomialFit getForward() {
+        return forward;
+    }
+
+    /**
+     * Inverse un lot de coordonnées carte. converged[i] est faux si la
+     * jacobienne est singulière ou si Newton n'a pas convergé : outX/outY
+     * contiennent alors la dernière estimation.
+     *
+     * @return le nombre de points convergés
+     */
+    public int invert(double[] mapX, double[] mapY, double[] outX, double[] outY, boolean[] converged) {
+        int p = PolynomialBasis.termCount(forward.getDegree());
+        double[] du = new double[p];
+        double[] dv = new double[p];
+        double[] j = new double[4];
+
+        guess.transform(mapX, mapY, outX, outY);
+
+        int count = 0;
+        for (int i = 0; i < mapX.length; i++) {
+            double px = outX[i];
+            double py = outY[i];
+            boolean done = false;
+            for (int it = 0; it < MAX_ITERATIONS && !done; it++) {
+                double fx = forward.transformX(px, py) - mapX[i];
+                double fy = forward.transformY(px, py) - mapY[i];
+                forward.jacobian(px, py, du, dv, j);
+                double det = j[0] * j[3] - j[1] * j[2];
+                if (det == 0.0 || !Double.isFinite(det)) {
+                    break;
+                }
+                double stepX = (j[3] * fx - j[1] * fy) / det;
+                double stepY = (j[0] * fy - j[2] * fx) / det;
+                px -= stepX;
+                py -= stepY;
+                done = Math.abs(stepX) + Math.abs(stepY) < STEP_TOLERANCE;
+            }
+            outX[i] = px;
+            outY[i] = py;
+            converged[i] = done;
+            if (done) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
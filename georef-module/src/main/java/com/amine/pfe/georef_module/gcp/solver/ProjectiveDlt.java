@@ -0,0 +1,269 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import java.util.Arrays;
+
+/**
+ * Homographie (8 paramètres) par DLT normalisée (Hartley).
+ *
+ * Les points source et carte sont centrés et mis à l'échelle (distance
+ * moyenne √2), chaque correspondance ajoute deux lignes à A (2n x 9) qui
+ * sont accumulées directement dans AᵀA ; h est le vecteur propre de la plus
+ * petite valeur propre (Jacobi cyclique), puis dénormalisé.
+ *
+ * Une instance porte ses tableaux de travail : fit n'alloue rien et peut
+ * être rappelée, mais l'instance n'est pas partageable entre threads.
+ */
+public final class ProjectiveDlt {
+
+    public static final int MIN_POINTS = 4;
+    public static final int PARAMETERS = 9;
+
+    private static final int N = 9;
+    private static final int MAX_SWEEPS = 50;
+    private static final double DEGENERATE = 1e-12;
+
+    private final double[] ata = new double[N * N];
+    private final double[] vectors = new double[N * N];
+    private final double[] row1 = new double[N];
+    private final double[] row2 = new double[N];
+    private final double[] hn = new double[N];
+    private final double[] refit = new double[N];
+
+    /**
+     * Ajuste l'homographie en ignorant le point d'indice skip (-1 : aucun).
+     *
+     * @param h reçoit les 9 coefficients, ligne par ligne, avec h[8] = 1
+     *          quand c'est possible
+     * @throws IllegalArgumentException si la configuration est dégénérée
+     *                                  (moins de 4 points, 3 points alignés...)
+     */
+    public void fit(double[] x, double[] y, double[] mapX, double[] mapY, int skip, double[] h) {
+        int n = x.length;
+        int m = skip >= 0 && skip < n ? n - 1 : n;
+        if (m < MIN_POINTS) {
+            throw new IllegalArgumentException("Projective : au moins " + MIN_POINTS + " points requis");
+        }
+
+        // Normalisation de Hartley
+        double cx = 0.0;
+        double cy = 0.0;
+        double cX = 0.0;
+        double cY = 0.0;
+        for (int i = 0; i < n; i++) {
+            if (i == skip) {
+                continue;
+            }
+            cx += x[i];
+            cy += y[i];
+            cX += mapX[i];
+            cY += mapY[i];
+        }
+        cx /= m;
+        cy /= m;
+        cX /= m;
+        cY /= m;
+        double ds = 0.0;
+        double dt = 0.0;
+        for (int i = 0; i < n; i++) {
+            if (i == skip) {
+                continue;
+            }
+            ds += Math.hypot(x[i] - cx, y[i] - cy);
+            dt += Math.hypot(mapX[i] - cX, mapY[i] - cY);
+        }
+        if (ds == 0.0 || dt == 0.0) {
+            throw new IllegalArgumentException("Projective : points confondus");
+        }
+        double ss = Math.sqrt(2.0) * m / ds;
+        double st = Math.sqrt(2.0) * m / dt;
+
+        Arrays.fill(ata, 0.0);
+        for (int i = 0; i < n; i++) {
+            if (i == skip) {
+                continue;
+            }
+            double u = (x[i] - cx) * ss;
+            double v = (y[i] - cy) * ss;
+            double U = (mapX[i] - cX) * st;
+            double V = (mapY[i] - cY) * st;
+            row1[0] = -u;
+            row1[1] = -v;
+            row1[2] = -1.0;
+            row1[3] = 0.0;
+            row1[4] = 0.0;
+            row1[5] = 0.0;
+            row1[6] = U * u;
+            row1[7] = U * v;
+            row1[8] = U;
+            row2[0] = 0.0;
+            row2[1] = 0.0;
+            row2[2] = 0.0;
+            row2[3] = -u;
+            row2[4] = -v;
+            row2[5] = -1.0;
+            row2[6] = V * u;
+            row2[7] = V * v;
+            row2[8] = V;
+            for (int r = 0; r < N; r++) {
+                double a1 = row1[r];
+                double a2 = row2[r];
+                for (int c = r; c < N; c++) {
+                    ata[r * N + c] += a1 * row1[c] + a2 * row2[c];
+                }
+            }
+        }
+        for (int r = 0; r < N; r++) {
+            for (int c = 0; c < r; c++) {
+                ata[r * N + c] = ata[c * N + r];
+            }
+        }
+
+        jacobi();
+
+        // Plus petite et deuxième plus petite valeurs propres
+        int smallest = 0;
+        double max = 0.0;
+        for (int k = 0; k < N; k++) {
+            max = Math.max(max, Math.abs(ata[k * N + k]));
+            if (ata[k * N + k] < ata[smallest * N + smallest]) {
+                smallest = k;
+            }
+        }
+        double second = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < N; k++) {
+            if (k != smallest) {
+                second = Math.min(second, ata[k * N + k]);
+            }
+        }
+        if (second <= DEGENERATE * max) {
+            throw new IllegalArgumentException("Projective : configuration dégénérée (points alignés)");
+        }
+        for (int k = 0; k < N; k++) {
+            hn[k] = vectors[k * N + smallest];
+        }
+
+        // H = T_carte⁻¹ · Hn · T_source
+        double h0 = hn[0] * ss;
+        double h1 = hn[1] * ss;
+        double h2 = hn[2] - hn[0] * ss * cx - hn[1] * ss * cy;
+        double h3 = hn[3] * ss;
+        double h4 = hn[4] * ss;
+        double h5 = hn[5] - hn[3] * ss * cx - hn[4] * ss * cy;
+        double h6 = hn[6] * ss;
+        double h7 = hn[7] * ss;
+        double h8 = hn[8] - hn[6] * ss * cx - hn[7] * ss * cy;
+
+        h[0] = h0 / st + cX * h6;
+        h[1] = h1 / st + cX * h7;
+        h[2] = h2 / st + cX * h8;
+        h[3] = h3 / st + cY * h6;
+        h[4] = h4 / st + cY * h7;
+        h[5] = h5 / st + cY * h8;
+        h[6] = h6;
+        h[7] = h7;
+        h[8] = h8;
+
+        double norm = Math.abs(h[8]) > DEGENERATE ? h[8] : 1.0;
+        for (int k = 0; k < N; k++) {
+            h[k] /= norm;
+        }
+    }
+
+    /**
+     * Diagonalisation de ata par rotations de Jacobi cycliques : ata devient
+     * diagonale (valeurs propres), vectors reçoit les vecteurs propres en
+     * colonnes.
+     */
+    private void jacobi() {
+        for (int i = 0; i < N * N; i++) {
+            vectors[i] = 0.0;
+        }
+        for (int i = 0; i < N; i++) {
+            vectors[i * N + i] = 1.0;
+        }
+
+        for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+            double off = 0.0;
+            double diag = 0.0;
+            for (int p = 0; p < N; p++) {
+                diag += ata[p * N + p] * ata[p * N + p];
+                for (int q = p + 1; q < N; q++) {
+                    off += ata[p * N + q] * ata[p * N + q];
+                }
+            }
+            if (off <= 1e-30 * diag) {
+                return;
+            }
+
+            for (int p = 0; p < N - 1; p++) {
+                for (int q = p + 1; q < N; q++) {
+                    double apq = ata[p * N + q];
+                    if (apq == 0.0) {
+                        continue;
+                    }
+                    double theta = (ata[q * N + q] - ata[p * N + p]) / (2.0 * apq);
+                    double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1.0));
+                    if (theta == 0.0) {
+                        t = 1.0;
+                    }
+                    double c = 1.0 / Math.sqrt(t * t + 1.0);
+                    double s = t * c;
+
+                    for (int k = 0; k < N; k++) {
+                        double akp = ata[k * N + p];
+                        double akq = ata[k * N + q];
+                        ata[k * N + p] = c * akp - s * akq;
+                        ata[k * N + q] = s * akp + c * akq;
+                    }
+                    for (int k = 0; k < N; k++) {
+                        double apk = ata[p * N + k];
+                        double aqk = ata[q * N + k];
+                        ata[p * N + k] = c * apk - s * aqk;
+                        ata[q * N + k] = s * apk + c * aqk;
+                    }
+                    for (int k = 0; k < N; k++) {
+                        double vkp = vectors[k * N + p];
+                        double vkq = vectors[k * N + q];
+                        vectors[k * N + p] = c * vkp - s * vkq;
+                        vectors[k * N + q] = s * vkp + c * vkq;
+                    }
+                }
+            }
+        }
+    }
+
+    public static double transformX(double[] h, double x, double y) {
+        return (h[0] * x + h[1] * y + h[2]) / (h[6] * x + h[7] * y + h[8]);
+    }
+
+    public static double transformY(double[] h, double x, double y) {
+        return (h[3] * x + h[4] * y + h[5]) / (h[6] * x + h[7] * y + h[8]);
+    }
+
+    public static void transform(double[] h, double[] x, double[] y, double[] outX, double[] outY) {
+        for (int i = 0; i < x.length; i++) {
+            double w = 1.0 / (h[6] * x[i] + h[7] * y[i] + h[8]);
+            outX[i] = (h[0] * x[i] + h[1] * y[i] + h[2]) * w;
+            outY[i] = (h[3] * x[i] + h[4] * y[i] + h[5]) * w;
+        }
+    }
+
+    /**
+     * Erreurs leave-one-out par réajustement sans chaque point : O(n²) pour
+     * les quelques points d'une homographie, sans allocation. NaN si le reste
+     * est dégénéré.
+     */
+    public void leaveOneOutErrors(double[] x, double[] y, double[] mapX, double[] mapY,
+            double[] errX, double[] errY) {
+        for (int i = 0; i < x.length; i++) {
+            try {
+                fit(x, y, mapX, mapY, i, refit);
+                errX[i] = mapX[i] - transformX(refit, x[i], y[i]);
+                errY[i] = mapY[i] - transformY(refit, x[i], y[i]);
+            } catch (IllegalArgumentException e) {
+                errX[i] = Double.NaN;
+                errY[i] = Double.NaN;
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Estimation RANSAC d'une transformation polynomiale.
+ *
+ * Chaque hypothèse est ajustée exactement sur un échantillon minimal de p
+ * points puis évaluée sur tous les GCPs avec un coût tronqué (MSAC). Les
+ * échantillons sont tirés à l'avance avec une graine fixe, ce qui rend le
+ * résultat reproductible, puis les hypothèses sont évaluées en parallèle
+ * sur le pool fourni. La meilleure hypothèse est raffinée par moindres
+ * carrés sur son ensemble de consensus.
+ *
+ * Le seuil d'inlier est exprimé dans les unités de la carte. S'il n'est pas
+ * fourni (<= 0), il vaut 3 fois l'échelle robuste des distances de résidus
+ * de l'ajustement classique (RobustScale.sigma, volontairement large).
+ */
+public final class Ransac {
+
+    static final double CONFIDENCE = 0.99;
+    static final double ASSUMED_INLIER_RATIO = 0.5;
+    static final double AUTO_THRESHOLD_FACTOR = 3.0;
+    private static final long SEED = 0x5DEECE66DL;
+
+    private final int maxIterations;
+    private final double threshold;
+
+    public Ransac(int maxIterations, double threshold) {
+        this.maxIterations = maxIterations;
+        this.threshold = threshold;
+    }
+
+    public RobustFit fit(double[] x, double[] y, double[] mapX, double[] mapY, int degree, ForkJoinPool pool) {
+        int m = x.length;
+        int p = PolynomialBasis.termCount(degree);
+
+        PolynomialFit ols = PolynomialFit.fit(x, y, mapX, mapY, degree);
+        if (m <= p) {
+            // Aucune redondance : impossible de distinguer un point aberrant
+            return RobustFit.allInliers(ols, x, y, mapX, mapY);
+        }
+
+        double tau = threshold > 0.0
+                ? threshold
+                : AUTO_THRESHOLD_FACTOR * RobustScale.sigma(RobustScale.distances(ols, x, y, mapX, mapY));
+        if (tau == 0.0) {
+            return RobustFit.allInliers(ols, x, y, mapX, mapY);
+        }
+        double tau2 = tau * tau;
+
+        // Termes de la base évalués une seule fois, dans le repère de l'ajustement classique
+        double[] terms = new double[m * p];
+        double[] row = new double[p];
+        for (int i = 0; i < m; i++) {
+            PolynomialBasis.fillTerms(ols.normalizeX(x[i]), ols.normalizeY(y[i]), degree, row);
+            System.arraycopy(row, 0, terms, i * p, p);
+        }
+
+        int iterations = iterationCount(p);
+        int[] samples = drawSamples(m, p, iterations);
+
+        Hypothesis best = pool.submit(() -> IntStream.range(0, iterations)
+                .parallel()
+                .mapToObj(h -> score(h, samples, terms, mapX, mapY, m, p, tau2))
+                .filter(hyp -> hyp != null)
+                .reduce(null, Ransac::better))
+                .join();
+
+        if (best == null) {
+            return RobustFit.allInliers(ols, x, y, mapX, mapY);
+        }
+
+        // Raffinement : moindres carrés sur le consensus, puis nouveau consensus
+        boolean[] inliers = best.inliers;
+        PolynomialFit refined = fitSubset(x, y, mapX, mapY, inliers, degree);
+        boolean[] refinedInliers = consensus(refined, x, y, mapX, mapY, tau2);
+        if (count(refinedInliers) >= p) {
+            inliers = refinedInliers;
+            refined = fitSubset(x, y, mapX, mapY, inliers, degree);
+        }
+
+        double[] weights = new double[m];
+        for (int i = 0; i < m; i++) {
+            weights[i] = inliers[i] ? 1.0 : 0.0;
+        }
+        double[] d = RobustScale.distances(refined, x, y, mapX, mapY);
+        return new RobustFit(refined, inliers, weights,
+                RobustScale.sigma(RobustScale.subset(d, inliers, count(inliers))));
+    }
+
+    private int iterationCount(int p) {
+        double denominator = Math.log(1.0 - Math.pow(ASSUMED_INLIER_RATIO, p));
+        int required = (int) Math.ceil(Math.log(1.0 - CONFIDENCE) / denominator);
+        return Math.max(1, Math.min(maxIterations, required));
+    }
+
+    /**
+     * Tire iterations échantillons de p indices distincts (Fisher-Yates
+     * partiel), à plat dans un seul tableau.
+     */
+    private static int[] drawSamples(int m, int p, int iterations) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        int[] pool = new int[m];
+        int[] samples = new int[iterations * p];
+        for (int h = 0; h < iterations; h++) {
+            for (int i = 0; i < m; i++) {
+                pool[i] = i;
+            }
+            for (int j = 0; j < p; j++) {
+                int k = j + random.nextInt(m - j);
+                int tmp = pool[j];
+                pool[j] = pool[k];
+                pool[k] = tmp;
+                samples[h * p + j] = pool[j];
+            }
+        }
+        return samples;
+    }
+
+    private static Hypothesis score(int h, int[] samples, double[] terms, double[] mapX, double[] mapY,
+            int m, int p, double tau2) {
+        double[] a = new double[p * p];
+        double[] bx = new double[p];
+        double[] by = new double[p];
+        for (int i = 0; i < p; i++) {
+            int idx = samples[h * p + i];
+            for (int j = 0; j < p; j++) {
+                a[j * p + i] = terms[idx * p + j];
+            }
+            bx[i] = mapX[idx];
+            by[i] = mapY[idx];
+        }
+
+        HouseholderQr qr = new HouseholderQr(a, p, p, true);
+        if (!qr.isFullRank()) {
+            return null;
+        }
+        double[] paramsX = new double[p];
+        double[] paramsY = new double[p];
+        qr.solve(bx, by, paramsX, paramsY);
+
+        boolean[] inliers = new boolean[m];
+        double cost = 0.0;
+        for (int i = 0; i < m; i++) {
+            double ex = mapX[i];
+            double ey = mapY[i];
+            for (int j = 0; j < p; j++) {
+                double t = terms[i * p + j];
+                ex -= paramsX[j] * t;
+                ey -= paramsY[j] * t;
+            }
+            double d2 = ex * ex + ey * ey;
+            if (d2 <= tau2) {
+                inliers[i] = true;
+                cost += d2;
+            } else {
+                cost += tau2;
+            }
+        }
+        return new Hypothesis(h, cost, inliers);
+    }
+
+    private static Hypothesis better(Hypothesis a, Hypothesis b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (b.cost < a.cost || (b.cost == a.cost && b.index < a.index)) {
+            return b;
+        }
+        return a;
+    }
+
+    private static boolean[] consensus(PolynomialFit fit, double[] x, double[] y,
+            double[] mapX, double[] mapY, double tau2) {
+        double[] d = RobustScale.distances(fit, x, y, mapX, mapY);
+        boolean[] inliers = new boolean[d.length];
+        for (int i = 0; i < d.length; i++) {
+            inliers[i] = d[i] * d[i] <= tau2;
+        }
+        return inliers;
+    }
+
+    private static PolynomialFit fitSubset(double[] x, double[] y, double[] mapX, double[] mapY,
+            boolean[] mask, int degree) {
+        int n = count(mask);
+        return PolynomialFit.fit(
+                RobustScale.subset(x, mask, n),
+                RobustScale.subset(y, mask, n),
+                RobustScale.subset(mapX, mask, n),
+                RobustScale.subset(mapY, mask, n),
+                degree);
+    }
+
+    private static int count(boolean[] mask) {
+        int n = 0;
+        for (boolean b : mask) {
+            if (b) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static final class Hypothesis {
+        private final int index;
+        private final double cost;
+        private final boolean[] inliers;
+
+        Hypothesis(int index, double cost, boolean[] inliers) {
+            this.index = index;
+            this.cost = cost;
+            this.inliers = inliers;
+        }
+    }
+}
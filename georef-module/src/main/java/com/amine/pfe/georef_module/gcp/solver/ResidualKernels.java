@@ -0,0 +1,70 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+/**
+ * Noyaux de calcul des résidus sur des tampons "struct of arrays"
+ * (un tableau par coordonnée) : remplissage de la matrice de design,
+ * évaluation du polynôme ajusté et distances pour des lots entiers de
+ * points, sans allocation par point.
+ *
+ * Deux implémentations : scalaire, et vectorielle (API Vector du JDK,
+ * module jdk.incubator.vector). La version vectorielle n'est compilée
+ * qu'avec le profil Maven simd (sources src/simd/java) ; elle n'est retenue
+ * que si elle est demandée, présente dans le classpath et si le module est
+ * chargé au démarrage de la JVM.
+ */
+public interface ResidualKernels {
+
+    double EARTH_RADIUS = 6371000; // Rayon Terre en mètres
+
+    /**
+     * Remplit la matrice de design m x p en colonnes, dans l'ordre de
+     * PolynomialBasis, avec les coordonnées normalisées (x - cx) / scale.
+     */
+    void designMatrix(double[] x, double[] y, int m, int degree, double cx, double cy, double scale,
+            double[] out);
+
+    /**
+     * Évalue les deux composantes du polynôme (paramètres dans l'ordre de
+     * PolynomialBasis, repère normalisé cx, cy, scale) sur un lot de points.
+     */
+    void evaluate(double[] paramsX, double[] paramsY, int degree, double cx, double cy, double scale,
+            double[] x, double[] y, double[] outX, double[] outY);
+
+    /**
+     * Distances euclidiennes entre (x1, y1) et (x2, y2), point à point.
+     */
+    void euclidean(double[] x1, double[] y1, double[] x2, double[] y2, double[] out);
+
+    /**
+     * Distances orthodromiques (haversine, en mètres) entre (lon1, lat1) et
+     * (lon2, lat2), en degrés.
+     */
+    void haversine(double[] lon1, double[] lat1, double[] lon2, double[] lat2, double[] out);
+
+    static ResidualKernels scalar() {
+        return ScalarResidualKernels.INSTANCE;
+    }
+
+    /**
+     * @param vectorized demande les noyaux vectoriels ; sans le module
+     *                   jdk.incubator.vector ou hors profil simd, repli sur
+     *                   les noyaux scalaires
+     */
+    static ResidualKernels create(boolean vectorized) {
+        if (vectorized && isVectorApiAvailable()) {
+            try {
+                // Chargée par réflexion : absente de la compilation par défaut
+                return (ResidualKernels) Class.forName(ResidualKernels.class.getPackageName() + ".VectorResidualKernels")
+                        .getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException e) {
+                return scalar();
+            }
+        }
+        return scalar();
+    }
+
+    static boolean isVectorApiAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+}
@@ -0,0 +1,65 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import java.util.Arrays;
+
+/**
+ * Résultat d'une estimation robuste : la transformation retenue, le masque
+ * des points considérés comme fiables, le poids final de chaque point et
+ * l'échelle robuste (RobustScale.sigma) des distances de résidus finales.
+ */
+public final class RobustFit {
+
+    private final PolynomialFit fit;
+    private final boolean[] inliers;
+    private final double[] weights;
+    private final double scale;
+
+    public RobustFit(PolynomialFit fit, boolean[] inliers, double[] weights, double scale) {
+        this.fit = fit;
+        this.inliers = inliers;
+        this.weights = weights;
+        this.scale = scale;
+    }
+
+    /**
+     * Ajustement classique présenté comme un résultat robuste : tous les
+     * points sont inliers, de poids 1.
+     */
+    public static RobustFit allInliers(PolynomialFit fit, double[] x, double[] y, double[] mapX, double[] mapY) {
+        boolean[] inliers = new boolean[x.length];
+        double[] weights = new double[x.length];
+        Arrays.fill(inliers, true);
+        Arrays.fill(weights, 1.0);
+        return new RobustFit(fit, inliers, weights, RobustScale.sigma(RobustScale.distances(fit, x, y, mapX, mapY)));
+    }
+
+    public PolynomialFit getFit() {
+        return fit;
+    }
+
+    public boolean isInlier(int i) {
+        return inliers[i];
+    }
+
+    public double getWeight(int i) {
+        return weights[i];
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    public int size() {
+        return inliers.length;
+    }
+
+    public int inlierCount() {
+        int count = 0;
+        for (boolean inlier : inliers) {
+            if (inlier) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
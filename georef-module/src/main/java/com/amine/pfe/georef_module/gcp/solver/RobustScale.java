@@ -0,0 +1,66 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import java.util.Arrays;
+
+/**
+ * Outils communs aux estimateurs robustes.
+ */
+final class RobustScale {
+
+    /**
+     * Facteur de cohérence de la MAD d'une loi normale à une dimension,
+     * appliqué ici à des distances radiales. Pour des erreurs gaussiennes
+     * isotropes d'écart-type σ par axe, ces distances suivent une loi de
+     * Rayleigh de médiane ≈ 1.1774·σ : l'échelle obtenue surestime donc σ
+     * d'un facteur ≈ 1.75 (l'estimateur cohérent serait 0.8493 · médiane).
+     *
+     * La surestimation est voulue : les seuils exprimés en multiples de
+     * cette échelle (3 pour les aberrants, k pour Huber) restent larges face
+     * aux erreurs de pointé réelles, ni gaussiennes ni isotropes. Avec
+     * l'estimateur cohérent, des GCPs corrects d'un ajustement de degré 2
+     * dépassent déjà 3·σ.
+     */
+    static final double MAD_TO_SIGMA = 1.4826;
+
+    private RobustScale() {
+    }
+
+    static double[] distances(PolynomialFit fit, double[] x, double[] y, double[] mapX, double[] mapY) {
+        int m = x.length;
+        double[] estX = new double[m];
+        double[] estY = new double[m];
+        fit.transform(x, y, estX, estY);
+        double[] d = new double[m];
+        for (int i = 0; i < m; i++) {
+            double dx = mapX[i] - estX[i];
+            double dy = mapY[i] - estY[i];
+            d[i] = Math.sqrt(dx * dx + dy * dy);
+        }
+        return d;
+    }
+
+    /**
+     * Échelle robuste 1.4826 · médiane(d) des distances de résidus
+     * (≈ 1.75·σ, voir MAD_TO_SIGMA).
+     */
+    static double sigma(double[] d) {
+        double[] sorted = d.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        double median = n % 2 == 1
+                ? sorted[n / 2]
+                : 0.5 * (sorted[n / 2 - 1] + sorted[n / 2]);
+        return MAD_TO_SIGMA * median;
+    }
+
+    static double[] subset(double[] values, boolean[] mask, int count) {
+        double[] out = new double[count];
+        int k = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (mask[i]) {
+                out[k++] = values[i];
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,91 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+/**
+ * Noyaux scalaires, utilisés par défaut et pour les fins de lot des noyaux
+ * vectoriels.
+ */
+final class ScalarResidualKernels implements ResidualKernels {
+
+    static final ScalarResidualKernels INSTANCE = new ScalarResidualKernels();
+
+    private ScalarResidualKernels() {
+    }
+
+    @Override
+    public void designMatrix(double[] x, double[] y, int m, int degree, double cx, double cy, double scale,
+            double[] out) {
+        designMatrix(x, y, 0, m, m, degree, cx, cy, 1.0 / scale, out);
+    }
+
+    static void designMatrix(double[] x, double[] y, int from, int to, int m, int degree, double cx, double cy,
+            double inv, double[] out) {
+        for (int i = from; i < to; i++) {
+            double u = (x[i] - cx) * inv;
+            double v = (y[i] - cy) * inv;
+            out[i] = 1.0;
+            out[m + i] = u;
+            out[2 * m + i] = v;
+            if (degree >= 2) {
+                out[3 * m + i] = u * u;
+                out[4 * m + i] = u * v;
+                out[5 * m + i] = v * v;
+            }
+            if (degree == 3) {
+                out[6 * m + i] = u * u * u;
+                out[7 * m + i] = u * u * v;
+                out[8 * m + i] = u * v * v;
+                out[9 * m + i] = v * v * v;
+            }
+        }
+    }
+
+    @Override
+    public void evaluate(double[] paramsX, double[] paramsY, int degree, double cx, double cy, double scale,
+            double[] x, double[] y, double[] outX, double[] outY) {
+        evaluate(paramsX, paramsY, degree, cx, cy, 1.0 / scale, x, y, 0, x.length, outX, outY);
+    }
+
+    static void evaluate(double[] paramsX, double[] paramsY, int degree, double cx, double cy, double inv,
+            double[] x, double[] y, int from, int to, double[] outX, double[] outY) {
+        for (int i = from; i < to; i++) {
+            double u = (x[i] - cx) * inv;
+            double v = (y[i] - cy) * inv;
+            outX[i] = PolynomialBasis.evaluate(paramsX, u, v, degree);
+            outY[i] = PolynomialBasis.evaluate(paramsY, u, v, degree);
+        }
+    }
+
+    @Override
+    public void euclidean(double[] x1, double[] y1, double[] x2, double[] y2, double[] out) {
+        euclidean(x1, y1, x2, y2, 0, out.length, out);
+    }
+
+    static void euclidean(double[] x1, double[] y1, double[] x2, double[] y2, int from, int to, double[] out) {
+        for (int i = from; i < to; i++) {
+            double dx = x2[i] - x1[i];
+            double dy = y2[i] - y1[i];
+            out[i] = Math.sqrt(dx * dx + dy * dy);
+        }
+    }
+
+    @Override
+    public void haversine(double[] lon1, double[] lat1, double[] lon2, double[] lat2, double[] out) {
+        haversine(lon1, lat1, lon2, lat2, 0, out.length, out);
+    }
+
+    static void haversine(double[] lon1, double[] lat1, double[] lon2, double[] lat2, int from, int to,
+            double[] out) {
+        for (int i = from; i < to; i++) {
+            double dLat = Math.toRadians(lat2[i] - lat1[i]);
+            double dLon = Math.toRadians(lon2[i] - lon1[i]);
+            double rLat1 = Math.toRadians(lat1[i]);
+            double rLat2 = Math.toRadians(lat2[i]);
+
+            double sinLat = Math.sin(dLat / 2);
+            double sinLon = Math.sin(dLon / 2);
+            double a = sinLat * sinLat + Math.cos(rLat1) * Math.cos(rLat2) * sinLon * sinLon;
+
+            out[i] = EARTH_RADIUS * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        }
+    }
+}
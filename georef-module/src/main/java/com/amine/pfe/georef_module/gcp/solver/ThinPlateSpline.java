@@ -0,0 +1,100 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+/**
+ * Spline en plaque mince (pixel -> carte) : interpole exactement chaque GCP.
+ *
+ * f(p) = a0 + a1·u + a2·v + Σ w_j U(|p - p_j|), avec les coefficients issus
+ * d'un {@link ThinPlateSplineSystem} factorisé.
+ */
+public final class ThinPlateSpline {
+
+    /** Taille des lots de points évalués ensemble. */
+    static final int BLOCK_SIZE = 256;
+
+    private final ThinPlateSplineSystem system;
+    private final double[] wx;
+    private final double[] wy;
+
+    ThinPlateSpline(ThinPlateSplineSystem system, double[] wx, double[] wy) {
+        this.system = system;
+        this.wx = wx;
+        this.wy = wy;
+    }
+
+    public static ThinPlateSpline fit(double[] x, double[] y, double[] mapX, double[] mapY) {
+        return ThinPlateSplineSystem.factor(x, y).solve(mapX, mapY);
+    }
+
+    public ThinPlateSplineSystem getSystem() {
+        return system;
+    }
+
+    /**
+     * Applique la transformation à un lot de points.
+     *
+     * Les points sont traités par blocs de {@value #BLOCK_SIZE} : la boucle
+     * externe parcourt les points de contrôle, la boucle interne le bloc, sur
+     * des tableaux contigus qui restent en cache. L'appel à Math.log du noyau
+     * empêche la vectorisation automatique de cette boucle par le JIT.
+     */
+    public void transform(double[] x, double[] y, double[] outX, double[] outY) {
+        int n = system.size();
+        double inv = system.inverseScale();
+        double cx = system.centerX();
+        double cy = system.centerY();
+        double[] u = new double[BLOCK_SIZE];
+        double[] v = new double[BLOCK_SIZE];
+        double[] accX = new double[BLOCK_SIZE];
+        double[] accY = new double[BLOCK_SIZE];
+
+        for (int start = 0; start < x.length; start += BLOCK_SIZE) {
+            int len = Math.min(BLOCK_SIZE, x.length - start);
+            for (int i = 0; i < len; i++) {
+                u[i] = (x[start + i] - cx) * inv;
+                v[i] = (y[start + i] - cy) * inv;
+                accX[i] = wx[n] + wx[n + 1] * u[i] + wx[n + 2] * v[i];
+                accY[i] = wy[n] + wy[n + 1] * u[i] + wy[n + 2] * v[i];
+            }
+            for (int j = 0; j < n; j++) {
+                double uj = system.controlU(j);
+                double vj = system.controlV(j);
+                double wxj = wx[j];
+                double wyj = wy[j];
+                for (int i = 0; i < len; i++) {
+                    double du = u[i] - uj;
+                    double dv = v[i] - vj;
+                    double k = ThinPlateSplineSystem.kernel(du * du + dv * dv);
+                    accX[i] += wxj * k;
+                    accY[i] += wyj * k;
+                }
+            }
+            System.arraycopy(accX, 0, outX, start, len);
+            System.arraycopy(accY, 0, outY, start, len);
+        }
+    }
+
+    public double transformX(double x, double y) {
+        double[] outX = new double[1];
+        transform(new double[] { x }, new double[] { y }, outX, new double[1]);
+        return outX[0];
+    }
+
+    public double transformY(double x, double y) {
+        double[] outY = new double[1];
+        transform(new double[] { x }, new double[] { y }, new double[1], outY);
+        return outY[0];
+    }
+
+    /**
+     * Erreurs leave-one-out par la formule de Rippa : l'écart entre le point
+     * carte i et la spline ajustée sans lui vaut w_i / (M^-1)_ii, sans
+     * refactoriser le système.
+     */
+    public void leaveOneOutErrors(double[] errX, double[] errY) {
+        double[] diag = system.inverseDiagonal();
+        for (int i = 0; i < system.size(); i++) {
+            errX[i] = wx[i] / diag[i];
+            errY[i] = wy[i] / diag[i];
+        }
+    }
+}
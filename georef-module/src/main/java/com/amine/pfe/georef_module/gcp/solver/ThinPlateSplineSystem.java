@@ -0,0 +1,165 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import java.util.Arrays;
+
+/**
+ * Système de noyau factorisé d'une spline en plaque mince (TPS) pour un jeu
+ * de points source donné.
+ *
+ * La matrice (n+3) x (n+3) [K P ; P^T 0], avec K_ij = U(|p_i - p_j|) et
+ * U(r) = r² ln r, ne dépend que des coordonnées source : sa factorisation LU
+ * peut être réutilisée tant que seuls les points carte changent. Les
+ * coordonnées source sont centrées et mises à l'échelle, ce qui ne modifie
+ * pas l'interpolant (le terme ajouté est absorbé par la partie affine).
+ */
+public final class ThinPlateSplineSystem {
+
+    public static final int MIN_POINTS = 3;
+
+    private final int n;
+    private final double cx;
+    private final double cy;
+    private final double scale;
+    private final double[] u;
+    private final double[] v;
+    private final LuDecomposition lu;
+    private volatile double[] inverseDiagonal;
+
+    private ThinPlateSplineSystem(int n, double cx, double cy, double scale, double[] u, double[] v,
+            LuDecomposition lu) {
+        this.n = n;
+        this.cx = cx;
+        this.cy = cy;
+        this.scale = scale;
+        this.u = u;
+        this.v = v;
+        this.lu = lu;
+    }
+
+    /**
+     * @throws IllegalArgumentException si les points sont moins de trois,
+     *         alignés ou dupliqués (système singulier)
+     */
+    public static ThinPlateSplineSystem factor(double[] x, double[] y) {
+        int n = x.length;
+        if (n < MIN_POINTS) {
+            throw new IllegalArgumentException("Thin Plate Spline : au moins " + MIN_POINTS + " points requis");
+        }
+
+        double cx = 0.0;
+        double cy = 0.0;
+        for (int i = 0; i < n; i++) {
+            cx += x[i];
+            cy += y[i];
+        }
+        cx /= n;
+        cy /= n;
+        double scale = 0.0;
+        for (int i = 0; i < n; i++) {
+            scale = Math.max(scale, Math.max(Math.abs(x[i] - cx), Math.abs(y[i] - cy)));
+        }
+        if (scale == 0.0) {
+            scale = 1.0;
+        }
+
+        double[] u = new double[n];
+        double[] v = new double[n];
+        for (int i = 0; i < n; i++) {
+            u[i] = (x[i] - cx) / scale;
+            v[i] = (y[i] - cy) / scale;
+        }
+
+        int size = n + 3;
+        double[] m = new double[size * size];
+        for (int i = 0; i < n; i++) {
+            int ri = i * size;
+            for (int j = i + 1; j < n; j++) {
+                double du = u[i] - u[j];
+                double dv = v[i] - v[j];
+                double k = kernel(du * du + dv * dv);
+                m[ri + j] = k;
+                m[j * size + i] = k;
+            }
+            m[ri + n] = 1.0;
+            m[ri + n + 1] = u[i];
+            m[ri + n + 2] = v[i];
+            m[n * size + i] = 1.0;
+            m[(n + 1) * size + i] = u[i];
+            m[(n + 2) * size + i] = v[i];
+        }
+
+        LuDecomposition lu;
+        try {
+            lu = new LuDecomposition(m, size);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    "Thin Plate Spline : points source alignés ou dupliqués", e);
+        }
+        return new ThinPlateSplineSystem(n, cx, cy, scale, u, v, lu);
+    }
+
+    /**
+     * U(r) = r² ln r, exprimé en fonction de d = r² : d ln d / 2.
+     */
+    static double kernel(double d) {
+        return d > 0.0 ? 0.5 * d * Math.log(d) : 0.0;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Calcule les coefficients pour les points carte donnés en réutilisant
+     * la factorisation.
+     */
+    public ThinPlateSpline solve(double[] mapX, double[] mapY) {
+        double[] wx = new double[n + 3];
+        double[] wy = new double[n + 3];
+        System.arraycopy(mapX, 0, wx, 0, n);
+        System.arraycopy(mapY, 0, wy, 0, n);
+        lu.solve(wx);
+        lu.solve(wy);
+        return new ThinPlateSpline(this, wx, wy);
+    }
+
+    /**
+     * Diagonale de M^-1 limitée aux n premiers indices, utilisée par la
+     * formule de Rippa. Calculée une fois (n résolutions) puis conservée.
+     */
+    double[] inverseDiagonal() {
+        double[] diag = inverseDiagonal;
+        if (diag == null) {
+            diag = new double[n];
+            double[] e = new double[n + 3];
+            for (int i = 0; i < n; i++) {
+                Arrays.fill(e, 0.0);
+                e[i] = 1.0;
+                lu.solve(e);
+                diag[i] = e[i];
+            }
+            inverseDiagonal = diag;
+        }
+        return diag;
+    }
+
+    double controlU(int j) {
+        return u[j];
+    }
+
+    double controlV(int j) {
+        return v[j];
+    }
+
+    double inverseScale() {
+        return 1.0 / scale;
+    }
+
+    double centerX() {
+        return cx;
+    }
+
+    double centerY() {
+        return cy;
+    }
+}
@@ -0,0 +1,215 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Index spatial des triangles pour la localisation de points.
+ *
+ * R-tree statique construit par "Sort-Tile-Recursive" : les boîtes
+ * englobantes sont triées en tranches verticales puis par y dans chaque
+ * tranche, et regroupées par NODE_CAPACITY à chaque niveau. Une requête ne
+ * descend que dans les nœuds dont la boîte contient le point, soit O(log n)
+ * pour une triangulation (les triangles ne se recouvrent pas).
+ */
+final class TriangleLocator {
+
+    static final int NODE_CAPACITY = 8;
+    private static final double EPS = 1e-12;
+
+    private final double[] ax;
+    private final double[] ay;
+    private final double[] bx;
+    private final double[] by;
+    private final double[] cx;
+    private final double[] cy;
+
+    private double[] minX = new double[16];
+    private double[] minY = new double[16];
+    private double[] maxX = new double[16];
+    private double[] maxY = new double[16];
+    private int[] first = new int[16];
+    private int[] count = new int[16];
+    private boolean[] leaf = new boolean[16];
+    private int nodeCount;
+    private int[] children = new int[16];
+    private int childCount;
+    private final int root;
+
+    /**
+     * @param coords 6 coordonnées par triangle : (ax, ay, bx, by, cx, cy)
+     */
+    TriangleLocator(double[] coords, int triangleCount) {
+        ax = new double[triangleCount];
+        ay = new double[triangleCount];
+        bx = new double[triangleCount];
+        by = new double[triangleCount];
+        cx = new double[triangleCount];
+        cy = new double[triangleCount];
+        double[] lx = new double[triangleCount];
+        double[] ly = new double[triangleCount];
+        double[] hx = new double[triangleCount];
+        double[] hy = new double[triangleCount];
+        for (int t = 0; t < triangleCount; t++) {
+            ax[t] = coords[6 * t];
+            ay[t] = coords[6 * t + 1];
+            bx[t] = coords[6 * t + 2];
+            by[t] = coords[6 * t + 3];
+            cx[t] = coords[6 * t + 4];
+            cy[t] = coords[6 * t + 5];
+            lx[t] = Math.min(ax[t], Math.min(bx[t], cx[t]));
+            ly[t] = Math.min(ay[t], Math.min(by[t], cy[t]));
+            hx[t] = Math.max(ax[t], Math.max(bx[t], cx[t]));
+            hy[t] = Math.max(ay[t], Math.max(by[t], cy[t]));
+        }
+        this.root = triangleCount == 0 ? -1 : build(lx, ly, hx, hy, triangleCount);
+    }
+
+    private int build(double[] lx, double[] ly, double[] hx, double[] hy, int n) {
+        int[] level = packLevel(lx, ly, hx, hy, IntStream.range(0, n).toArray(), true);
+        while (level.length > 1) {
+            double[] nlx = new double[level.length];
+            double[] nly = new double[level.length];
+            double[] nhx = new double[level.length];
+            double[] nhy = new double[level.length];
+            for (int i = 0; i < level.length; i++) {
+                nlx[i] = minX[level[i]];
+                nly[i] = minY[level[i]];
+                nhx[i] = maxX[level[i]];
+                nhy[i] = maxY[level[i]];
+            }
+            int[] packed = packLevel(nlx, nly, nhx, nhy, IntStream.range(0, level.length).toArray(), false);
+            // packLevel renvoie des nœuds dont les enfants sont des positions
+            // dans level : on les traduit en identifiants de nœuds.
+            for (int node : packed) {
+                for (int k = first[node]; k < first[node] + count[node]; k++) {
+                    children[k] = level[children[k]];
+                }
+            }
+            level = packed;
+        }
+        return level[0];
+    }
+
+    /**
+     * Regroupe les entrées par tranches STR et crée un nœud par groupe.
+     */
+    private int[] packLevel(double[] lx, double[] ly, double[] hx, double[] hy, int[] items, boolean leaves) {
+        int n = items.length;
+        int nodes = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int slices = (int) Math.ceil(Math.sqrt(nodes));
+        int sliceSize = slices * NODE_CAPACITY;
+
+        Integer[] order = Arrays.stream(items).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingDouble(i -> lx[i] + hx[i]));
+        for (int s = 0; s < n; s += sliceSize) {
+            Arrays.sort(order, s, Math.min(n, s + sliceSize), Comparator.comparingDouble(i -> ly[i] + hy[i]));
+        }
+
+        int[] created = new int[nodes];
+        int c = 0;
+        for (int s = 0; s < n; s += sliceSize) {
+            int sliceEnd = Math.min(n, s + sliceSize);
+            for (int g = s; g < sliceEnd; g += NODE_CAPACITY) {
+                int end = Math.min(sliceEnd, g + NODE_CAPACITY);
+                int node = newNode(leaves);
+                first[node] = childCount;
+                count[node] = end - g;
+                double l0 = Double.POSITIVE_INFINITY;
+                double l1 = Double.POSITIVE_INFINITY;
+                double h0 = Double.NEGATIVE_INFINITY;
+                double h1 = Double.NEGATIVE_INFINITY;
+                for (int k = g; k < end; k++) {
+                    int item = order[k];
+                    addChild(item);
+                    l0 = Math.min(l0, lx[item]);
+                    l1 = Math.min(l1, ly[item]);
+                    h0 = Math.max(h0, hx[item]);
+                    h1 = Math.max(h1, hy[item]);
+                }
+                minX[node] = l0;
+                minY[node] = l1;
+                maxX[node] = h0;
+                maxY[node] = h1;
+                created[c++] = node;
+            }
+        }
+        return Arrays.copyOf(created, c);
+    }
+
+    /**
+     * Triangle contenant (x, y), ou -1 si le point est hors de la
+     * triangulation.
+     */
+    int find(double x, double y) {
+        if (root < 0) {
+            return -1;
+        }
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (x < minX[node] || x > maxX[node] || y < minY[node] || y > maxY[node]) {
+                continue;
+            }
+            int end = first[node] + count[node];
+            if (leaf[node]) {
+                for (int k = first[node]; k < end; k++) {
+                    if (contains(children[k], x, y)) {
+                        return children[k];
+                    }
+                }
+            } else {
+                for (int k = first[node]; k < end; k++) {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top * 2);
+                    }
+                    stack[top++] = children[k];
+                }
+            }
+        }
+        return -1;
+    }
+
+    boolean contains(int t, double x, double y) {
+        return contains(ax[t], ay[t], bx[t], by[t], cx[t], cy[t], x, y);
+    }
+
+    /**
+     * Test d'appartenance avec une tolérance relative à l'aire : un point
+     * sur une arête partagée, à l'arrondi près, appartient aux deux
+     * triangles.
+     */
+    static boolean contains(double ax, double ay, double bx, double by, double cx, double cy,
+            double x, double y) {
+        double area = DelaunayTriangulation.orient(ax, ay, bx, by, cx, cy);
+        double tol = -EPS * Math.abs(area);
+        return DelaunayTriangulation.orient(ax, ay, bx, by, x, y) >= tol
+                && DelaunayTriangulation.orient(bx, by, cx, cy, x, y) >= tol
+                && DelaunayTriangulation.orient(cx, cy, ax, ay, x, y) >= tol;
+    }
+
+    private int newNode(boolean isLeaf) {
+        if (nodeCount == leaf.length) {
+            int cap = nodeCount * 2;
+            minX = Arrays.copyOf(minX, cap);
+            minY = Arrays.copyOf(minY, cap);
+            maxX = Arrays.copyOf(maxX, cap);
+            maxY = Arrays.copyOf(maxY, cap);
+            first = Arrays.copyOf(first, cap);
+            count = Arrays.copyOf(count, cap);
+            leaf = Arrays.copyOf(leaf, cap);
+        }
+        leaf[nodeCount] = isLeaf;
+        return nodeCount++;
+    }
+
+    private void addChild(int child) {
+        if (childCount == children.length) {
+            children = Arrays.copyOf(children, childCount * 2);
+        }
+        children[childCount++] = child;
+    }
+}
@@ -0,0 +1,22 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+/**
+ * Facteur R d'une factorisation de moindres carrés, tel que A^T A = R^T R.
+ */
+public interface TriangularFactor {
+
+    /**
+     * Levier h = t^T (A^T A)^-1 t = ||R^-T t||² de la ligne de design t,
+     * c'est-à-dire l'élément diagonal de la matrice chapeau pour un point
+     * du jeu d'ajustement.
+     */
+    default double leverage(double[] terms) {
+        return leverage(terms, new double[terms.length]);
+    }
+
+    /**
+     * Variante sans allocation : work (au moins p éléments) sert de tampon
+     * pour la substitution avant, pour les évaluations en grande série.
+     */
+    double leverage(double[] terms, double[] work);
+}
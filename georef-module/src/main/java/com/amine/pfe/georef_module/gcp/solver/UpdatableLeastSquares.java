@@ -0,0 +1,193 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+/**
+ * Facteur triangulaire R (p x p) d'un problème de moindres carrés à deux
+ * seconds membres, mis à jour ligne par ligne.
+ *
+ * L'ajout d'une observation est une mise à jour de rang un par rotations
+ * de Givens, le retrait une "downdate" (algorithme LINPACK dchdd). Les deux
+ * coûtent O(p²), indépendamment du nombre de points déjà intégrés.
+ * On conserve R et z = Q^T b (p premières composantes) ; Q n'est pas gardée.
+ */
+public final class UpdatableLeastSquares implements TriangularFactor {
+
+    private final int p;
+    private final double[] r;
+    private final double[] zx;
+    private final double[] zy;
+    private final double[] c;
+    private final double[] s;
+    private int rows;
+
+    public UpdatableLeastSquares(int p) {
+        this.p = p;
+        this.r = new double[p * p];
+        this.zx = new double[p];
+        this.zy = new double[p];
+        this.c = new double[p];
+        this.s = new double[p];
+    }
+
+    /**
+     * Copie indépendante du facteur courant, utilisable après de nouvelles
+     * mises à jour de cet objet.
+     */
+    public UpdatableLeastSquares copy() {
+        UpdatableLeastSquares copy = new UpdatableLeastSquares(p);
+        System.arraycopy(r, 0, copy.r, 0, r.length);
+        System.arraycopy(zx, 0, copy.zx, 0, p);
+        System.arraycopy(zy, 0, copy.zy, 0, p);
+        copy.rows = rows;
+        return copy;
+    }
+
+    public int size() {
+        return p;
+    }
+
+    public int rowCount() {
+        return rows;
+    }
+
+    public double r(int i, int j) {
+        return r[i * p + j];
+    }
+
+    /**
+     * Intègre la ligne (terms, bx, by). terms n'est pas modifié.
+     */
+    public void addRow(double[] terms, double bx, double by) {
+        for (int j = 0; j < p; j++) {
+            double xj = terms[j];
+            for (int i = 0; i < j; i++) {
+                double rij = r[i * p + j];
+                double t = c[i] * rij + s[i] * xj;
+                xj = c[i] * xj - s[i] * rij;
+                r[i * p + j] = t;
+            }
+            double rjj = r[j * p + j];
+            double norm = Math.sqrt(rjj * rjj + xj * xj);
+            if (norm == 0.0) {
+                c[j] = 1.0;
+                s[j] = 0.0;
+            } else {
+                c[j] = rjj / norm;
+                s[j] = xj / norm;
+            }
+            r[j * p + j] = norm;
+        }
+        rotateIn(zx, bx);
+        rotateIn(zy, by);
+        rows++;
+    }
+
+    private void rotateIn(double[] z, double zeta) {
+        for (int i = 0; i < p; i++) {
+            double t = c[i] * z[i] + s[i] * zeta;
+            zeta = c[i] * zeta - s[i] * z[i];
+            z[i] = t;
+        }
+    }
+
+    /**
+     * Retire la ligne (terms, bx, by) précédemment ajoutée.
+     *
+     * @return false si le retrait rend le système singulier ; l'état est
+     *         alors inutilisable et doit être reconstruit.
+     */
+    public boolean removeRow(double[] terms, double bx, double by) {
+        // Résolution de R^T a = terms, a stocké dans s
+        double norm = 0.0;
+        for (int j = 0; j < p; j++) {
+            double sum = terms[j];
+            for (int i = 0; i < j; i++) {
+                sum -= r[i * p + j] * s[i];
+            }
+            double rjj = r[j * p + j];
+            if (rjj == 0.0) {
+                return false;
+            }
+            s[j] = sum / rjj;
+            norm += s[j] * s[j];
+        }
+        if (norm >= 1.0) {
+            return false;
+        }
+
+        double alpha = Math.sqrt(1.0 - norm);
+        for (int i = p - 1; i >= 0; i--) {
+            double scale = alpha + Math.abs(s[i]);
+            double a = alpha / scale;
+            double b = s[i] / scale;
+            double n = Math.sqrt(a * a + b * b);
+            c[i] = a / n;
+            s[i] = b / n;
+            alpha = scale * n;
+        }
+
+        for (int j = 0; j < p; j++) {
+            double xx = 0.0;
+            for (int i = j; i >= 0; i--) {
+                double rij = r[i * p + j];
+                double t = c[i] * xx + s[i] * rij;
+                r[i * p + j] = c[i] * rij - s[i] * xx;
+                xx = t;
+            }
+        }
+
+        rotateOut(zx, bx);
+        rotateOut(zy, by);
+        rows--;
+        return true;
+    }
+
+    private void rotateOut(double[] z, double zeta) {
+        for (int i = 0; i < p; i++) {
+            z[i] = (z[i] - s[i] * zeta) / c[i];
+            zeta = c[i] * zeta - s[i] * z[i];
+        }
+    }
+
+    /**
+     * Estimation grossière du conditionnement : max|R_ii| / min|R_ii|.
+     */
+    public double conditionEstimate() {
+        double max = 0.0;
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < p; i++) {
+            double d = Math.abs(r[i * p + i]);
+            max = Math.max(max, d);
+            min = Math.min(min, d);
+        }
+        return min == 0.0 ? Double.POSITIVE_INFINITY : max / min;
+    }
+
+    @Override
+    public double leverage(double[] terms, double[] w) {
+        double h = 0.0;
+        for (int j = 0; j < p; j++) {
+            double sum = terms[j];
+            for (int i = 0; i < j; i++) {
+                sum -= r[i * p + j] * w[i];
+            }
+            w[j] = sum / r[j * p + j];
+            h += w[j] * w[j];
+        }
+        return h;
+    }
+
+    public void solve(double[] paramsX, double[] paramsY) {
+        backSubstitute(zx, paramsX);
+        backSubstitute(zy, paramsY);
+    }
+
+    private void backSubstitute(double[] z, double[] x) {
+        for (int k = p - 1; k >= 0; k--) {
+            double sum = z[k];
+            for (int j = k + 1; j < p; j++) {
+                sum -= r[k * p + j] * x[j];
+            }
+            x[k] = sum / r[k * p + k];
+        }
+    }
+}
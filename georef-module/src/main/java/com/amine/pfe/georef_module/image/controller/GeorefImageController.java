@@ -2,6 +2,7 @@ package com.amine.pfe.georef_module.image.controller;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.UUID;
 
 import org.springframework.core.io.FileSystemResource;
@@ -11,6 +12,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -22,8 +24,12 @@ import org.springframework.web.multipart.MultipartFile;
 
 import com.amine.pfe.georef_module.exception.ImageNotFoundException;
 import com.amine.pfe.georef_module.image.dto.GeorefImageDto;
+import com.amine.pfe.georef_module.image.dto.UploadSessionDto;
 import com.amine.pfe.georef_module.image.exceptions.ImageAlreadyGeoreferencedException;
 import com.amine.pfe.georef_module.image.exceptions.UnsupportedImageFormatException;
+import com.amine.pfe.georef_module.image.exceptions.UploadOffsetMismatchException;
+import com.amine.pfe.georef_module.image.exceptions.UploadSessionNotFoundException;
+import com.amine.pfe.georef_module.image.service.ChunkedUploadService;
 import com.amine.pfe.georef_module.image.service.GeorefImageService;
 import com.amine.pfe.georef_module.image.service.port.FileStorageService;
 
@@ -45,6 +51,7 @@ public class GeorefImageController {
 
     private final GeorefImageService imageService;
     private final FileStorageService fileStorageService;
+    private final ChunkedUploadService chunkedUploadService;
 
     @Operation(summary = "Importer une image raster", description = "Permet d'importer une image à géoréférencer. Le fichier doit être au format PNG, JPEG ou TIFF.", responses = {
             @ApiResponse(responseCode = "200", description = "Image importée avec succès", content = @Content(mediaType = "application/json", schema = @Schema(implementation = GeorefImageDto.class))),
@@ -88,6 +95,127 @@ public class GeorefImageController {
         }
     }
 
+    @Operation(summary = "Créer un import par morceaux", description = "Ouvre une session d'import reprenable pour les grands scans. Les morceaux sont ensuite envoyés à l'offset courant, puis l'import est finalisé.", responses = {
+            @ApiResponse(responseCode = "201", description = "Session d'import créée", content = @Content(mediaType = "application/json", schema = @Schema(implementation = UploadSessionDto.class))),
+            @ApiResponse(responseCode = "400", description = "Nom de fichier ou taille invalide"),
+            @ApiResponse(responseCode = "415", description = "Format de fichier non supporté"),
+            @ApiResponse(responseCode = "500", description = "Erreur interne lors de la création de la session"),
+    })
+    @PostMapping(value = "/uploads", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<UploadSessionDto> createUploadSession(@RequestParam("filename") String filename,
+            @RequestParam("contentType") String contentType,
+            @RequestParam(value = "size", required = false) Long size) {
+        try {
+
+            UploadSessionDto session = chunkedUploadService.createSession(filename, contentType, size);
+            return ResponseEntity.status(HttpStatus.CREATED).body(session);
+
+        } catch (UnsupportedImageFormatException e) {
+
+            log.error("Format de fichier non supporté : {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(null);
+
+        } catch (IllegalArgumentException e) {
+
+            log.error("Erreur lors de la création de l'import : {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(null);
+
+        } catch (Exception e) {
+
+            log.error("Erreur inattendue lors de la création de l'import : {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+
+        }
+    }
+
+    @Operation(summary = "Envoyer un morceau", description = "Ajoute le corps de la requête au fichier à partir de l'offset indiqué, qui doit être l'offset courant de la session. En cas de coupure, les octets reçus restent acquis.", responses = {
+            @ApiResponse(responseCode = "200", description = "Morceau écrit, offset mis à jour", content = @Content(mediaType = "application/json", schema = @Schema(implementation = UploadSessionDto.class))),
+            @ApiResponse(responseCode = "400", description = "Taille annoncée dépassée"),
+            @ApiResponse(responseCode = "404", description = "Session d'import non trouvée"),
+            @ApiResponse(responseCode = "409", description = "Offset différent de l'offset courant ou morceau déjà en cours"),
+            @ApiResponse(responseCode = "500", description = "Erreur interne lors de l'écriture du morceau"),
+    })
+    @PatchMapping(value = "/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<UploadSessionDto> appendUploadChunk(@PathVariable UUID uploadId,
+            @RequestParam("offset") long offset, InputStream body) {
+        try {
+
+            UploadSessionDto session = chunkedUploadService.appendChunk(uploadId, offset, body);
+            return ResponseEntity.ok(session);
+
+        } catch (UploadSessionNotFoundException e) {
+
+            log.error("Session d'import non trouvée : {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+
+        } catch (UploadOffsetMismatchException e) {
+
+            log.warn("Offset d'import invalide : {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(chunkedUploadService.getSession(uploadId));
+
+        } catch (IllegalArgumentException e) {
+
+            log.error("Morceau refusé : {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body(null);
+
+        } catch (Exception e) {
+
+            log.error("Erreur lors de l'écriture du morceau : {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+
+        }
+    }
+
+    @Operation(summary = "Consulter un import par morceaux", description = "Renvoie l'offset courant de la session, à partir duquel reprendre l'envoi.", responses = {
+            @ApiResponse(responseCode = "200", description = "Session d'import trouvée", content = @Content(mediaType = "application/json", schema = @Schema(implementation = UploadSessionDto.class))),
+            @ApiResponse(responseCode = "404", description = "Session d'import non trouvée"),
+    })
+    @GetMapping(value = "/uploads/{uploadId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<UploadSessionDto> getUploadSession(@PathVariable UUID uploadId) {
+        try {
+
+            return ResponseEntity.ok(chunkedUploadService.getSession(uploadId));
+
+        } catch (UploadSessionNotFoundException e) {
+
+            log.error("Session d'import non trouvée : {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+
+        }
+    }
+
+    @Operation(summary = "Finaliser un import par morceaux", description = "Enregistre l'image reçue comme un import direct (dédoublonnage par empreinte SHA-256) et ferme la session.", responses = {
+            @ApiResponse(responseCode = "200", description = "Image importée avec succès", content = @Content(mediaType = "application/json", schema = @Schema(implementation = GeorefImageDto.class))),
+            @ApiResponse(responseCode = "404", description = "Session d'import non trouvée"),
+            @ApiResponse(responseCode = "409", description = "Import incomplet, ou image déjà géoréférencée"),
+            @ApiResponse(responseCode = "500", description = "Erreur interne lors de la finalisation"),
+    })
+    @PostMapping(value = "/uploads/{uploadId}/complete", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<GeorefImageDto> completeUpload(@PathVariable UUID uploadId) {
+        try {
+
+            GeorefImageDto imageDto = chunkedUploadService.finalizeUpload(uploadId);
+            log.info("Image importée par morceaux avec succès : {}", imageDto);
+            return ResponseEntity.ok(imageDto);
+
+        } catch (UploadSessionNotFoundException e) {
+
+            log.error("Session d'import non trouvée : {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+
+        } catch (UploadOffsetMismatchException | ImageAlreadyGeoreferencedException e) {
+
+            log.warn("Finalisation refusée : {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(null);
+
+        } catch (Exception e) {
+
+            log.error("Erreur inattendue lors de la finalisation de l'import : {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+
+        }
+    }
+
     @Operation(summary = "Mettre à jour les paramètres de géoréférencement", description = "Met à jour les paramètres de géoréférencement d'une image existante.", responses = {
             @ApiResponse(responseCode = "200", description = "Paramètres de géoréférencement mis à jour avec succès", content = @Content(mediaType = "application/json", schema = @Schema(implementation = GeorefImageDto.class))),
             @ApiResponse(responseCode = "404", description = "Image non trouvée", content = @Content(mediaType = "application/json", schema = @Schema(implementation = GeorefImageDto.class))),
@@ -42,6 +42,7 @@ public class GeorefLayerController {
 
     @Operation(summary = "Géoréférencer une image", description = "Effectue le géoréférencement d'une image en fonction des paramètres fournis et publie la couche correspondante.", responses = {
             @ApiResponse(responseCode = "200", description = "Image géoréférencée avec succès", content = @Content(mediaType = "application/json", schema = @Schema(implementation = GeorefResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Méthode robuste non disponible pour la transformation", content = @Content(mediaType = "application/json", schema = @Schema(implementation = GeorefResponse.class))),
             @ApiResponse(responseCode = "404", description = "Image non trouvée", content = @Content(mediaType = "application/json", schema = @Schema(implementation = GeorefResponse.class))),
             @ApiResponse(responseCode = "500", description = "Erreur interne lors du géoréférencement", content = @Content(mediaType = "application/json", schema = @Schema(implementation = GeorefResponse.class)))
     })
@@ -64,6 +65,11 @@ public class GeorefLayerController {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new GeorefResponse(false, 0, e.getMessage()));
 
+        } catch (IllegalArgumentException e) {
+            log.warn("Paramètres de géoréférencement invalides : {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(new GeorefResponse(false, 0, e.getMessage()));
+
         } catch (Exception e) {
             log.error("Erreur inattendue lors du géoréférencement", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
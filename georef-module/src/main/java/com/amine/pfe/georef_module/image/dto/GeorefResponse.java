@@ -1,6 +1,7 @@
 package com.amine.pfe.georef_module.image.dto;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 import com.amine.pfe.georef_module.enums.GeorefStatus;
 
@@ -20,6 +21,10 @@ public class GeorefResponse {
     private GeorefStatus status;
     private LocalDateTime lastGeoreferencingDate;
     private GeorefLayerDto georefLayer;
+    // Ajustement robuste (GeorefSettings.robustMethod) : un élément par GCP
+    private List<Boolean> inliers;
+    private List<Double> weights;
+    private Double robustScale;
 
     public GeorefResponse(boolean value, int nbPoints, String msg) {
         enoughGCPs = value;
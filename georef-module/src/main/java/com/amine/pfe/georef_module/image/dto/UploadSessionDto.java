@@ -0,0 +1,17 @@
+package com.amine.pfe.georef_module.image.dto;
+
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data @NoArgsConstructor @AllArgsConstructor
+public class UploadSessionDto {
+    private UUID uploadId;
+    private String filename;
+    // Nombre d'octets déjà reçus : position du prochain morceau
+    private long offset;
+    // Taille annoncée à la création, null si inconnue
+    private Long size;
+}
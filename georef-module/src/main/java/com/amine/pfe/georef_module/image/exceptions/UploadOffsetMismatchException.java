@@ -0,0 +1,8 @@
+package com.amine.pfe.georef_module.image.exceptions;
+
+public class UploadOffsetMismatchException extends RuntimeException {
+
+    public UploadOffsetMismatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.amine.pfe.georef_module.image.exceptions;
+
+public class UploadSessionNotFoundException extends RuntimeException {
+
+    public UploadSessionNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,70 @@
+package com.amine.pfe.georef_module.image.repository;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.amine.pfe.georef_module.enums.TransformationType;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Met à jour les contraintes CHECK des colonnes d'enum persistées en texte.
+ *
+ * Hibernate génère "CHECK (col IN (...))" à la création de la table, mais
+ * ddl-auto=update ne l'élargit pas quand l'enum gagne des valeurs : sur une
+ * base existante, l'enregistrement d'une nouvelle valeur échoue. La
+ * contrainte est donc supprimée puis recréée d'après l'enum, dans un seul
+ * bloc (atomique), une fois le schéma JPA à jour et avant que l'application
+ * ne serve des requêtes.
+ *
+ * Hors PostgreSQL, ou sans les droits nécessaires, la mise à jour est
+ * abandonnée sans bloquer l'application.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class EnumCheckConstraintMigration {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EnumCheckConstraintMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        syncCheckConstraint("georef_images", "transformation_type", TransformationType.values());
+    }
+
+    void syncCheckConstraint(String table, String column, Enum<?>[] values) {
+        String allowed = Arrays.stream(values)
+                .map(value -> "'" + value.name() + "'")
+                .collect(Collectors.joining(", "));
+        String constraint = table + "_" + column + "_check";
+
+        // Supprime toute contrainte CHECK portant sur la colonne, quel que soit son nom
+        String sql = "DO $$ DECLARE c record; BEGIN "
+                + "FOR c IN SELECT conname FROM pg_constraint "
+                + "WHERE conrelid = 'georef." + table + "'::regclass AND contype = 'c' "
+                + "AND pg_get_constraintdef(oid) LIKE '%" + column + "%' LOOP "
+                + "EXECUTE format('ALTER TABLE georef." + table + " DROP CONSTRAINT %I', c.conname); "
+                + "END LOOP; "
+                + "ALTER TABLE georef." + table + " ADD CONSTRAINT " + constraint
+                + " CHECK (" + column + " IN (" + allowed + ")); "
+                + "END $$";
+
+        try {
+            jdbcTemplate.execute(sql);
+            log.info("Check constraint {} synchronized with {} values", constraint, values.length);
+
+        } catch (DataAccessException e) {
+            log.warn("Check constraint {} could not be synchronized: {}", constraint, e.getMessage());
+        }
+    }
+}
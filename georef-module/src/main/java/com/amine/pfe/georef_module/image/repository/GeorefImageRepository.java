@@ -1,5 +1,6 @@
 package com.amine.pfe.georef_module.image.repository;
 
+import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -7,6 +8,6 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import com.amine.pfe.georef_module.entity.GeorefImage;
 
 public interface GeorefImageRepository extends JpaRepository<GeorefImage, UUID> {
-    boolean existsByHash(String hash);
-    GeorefImage findByHash(String hash);
+    // Image d'origine (les copies de re-géoréférencement n'ont pas de date d'import)
+    Optional<GeorefImage> findFirstByHashOrderByUploadingDateAsc(String hash);
 }
\ No newline at end of file
@@ -1,12 +1,24 @@
 package com.amine.pfe.georef_module.image.repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import com.amine.pfe.georef_module.entity.GeorefLayer;
+import com.amine.pfe.georef_module.image.dto.GeorefLayerDto;
 
 public interface GeorefLayerRepository extends JpaRepository<GeorefLayer, UUID> {
     Optional<GeorefLayer> findByImageId(UUID imageId);
+
+    /**
+     * Liste des couches projetée directement en DTO : findAll() chargerait
+     * l'image (OneToOne EAGER) de chaque couche par une requête séparée.
+     */
+    @Query("SELECT new com.amine.pfe.georef_module.image.dto.GeorefLayerDto("
+            + "l.id, l.image.id, l.workspace, l.storeName, l.layerName, l.wmsUrl, l.status) "
+            + "FROM GeorefLayer l")
+    List<GeorefLayerDto> findAllDtos();
 }
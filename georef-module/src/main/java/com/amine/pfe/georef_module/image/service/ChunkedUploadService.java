@@ -0,0 +1,243 @@
+package com.amine.pfe.georef_module.image.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.amine.pfe.georef_module.image.dto.GeorefImageDto;
+import com.amine.pfe.georef_module.image.dto.UploadSessionDto;
+import com.amine.pfe.georef_module.image.exceptions.UploadOffsetMismatchException;
+import com.amine.pfe.georef_module.image.exceptions.UploadSessionNotFoundException;
+import com.amine.pfe.georef_module.image.service.port.FileStorageService;
+import com.amine.pfe.georef_module.image.service.port.StagedFile;
+import com.amine.pfe.georef_module.image.util.FileUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Imports reprenables par morceaux pour les grands scans.
+ *
+ * Chaque session écrit dans un fichier temporaire du répertoire des
+ * originaux, par écritures positionnelles, et met à jour son SHA-256 au fil
+ * des tampons écrits. Un morceau doit commencer à l'offset courant ; s'il
+ * est interrompu, les octets déjà écrits restent acquis et le client reprend
+ * à l'offset renvoyé par la session. La finalisation passe par le même
+ * enregistrement (dédoublonnage par empreinte) que l'import direct.
+ *
+ * Les sessions sont gardées en mémoire : inactives au-delà de leur durée de
+ * vie ou perdues au redémarrage, elles doivent être recommencées. Les
+ * sessions expirées sont purgées périodiquement ; au démarrage, les fichiers
+ * temporaires plus anciens que cette durée de vie (sessions perdues) sont
+ * supprimés.
+ */
+@Service
+@Slf4j
+public class ChunkedUploadService {
+
+    private static final int CHUNK_BUFFER_SIZE = 64 * 1024;
+
+    private final FileStorageService fileStorageService;
+    private final GeorefImageService imageService;
+    private final long maxSize;
+    private final Duration sessionTtl;
+    private final long sessionTtlNanos;
+
+    private final Map<UUID, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    public ChunkedUploadService(FileStorageService fileStorageService,
+            GeorefImageService imageService,
+            @Value("${georef.upload.max-size-bytes:4294967296}") long maxSize,
+            @Value("${georef.upload.session-ttl-hours:24}") long sessionTtlHours) {
+        this.fileStorageService = fileStorageService;
+        this.imageService = imageService;
+        this.maxSize = maxSize;
+        this.sessionTtl = Duration.ofHours(sessionTtlHours);
+        this.sessionTtlNanos = sessionTtl.toNanos();
+    }
+
+    public UploadSessionDto createSession(String filename, String contentType, Long size) throws IOException {
+        imageService.validateUpload(contentType, filename);
+        if (size != null && (size <= 0 || size > maxSize)) {
+            throw new IllegalArgumentException("La taille annoncée doit être comprise entre 1 et " + maxSize
+                    + " octets.");
+        }
+
+        UploadSession session = new UploadSession(UUID.randomUUID(), filename, size,
+                fileStorageService.createStagingFile());
+        sessions.put(session.id, session);
+        log.info("Session d'import {} créée pour {} ({} octets annoncés)", session.id, filename, size);
+        return toDto(session);
+    }
+
+    public UploadSessionDto getSession(UUID uploadId) {
+        return toDto(requireSession(uploadId));
+    }
+
+    /**
+     * Ajoute le corps de la requête à partir de offset, qui doit être l'offset
+     * courant de la session.
+     *
+     * @return la session, avec l'offset atteint
+     */
+    public UploadSessionDto appendChunk(UUID uploadId, long offset, InputStream input) throws IOException {
+        UploadSession session = requireSession(uploadId);
+        if (!session.lock.tryLock()) {
+            throw new UploadOffsetMismatchException("Un morceau est déjà en cours d'envoi pour l'import " + uploadId);
+        }
+        try {
+            if (offset != session.offset) {
+                throw new UploadOffsetMismatchException(
+                        "Offset attendu : " + session.offset + ", reçu : " + offset);
+            }
+
+            ReadableByteChannel in = Channels.newChannel(input);
+            try (FileChannel out = FileChannel.open(session.path, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BUFFER_SIZE);
+                while (in.read(buffer) != -1) {
+                    buffer.flip();
+                    long limit = session.size != null ? session.size : maxSize;
+                    if (session.offset + buffer.remaining() > limit) {
+                        throw new IllegalArgumentException("Le fichier dépasse la taille de " + limit + " octets.");
+                    }
+
+                    ByteBuffer written = buffer.duplicate();
+                    long position = session.offset;
+                    while (buffer.hasRemaining()) {
+                        position += out.write(buffer, position);
+                    }
+                    // L'empreinte et l'offset n'avancent qu'une fois le tampon entièrement écrit
+                    session.digest.update(written);
+                    session.offset = position;
+                    session.touch();
+                    buffer.clear();
+                }
+            }
+            return toDto(session);
+
+        } finally {
+            session.touch();
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Termine l'import : le fichier reçu est enregistré comme un import
+     * direct et la session est fermée. En cas d'échec de l'enregistrement, le
+     * fichier temporaire est supprimé : l'empreinte est consommée, l'import
+     * doit être recommencé.
+     */
+    public GeorefImageDto finalizeUpload(UUID uploadId) throws IOException {
+        UploadSession session = requireSession(uploadId);
+        if (!session.lock.tryLock()) {
+            throw new UploadOffsetMismatchException("Un morceau est en cours d'envoi pour l'import " + uploadId);
+        }
+        try {
+            if (session.offset == 0 || (session.size != null && session.offset != session.size)) {
+                throw new UploadOffsetMismatchException("Import incomplet : " + session.offset + " octets reçus sur "
+                        + (session.size != null ? session.size : "?") + ".");
+            }
+
+            StagedFile stagedFile = new StagedFile(FileUtils.toHex(session.digest.digest()), session.path,
+                    session.offset);
+            boolean registered = false;
+            try {
+                GeorefImageDto image = imageService.registerStagedFile(stagedFile, session.filename);
+                registered = true;
+                return image;
+            } finally {
+                sessions.remove(uploadId);
+                if (!registered) {
+                    fileStorageService.discardStagedFile(stagedFile);
+                }
+            }
+
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    private UploadSession requireSession(UUID uploadId) {
+        if (uploadId == null) {
+            throw new IllegalArgumentException("L'ID de l'import ne peut pas être null.");
+        }
+        UploadSession session = sessions.get(uploadId);
+        if (session == null) {
+            throw new UploadSessionNotFoundException("Import avec l'ID " + uploadId + " introuvable.");
+        }
+        return session;
+    }
+
+    /**
+     * Fichiers temporaires laissés par les sessions d'une exécution
+     * précédente : aucune session n'a survécu au redémarrage.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void purgeOrphanedStagingFiles() {
+        int deleted = fileStorageService.purgeStagingFiles(sessionTtl);
+        if (deleted > 0) {
+            log.info("{} fichier(s) temporaire(s) d'import orphelin(s) supprimé(s)", deleted);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${georef.upload.purge-interval-ms:600000}")
+    public void purgeExpiredSessions() {
+        long now = System.nanoTime();
+        sessions.values().removeIf(session -> {
+            if (now - session.lastActivity <= sessionTtlNanos || !session.lock.tryLock()) {
+                return false;
+            }
+            try {
+                log.info("Session d'import {} expirée, fichier temporaire supprimé", session.id);
+                fileStorageService.discardStagedFile(new StagedFile(null, session.path, session.offset));
+                return true;
+            } finally {
+                session.lock.unlock();
+            }
+        });
+    }
+
+    private static UploadSessionDto toDto(UploadSession session) {
+        return new UploadSessionDto(session.id, session.filename, session.offset, session.size);
+    }
+
+    private static final class UploadSession {
+
+        private final UUID id;
+        private final String filename;
+        private final Long size;
+        private final Path path;
+        private final MessageDigest digest = FileUtils.newSha256Digest();
+        // Un seul morceau à la fois ; l'offset et l'empreinte sont gardés par ce verrou
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long offset;
+        private volatile long lastActivity = System.nanoTime();
+
+        UploadSession(UUID id, String filename, Long size, Path path) {
+            this.id = id;
+            this.filename = filename;
+            this.size = size;
+            this.path = path;
+        }
+
+        void touch() {
+            lastActivity = System.nanoTime();
+        }
+    }
+}
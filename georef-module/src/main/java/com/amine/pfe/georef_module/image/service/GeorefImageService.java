@@ -2,7 +2,9 @@ package com.amine.pfe.georef_module.image.service;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.stereotype.Service;
@@ -18,7 +20,7 @@ import com.amine.pfe.georef_module.image.mapper.ImageMapper;
 import com.amine.pfe.georef_module.image.repository.GeorefImageRepository;
 import com.amine.pfe.georef_module.image.service.port.FileStorageService;
 import com.amine.pfe.georef_module.image.service.port.GeorefImageFactory;
-import com.amine.pfe.georef_module.image.service.port.HashCalculator;
+import com.amine.pfe.georef_module.image.service.port.StagedFile;
 import com.amine.pfe.georef_module.image.util.FileUtils;
 
 import jakarta.transaction.Transactional;
@@ -32,25 +34,43 @@ import lombok.extern.slf4j.Slf4j;
 public class GeorefImageService {
 
     private final GeorefImageRepository repository;
-    private final HashCalculator hashCalculator;
     private final FileStorageService fileStorageService;
     private final GeorefImageFactory imageFactory;
 
     public GeorefImageDto uploadImage(MultipartFile file) throws IOException {
-        String mimeType = file.getContentType();
+        validateUpload(file.getContentType(), file.getOriginalFilename());
+
+        // Une seule lecture du flux : écriture sur disque et empreinte en même temps
+        StagedFile stagedFile;
+        try (InputStream inputStream = file.getInputStream()) {
+            stagedFile = fileStorageService.stageOriginalFile(inputStream);
+        }
+
+        return registerStagedFile(stagedFile, file.getOriginalFilename());
+    }
+
+    public void validateUpload(String mimeType, String originalFilename) {
         if (mimeType == null || !FileStorageService.SUPPORTED_MIME_TYPES.contains(mimeType)) {
             throw new UnsupportedImageFormatException("Format non supporte : " + mimeType);
         }
 
-        String originalFilename = file.getOriginalFilename();
         if (originalFilename == null) {
             throw new IllegalArgumentException("Nom de fichier manquant dans l'image importee.");
         }
+    }
 
-        String hash = hashCalculator.calculate(file);
+    /**
+     * Enregistre un fichier reçu (import direct ou par morceaux) : renvoie
+     * l'image existante de même empreinte, sinon promeut le fichier sous son
+     * nom définitif et crée l'image.
+     */
+    public GeorefImageDto registerStagedFile(StagedFile stagedFile, String originalFilename) throws IOException {
+        String hash = stagedFile.getHash();
 
-        if (repository.existsByHash(hash)) {
-            GeorefImage existingImage = repository.findByHash(hash);
+        Optional<GeorefImage> existing = repository.findFirstByHashOrderByUploadingDateAsc(hash);
+        if (existing.isPresent()) {
+            fileStorageService.discardStagedFile(stagedFile);
+            GeorefImage existingImage = existing.get();
 
             if (existingImage.getStatus() == GeorefStatus.COMPLETED) {
                 throw new ImageAlreadyGeoreferencedException(
@@ -63,8 +83,13 @@ public class GeorefImageService {
         }
 
         String filename = hash + "_" + originalFilename;
-        Path storedPath = fileStorageService.existsInOriginalDir(filename);
-        storedPath = fileStorageService.saveOriginalFile(file, filename);
+        Path storedPath;
+        try {
+            storedPath = fileStorageService.promoteStagedFile(stagedFile, filename);
+        } catch (IOException | RuntimeException e) {
+            fileStorageService.discardStagedFile(stagedFile);
+            throw e;
+        }
 
         GeorefImage image = imageFactory.create(hash, storedPath, originalFilename);
         GeorefImage saved = repository.save(image);
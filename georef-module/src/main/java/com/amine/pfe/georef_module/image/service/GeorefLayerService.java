@@ -5,23 +5,24 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 import org.springframework.stereotype.Service;
 
-import com.amine.pfe.georef_module.entity.Gcp;
 import com.amine.pfe.georef_module.entity.GeorefImage;
 import com.amine.pfe.georef_module.entity.GeorefLayer;
+import com.amine.pfe.georef_module.enums.GeorefSettings;
 import com.amine.pfe.georef_module.enums.GeorefStatus;
 import com.amine.pfe.georef_module.enums.LayerStatus;
+import com.amine.pfe.georef_module.enums.RobustMethod;
 import com.amine.pfe.georef_module.exception.CartographicServerException;
 import com.amine.pfe.georef_module.exception.GeorefLayerNotFoundException;
 import com.amine.pfe.georef_module.exception.ImageNotFoundException;
 import com.amine.pfe.georef_module.gcp.dto.GcpDto;
 import com.amine.pfe.georef_module.gcp.dto.LoadGcpsRequest;
 import com.amine.pfe.georef_module.gcp.dto.ResidualsResult;
-import com.amine.pfe.georef_module.gcp.mapper.GcpMapper;
 import com.amine.pfe.georef_module.gcp.service.GcpService;
 import com.amine.pfe.georef_module.gcp.service.port.ResidualsService;
 import com.amine.pfe.georef_module.image.dto.GeorefLayerDto;
@@ -58,27 +59,17 @@ public class GeorefLayerService {
     @Transactional
     public GeorefResponse georeferenceImage(GeorefRequest request, UUID imageId) throws IOException {
 
+        validateRobustMethod(request.getGeorefSettings());
+
+        // Les déplacements de GCPs encore en écriture différée passent avant le géoréférencement
+        gcpService.flushPendingEdits(imageId);
+
         int minPointsRequired = residualsService
                 .getMinimumPointsRequired(request.getGeorefSettings().getTransformationType());
 
         if (!residualsService.hasEnoughGCPs(request.getGcps(), request.getGeorefSettings().getTransformationType())) {
-            String message = "";
-            switch (request.getGeorefSettings().getTransformationType()) {
-                case POLYNOMIALE_1:
-                    message = request.getGeorefSettings().getTransformationType().getLabel()
-                            + " : Au moins 3 points de contrôle requis";
-                    break;
-                case POLYNOMIALE_2:
-                    message = request.getGeorefSettings().getTransformationType().getLabel()
-                            + " : Au moins 6 points de contrôle requis";
-                    break;
-                case POLYNOMIALE_3:
-                    message = request.getGeorefSettings().getTransformationType().getLabel()
-                            + " : Au moins 10 points de contrôle requis";
-                    break;
-                default:
-                    break;
-            }
+            String message = request.getGeorefSettings().getTransformationType().getLabel()
+                    + " : Au moins " + minPointsRequired + " points de contrôle requis";
             return new GeorefResponse(false, minPointsRequired, message);
         }
 
@@ -93,9 +84,13 @@ public class GeorefLayerService {
             image.setStatus(GeorefStatus.PROCESSING);
             georefImageRepository.save(image);
 
+            ResidualsResult result = computeResiduals(request);
+            List<GcpDto> warpGcps = selectWarpGcps(request.getGcps(), result);
+            request.getGeorefSettings().setTransformCoefficients(result.getCoefficients());
+
             InputStream georefInputStream = geospatialServer.processGeoref(
                     originalImage,
-                    request.getGcps(),
+                    warpGcps,
                     request.getGeorefSettings());
 
             String georefFilenameWithHash = image.getHash() + "_" + request.getGeorefSettings().getOutputFilename();
@@ -104,11 +99,6 @@ public class GeorefLayerService {
                     georefInputStream,
                     georefFilenameWithHash);
 
-            ResidualsResult result = residualsService.computeResiduals(
-                    request.getGcps(),
-                    request.getGeorefSettings().getTransformationType(),
-                    request.getGeorefSettings().getSrid());
-
             image.setMeanResidual(result.getRmse());
             gcpService.loadGcps(new LoadGcpsRequest(imageId, request.getGcps(), true));
             image.setCompression(request.getGeorefSettings().getCompressionType());
@@ -140,13 +130,17 @@ public class GeorefLayerService {
 
             georefLayerRepository.save(layer);
 
-            GeorefResponse georefResponse = new GeorefResponse(
-                    true,
-                    0,
-                    "",
-                    image.getStatus(),
-                    image.getLastGeoreferencingDate(),
-                    ImageMapper.toDto(layer));
+            GeorefResponse georefResponse = GeorefResponse.builder()
+                    .enoughGCPs(true)
+                    .minPointsRequired(0)
+                    .message("")
+                    .status(image.getStatus())
+                    .lastGeoreferencingDate(image.getLastGeoreferencingDate())
+                    .georefLayer(ImageMapper.toDto(layer))
+                    .inliers(result.getInliers())
+                    .weights(result.getWeights())
+                    .robustScale(result.getRobustScale())
+                    .build();
 
             return georefResponse;
 
@@ -163,6 +157,65 @@ public class GeorefLayerService {
         }
     }
 
+    private void validateRobustMethod(GeorefSettings settings) {
+        if (isRobust(settings) && !residualsService.supportsRobustFit(settings.getTransformationType())) {
+            throw new IllegalArgumentException("Estimation robuste " + settings.getRobustMethod().getLabel()
+                    + " non disponible pour la transformation " + settings.getTransformationType().getLabel());
+        }
+    }
+
+    private static boolean isRobust(GeorefSettings settings) {
+        return settings.getRobustMethod() != null && settings.getRobustMethod() != RobustMethod.NONE;
+    }
+
+    private ResidualsResult computeResiduals(GeorefRequest request) {
+        GeorefSettings settings = request.getGeorefSettings();
+        if (!isRobust(settings)) {
+            return residualsService.computeStatelessResiduals(
+                    request.getGcps(),
+                    settings.getTransformationType(),
+                    settings.getSrid());
+        }
+        return residualsService.computeRobustResiduals(
+                request.getGcps(),
+                settings.getTransformationType(),
+                settings.getSrid(),
+                settings.getRobustMethod());
+    }
+
+    /**
+     * GDAL recalcule sa transformation par moindres carrés non pondérés à
+     * partir des GCPs reçus. Après un ajustement robuste, chaque GCP lui est
+     * transmis à sa position par la transformation robuste : ces points sont
+     * exactement sur un polynôme du degré demandé, que GDAL retrouve donc tel
+     * quel, poids de Huber et rejet RANSAC compris. Les GCPs enregistrés pour
+     * l'image restent les points saisis.
+     */
+    private List<GcpDto> selectWarpGcps(List<GcpDto> gcps, ResidualsResult result) {
+        if (result.getFittedMapX() == null) {
+            return gcps;
+        }
+
+        List<GcpDto> warpGcps = new ArrayList<>(gcps.size());
+        for (int i = 0; i < gcps.size(); i++) {
+            GcpDto gcp = gcps.get(i);
+            warpGcps.add(GcpDto.builder()
+                    .id(gcp.getId())
+                    .imageId(gcp.getImageId())
+                    .index(gcp.getIndex())
+                    .sourceX(gcp.getSourceX())
+                    .sourceY(gcp.getSourceY())
+                    .mapX(result.getFittedMapX().get(i))
+                    .mapY(result.getFittedMapY().get(i))
+                    .build());
+        }
+        if (result.getInliers() != null && result.getInliers().contains(false)) {
+            log.info("{} GCP(s) aberrant(s) sans influence sur le géoréférencement",
+                    result.getInliers().stream().filter(inlier -> !inlier).count());
+        }
+        return warpGcps;
+    }
+
     @Transactional
     public void deleteGeorefLayerById(UUID georefLayerId) throws IOException {
         GeorefLayer layer = georefLayerRepository.findById(georefLayerId)
@@ -208,8 +261,7 @@ public class GeorefLayerService {
     }
 
     public List<GeorefLayerDto> getAllGeorefLayers() {
-        List<GeorefLayer> georefLayers = georefLayerRepository.findAll();
-        return ImageMapper.toDtoList(georefLayers);
+        return georefLayerRepository.findAllDtos();
     }
 
     @Transactional
@@ -218,15 +270,16 @@ public class GeorefLayerService {
             throw new IllegalArgumentException("L'ID de l'image ne peut pas être null");
         }
 
+        gcpService.flushPendingEdits(imageId);
+
         final GeorefImage sourceImage = georefImageRepository.findById(imageId)
                 .orElseThrow(() -> new ImageNotFoundException("Image avec l'ID " + imageId + " non trouvée"));
 
         final GeorefImage regeorefImage = createRegeorefImageFrom(sourceImage);
-        final GeorefImage savedImage = georefImageRepository.save(regeorefImage);
-
-        copyGcpsToNewImage(sourceImage.getGcps(), savedImage.getId());
+        // La copie des GCPs se fait en SQL : l'image doit déjà être en base
+        final GeorefImage savedImage = georefImageRepository.saveAndFlush(regeorefImage);
 
-        List<GcpDto> regeorefImageGcps = gcpService.getGcpsByImageId(savedImage.getId());
+        List<GcpDto> regeorefImageGcps = gcpService.cloneGcps(sourceImage.getId(), savedImage.getId());
 
         return new RegeorefResponse(ImageMapper.toDto(savedImage), regeorefImageGcps);
     }
@@ -244,17 +297,4 @@ public class GeorefLayerService {
         return regeorefImage;
     }
 
-    private void copyGcpsToNewImage(List<Gcp> sourceGcps, UUID targetImageId) {
-        if (sourceGcps == null || sourceGcps.isEmpty()) {
-            return;
-        }
-
-        List<GcpDto> gcpDtos = GcpMapper.toGcpDtoList(sourceGcps);
-
-        gcpDtos.forEach(gcpDto -> {
-            gcpDto.setImageId(targetImageId);
-            gcpService.addGcp(gcpDto);
-        });
-    }
-
 }
@@ -4,21 +4,41 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
 
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
 
 import com.amine.pfe.georef_module.config.StorageConfig;
 import com.amine.pfe.georef_module.exception.ImageNotFoundException;
 import com.amine.pfe.georef_module.image.service.port.FileStorageService;
+import com.amine.pfe.georef_module.image.service.port.StagedFile;
+import com.amine.pfe.georef_module.image.util.FileUtils;
+
+import lombok.extern.slf4j.Slf4j;
 
 @Component
+@Slf4j
 public class LocalFileStorageService implements FileStorageService {
 
+    private static final int STAGING_BUFFER_SIZE = 64 * 1024;
+    private static final String STAGING_PREFIX = ".upload-";
+    private static final String STAGING_SUFFIX = ".tmp";
+
     private final StorageConfig storageConfig;
 
     public LocalFileStorageService(StorageConfig storageConfig) {
@@ -57,15 +77,103 @@ public class LocalFileStorageService implements FileStorageService {
         return targetPath;
     }
 
+    /**
+     * Fichier temporaire vide dans le répertoire des originaux : le renommage
+     * final reste ainsi sur le même système de fichiers, donc atomique.
+     */
+    @Override
+    public Path createStagingFile() throws IOException {
+        return Files.createTempFile(storageConfig.getOriginalDir(), STAGING_PREFIX, STAGING_SUFFIX);
+    }
+
+    /**
+     * Écrit le flux dans un fichier temporaire du répertoire des originaux en
+     * calculant son SHA-256 au passage : une seule lecture, un tampon de
+     * taille fixe, quelle que soit la taille du fichier.
+     */
+    @Override
+    public StagedFile stageOriginalFile(InputStream inputStream) throws IOException {
+        Path tempPath = createStagingFile();
+        MessageDigest digest = FileUtils.newSha256Digest();
+        long size = 0;
+
+        try (ReadableByteChannel in = Channels.newChannel(inputStream);
+                FileChannel out = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(STAGING_BUFFER_SIZE);
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    size += out.write(buffer);
+                }
+                buffer.clear();
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+
+        return new StagedFile(FileUtils.toHex(digest.digest()), tempPath, size);
+    }
+
+    /**
+     * Renomme atomiquement le fichier temporaire sous son nom définitif. Un
+     * fichier de même nom a le même contenu (le nom contient l'empreinte) :
+     * il est simplement remplacé.
+     */
     @Override
-    public Path saveOriginalFile(MultipartFile file, String filenameWithHash) throws IOException {
+    public Path promoteStagedFile(StagedFile stagedFile, String filenameWithHash) throws IOException {
         Path targetPath = storageConfig.getOriginalDir().resolve(filenameWithHash);
-        if (!Files.exists(targetPath)) {
-            Files.copy(file.getInputStream(), targetPath);
+        try {
+            Files.move(stagedFile.getTempPath(), targetPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(stagedFile.getTempPath(), targetPath, StandardCopyOption.REPLACE_EXISTING);
         }
         return targetPath;
     }
 
+    @Override
+    public void discardStagedFile(StagedFile stagedFile) {
+        try {
+            Files.deleteIfExists(stagedFile.getTempPath());
+        } catch (IOException e) {
+            log.warn("Impossible de supprimer le fichier temporaire {} : {}", stagedFile.getTempPath(),
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Supprime les fichiers temporaires d'import restés sans modification
+     * depuis olderThan (session perdue au redémarrage, processus interrompu).
+     * Les fichiers plus récents peuvent appartenir à un import en cours, ici
+     * ou sur une autre instance partageant le répertoire.
+     */
+    @Override
+    public int purgeStagingFiles(Duration olderThan) {
+        Path originalDir = storageConfig.getOriginalDir();
+        if (originalDir == null || !Files.isDirectory(originalDir)) {
+            return 0;
+        }
+
+        FileTime limit = FileTime.from(Instant.now().minus(olderThan));
+        int deleted = 0;
+        try (DirectoryStream<Path> staged = Files.newDirectoryStream(originalDir,
+                STAGING_PREFIX + "*" + STAGING_SUFFIX)) {
+            for (Path path : staged) {
+                try {
+                    if (Files.getLastModifiedTime(path).compareTo(limit) < 0 && Files.deleteIfExists(path)) {
+                        deleted++;
+                    }
+                } catch (IOException e) {
+                    log.warn("Impossible de supprimer le fichier temporaire {} : {}", path, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Impossible de parcourir {} : {}", originalDir, e.getMessage());
+        }
+        return deleted;
+    }
+
     @Override
     public Path getOriginalFilePath(String filename) throws IOException {
         Path targetPath = storageConfig.getOriginalDir().resolve(filename);
@@ -4,10 +4,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 
 import org.springframework.http.MediaType;
-import org.springframework.web.multipart.MultipartFile;
 
 public interface FileStorageService {
 
@@ -16,7 +16,11 @@ public interface FileStorageService {
 
     Path existsInOriginalDir(String filename);
     Path existsInGeorefDir(String GeorefFilenameWithHash);
-    Path saveOriginalFile(MultipartFile file, String filename) throws IOException;
+    Path createStagingFile() throws IOException;
+    StagedFile stageOriginalFile(InputStream inputStream) throws IOException;
+    Path promoteStagedFile(StagedFile stagedFile, String filenameWithHash) throws IOException;
+    void discardStagedFile(StagedFile stagedFile);
+    int purgeStagingFiles(Duration olderThan);
     Path getOriginalFilePath(String filename) throws IOException;
     void deleteFileByFullPath(String fullPath) throws IOException;
     File getFileByFilePath(String originalFilePath) throws IOException;
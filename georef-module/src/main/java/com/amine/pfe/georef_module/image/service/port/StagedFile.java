@@ -0,0 +1,18 @@
+package com.amine.pfe.georef_module.image.service.port;
+
+import java.nio.file.Path;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Fichier reçu, écrit sous un nom temporaire dans son répertoire final, avec
+ * l'empreinte SHA-256 calculée pendant l'écriture. Il est ensuite soit promu
+ * sous son nom définitif, soit supprimé.
+ */
+@Getter @AllArgsConstructor
+public class StagedFile {
+    private final String hash;
+    private final Path tempPath;
+    private final long size;
+}
@@ -2,26 +2,25 @@ package com.amine.pfe.georef_module.image.util;
 
 import java.nio.file.Paths;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.UUID;
 
-import org.springframework.web.multipart.MultipartFile;
-
 public class FileUtils {
 
-    public static String calculateSHA256(MultipartFile file) {
+    public static MessageDigest newSha256Digest() {
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = digest.digest(file.getBytes());
-
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
-            }
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponible", e);
+        }
+    }
 
-            return sb.toString();
-        } catch (Exception e) {
-            throw new RuntimeException("Erreur lors du calcul du hash du fichier", e);
+    public static String toHex(byte[] hashBytes) {
+        StringBuilder sb = new StringBuilder(hashBytes.length * 2);
+        for (byte b : hashBytes) {
+            sb.append(String.format("%02x", b));
         }
+        return sb.toString();
     }
 
     public static String normalizeOutputFilename(String name, String fallbackBaseName) {
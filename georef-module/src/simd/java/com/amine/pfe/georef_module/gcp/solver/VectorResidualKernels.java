@@ -0,0 +1,122 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Noyaux vectoriels (API Vector du JDK). Chaque boucle traite des blocs de
+ * la largeur préférée de la plateforme ; la fin de lot qui ne remplit pas
+ * un bloc est confiée aux noyaux scalaires.
+ *
+ * Ne doit être chargée que si le module jdk.incubator.vector est présent
+ * (voir ResidualKernels.create).
+ */
+final class VectorResidualKernels implements ResidualKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final double DEG_TO_RAD = Math.PI / 180.0;
+
+    @Override
+    public void designMatrix(double[] x, double[] y, int m, int degree, double cx, double cy, double scale,
+            double[] out) {
+        double inv = 1.0 / scale;
+        int bound = SPECIES.loopBound(m);
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector u = DoubleVector.fromArray(SPECIES, x, i).sub(cx).mul(inv);
+            DoubleVector v = DoubleVector.fromArray(SPECIES, y, i).sub(cy).mul(inv);
+            one.intoArray(out, i);
+            u.intoArray(out, m + i);
+            v.intoArray(out, 2 * m + i);
+            if (degree >= 2) {
+                DoubleVector uu = u.mul(u);
+                DoubleVector uv = u.mul(v);
+                DoubleVector vv = v.mul(v);
+                uu.intoArray(out, 3 * m + i);
+                uv.intoArray(out, 4 * m + i);
+                vv.intoArray(out, 5 * m + i);
+                if (degree == 3) {
+                    uu.mul(u).intoArray(out, 6 * m + i);
+                    uu.mul(v).intoArray(out, 7 * m + i);
+                    vv.mul(u).intoArray(out, 8 * m + i);
+                    vv.mul(v).intoArray(out, 9 * m + i);
+                }
+            }
+        }
+        ScalarResidualKernels.designMatrix(x, y, i, m, m, degree, cx, cy, inv, out);
+    }
+
+    @Override
+    public void evaluate(double[] paramsX, double[] paramsY, int degree, double cx, double cy, double scale,
+            double[] x, double[] y, double[] outX, double[] outY) {
+        double inv = 1.0 / scale;
+        int n = x.length;
+        int bound = SPECIES.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector u = DoubleVector.fromArray(SPECIES, x, i).sub(cx).mul(inv);
+            DoubleVector v = DoubleVector.fromArray(SPECIES, y, i).sub(cy).mul(inv);
+            DoubleVector ex = u.mul(paramsX[1]).add(paramsX[0]).add(v.mul(paramsX[2]));
+            DoubleVector ey = u.mul(paramsY[1]).add(paramsY[0]).add(v.mul(paramsY[2]));
+            if (degree >= 2) {
+                DoubleVector uu = u.mul(u);
+                DoubleVector uv = u.mul(v);
+                DoubleVector vv = v.mul(v);
+                ex = ex.add(uu.mul(paramsX[3])).add(uv.mul(paramsX[4])).add(vv.mul(paramsX[5]));
+                ey = ey.add(uu.mul(paramsY[3])).add(uv.mul(paramsY[4])).add(vv.mul(paramsY[5]));
+                if (degree == 3) {
+                    DoubleVector uuu = uu.mul(u);
+                    DoubleVector uuv = uu.mul(v);
+                    DoubleVector uvv = vv.mul(u);
+                    DoubleVector vvv = vv.mul(v);
+                    ex = ex.add(uuu.mul(paramsX[6])).add(uuv.mul(paramsX[7]))
+                            .add(uvv.mul(paramsX[8])).add(vvv.mul(paramsX[9]));
+                    ey = ey.add(uuu.mul(paramsY[6])).add(uuv.mul(paramsY[7]))
+                            .add(uvv.mul(paramsY[8])).add(vvv.mul(paramsY[9]));
+                }
+            }
+            ex.intoArray(outX, i);
+            ey.intoArray(outY, i);
+        }
+        ScalarResidualKernels.evaluate(paramsX, paramsY, degree, cx, cy, inv, x, y, i, n, outX, outY);
+    }
+
+    @Override
+    public void euclidean(double[] x1, double[] y1, double[] x2, double[] y2, double[] out) {
+        int n = out.length;
+        int bound = SPECIES.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, x2, i).sub(DoubleVector.fromArray(SPECIES, x1, i));
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, y2, i).sub(DoubleVector.fromArray(SPECIES, y1, i));
+            dx.mul(dx).add(dy.mul(dy)).lanewise(VectorOperators.SQRT).intoArray(out, i);
+        }
+        ScalarResidualKernels.euclidean(x1, y1, x2, y2, i, n, out);
+    }
+
+    @Override
+    public void haversine(double[] lon1, double[] lat1, double[] lon2, double[] lat2, double[] out) {
+        int n = out.length;
+        int bound = SPECIES.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector la1 = DoubleVector.fromArray(SPECIES, lat1, i);
+            DoubleVector la2 = DoubleVector.fromArray(SPECIES, lat2, i);
+            DoubleVector lo1 = DoubleVector.fromArray(SPECIES, lon1, i);
+            DoubleVector lo2 = DoubleVector.fromArray(SPECIES, lon2, i);
+
+            DoubleVector sinLat = la2.sub(la1).mul(DEG_TO_RAD / 2).lanewise(VectorOperators.SIN);
+            DoubleVector sinLon = lo2.sub(lo1).mul(DEG_TO_RAD / 2).lanewise(VectorOperators.SIN);
+            DoubleVector cosLat1 = la1.mul(DEG_TO_RAD).lanewise(VectorOperators.COS);
+            DoubleVector cosLat2 = la2.mul(DEG_TO_RAD).lanewise(VectorOperators.COS);
+
+            DoubleVector a = sinLat.mul(sinLat).add(cosLat1.mul(cosLat2).mul(sinLon).mul(sinLon));
+            DoubleVector c = a.lanewise(VectorOperators.SQRT)
+                    .lanewise(VectorOperators.ATAN2, a.neg().add(1.0).lanewise(VectorOperators.SQRT));
+            c.mul(2 * EARTH_RADIUS).intoArray(out, i);
+        }
+        ScalarResidualKernels.haversine(lon1, lat1, lon2, lat2, i, n, out);
+    }
+}
@@ -0,0 +1,129 @@
+package com.amine.pfe.georef_module.gcp.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.UUID;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.amine.pfe.georef_module.enums.GcpFileFormat;
+import com.amine.pfe.georef_module.enums.Srid;
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+
+class GcpFileReaderTest {
+
+    @Test
+    @DisplayName("should read QGIS points file and skip disabled points")
+    void shouldReadQgisPointsFile() throws IOException {
+        // Given
+        String points = "#CRS: EPSG:3857\n"
+                + "mapX,mapY,pixelX,pixelY,enable,dX,dY,residual\n"
+                + "1000.5,2000.5,10,-20,1,0,0,0\n"
+                + "3000,4000,30,-40,0,0,0,0\n";
+
+        // When
+        try (GcpFileReader reader = GcpFileReader.open(GcpFileFormat.POINTS, new StringReader(points))) {
+            GcpDto gcp = reader.next();
+
+            // Then
+            assertEquals(10.0, gcp.getSourceX());
+            assertEquals(-20.0, gcp.getSourceY());
+            assertEquals(1000.5, gcp.getMapX());
+            assertEquals(2000.5, gcp.getMapY());
+            assertNull(reader.next());
+            assertEquals(1, reader.getSkipped());
+        }
+    }
+
+    @Test
+    @DisplayName("should read semicolon CSV and report invalid line number")
+    void shouldReportInvalidCsvLine() throws IOException {
+        // Given
+        String csv = "sourceX;sourceY;mapX;mapY\n1;-2;3;4\n5;abc;7;8\n";
+
+        // When
+        try (GcpFileReader reader = GcpFileReader.open(GcpFileFormat.CSV, new StringReader(csv))) {
+            assertEquals(3.0, reader.next().getMapX());
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, reader::next);
+
+            // Then
+            assertTrue(e.getMessage().startsWith("Ligne 3"));
+        }
+    }
+
+    @Test
+    @DisplayName("should read VRT GCP elements with negated line")
+    void shouldReadVrtGcps() throws IOException {
+        // Given
+        String vrt = "<VRTDataset rasterXSize=\"100\" rasterYSize=\"100\">\n"
+                + "  <GCPList Projection=\"EPSG:4326\">\n"
+                + "    <GCP Id=\"1\" Pixel=\"12.5\" Line=\"40\" X=\"10.1\" Y=\"36.8\"/>\n"
+                + "  </GCPList>\n"
+                + "</VRTDataset>\n";
+
+        // When
+        try (GcpFileReader reader = GcpFileReader.open(GcpFileFormat.VRT, new StringReader(vrt))) {
+            GcpDto gcp = reader.next();
+
+            // Then
+            assertEquals(12.5, gcp.getSourceX());
+            assertEquals(-40.0, gcp.getSourceY());
+            assertEquals(10.1, gcp.getMapX());
+            assertEquals(36.8, gcp.getMapY());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    @DisplayName("should read back exported GCPs in every format")
+    void shouldRoundTripExportedGcps() throws IOException {
+        // Given
+        GcpDto gcp = new GcpDto(UUID.randomUUID(), UUID.randomUUID(), 15.0, -25.0, 500.0, 600.0, 1, 0.5, null);
+
+        for (GcpFileFormat format : GcpFileFormat.values()) {
+            // When
+            StringWriter out = new StringWriter();
+            try (GcpFileWriter writer = GcpFileWriter.open(format, out, Srid._3857)) {
+                writer.write(gcp);
+            }
+
+            // Then
+            try (GcpFileReader reader = GcpFileReader.open(format, new StringReader(out.toString()))) {
+                GcpDto read = reader.next();
+                assertEquals(15.0, read.getSourceX(), format.getLabel());
+                assertEquals(-25.0, read.getSourceY(), format.getLabel());
+                assertEquals(500.0, read.getMapX(), format.getLabel());
+                assertEquals(600.0, read.getMapY(), format.getLabel());
+                assertNull(reader.next());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("should export QGIS 3 points with a CRS line and plain decimals")
+    void shouldExportQgisPointsFile() throws IOException {
+        // Given : coordonnées en mètres au-delà de 1e7
+        GcpDto gcp = new GcpDto(UUID.randomUUID(), UUID.randomUUID(), 15.0, -25.0, 12345678.25, -10000000.0, 1,
+                0.00001, null);
+
+        // When
+        StringWriter out = new StringWriter();
+        try (GcpFileWriter writer = GcpFileWriter.open(GcpFileFormat.POINTS, out, Srid._3857)) {
+            writer.write(gcp);
+        }
+
+        // Then
+        String[] lines = out.toString().split("\\R");
+        assertTrue(lines[0].startsWith("#CRS: PROJCS[\"WGS 84 / Pseudo-Mercator\""));
+        assertTrue(lines[0].endsWith("AUTHORITY[\"EPSG\",\"3857\"]]"));
+        assertEquals("mapX,mapY,sourceX,sourceY,enable,dX,dY,residual", lines[1]);
+        assertEquals("12345678.25,-10000000,15.0,-25.0,1,0,0,0.000010", lines[2]);
+    }
+}
@@ -0,0 +1,71 @@
+package com.amine.pfe.georef_module.gcp.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.amine.pfe.georef_module.entity.GeorefImage;
+
+/**
+ * Clé étrangère du compteur d'index vers l'image, telle que générée par
+ * Hibernate, sur H2 en mode PostgreSQL.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:indexcounter;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class GcpIndexCounterRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("should delete the index counter together with its image")
+    void shouldCascadeCounterDeletionWithImage() {
+        // Given
+        GeorefImage image = entityManager.persist(GeorefImage.builder().hash("h1").filepathOriginal("a.tif").build());
+        GeorefImage other = entityManager.persist(GeorefImage.builder().hash("h2").filepathOriginal("b.tif").build());
+        entityManager.flush();
+        jdbcTemplate.update("INSERT INTO georef.gcp_index_counter (image_id, last_index) VALUES (?, 1)",
+                image.getId());
+        jdbcTemplate.update("INSERT INTO georef.gcp_index_counter (image_id, last_index) VALUES (?, 7)",
+                other.getId());
+
+        // When
+        entityManager.remove(image);
+        entityManager.flush();
+
+        // Then
+        assertEquals(0, countCounters(image.getId()));
+        assertEquals(1, countCounters(other.getId()));
+    }
+
+    @Test
+    @DisplayName("should refuse a counter for an unknown image")
+    void shouldRejectCounterWithoutImage() {
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "INSERT INTO georef.gcp_index_counter (image_id, last_index) VALUES (?, 1)", UUID.randomUUID()));
+    }
+
+    private int countCounters(UUID imageId) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM georef.gcp_index_counter WHERE image_id = ?",
+                Integer.class, imageId);
+    }
+}
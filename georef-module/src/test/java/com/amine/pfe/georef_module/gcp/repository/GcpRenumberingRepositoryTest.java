@@ -0,0 +1,121 @@
+package com.amine.pfe.georef_module.gcp.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.amine.pfe.georef_module.entity.Gcp;
+import com.amine.pfe.georef_module.entity.GeorefImage;
+
+/**
+ * Renumérotation native en deux phases, sur H2 en mode PostgreSQL, avec la
+ * contrainte unique (image_id, index) générée par Hibernate.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:renumbering;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class GcpRenumberingRepositoryTest {
+
+    @Autowired
+    private GcpRepository gcpRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private GeorefImage image;
+    private GeorefImage otherImage;
+
+    @BeforeEach
+    void setUp() {
+        image = entityManager.persist(GeorefImage.builder().hash("h1").filepathOriginal("a.tif").build());
+        otherImage = entityManager.persist(GeorefImage.builder().hash("h2").filepathOriginal("b.tif").build());
+        for (int i = 1; i <= 6; i++) {
+            entityManager.persist(new Gcp(null, image, 10.0 * i, -5.0 * i, 100.0 * i, 200.0 * i, i, null));
+            entityManager.persist(new Gcp(null, otherImage, 1.0 * i, -1.0 * i, 2.0 * i, 3.0 * i, i, null));
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    @DisplayName("should renumber the remaining GCPs 1..n in their previous order")
+    void shouldRenumberInPreviousOrder() {
+        // Given : suppression des index 2 et 5
+        deleteIndexes(image, 2, 5);
+
+        // When
+        int staged = gcpRepository.stageRenumbering(image.getId());
+        int applied = gcpRepository.applyRenumbering(image.getId());
+
+        // Then : 3, 4 et 6 ont bougé, 1 est resté en place
+        assertEquals(3, staged);
+        assertEquals(3, applied);
+        List<Gcp> gcps = gcpRepository.findAllByImageIdOrderByIndex(image.getId());
+        assertEquals(List.of(1, 2, 3, 4), gcps.stream().map(Gcp::getIndex).toList());
+        assertEquals(List.of(10.0, 30.0, 40.0, 60.0), gcps.stream().map(Gcp::getSourceX).toList());
+
+        List<Gcp> untouched = gcpRepository.findAllByImageIdOrderByIndex(otherImage.getId());
+        assertEquals(List.of(1, 2, 3, 4, 5, 6), untouched.stream().map(Gcp::getIndex).toList());
+    }
+
+    @Test
+    @DisplayName("should leave already contiguous indexes untouched")
+    void shouldNotTouchContiguousIndexes() {
+        // Given : suppression du dernier index
+        deleteIndexes(image, 6);
+
+        // When + Then
+        assertEquals(0, gcpRepository.stageRenumbering(image.getId()));
+        assertEquals(0, gcpRepository.applyRenumbering(image.getId()));
+        assertEquals(List.of(1, 2, 3, 4, 5), gcpRepository.findAllByImageIdOrderByIndex(image.getId()).stream()
+                .map(Gcp::getIndex).toList());
+    }
+
+    @Test
+    @DisplayName("should keep indexes unique between the two phases")
+    void shouldKeepIndexesUniqueBetweenPhases() {
+        // Given
+        deleteIndexes(image, 2, 5);
+
+        // When : première phase seule
+        gcpRepository.stageRenumbering(image.getId());
+
+        // Then : les rangs provisoires sont négatifs, distincts des index restés en place
+        List<Integer> staged = jdbcTemplate.queryForList(
+                "SELECT index FROM georef.gcp WHERE image_id = ? ORDER BY index", Integer.class, image.getId());
+        assertEquals(List.of(-4, -3, -2, 1), staged);
+
+        // Then : la contrainte unique est bien active sur cette base
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "UPDATE georef.gcp SET index = -3 WHERE image_id = ? AND index = 1", image.getId()));
+    }
+
+    private void deleteIndexes(GeorefImage owner, int... indexes) {
+        for (int index : indexes) {
+            entityManager.getEntityManager()
+                    .createQuery("DELETE FROM Gcp g WHERE g.image.id = :imageId AND g.index = :index")
+                    .setParameter("imageId", owner.getId())
+                    .setParameter("index", index)
+                    .executeUpdate();
+        }
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,60 @@
+package com.amine.pfe.georef_module.gcp.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.amine.pfe.georef_module.entity.Gcp;
+import com.amine.pfe.georef_module.entity.GeorefImage;
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class GcpRepositoryTest {
+
+    @Autowired
+    private GcpRepository gcpRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("should list the GCPs of an image as DTOs in a single statement")
+    void shouldListGcpDtosInSingleStatement() {
+        // Given
+        GeorefImage image = entityManager.persist(GeorefImage.builder().hash("h").filepathOriginal("a.tif").build());
+        for (int i = 3; i >= 1; i--) {
+            entityManager.persist(new Gcp(null, image, 10.0 * i, 20.0 * i, 100.0 * i, 200.0 * i, i, 0.5 * i));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // When
+        List<GcpDto> gcps = gcpRepository.findDtosByImageId(image.getId());
+
+        // Then
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(3, gcps.size());
+        assertEquals(1, gcps.get(0).getIndex());
+        assertEquals(image.getId(), gcps.get(0).getImageId());
+        assertEquals(30.0, gcps.get(2).getSourceX());
+        assertEquals(1.5, gcps.get(2).getResidual());
+        assertNull(gcps.get(2).getLooResidual());
+    }
+}
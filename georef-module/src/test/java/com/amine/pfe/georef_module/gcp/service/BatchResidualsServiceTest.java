@@ -0,0 +1,162 @@
+package com.amine.pfe.georef_module.gcp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import com.amine.pfe.georef_module.enums.Srid;
+import com.amine.pfe.georef_module.enums.TransformationType;
+import com.amine.pfe.georef_module.gcp.dto.BatchResidualsRequest;
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.dto.ImageGcps;
+import com.amine.pfe.georef_module.gcp.dto.ImageResidualsResponse;
+import com.amine.pfe.georef_module.gcp.dto.ResidualsResult;
+import com.amine.pfe.georef_module.gcp.repository.GcpBatchRepository;
+import com.amine.pfe.georef_module.gcp.service.impl.GcpWorkingSetCache;
+import com.amine.pfe.georef_module.gcp.service.impl.ResidualsServiceImpl;
+
+class BatchResidualsServiceTest {
+
+    private GcpBatchRepository gcpBatchRepository;
+    private ResidualsServiceImpl residualsService;
+    private GcpWorkingSetCache gcpWorkingSetCache;
+    private BatchResidualsService batchResidualsService;
+
+    @BeforeEach
+    void setUp() {
+        gcpBatchRepository = mock(GcpBatchRepository.class);
+        residualsService = new ResidualsServiceImpl();
+        gcpWorkingSetCache = mock(GcpWorkingSetCache.class);
+        batchResidualsService = new BatchResidualsService(gcpBatchRepository, residualsService, gcpWorkingSetCache);
+    }
+
+    @Test
+    @DisplayName("should compute residuals for every image and write them back")
+    void shouldComputeResidualsForEveryImage() {
+        // Given
+        Map<UUID, ImageGcps> images = new HashMap<>();
+        for (int k = 0; k < 40; k++) {
+            UUID imageId = UUID.randomUUID();
+            images.put(imageId, new ImageGcps(imageId, TransformationType.POLYNOMIALE_1, Srid._3857,
+                    createGcps(imageId, 8 + k % 5)));
+        }
+        when(gcpBatchRepository.findByImageIds(anyList())).thenReturn(images);
+
+        BatchResidualsRequest request = new BatchResidualsRequest();
+        request.setImageIds(new ArrayList<>(images.keySet()));
+
+        // When
+        List<ImageResidualsResponse> results = batchResidualsService.updateResiduals(request)
+                .collectList()
+                .block();
+
+        // Then
+        assertNotNull(results);
+        assertEquals(images.size(), results.size());
+        Map<UUID, ImageResidualsResponse> byImage = results.stream()
+                .collect(Collectors.toMap(ImageResidualsResponse::getImageId, Function.identity()));
+        for (ImageGcps image : images.values()) {
+            ImageResidualsResponse response = byImage.get(image.getImageId());
+            assertTrue(response.isSuccess());
+            ResidualsResult expected = residualsService.computeResiduals(
+                    image.getGcps(), TransformationType.POLYNOMIALE_1, Srid._3857);
+            assertEquals(Math.round(expected.getRmse() * 10000.0) / 10000.0, response.getRmse(), 1e-9);
+            for (GcpDto gcp : response.getGcpDtos()) {
+                assertNotNull(gcp.getResidual());
+            }
+        }
+        verify(gcpBatchRepository, atLeastOnce()).updateResiduals(anyList());
+
+        // Les déplacements en attente sont écrits avant la lecture, les résidus reportés dans le cache
+        InOrder order = inOrder(gcpWorkingSetCache, gcpBatchRepository);
+        order.verify(gcpWorkingSetCache, times(images.size())).flush(any());
+        order.verify(gcpBatchRepository).findByImageIds(anyList());
+        for (ImageResidualsResponse response : results) {
+            verify(gcpWorkingSetCache).updateResiduals(response.getImageId(), response.getGcpDtos());
+        }
+    }
+
+    @Test
+    @DisplayName("should report unknown images and images without enough GCPs")
+    void shouldReportFailuresPerImage() {
+        // Given
+        UUID missingId = UUID.randomUUID();
+        UUID sparseId = UUID.randomUUID();
+        Map<UUID, ImageGcps> images = new HashMap<>();
+        images.put(sparseId, new ImageGcps(sparseId, TransformationType.POLYNOMIALE_2, Srid._3857,
+                createGcps(sparseId, 4)));
+        when(gcpBatchRepository.findByImageIds(anyList())).thenReturn(images);
+
+        BatchResidualsRequest request = new BatchResidualsRequest();
+        request.setImageIds(List.of(missingId, sparseId));
+
+        // When
+        Map<UUID, ImageResidualsResponse> byImage = batchResidualsService.updateResiduals(request)
+                .collectMap(ImageResidualsResponse::getImageId)
+                .block();
+
+        // Then
+        assertFalse(byImage.get(missingId).isSuccess());
+        assertNull(byImage.get(missingId).getGcpDtos());
+
+        ImageResidualsResponse sparse = byImage.get(sparseId);
+        assertFalse(sparse.isSuccess());
+        assertEquals(6, sparse.getMinPointsRequired());
+        sparse.getGcpDtos().forEach(gcp -> assertNull(gcp.getResidual()));
+    }
+
+    @Test
+    @DisplayName("should reject an empty image list")
+    void shouldRejectEmptyImageList() {
+        BatchResidualsRequest request = new BatchResidualsRequest();
+        request.setImageIds(List.of());
+
+        assertThrows(IllegalArgumentException.class, () -> batchResidualsService.updateResiduals(request));
+        verifyNoInteractions(gcpBatchRepository);
+    }
+
+    private List<GcpDto> createGcps(UUID imageId, int count) {
+        List<GcpDto> gcps = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double x = 37.0 * (i % 4) + 3.1 * i;
+            double y = 23.0 * (i % 3) + 1.7 * i;
+            double noise = ((i * 7919) % 13 - 6) * 0.05;
+            gcps.add(GcpDto.builder()
+                    .id(UUID.randomUUID())
+                    .imageId(imageId)
+                    .sourceX(x)
+                    .sourceY(y)
+                    .mapX(1000 + 0.5 * x - 0.1 * y + noise)
+                    .mapY(2000 + 0.2 * x + 0.4 * y - noise)
+                    .index(i + 1)
+                    .residual(12.0)
+                    .build());
+        }
+        return gcps;
+    }
+}
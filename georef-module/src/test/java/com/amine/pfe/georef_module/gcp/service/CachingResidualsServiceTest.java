@@ -0,0 +1,202 @@
+package com.amine.pfe.georef_module.gcp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.amine.pfe.georef_module.enums.ResidualMode;
+import com.amine.pfe.georef_module.enums.Srid;
+import com.amine.pfe.georef_module.enums.TransformationType;
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.dto.ResidualsResult;
+import com.amine.pfe.georef_module.gcp.service.impl.CachingResidualsService;
+import com.amine.pfe.georef_module.gcp.service.impl.ResidualsServiceImpl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CachingResidualsServiceTest {
+
+    private ResidualsServiceImpl delegate;
+    private SimpleMeterRegistry meterRegistry;
+    private CachingResidualsService cachingResidualsService;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(ResidualsServiceImpl.class);
+        meterRegistry = new SimpleMeterRegistry();
+        cachingResidualsService = new CachingResidualsService(delegate, meterRegistry, 2);
+    }
+
+    @Test
+    @DisplayName("should serve identical GCP coordinates from the cache regardless of IDs")
+    void shouldServeIdenticalCoordinatesFromCache() {
+        // Given
+        ResidualsResult result = new ResidualsResult(List.of(0.1, 0.2, 0.3), 0.2);
+        when(delegate.computeResiduals(anyList(), any(), any())).thenReturn(result);
+
+        // When
+        ResidualsResult first = cachingResidualsService.computeResiduals(createGcps(0.0), TransformationType.POLYNOMIALE_1,
+                Srid._3857);
+        ResidualsResult second = cachingResidualsService.computeResiduals(createGcps(0.0), TransformationType.POLYNOMIALE_1,
+                Srid._3857);
+        cachingResidualsService.computeResiduals(createGcps(0.0), TransformationType.POLYNOMIALE_1, Srid._4326);
+
+        // Then : chaque appelant reçoit sa propre copie
+        assertNotSame(first, second);
+        assertEquals(first.getResiduals(), second.getResiduals());
+        verify(delegate, times(2)).computeResiduals(anyList(), any(), any());
+        assertEquals(1.0, meterRegistry.get("georef.residuals.cache").tag("result", "hit").counter().count());
+        assertEquals(2.0, meterRegistry.get("georef.residuals.cache").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    @DisplayName("should evict the least recently used entry and not cache failures")
+    void shouldEvictLeastRecentlyUsedAndNotCacheFailures() {
+        // Given
+        when(delegate.computeResiduals(anyList(), any(), any()))
+                .thenThrow(new IllegalArgumentException("échec"))
+                .thenReturn(new ResidualsResult(List.of(0.0), 0.0));
+
+        // When + Then : l'échec n'est pas mémorisé
+        assertThrows(IllegalArgumentException.class, () -> cachingResidualsService
+                .computeResiduals(createGcps(0.0), TransformationType.POLYNOMIALE_1, Srid._3857));
+        cachingResidualsService.computeResiduals(createGcps(0.0), TransformationType.POLYNOMIALE_1, Srid._3857);
+        verify(delegate, times(2)).computeResiduals(anyList(), any(), any());
+
+        // When : deux autres jeux de GCPs évincent le premier (capacité 2)
+        cachingResidualsService.computeResiduals(createGcps(1.0), TransformationType.POLYNOMIALE_1, Srid._3857);
+        cachingResidualsService.computeResiduals(createGcps(2.0), TransformationType.POLYNOMIALE_1, Srid._3857);
+        cachingResidualsService.computeResiduals(createGcps(0.0), TransformationType.POLYNOMIALE_1, Srid._3857);
+
+        // Then
+        verify(delegate, times(5)).computeResiduals(anyList(), any(), any());
+        assertEquals(2.0, meterRegistry.get("georef.residuals.cache.size").gauge().value());
+    }
+
+    @Test
+    @DisplayName("should compute concurrent identical requests only once")
+    void shouldComputeConcurrentIdenticalRequestsOnce() throws Exception {
+        // Given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ResidualsResult result = new ResidualsResult(List.of(0.5), 0.5);
+        when(delegate.computeResiduals(anyList(), any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return result;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // When
+            List<Future<ResidualsResult>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> cachingResidualsService.computeResiduals(createGcps(0.0),
+                    TransformationType.POLYNOMIALE_1, Srid._3857)));
+            started.await(5, TimeUnit.SECONDS);
+            for (int i = 0; i < 3; i++) {
+                futures.add(executor.submit(() -> cachingResidualsService.computeResiduals(createGcps(0.0),
+                        TransformationType.POLYNOMIALE_1, Srid._3857)));
+            }
+            Thread.sleep(50);
+            release.countDown();
+
+            // Then
+            for (Future<ResidualsResult> future : futures) {
+                assertEquals(result.getResiduals(), future.get(5, TimeUnit.SECONDS).getResiduals());
+            }
+            verify(delegate, times(1)).computeResiduals(anyList(), any(), any());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("should not let a caller alter the cached result")
+    void shouldIsolateCallersFromCachedResult() {
+        // Given
+        when(delegate.computeResiduals(anyList(), any(), any()))
+                .thenReturn(new ResidualsResult(new ArrayList<>(List.of(0.1, 0.2)), 0.15));
+        ResidualsResult first = cachingResidualsService.computeResiduals(createGcps(0.0),
+                TransformationType.POLYNOMIALE_1, Srid._3857);
+
+        // When
+        first.getResiduals().set(0, 99.0);
+        first.setRmse(99.0);
+        ResidualsResult second = cachingResidualsService.computeResiduals(createGcps(0.0),
+                TransformationType.POLYNOMIALE_1, Srid._3857);
+
+        // Then
+        assertEquals(List.of(0.1, 0.2), second.getResiduals());
+        assertEquals(0.15, second.getRmse());
+    }
+
+    @Test
+    @DisplayName("should share one entry between the default mode and an explicit CLASSIC mode")
+    void shouldNormalizeDefaultMode() {
+        // Given
+        when(delegate.computeResiduals(anyList(), any(), any())).thenReturn(new ResidualsResult(List.of(0.1), 0.1));
+
+        // When
+        cachingResidualsService.computeResiduals(createGcps(0.0), TransformationType.POLYNOMIALE_1, Srid._3857);
+        cachingResidualsService.computeResiduals(createGcps(0.0), TransformationType.POLYNOMIALE_1, Srid._3857,
+                ResidualMode.CLASSIC);
+        cachingResidualsService.computeResiduals(createGcps(0.0), TransformationType.POLYNOMIALE_1, Srid._3857,
+                null);
+
+        // Then
+        verify(delegate, times(1)).computeResiduals(anyList(), any(), any());
+        verify(delegate, never()).computeResiduals(anyList(), any(), any(), any());
+        assertEquals(1.0, meterRegistry.get("georef.residuals.cache.size").gauge().value());
+    }
+
+    @Test
+    @DisplayName("should release the entry when the computation fails with an error")
+    void shouldNotCacheErrors() {
+        // Given
+        when(delegate.computeResiduals(anyList(), any(), any()))
+                .thenThrow(new StackOverflowError())
+                .thenReturn(new ResidualsResult(List.of(0.0), 0.0));
+
+        // When + Then
+        assertThrows(StackOverflowError.class, () -> cachingResidualsService
+                .computeResiduals(createGcps(0.0), TransformationType.POLYNOMIALE_1, Srid._3857));
+        assertEquals(0.0, meterRegistry.get("georef.residuals.cache.size").gauge().value());
+        cachingResidualsService.computeResiduals(createGcps(0.0), TransformationType.POLYNOMIALE_1, Srid._3857);
+        verify(delegate, times(2)).computeResiduals(anyList(), any(), any());
+    }
+
+    private static List<GcpDto> createGcps(double offset) {
+        List<GcpDto> gcps = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            gcps.add(GcpDto.builder()
+                    .id(UUID.randomUUID())
+                    .sourceX(10.0 * i + offset)
+                    .sourceY(-5.0 * i)
+                    .mapX(1000.0 + i)
+                    .mapY(2000.0 - i)
+                    .index(i + 1)
+                    .build());
+        }
+        return gcps;
+    }
+}
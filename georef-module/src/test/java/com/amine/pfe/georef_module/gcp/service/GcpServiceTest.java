@@ -8,6 +8,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -15,6 +16,8 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 import java.util.Collections;
 import java.util.List;
@@ -23,24 +26,38 @@ import java.util.Optional;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 
 import com.amine.pfe.georef_module.entity.Gcp;
 import com.amine.pfe.georef_module.entity.GeorefImage;
+import com.amine.pfe.georef_module.enums.GcpFileFormat;
+import com.amine.pfe.georef_module.enums.GcpOperationType;
+import com.amine.pfe.georef_module.enums.RobustMethod;
 import com.amine.pfe.georef_module.enums.Srid;
 import com.amine.pfe.georef_module.enums.TransformationType;
 import com.amine.pfe.georef_module.exception.ImageNotFoundException;
 import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.dto.GcpImportResponse;
+import com.amine.pfe.georef_module.gcp.dto.GcpOperation;
+import com.amine.pfe.georef_module.gcp.dto.GcpSyncRequest;
+import com.amine.pfe.georef_module.gcp.dto.ImageResidualsResponse;
 import com.amine.pfe.georef_module.gcp.dto.LoadGcpsRequest;
+import com.amine.pfe.georef_module.gcp.dto.NearestGcpDto;
 import com.amine.pfe.georef_module.gcp.dto.ResidualsRequest;
 import com.amine.pfe.georef_module.gcp.dto.ResidualsResponse;
 import com.amine.pfe.georef_module.gcp.dto.ResidualsResult;
 import com.amine.pfe.georef_module.gcp.exceptions.DuplicateGcpIndexException;
 import com.amine.pfe.georef_module.gcp.exceptions.GcpNotFoundException;
 import com.amine.pfe.georef_module.gcp.mapper.GcpMapper;
+import com.amine.pfe.georef_module.gcp.repository.GcpBatchRepository;
+import com.amine.pfe.georef_module.gcp.repository.GcpIndexCounterRepository;
 import com.amine.pfe.georef_module.gcp.repository.GcpRepository;
+import com.amine.pfe.georef_module.gcp.repository.GcpSpatialRepository;
+import com.amine.pfe.georef_module.gcp.service.impl.GcpWorkingSetCache;
 import com.amine.pfe.georef_module.gcp.service.port.GcpFactory;
 import com.amine.pfe.georef_module.gcp.service.port.ResidualsService;
 import com.amine.pfe.georef_module.image.repository.GeorefImageRepository;
@@ -54,12 +71,24 @@ class GcpServiceTest {
     @Mock
     private GeorefImageRepository imageRepository;
 
+    @Mock
+    private GcpIndexCounterRepository gcpIndexCounterRepository;
+
     @Mock
     private GcpFactory gcpFactory;
 
     @Mock
     private ResidualsService residualsService;
 
+    @Mock
+    private GcpWorkingSetCache gcpWorkingSetCache;
+
+    @Mock
+    private GcpBatchRepository gcpBatchRepository;
+
+    @Mock
+    private GcpSpatialRepository gcpSpatialRepository;
+
     @InjectMocks
     private GcpService gcpService;
 
@@ -82,11 +111,10 @@ class GcpServiceTest {
         Gcp savedGcp = GcpMapper.toEntity(addGcpRequest, image);
 
         when(imageRepository.findById(imageId)).thenReturn(Optional.of(image));
-        when(gcpRepository.findMaxIndexByImageId(imageId)).thenReturn(Optional.of(1));
-        when(gcpRepository.existsByImageIdAndIndex(imageId, 2)).thenReturn(false);
+        when(gcpIndexCounterRepository.allocate(imageId, 1)).thenReturn(2);
         when(gcpFactory.createGcp(image, 10.44, 20.44, 100.0, 200.0, 2))
                 .thenReturn(savedGcp);
-        when(gcpRepository.save(any(Gcp.class))).thenReturn(savedGcp);
+        when(gcpRepository.saveAndFlush(any(Gcp.class))).thenReturn(savedGcp);
 
         // When
         GcpDto gcpDto = gcpService.addGcp(addGcpRequest);
@@ -95,7 +123,7 @@ class GcpServiceTest {
         assertNotNull(gcpDto);
         assertEquals(savedGcp.getId(), gcpDto.getId());
         verify(imageRepository, times(1)).findById(imageId);
-        verify(gcpRepository, times(1)).save(any(Gcp.class));
+        verify(gcpRepository, times(1)).saveAndFlush(any(Gcp.class));
     }
 
     @Test
@@ -132,10 +160,12 @@ class GcpServiceTest {
         // Given
         UUID imageId = UUID.randomUUID();
         GeorefImage image = new GeorefImage();
-        GcpDto addGcpRequest = GcpDto.builder().imageId(imageId).index(1).build();
+        GcpDto addGcpRequest = GcpDto.builder().imageId(imageId).sourceX(1.0).sourceY(2.0).mapX(3.0).mapY(4.0).build();
 
         when(imageRepository.findById(imageId)).thenReturn(Optional.of(image));
-        when(gcpRepository.existsByImageIdAndIndex(imageId, 1)).thenReturn(true);
+        when(gcpIndexCounterRepository.allocate(imageId, 1)).thenReturn(1);
+        when(gcpRepository.saveAndFlush(any()))
+                .thenThrow(new DataIntegrityViolationException("uk_gcp_image_id_index"));
 
         // When + Then
         assertThrows(DuplicateGcpIndexException.class, () -> gcpService.addGcp(addGcpRequest));
@@ -149,12 +179,11 @@ class GcpServiceTest {
         GeorefImage image = new GeorefImage();
         image.setId(UUID.randomUUID());
 
-        Gcp gcp = new Gcp();
-        gcp.setId(UUID.randomUUID());
-        gcp.setImage(image);
+        GcpDto gcp = new GcpDto(UUID.randomUUID(), image.getId(), 1.0, 2.0, 3.0, 4.0, 1, null);
 
-        when(imageRepository.findById(image.getId())).thenReturn(Optional.of(image));
-        when(gcpRepository.findByImageId(image.getId())).thenReturn(List.of(gcp));
+        when(gcpWorkingSetCache.get(image.getId())).thenReturn(null);
+        when(gcpRepository.findDtosByImageId(image.getId())).thenReturn(List.of(gcp));
+        when(gcpWorkingSetCache.put(image.getId(), List.of(gcp), 0L)).thenReturn(List.of(gcp));
 
         // When
         List<GcpDto> gcps = gcpService.getGcpsByImageId(image.getId());
@@ -162,7 +191,74 @@ class GcpServiceTest {
         // Then
         assertNotNull(gcps);
         assertEquals(1, gcps.size());
-        verify(gcpRepository, times(1)).findByImageId(image.getId());
+        verify(gcpRepository, times(1)).findDtosByImageId(image.getId());
+        verify(gcpWorkingSetCache).put(image.getId(), List.of(gcp), 0L);
+        verifyNoInteractions(imageRepository);
+    }
+
+    @Test
+    @DisplayName("should serve GCPs from the working-set cache without querying the database")
+    void shouldGetGcpsFromWorkingSetCache() {
+        // Given
+        UUID imageId = UUID.randomUUID();
+        GcpDto gcp = new GcpDto(UUID.randomUUID(), imageId, 1.0, 2.0, 3.0, 4.0, 1, null);
+
+        when(gcpWorkingSetCache.get(imageId)).thenReturn(List.of(gcp));
+
+        // When
+        List<GcpDto> gcps = gcpService.getGcpsByImageId(imageId);
+
+        // Then
+        assertEquals(1, gcps.size());
+        verifyNoInteractions(gcpRepository);
+        verifyNoInteractions(imageRepository);
+    }
+
+    @Test
+    @DisplayName("should stage the update in the working-set cache when the image is being edited")
+    void shouldStageGcpUpdateInWorkingSetCache() {
+        // Given
+        GcpDto edit = new GcpDto(UUID.randomUUID(), UUID.randomUUID(), 1.0, 2.0, 3.0, 4.0, 1, null);
+
+        when(gcpRepository.findImageIdById(edit.getId())).thenReturn(Optional.of(edit.getImageId()));
+        when(gcpWorkingSetCache.stageUpdate(edit)).thenReturn(edit);
+
+        // When
+        GcpDto result = gcpService.updateGcp(edit);
+
+        // Then
+        assertEquals(edit, result);
+        verify(gcpRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("should not stage an update for a GCP that is unknown or belongs to another image")
+    void shouldNotStageGcpUpdate_WhenGcpUnknownOrOwnedByAnotherImage() {
+        // Given
+        GcpDto unknown = new GcpDto(UUID.randomUUID(), UUID.randomUUID(), 1.0, 2.0, 3.0, 4.0, 1, null);
+        GcpDto foreign = new GcpDto(UUID.randomUUID(), UUID.randomUUID(), 1.0, 2.0, 3.0, 4.0, 1, null);
+
+        when(gcpRepository.findImageIdById(unknown.getId())).thenReturn(Optional.empty());
+        when(gcpRepository.findImageIdById(foreign.getId())).thenReturn(Optional.of(UUID.randomUUID()));
+
+        // When + Then
+        assertThrows(GcpNotFoundException.class, () -> gcpService.updateGcp(unknown));
+        assertThrows(GcpNotFoundException.class, () -> gcpService.updateGcp(foreign));
+        verify(gcpWorkingSetCache, never()).stageUpdate(any());
+    }
+
+    @Test
+    @DisplayName("should throw ImageNotFoundException when listing GCPs of an unknown image")
+    void shouldThrowImageNotFoundException_WhenListingGcpsOfUnknownImage() {
+        // Given
+        UUID imageId = UUID.randomUUID();
+
+        when(gcpWorkingSetCache.get(imageId)).thenReturn(null);
+        when(gcpRepository.findDtosByImageId(imageId)).thenReturn(Collections.emptyList());
+        when(imageRepository.existsById(imageId)).thenReturn(false);
+
+        // When + Then
+        assertThrows(ImageNotFoundException.class, () -> gcpService.getGcpsByImageId(imageId));
     }
 
     @Test
@@ -200,6 +296,7 @@ class GcpServiceTest {
         // THEN
         verify(gcpRepository, times(1)).delete(gcpToDelete);
         verify(gcpRepository, never()).saveAll(anyList());
+        verify(gcpRepository, never()).applyRenumbering(imageId);
 
         assertEquals(1, gcp1.getIndex());
         assertEquals(2, gcp2.getIndex());
@@ -231,18 +328,26 @@ class GcpServiceTest {
 
         image.setGcps(List.of(gcp1, gcp3, gcpToDelete));
 
+        Gcp renumbered3 = new Gcp();
+        renumbered3.setId(gcp3.getId());
+        renumbered3.setImage(image);
+        renumbered3.setIndex(2);
+
         when(gcpRepository.findById(gcpIdToDelete)).thenReturn(Optional.of(gcpToDelete));
-        when(gcpRepository.findAllByImageIdOrderByIndex(imageId)).thenReturn(List.of(gcp1, gcp3));
+        when(gcpRepository.stageRenumbering(imageId)).thenReturn(1);
+        when(gcpRepository.findAllByImageIdOrderByIndex(imageId)).thenReturn(List.of(gcp1, renumbered3));
 
         // WHEN
-        gcpService.deleteGcpById(gcpIdToDelete);
+        List<GcpDto> result = gcpService.deleteGcpById(gcpIdToDelete);
 
         // THEN
         verify(gcpRepository, times(1)).delete(gcpToDelete);
-        verify(gcpRepository, times(1)).saveAll(anyList());
+        verify(gcpRepository, times(1)).applyRenumbering(imageId);
+        verify(gcpRepository, never()).saveAll(anyList());
+        verify(gcpIndexCounterRepository, times(2)).resynchronize(imageId);
 
-        assertEquals(1, gcp1.getIndex());
-        assertEquals(2, gcp3.getIndex());
+        assertEquals(1, result.get(0).getIndex());
+        assertEquals(2, result.get(1).getIndex());
     }
 
     @Test
@@ -287,6 +392,7 @@ class GcpServiceTest {
         incomingDto.setMapY(20.0);
         incomingDto.setIndex(2);
 
+        when(gcpRepository.findImageIdById(gcpId)).thenReturn(Optional.of(imageId));
         when(gcpRepository.findById(gcpId)).thenReturn(Optional.of(existingGcp));
 
         // WHEN
@@ -311,12 +417,13 @@ class GcpServiceTest {
         GcpDto incomingDto = new GcpDto();
         incomingDto.setId(gcpId);
 
-        when(gcpRepository.findById(gcpId)).thenReturn(Optional.empty());
+        when(gcpRepository.findImageIdById(gcpId)).thenReturn(Optional.empty());
 
         // WHEN + THEN
         assertThrows(GcpNotFoundException.class, () -> gcpService.updateGcp(incomingDto));
         assertNotNull(incomingDto.getId());
         verify(gcpRepository, never()).save(any(Gcp.class));
+        verify(gcpWorkingSetCache, never()).stageUpdate(any());
     }
 
     @Test
@@ -333,11 +440,10 @@ class GcpServiceTest {
     }
 
     @Test
-    @DisplayName("should return calculated residuals successfully")
+    @DisplayName("should compute residuals from the working set and write only the residuals")
+    @SuppressWarnings("unchecked")
     void shouldComputeAndUpdateResidualsSuccessfully() {
         // GIVEN
-        UUID gcp1Id = UUID.randomUUID();
-        UUID gcp2Id = UUID.randomUUID();
         UUID imageId = UUID.randomUUID();
         GeorefImage image = new GeorefImage();
         image.setId(imageId);
@@ -345,28 +451,9 @@ class GcpServiceTest {
         TransformationType type = TransformationType.POLYNOMIALE_1;
         List<Double> residuals = List.of(0.5, 1.2);
 
-        Gcp gcp1 = new Gcp();
-        gcp1.setId(gcp1Id);
-        gcp1.setImage(image);
-        gcp1.setResidual(null);
-        Gcp gcp2 = new Gcp();
-        gcp2.setId(gcp2Id);
-        gcp2.setImage(image);
-        gcp2.setResidual(null);
-
-        List<Gcp> gcps = List.of(gcp1, gcp2);
-
-        Gcp updatedGcp1 = new Gcp();
-        updatedGcp1.setId(gcp1Id);
-        updatedGcp1.setImage(image);
-        updatedGcp1.setResidual(0.5);
-        Gcp updatedGcp2 = new Gcp();
-        updatedGcp2.setId(gcp2Id);
-        updatedGcp2.setImage(image);
-        updatedGcp2.setResidual(1.2);
-
-        List<Gcp> updatedGcps = List.of(updatedGcp1, updatedGcp2);
-        List<GcpDto> updatedGcpDtos = List.of(GcpMapper.toDto(updatedGcp1), GcpMapper.toDto(updatedGcp2));
+        // Déplacement encore en attente d'écriture : seul le cache le connaît
+        GcpDto gcp1 = new GcpDto(UUID.randomUUID(), imageId, 11.0, 21.0, 100.0, 200.0, 1, null);
+        GcpDto gcp2 = new GcpDto(UUID.randomUUID(), imageId, 30.0, 40.0, 300.0, 400.0, 2, null);
 
         ResidualsRequest request = new ResidualsRequest();
         request.setImageId(imageId);
@@ -374,12 +461,11 @@ class GcpServiceTest {
         request.setSrid(Srid._3857);
 
         when(imageRepository.findById(imageId)).thenReturn(Optional.of(image));
-        when(gcpRepository.findByImageId(imageId)).thenReturn(gcps);
+        when(gcpWorkingSetCache.get(imageId)).thenReturn(List.of(gcp1, gcp2));
         when(residualsService.getMinimumPointsRequired(type)).thenReturn(3);
         when(residualsService.hasEnoughGCPs(anyList(), eq(type))).thenReturn(true);
-        when(residualsService.computeResiduals(anyList(), eq(type), eq(Srid._3857)))
+        when(residualsService.computeResiduals(List.of(gcp1, gcp2), type, Srid._3857))
                 .thenReturn(new ResidualsResult(residuals, 1.0));
-        when(gcpRepository.saveAll(gcps)).thenReturn(updatedGcps);
 
         // WHEN
         ResidualsResponse response = gcpService.updateResiduals(request);
@@ -389,11 +475,88 @@ class GcpServiceTest {
         assertTrue(response.isSuccess());
         assertEquals(1.0, response.getRmse());
         assertEquals(2, response.getGcpDtos().size());
-        assertEquals(updatedGcpDtos.get(0).getId(), response.getGcpDtos().get(0).getId());
-        assertEquals(updatedGcpDtos.get(0).getResidual(), response.getGcpDtos().get(0).getResidual());
-        assertEquals(updatedGcpDtos.get(1).getId(), response.getGcpDtos().get(1).getId());
-        assertEquals(updatedGcpDtos.get(1).getResidual(), response.getGcpDtos().get(1).getResidual());
-        verify(gcpRepository).saveAll(gcps);
+        assertEquals(gcp1.getId(), response.getGcpDtos().get(0).getId());
+        assertEquals(0.5, response.getGcpDtos().get(0).getResidual());
+        assertEquals(gcp2.getId(), response.getGcpDtos().get(1).getId());
+        assertEquals(1.2, response.getGcpDtos().get(1).getResidual());
+
+        ArgumentCaptor<List<ImageResidualsResponse>> written = ArgumentCaptor.forClass(List.class);
+        verify(gcpBatchRepository).updateResiduals(written.capture());
+        assertTrue(written.getValue().get(0).isSuccess());
+        assertEquals(1.0, written.getValue().get(0).getRmse());
+        assertEquals(response.getGcpDtos(), written.getValue().get(0).getGcpDtos());
+        verify(gcpWorkingSetCache).updateResiduals(imageId, response.getGcpDtos());
+        verify(gcpWorkingSetCache, never()).flush(any());
+        verify(gcpWorkingSetCache, never()).invalidate(any());
+        verifyNoInteractions(gcpRepository);
+    }
+
+    @Test
+    @DisplayName("should return inliers, weights and robust scale for a robust residuals request")
+    void shouldReturnRobustFitDetails_WhenRobustMethodRequested() {
+        // GIVEN
+        UUID imageId = UUID.randomUUID();
+        GeorefImage image = new GeorefImage();
+        image.setId(imageId);
+
+        TransformationType type = TransformationType.POLYNOMIALE_1;
+        GcpDto gcp1 = new GcpDto(UUID.randomUUID(), imageId, 11.0, 21.0, 100.0, 200.0, 1, null);
+        GcpDto gcp2 = new GcpDto(UUID.randomUUID(), imageId, 30.0, 40.0, 300.0, 400.0, 2, null);
+
+        ResidualsRequest request = new ResidualsRequest();
+        request.setImageId(imageId);
+        request.setType(type);
+        request.setSrid(Srid._3857);
+        request.setRobustMethod(RobustMethod.HUBER);
+
+        ResidualsResult result = new ResidualsResult(List.of(0.2, 40.0), 0.2);
+        result.setInliers(List.of(true, false));
+        result.setWeights(List.of(1.0, 0.05));
+        result.setRobustScale(0.31);
+
+        when(imageRepository.findById(imageId)).thenReturn(Optional.of(image));
+        when(gcpWorkingSetCache.get(imageId)).thenReturn(List.of(gcp1, gcp2));
+        when(residualsService.getMinimumPointsRequired(type)).thenReturn(3);
+        when(residualsService.supportsRobustFit(type)).thenReturn(true);
+        when(residualsService.hasEnoughGCPs(anyList(), eq(type))).thenReturn(true);
+        when(residualsService.computeRobustResiduals(List.of(gcp1, gcp2), type, Srid._3857, RobustMethod.HUBER))
+                .thenReturn(result);
+
+        // WHEN
+        ResidualsResponse response = gcpService.updateResiduals(request);
+
+        // THEN
+        assertTrue(response.isSuccess());
+        assertEquals(List.of(true, false), response.getInliers());
+        assertEquals(List.of(1.0, 0.05), response.getWeights());
+        assertEquals(0.31, response.getRobustScale());
+        assertEquals(40.0, response.getGcpDtos().get(1).getResidual());
+        verify(residualsService, never()).computeResiduals(anyList(), any(), any());
+    }
+
+    @Test
+    @DisplayName("should reject a robust method on a transformation without robust estimator")
+    void shouldThrowIllegalArgumentException_WhenRobustMethodNotSupported() {
+        // GIVEN
+        UUID imageId = UUID.randomUUID();
+        GeorefImage image = new GeorefImage();
+        image.setId(imageId);
+
+        ResidualsRequest request = new ResidualsRequest();
+        request.setImageId(imageId);
+        request.setType(TransformationType.THIN_PLATE_SPLINE);
+        request.setSrid(Srid._3857);
+        request.setRobustMethod(RobustMethod.RANSAC);
+
+        when(imageRepository.findById(imageId)).thenReturn(Optional.of(image));
+        when(gcpWorkingSetCache.get(imageId)).thenReturn(List.of(
+                new GcpDto(UUID.randomUUID(), imageId, 1.0, 2.0, 3.0, 4.0, 1, null)));
+        when(residualsService.supportsRobustFit(TransformationType.THIN_PLATE_SPLINE)).thenReturn(false);
+
+        // WHEN + THEN
+        assertThrows(IllegalArgumentException.class, () -> gcpService.updateResiduals(request));
+        verifyNoInteractions(gcpBatchRepository);
+        verify(gcpWorkingSetCache, never()).updateResiduals(any(), anyList());
     }
 
     @Test
@@ -417,39 +580,34 @@ class GcpServiceTest {
         request.setImageId(imageId);
 
         when(imageRepository.findById(imageId)).thenReturn(Optional.of(image));
-        when(gcpRepository.findByImageId(imageId)).thenReturn(Collections.emptyList());
+        when(gcpWorkingSetCache.get(imageId)).thenReturn(null);
+        when(gcpRepository.findDtosByImageId(imageId)).thenReturn(Collections.emptyList());
 
         // WHEN + THEN
         assertThrows(GcpNotFoundException.class, () -> gcpService.updateResiduals(request));
         verify(imageRepository).findById(imageId);
-        verify(gcpRepository).findByImageId(imageId);
+        verify(gcpRepository).findDtosByImageId(imageId);
         verifyNoInteractions(residualsService);
-        verify(gcpRepository, never()).saveAll(anyList());
+        verifyNoInteractions(gcpBatchRepository);
     }
 
     @Test
     @DisplayName("should clear residuals when not enough GCPs")
+    @SuppressWarnings("unchecked")
     void shouldClearResidualsWhenNotEnoughGcps() {
         // GIVEN
         UUID imageId = UUID.randomUUID();
         GeorefImage image = new GeorefImage();
         image.setId(imageId);
 
-        Gcp gcp1 = new Gcp();
-        gcp1.setImage(image);
-        gcp1.setResidual(null);
-        Gcp gcp2 = new Gcp();
-        gcp2.setImage(image);
-        gcp2.setResidual(null);
-
-        List<Gcp> gcps = List.of(gcp1, gcp2);
+        GcpDto gcp1 = new GcpDto(UUID.randomUUID(), imageId, 1.0, 2.0, 3.0, 4.0, 1, 0.7);
+        GcpDto gcp2 = new GcpDto(UUID.randomUUID(), imageId, 5.0, 6.0, 7.0, 8.0, 2, 0.9);
         TransformationType type = TransformationType.POLYNOMIALE_1;
 
         when(imageRepository.findById(imageId)).thenReturn(Optional.of(image));
-        when(gcpRepository.findByImageId(imageId)).thenReturn(gcps);
+        when(gcpWorkingSetCache.get(imageId)).thenReturn(List.of(gcp1, gcp2));
         when(residualsService.getMinimumPointsRequired(type)).thenReturn(3);
         when(residualsService.hasEnoughGCPs(anyList(), eq(type))).thenReturn(false);
-        when(gcpRepository.saveAll(anyList())).thenReturn(gcps);
 
         ResidualsRequest request = new ResidualsRequest();
         request.setImageId(imageId);
@@ -464,8 +622,102 @@ class GcpServiceTest {
         assertEquals(response.getMinPointsRequired(), 3);
         assertEquals(response.getGcpDtos().get(0).getResidual(), null);
         assertEquals(response.getGcpDtos().get(1).getResidual(), null);
-        verify(gcpRepository, times(1)).findByImageId(imageId);
+
+        ArgumentCaptor<List<ImageResidualsResponse>> written = ArgumentCaptor.forClass(List.class);
+        verify(gcpBatchRepository).updateResiduals(written.capture());
+        assertFalse(written.getValue().get(0).isSuccess());
+        assertEquals(response.getGcpDtos(), written.getValue().get(0).getGcpDtos());
+        verify(residualsService, never()).computeResiduals(anyList(), any(), any());
+    }
+
+    @Test
+    @DisplayName("should apply GCP operations and recompute residuals once")
+    void shouldSyncGcpsAndRecomputeResidualsOnce() {
+        // GIVEN
+        UUID imageId = UUID.randomUUID();
+        GeorefImage image = new GeorefImage();
+        image.setId(imageId);
+        image.setTransformationType(TransformationType.POLYNOMIALE_1);
+        image.setSrid(Srid._3857);
+
+        Gcp gcp1 = new Gcp(UUID.randomUUID(), image, 10.0, 20.0, 100.0, 200.0, 1, null);
+        Gcp gcp2 = new Gcp(UUID.randomUUID(), image, 30.0, 40.0, 300.0, 400.0, 2, null);
+        Gcp gcp3 = new Gcp(UUID.randomUUID(), image, 50.0, 60.0, 500.0, 600.0, 3, null);
+        Gcp added = new Gcp(UUID.randomUUID(), image, 70.0, 80.0, 700.0, 800.0, 4, null);
+
+        GcpDto update = GcpMapper.toDto(gcp2);
+        update.setMapX(333.0);
+        GcpDto addition = new GcpDto(null, imageId, 70.0, 80.0, 700.0, 800.0, 0, null, null);
+
+        GcpSyncRequest request = new GcpSyncRequest();
+        request.setImageId(imageId);
+        request.setOperations(List.of(
+                new GcpOperation(GcpOperationType.DELETE, GcpMapper.toDto(gcp1)),
+                new GcpOperation(GcpOperationType.UPDATE, update),
+                new GcpOperation(GcpOperationType.ADD, addition)));
+
+        when(imageRepository.findById(imageId)).thenReturn(Optional.of(image));
+        when(gcpRepository.findAllByImageIdOrderByIndex(imageId)).thenReturn(List.of(gcp1, gcp2, gcp3));
+        when(gcpIndexCounterRepository.allocate(imageId, 1)).thenReturn(4);
+        when(gcpFactory.createGcp(image, 70.0, 80.0, 700.0, 800.0, 4)).thenReturn(added);
+        when(gcpRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(residualsService.getMinimumPointsRequired(TransformationType.POLYNOMIALE_1)).thenReturn(3);
+        when(residualsService.hasEnoughGCPs(anyList(), eq(TransformationType.POLYNOMIALE_1))).thenReturn(true);
+        when(residualsService.computeResiduals(anyList(), eq(TransformationType.POLYNOMIALE_1), eq(Srid._3857)))
+                .thenReturn(new ResidualsResult(List.of(0.1, 0.2, 0.3), 0.25));
+        when(gcpRepository.stageRenumbering(imageId)).thenReturn(3);
+
+        // WHEN
+        ResidualsResponse response = gcpService.syncGcps(request);
+
+        // THEN
+        assertTrue(response.isSuccess());
+        assertEquals(0.25, response.getRmse());
+        assertEquals(3, response.getGcpDtos().size());
+        assertEquals(gcp2.getId(), response.getGcpDtos().get(0).getId());
+        assertEquals(333.0, response.getGcpDtos().get(0).getMapX());
+        assertEquals(1, response.getGcpDtos().get(0).getIndex());
+        assertEquals(added.getId(), response.getGcpDtos().get(2).getId());
+        assertEquals(3, response.getGcpDtos().get(2).getIndex());
+        assertEquals(0.3, response.getGcpDtos().get(2).getResidual());
+        verify(gcpRepository).deleteAll(List.of(gcp1));
         verify(gcpRepository, times(1)).saveAll(anyList());
+        verify(residualsService, times(1)).computeResiduals(anyList(), any(), any());
+        verify(gcpRepository).applyRenumbering(imageId);
+        verify(gcpIndexCounterRepository, times(2)).resynchronize(imageId);
+    }
+
+    @Test
+    @DisplayName("should throw GcpNotFoundException when a synced GCP does not belong to the image")
+    void shouldThrowGcpNotFoundException_WhenSyncingUnknownGcp() {
+        // GIVEN
+        UUID imageId = UUID.randomUUID();
+        GeorefImage image = new GeorefImage();
+        image.setId(imageId);
+
+        GcpDto unknown = new GcpDto(UUID.randomUUID(), imageId, 1.0, 2.0, 3.0, 4.0, 1, null, null);
+        GcpSyncRequest request = new GcpSyncRequest();
+        request.setImageId(imageId);
+        request.setOperations(List.of(new GcpOperation(GcpOperationType.UPDATE, unknown)));
+
+        when(imageRepository.findById(imageId)).thenReturn(Optional.of(image));
+        when(gcpRepository.findAllByImageIdOrderByIndex(imageId)).thenReturn(Collections.emptyList());
+
+        // WHEN + THEN
+        assertThrows(GcpNotFoundException.class, () -> gcpService.syncGcps(request));
+        verify(gcpRepository, never()).saveAll(anyList());
+        verifyNoInteractions(residualsService);
+    }
+
+    @Test
+    @DisplayName("should throw IllegalArgumentException when the operation list is empty")
+    void shouldThrowIllegalArgumentException_WhenSyncingWithoutOperations() {
+        GcpSyncRequest request = new GcpSyncRequest();
+        request.setImageId(UUID.randomUUID());
+        request.setOperations(Collections.emptyList());
+
+        assertThrows(IllegalArgumentException.class, () -> gcpService.syncGcps(request));
+        verifyNoInteractions(gcpRepository);
     }
 
     @Test
@@ -481,7 +733,7 @@ class GcpServiceTest {
         LoadGcpsRequest request = new LoadGcpsRequest(imageId, List.of(dto1, dto2), true);
 
         when(imageRepository.findById(imageId)).thenReturn(Optional.of(image));
-        when(gcpRepository.findMaxIndexByImageId(imageId)).thenReturn(Optional.empty());
+        when(gcpIndexCounterRepository.allocate(imageId, 2)).thenReturn(2);
 
         Gcp gcp1 = new Gcp();
         gcp1.setId(UUID.randomUUID());
@@ -495,13 +747,14 @@ class GcpServiceTest {
 
         when(gcpFactory.createGcp(eq(image), eq(10.44), eq(20.44), eq(30.44), eq(40.44), eq(1))).thenReturn(gcp1);
         when(gcpFactory.createGcp(eq(image), eq(50.44), eq(60.44), eq(70.44), eq(80.44), eq(2))).thenReturn(gcp2);
-        when(gcpRepository.saveAll(anyList())).thenReturn(List.of(gcp1, gcp2));
+        when(gcpRepository.saveAllAndFlush(anyList())).thenReturn(List.of(gcp1, gcp2));
 
         // WHEN
         List<GcpDto> result = gcpService.loadGcps(request);
 
         // THEN
         verify(gcpRepository).deleteByImageId(imageId);
+        verify(gcpIndexCounterRepository, times(2)).resynchronize(imageId);
         assertEquals(1, result.get(0).getIndex());
         assertEquals(2, result.get(1).getIndex());
         assertEquals(2, result.size());
@@ -520,7 +773,7 @@ class GcpServiceTest {
         LoadGcpsRequest request = new LoadGcpsRequest(imageId, List.of(dto1, dto2), false);
 
         when(imageRepository.findById(imageId)).thenReturn(Optional.of(image));
-        when(gcpRepository.findMaxIndexByImageId(imageId)).thenReturn(Optional.of(2));
+        when(gcpIndexCounterRepository.allocate(imageId, 2)).thenReturn(4);
 
         Gcp gcp1 = new Gcp();
         gcp1.setId(UUID.randomUUID());
@@ -534,13 +787,14 @@ class GcpServiceTest {
 
         when(gcpFactory.createGcp(eq(image), eq(10.44), eq(20.44), eq(30.44), eq(40.44), eq(3))).thenReturn(gcp1);
         when(gcpFactory.createGcp(eq(image), eq(50.44), eq(60.44), eq(70.44), eq(80.44), eq(4))).thenReturn(gcp2);
-        when(gcpRepository.saveAll(anyList())).thenReturn(List.of(gcp1, gcp2));
+        when(gcpRepository.saveAllAndFlush(anyList())).thenReturn(List.of(gcp1, gcp2));
 
         // WHEN
         List<GcpDto> result = gcpService.loadGcps(request);
 
         // THEN
         verify(gcpRepository, never()).deleteByImageId(imageId);
+        verify(gcpIndexCounterRepository, never()).resynchronize(imageId);
         assertEquals(3, result.get(0).getIndex());
         assertEquals(4, result.get(1).getIndex());
         assertEquals(2, result.size());
@@ -580,8 +834,9 @@ class GcpServiceTest {
         LoadGcpsRequest request = new LoadGcpsRequest(imageId, List.of(new GcpDto(1.0, 1.0, 2.0, 2.0)), false);
 
         when(imageRepository.findById(imageId)).thenReturn(Optional.of(image));
-        when(gcpRepository.findMaxIndexByImageId(imageId)).thenReturn(Optional.of(0));
-        when(gcpRepository.existsByImageIdAndIndex(imageId, 1)).thenReturn(true);
+        when(gcpIndexCounterRepository.allocate(imageId, 1)).thenReturn(1);
+        when(gcpRepository.saveAllAndFlush(anyList()))
+                .thenThrow(new DataIntegrityViolationException("uk_gcp_image_id_index"));
 
         // WHEN + THEN
         assertThrows(DuplicateGcpIndexException.class, () -> gcpService.loadGcps(request));
@@ -620,4 +875,103 @@ class GcpServiceTest {
         assertFalse(result);
         verify(gcpRepository, never()).deleteAll(anyList());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("should import a CSV file in index-allocated batches")
+    void shouldImportCsvFileInBatches() throws Exception {
+        // Given
+        UUID imageId = UUID.randomUUID();
+        StringBuilder csv = new StringBuilder("sourceX;sourceY;mapX;mapY\n");
+        for (int i = 0; i < 501; i++) {
+            csv.append(i).append(";-").append(i).append(";").append(1000 + i).append(";").append(2000 + i)
+                    .append("\n");
+        }
+
+        when(imageRepository.existsById(imageId)).thenReturn(true);
+        when(gcpIndexCounterRepository.allocate(imageId, 500)).thenReturn(500);
+        when(gcpIndexCounterRepository.allocate(imageId, 1)).thenReturn(501);
+
+        // When
+        GcpImportResponse response = gcpService.importGcps(imageId, GcpFileFormat.CSV,
+                new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), false);
+
+        // Then
+        assertEquals(501, response.getImported());
+        assertEquals(0, response.getSkipped());
+        verify(gcpBatchRepository).insertGcps(eq(imageId), anyList(), eq(1));
+        verify(gcpBatchRepository).insertGcps(eq(imageId), anyList(), eq(501));
+        verify(gcpWorkingSetCache).invalidate(imageId);
+        verify(gcpRepository, never()).deleteByImageId(any());
+    }
+
+    @Test
+    @DisplayName("should skip disabled points and reject a file without GCP")
+    void shouldSkipDisabledPointsAndRejectEmptyImport() {
+        // Given
+        UUID imageId = UUID.randomUUID();
+        String points = "#CRS: EPSG:3857\nmapX,mapY,pixelX,pixelY,enable\n100,200,10,-20,0\n";
+
+        when(imageRepository.existsById(imageId)).thenReturn(true);
+
+        // When + Then
+        assertThrows(IllegalArgumentException.class, () -> gcpService.importGcps(imageId, GcpFileFormat.POINTS,
+                new ByteArrayInputStream(points.getBytes(StandardCharsets.UTF_8)), false));
+        verify(gcpIndexCounterRepository, never()).allocate(any(), anyInt());
+        verifyNoInteractions(gcpBatchRepository);
+    }
+
+    @Test
+    @DisplayName("should search nearest GCPs with default SRID and limit")
+    void shouldFindNearestGcpsWithDefaults() {
+        // Given
+        UUID excludedImageId = UUID.randomUUID();
+        NearestGcpDto nearest = new NearestGcpDto(UUID.randomUUID(), UUID.randomUUID(), 3, 1000.0, 2000.0, 4.2);
+
+        when(gcpSpatialRepository.isAvailable()).thenReturn(true);
+        when(gcpSpatialRepository.findNearest(1000.0, 2000.0, Srid._3857, 50.0, 10, excludedImageId))
+                .thenReturn(List.of(nearest));
+
+        // When
+        List<NearestGcpDto> result = gcpService.findNearestGcps(1000.0, 2000.0, null, 50.0, null, excludedImageId);
+
+        // Then
+        assertEquals(List.of(nearest), result);
+    }
+
+    @Test
+    @DisplayName("should reject invalid nearest GCP search or unavailable spatial index")
+    void shouldRejectInvalidNearestGcpSearch() {
+        // When + Then
+        assertThrows(IllegalArgumentException.class,
+                () -> gcpService.findNearestGcps(null, 2000.0, Srid._3857, 50.0, 10, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> gcpService.findNearestGcps(1000.0, 2000.0, Srid._3857, 0.0, 10, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> gcpService.findNearestGcps(1000.0, 2000.0, Srid._3857, 50.0, 1000, null));
+        verifyNoInteractions(gcpSpatialRepository);
+
+        when(gcpSpatialRepository.isAvailable()).thenReturn(false);
+        assertThrows(IllegalStateException.class,
+                () -> gcpService.findNearestGcps(1000.0, 2000.0, Srid._3857, 50.0, 10, null));
+    }
+
+    @Test
+    @DisplayName("should clone GCPs in bulk and invalidate the target image cache")
+    void shouldCloneGcpsInBulk() {
+        // Given
+        UUID sourceId = UUID.randomUUID();
+        UUID targetId = UUID.randomUUID();
+        List<GcpDto> clones = List.of(new GcpDto(UUID.randomUUID(), targetId, 1.0, -2.0, 3.0, 4.0, 1, null, null));
+
+        when(gcpBatchRepository.cloneGcps(sourceId, targetId)).thenReturn(clones);
+
+        // When
+        List<GcpDto> result = gcpService.cloneGcps(sourceId, targetId);
+
+        // Then
+        assertEquals(clones, result);
+        verify(gcpWorkingSetCache).invalidate(targetId);
+        verifyNoInteractions(gcpRepository, gcpIndexCounterRepository);
+        assertThrows(IllegalArgumentException.class, () -> gcpService.cloneGcps(null, targetId));
+    }
+}
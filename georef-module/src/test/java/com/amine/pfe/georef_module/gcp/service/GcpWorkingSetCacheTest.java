@@ -0,0 +1,140 @@
+package com.amine.pfe.georef_module.gcp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.amine.pfe.georef_module.entity.Gcp;
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.repository.GcpRepository;
+import com.amine.pfe.georef_module.gcp.service.impl.GcpWorkingSetCache;
+import com.amine.pfe.georef_module.gcp.service.port.GcpCacheNotifier;
+
+class GcpWorkingSetCacheTest {
+
+    private GcpRepository gcpRepository;
+    private GcpCacheNotifier notifier;
+    private GcpWorkingSetCache cache;
+    private UUID imageId;
+    private UUID gcpId;
+
+    @BeforeEach
+    void setUp() {
+        gcpRepository = mock(GcpRepository.class);
+        notifier = mock(GcpCacheNotifier.class);
+        // Pas de flush périodique : les écritures ne partent que sur flush()
+        cache = new GcpWorkingSetCache(gcpRepository, mock(PlatformTransactionManager.class), notifier, 300, 0, true);
+        imageId = UUID.randomUUID();
+        gcpId = UUID.randomUUID();
+    }
+
+    @Test
+    @DisplayName("should coalesce successive moves of a GCP into a single batched write")
+    void shouldCoalesceMovesIntoSingleWrite() {
+        // Given
+        cache.put(imageId, List.of(new GcpDto(gcpId, imageId, 1.0, 2.0, 3.0, 4.0, 1, 0.5)), cache.generation(imageId));
+        Gcp entity = new Gcp(gcpId, null, 1.0, 2.0, 3.0, 4.0, 1, 0.5);
+        when(gcpRepository.findAllById(Set.of(gcpId))).thenReturn(List.of(entity));
+
+        // When
+        cache.stageUpdate(new GcpDto(gcpId, imageId, 10.0, 20.0, 30.0, 40.0, 1, null));
+        cache.stageUpdate(new GcpDto(gcpId, imageId, 11.0, 21.0, 31.0, 41.0, 1, null));
+
+        // Then : le cache sert déjà le dernier état, la base n'est pas encore touchée
+        GcpDto cached = cache.get(imageId).get(0);
+        assertEquals(11.0, cached.getSourceX());
+        assertEquals(0.5, cached.getResidual());
+        verify(gcpRepository, never()).saveAll(anyList());
+
+        cache.flush(imageId);
+        cache.flush(imageId);
+
+        verify(gcpRepository, times(1)).saveAll(List.of(entity));
+        assertEquals(11.0, entity.getSourceX());
+        assertEquals(41.0, entity.getMapY());
+        verify(notifier).publish(imageId);
+    }
+
+    @Test
+    @DisplayName("should replay pending moves on a reloaded working set and refuse unknown GCPs")
+    void shouldReplayPendingMovesAfterReload() {
+        // Given
+        cache.put(imageId, List.of(new GcpDto(gcpId, imageId, 1.0, 2.0, 3.0, 4.0, 1, null)), cache.generation(imageId));
+        cache.stageUpdate(new GcpDto(gcpId, imageId, 5.0, 6.0, 7.0, 8.0, 1, null));
+
+        // When : invalidation par une autre écriture puis relecture de l'ancien état en base
+        cache.invalidate(imageId);
+        assertNull(cache.get(imageId));
+        cache.put(imageId, List.of(new GcpDto(gcpId, imageId, 1.0, 2.0, 3.0, 4.0, 1, null)), cache.generation(imageId));
+
+        // Then
+        assertEquals(5.0, cache.get(imageId).get(0).getSourceX());
+        assertNull(cache.stageUpdate(new GcpDto(UUID.randomUUID(), imageId, 0.0, 0.0, 0.0, 0.0, 2, null)));
+    }
+
+    @Test
+    @DisplayName("should not cache a database read that started before a write")
+    void shouldDropStalePut() {
+        // Given : lecture en base commencée avant une invalidation
+        long generation = cache.generation(imageId);
+        cache.invalidate(imageId);
+
+        // When
+        List<GcpDto> loaded = cache.put(imageId, List.of(new GcpDto(gcpId, imageId, 1.0, 2.0, 3.0, 4.0, 1, null)),
+                generation);
+
+        // Then : la lecture est rendue à l'appelant mais pas mise en cache
+        assertEquals(1, loaded.size());
+        assertNull(cache.get(imageId));
+    }
+
+    @Test
+    @DisplayName("should write moves directly unless the instance is alone on the database")
+    void shouldNotStageWithoutSingleInstance() {
+        // Given
+        GcpWorkingSetCache shared = new GcpWorkingSetCache(gcpRepository, mock(PlatformTransactionManager.class),
+                notifier, 300, 0, false);
+        shared.put(imageId, List.of(new GcpDto(gcpId, imageId, 1.0, 2.0, 3.0, 4.0, 1, null)),
+                shared.generation(imageId));
+
+        // When + Then
+        assertNull(shared.stageUpdate(new GcpDto(gcpId, imageId, 5.0, 6.0, 7.0, 8.0, 1, null)));
+    }
+
+    @Test
+    @DisplayName("should flush and stop staging once another instance shows up")
+    @SuppressWarnings("unchecked")
+    void shouldDisableStagingOnRemoteChange() {
+        // Given
+        ArgumentCaptor<Consumer<UUID>> remote = ArgumentCaptor.forClass(Consumer.class);
+        verify(notifier).subscribe(remote.capture());
+        cache.put(imageId, List.of(new GcpDto(gcpId, imageId, 1.0, 2.0, 3.0, 4.0, 1, null)), cache.generation(imageId));
+        cache.stageUpdate(new GcpDto(gcpId, imageId, 5.0, 6.0, 7.0, 8.0, 1, null));
+        Gcp entity = new Gcp(gcpId, null, 1.0, 2.0, 3.0, 4.0, 1, null);
+        when(gcpRepository.findAllById(Set.of(gcpId))).thenReturn(List.of(entity));
+
+        // When : notification d'une autre instance sur une autre image
+        remote.getValue().accept(UUID.randomUUID());
+
+        // Then
+        assertEquals(5.0, entity.getSourceX());
+        cache.put(imageId, List.of(new GcpDto(gcpId, imageId, 5.0, 6.0, 7.0, 8.0, 1, null)), cache.generation(imageId));
+        assertNull(cache.stageUpdate(new GcpDto(gcpId, imageId, 9.0, 9.0, 9.0, 9.0, 1, null)));
+    }
+}
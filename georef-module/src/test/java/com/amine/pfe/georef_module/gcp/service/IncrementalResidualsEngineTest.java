@@ -0,0 +1,156 @@
+package com.amine.pfe.georef_module.gcp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.service.impl.IncrementalResidualsEngine;
+import com.amine.pfe.georef_module.gcp.solver.PolynomialFit;
+
+class IncrementalResidualsEngineTest {
+
+    private IncrementalResidualsEngine engine;
+    private UUID imageId;
+
+    @BeforeEach
+    void setUp() {
+        engine = new IncrementalResidualsEngine();
+        imageId = UUID.randomUUID();
+    }
+
+    @Test
+    @DisplayName("should match a full refit after a GCP is moved, added and deleted")
+    void shouldMatchFullRefitAfterSingleGcpChanges() {
+        // Given
+        List<GcpDto> gcps = createGcps(25);
+        assertFitMatches(engine.fit(gcps, 2), gcps, 2);
+
+        // When + Then : déplacement
+        gcps.get(7).setMapX(gcps.get(7).getMapX() + 3.5);
+        gcps.get(7).setSourceY(gcps.get(7).getSourceY() - 12.0);
+        assertFitMatches(engine.fit(gcps, 2), gcps, 2);
+
+        // When + Then : ajout
+        gcps.add(gcp(512.0, 77.0, 1300.0, 2100.0));
+        assertFitMatches(engine.fit(gcps, 2), gcps, 2);
+
+        // When + Then : suppression
+        gcps.remove(3);
+        assertFitMatches(engine.fit(gcps, 2), gcps, 2);
+    }
+
+    @Test
+    @DisplayName("should fall back to a full refit when many GCPs change at once")
+    void shouldRebuildWhenManyGcpsChange() {
+        // Given
+        List<GcpDto> gcps = createGcps(30);
+        engine.fit(gcps, 3);
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            gcps.get(i).setMapY(gcps.get(i).getMapY() + i);
+        }
+
+        // Then
+        assertFitMatches(engine.fit(gcps, 3), gcps, 3);
+    }
+
+    @Test
+    @DisplayName("should return null when the factorization is ill-conditioned")
+    void shouldReturnNullWhenIllConditioned() {
+        // Given : points alignés
+        List<GcpDto> gcps = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            gcps.add(gcp(10.0 * i, 10.0 * i, 100.0 + i, 200.0 + i));
+        }
+
+        // When + Then
+        assertNull(engine.fit(gcps, 1));
+    }
+
+    @Test
+    @DisplayName("should keep falling back on an ill-conditioned set until it changes enough")
+    void shouldSkipRebuildWhileIllConditioned() {
+        // Given : points alignés
+        List<GcpDto> gcps = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            gcps.add(gcp(10.0 * i, 10.0 * i, 100.0 + i, 200.0 + i));
+        }
+        assertNull(engine.fit(gcps, 1));
+
+        // When + Then : un déplacement ne suffit pas à relancer une reconstruction
+        gcps.get(2).setMapX(150.0);
+        assertNull(engine.fit(gcps, 1));
+
+        // When + Then : des points hors de la droite rendent le système identifiable
+        gcps.add(gcp(0.0, 50.0, 90.0, 260.0));
+        gcps.add(gcp(50.0, 0.0, 160.0, 190.0));
+        gcps.add(gcp(20.0, 45.0, 115.0, 250.0));
+        assertFitMatches(engine.fit(gcps, 1), gcps, 1);
+    }
+
+    @Test
+    @DisplayName("should return null when GCPs have no ID")
+    void shouldReturnNullWithoutIds() {
+        List<GcpDto> gcps = List.of(
+                new GcpDto(0.0, 0.0, 1.0, 1.0),
+                new GcpDto(1.0, 0.0, 2.0, 1.0),
+                new GcpDto(0.0, 1.0, 1.0, 2.0));
+
+        assertNull(engine.fit(gcps, 1));
+    }
+
+    // ---------------------------
+    // Helpers
+    // ---------------------------
+
+    private void assertFitMatches(PolynomialFit actual, List<GcpDto> gcps, int degree) {
+        assertNotNull(actual);
+        int n = gcps.size();
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = gcps.get(i).getSourceX();
+            y[i] = gcps.get(i).getSourceY();
+            mapX[i] = gcps.get(i).getMapX();
+            mapY[i] = gcps.get(i).getMapY();
+        }
+        PolynomialFit expected = PolynomialFit.fit(x, y, mapX, mapY, degree);
+        for (int i = 0; i < n; i++) {
+            assertEquals(expected.transformX(x[i], y[i]), actual.transformX(x[i], y[i]), 1e-7);
+            assertEquals(expected.transformY(x[i], y[i]), actual.transformY(x[i], y[i]), 1e-7);
+            assertEquals(expected.leverage(x[i], y[i]), actual.leverage(x[i], y[i]), 1e-9);
+        }
+    }
+
+    private List<GcpDto> createGcps(int count) {
+        List<GcpDto> gcps = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double x = 41.0 * (i % 6) + 5.3 * i;
+            double y = 29.0 * (i % 4) + 7.9 * i;
+            double noise = ((i * 7919) % 11 - 5) * 0.1;
+            gcps.add(gcp(x, y,
+                    1000 + 0.5 * x - 0.1 * y + 2e-4 * x * y + noise,
+                    2000 + 0.2 * x + 0.4 * y - 1e-4 * x * x - noise));
+        }
+        return gcps;
+    }
+
+    private GcpDto gcp(double x, double y, double mapX, double mapY) {
+        GcpDto gcp = new GcpDto(x, y, mapX, mapY);
+        gcp.setId(UUID.randomUUID());
+        gcp.setImageId(imageId);
+        return gcp;
+    }
+}
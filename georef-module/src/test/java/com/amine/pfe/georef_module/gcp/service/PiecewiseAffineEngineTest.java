@@ -0,0 +1,141 @@
+package com.amine.pfe.georef_module.gcp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.service.impl.PiecewiseAffineEngine;
+import com.amine.pfe.georef_module.gcp.solver.PiecewiseAffine;
+
+class PiecewiseAffineEngineTest {
+
+    private PiecewiseAffineEngine engine;
+    private UUID imageId;
+
+    @BeforeEach
+    void setUp() {
+        engine = new PiecewiseAffineEngine();
+        imageId = UUID.randomUUID();
+    }
+
+    @Test
+    @DisplayName("should match a fresh triangulation after GCPs are moved, added and deleted")
+    void shouldMatchFreshFitAfterChanges() {
+        // Given
+        List<GcpDto> gcps = createGcps(60);
+        assertFitMatches(engine.fit(gcps, null, null), gcps);
+
+        // When + Then : déplacement côté source et côté carte
+        gcps.get(7).setSourceX(gcps.get(7).getSourceX() + 13.0);
+        gcps.get(11).setMapY(gcps.get(11).getMapY() + 4.0);
+        assertFitMatches(engine.fit(gcps, null, null), gcps);
+
+        // When + Then : ajout
+        gcps.add(gcp(512.0, 77.0, 1300.0, 2100.0));
+        gcps.add(gcp(-40.0, -35.0, 960.0, 1990.0));
+        assertFitMatches(engine.fit(gcps, null, null), gcps);
+
+        // When + Then : suppression, y compris un sommet de l'enveloppe
+        gcps.remove(gcps.size() - 1);
+        gcps.remove(3);
+        assertFitMatches(engine.fit(gcps, null, null), gcps);
+    }
+
+    @Test
+    @DisplayName("should stay consistent over a long editing session")
+    void shouldStayConsistentOverManyMoves() {
+        // Given
+        List<GcpDto> gcps = createGcps(30);
+        engine.fit(gcps, null, null);
+
+        // When : chaque déplacement côté source consomme un nouvel identifiant de sommet
+        for (int i = 0; i < 300; i++) {
+            GcpDto moved = gcps.get(i % gcps.size());
+            moved.setSourceX(moved.getSourceX() + ((i * 37) % 7 - 3) * 0.5);
+            moved.setSourceY(moved.getSourceY() + ((i * 53) % 5 - 2) * 0.5);
+            engine.fit(gcps, null, null);
+        }
+
+        // Then
+        assertFitMatches(engine.fit(gcps, null, null), gcps);
+    }
+
+    @Test
+    @DisplayName("should compute leave-one-out errors equal to explicit refits")
+    void shouldMatchExplicitLeaveOneOut() {
+        // Given
+        List<GcpDto> gcps = createGcps(40);
+        int n = gcps.size();
+        double[] errX = new double[n];
+        double[] errY = new double[n];
+
+        // When
+        engine.fit(gcps, errX, errY);
+
+        // Then
+        for (int k = 0; k < n; k++) {
+            List<GcpDto> others = new ArrayList<>(gcps);
+            GcpDto left = others.remove(k);
+            PiecewiseAffine without = fresh(others);
+            assertEquals(left.getMapX() - without.transformX(left.getSourceX(), left.getSourceY()), errX[k], 1e-6);
+            assertEquals(left.getMapY() - without.transformY(left.getSourceX(), left.getSourceY()), errY[k], 1e-6);
+        }
+    }
+
+    // ---------------------------
+    // Helpers
+    // ---------------------------
+
+    private void assertFitMatches(PiecewiseAffine actual, List<GcpDto> gcps) {
+        PiecewiseAffine expected = fresh(gcps);
+        for (int i = 0; i < 40; i++) {
+            for (int j = 0; j < 40; j++) {
+                double x = -60.0 + 15.0 * i;
+                double y = -50.0 + 12.0 * j;
+                assertEquals(expected.transformX(x, y), actual.transformX(x, y), 1e-6);
+                assertEquals(expected.transformY(x, y), actual.transformY(x, y), 1e-6);
+            }
+        }
+    }
+
+    private PiecewiseAffine fresh(List<GcpDto> gcps) {
+        int n = gcps.size();
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = gcps.get(i).getSourceX();
+            y[i] = gcps.get(i).getSourceY();
+            mapX[i] = gcps.get(i).getMapX();
+            mapY[i] = gcps.get(i).getMapY();
+        }
+        return PiecewiseAffine.fit(x, y, mapX, mapY);
+    }
+
+    private List<GcpDto> createGcps(int count) {
+        List<GcpDto> gcps = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double x = (i * 7919) % 503 + 0.37 * i;
+            double y = (i * 104729) % 431 + 0.11 * i;
+            gcps.add(gcp(x, y,
+                    1000 + 0.5 * x - 0.1 * y + 2e-4 * x * y,
+                    2000 + 0.2 * x + 0.4 * y - 1e-4 * x * x));
+        }
+        return gcps;
+    }
+
+    private GcpDto gcp(double x, double y, double mapX, double mapY) {
+        GcpDto gcp = new GcpDto(x, y, mapX, mapY);
+        gcp.setId(UUID.randomUUID());
+        gcp.setImageId(imageId);
+        return gcp;
+    }
+}
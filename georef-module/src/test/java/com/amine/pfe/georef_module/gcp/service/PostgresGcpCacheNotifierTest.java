@@ -0,0 +1,78 @@
+package com.amine.pfe.georef_module.gcp.service;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.amine.pfe.georef_module.gcp.service.impl.PostgresGcpCacheNotifier;
+
+class PostgresGcpCacheNotifierTest {
+
+    private DataSource dataSource;
+    private Connection connection;
+    private PreparedStatement statement;
+    private PostgresGcpCacheNotifier notifier;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = mock(DataSource.class);
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(connection.getAutoCommit()).thenReturn(true);
+        notifier = new PostgresGcpCacheNotifier(dataSource, "gcp_working_set");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("should send the notification after the surrounding transaction commits")
+    void shouldNotifyAfterCommit() throws Exception {
+        // Given
+        UUID imageId = UUID.randomUUID();
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        notifier.publish(imageId);
+
+        // Then
+        verifyNoInteractions(dataSource);
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        verify(statement).setString(1, "gcp_working_set");
+        verify(statement).execute();
+        verify(connection).close();
+    }
+
+    @Test
+    @DisplayName("should send the notification immediately outside a transaction")
+    void shouldNotifyImmediatelyWithoutTransaction() throws Exception {
+        // When
+        notifier.publish(UUID.randomUUID());
+
+        // Then
+        verify(statement).execute();
+    }
+}
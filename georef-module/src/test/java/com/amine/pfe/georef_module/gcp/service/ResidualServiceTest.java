@@ -5,18 +5,33 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import com.amine.pfe.georef_module.enums.ResidualMode;
+import com.amine.pfe.georef_module.enums.RobustMethod;
 import com.amine.pfe.georef_module.enums.Srid;
 import com.amine.pfe.georef_module.enums.TransformationType;
+import com.amine.pfe.georef_module.gcp.dto.DegreeFit;
+import com.amine.pfe.georef_module.gcp.dto.DegreeSelectionResult;
 import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.dto.InverseTransformResponse;
 import com.amine.pfe.georef_module.gcp.dto.ResidualsResult;
+import com.amine.pfe.georef_module.gcp.service.impl.IncrementalResidualsEngine;
+import com.amine.pfe.georef_module.gcp.service.impl.InverseTransformEngine;
+import com.amine.pfe.georef_module.gcp.service.impl.PiecewiseAffineEngine;
 import com.amine.pfe.georef_module.gcp.service.impl.ResidualsServiceImpl;
+import com.amine.pfe.georef_module.gcp.service.impl.RobustEstimator;
+import com.amine.pfe.georef_module.gcp.service.impl.ThinPlateSplineEngine;
+import com.amine.pfe.georef_module.gcp.solver.LeastSquaresMethod;
+import com.amine.pfe.georef_module.gcp.solver.PolynomialFit;
 
 public class ResidualServiceTest {
         private ResidualsServiceImpl residualsService;
@@ -42,6 +57,18 @@ public class ResidualServiceTest {
         assertEquals(6, minPoints);
     }
 
+    @Test
+    void testGetMinimumPointsRequired_ThinPlateSpline() {
+        int minPoints = residualsService.getMinimumPointsRequired(TransformationType.THIN_PLATE_SPLINE);
+        assertEquals(3, minPoints);
+    }
+
+    @Test
+    void testGetMinimumPointsRequired_HelmertAndProjective() {
+        assertEquals(2, residualsService.getMinimumPointsRequired(TransformationType.HELMERT));
+        assertEquals(4, residualsService.getMinimumPointsRequired(TransformationType.PROJECTIVE));
+    }
+
     @Test
     void testGetMinimumPointsRequired_Polynomiale3() {
         int minPoints = residualsService.getMinimumPointsRequired(TransformationType.POLYNOMIALE_3);
@@ -102,6 +129,200 @@ public class ResidualServiceTest {
         assertEquals(10, result.getResiduals().size());
     }
 
+    @Test
+    void testComputeResiduals_HouseholderMatchesFullQR() {
+        List<GcpDto> gcps = createScatteredGcps(40);
+        ResidualsServiceImpl fullQr = new ResidualsServiceImpl(LeastSquaresMethod.FULL_QR);
+        ResidualsServiceImpl householder = new ResidualsServiceImpl(LeastSquaresMethod.HOUSEHOLDER);
+
+        for (TransformationType type : TransformationType.values()) {
+            ResidualsResult expected = fullQr.computeResiduals(gcps, type, Srid._3857);
+            ResidualsResult actual = householder.computeResiduals(gcps, type, Srid._3857);
+
+            assertEquals(expected.getRmse(), actual.getRmse(), 1e-6);
+            for (int i = 0; i < gcps.size(); i++) {
+                assertEquals(expected.getResiduals().get(i), actual.getResiduals().get(i), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    void testComputeResiduals_LeaveOneOutMatchesExplicitRefit() {
+        List<GcpDto> gcps = createScatteredGcps(20);
+        List<TransformationType> types = List.of(
+                TransformationType.POLYNOMIALE_1, TransformationType.POLYNOMIALE_2, TransformationType.POLYNOMIALE_3);
+
+        for (int degree = 1; degree <= 3; degree++) {
+            TransformationType type = types.get(degree - 1);
+            ResidualsResult result = residualsService.computeResiduals(gcps, type, Srid._3857,
+                    ResidualMode.LEAVE_ONE_OUT);
+
+            assertEquals(gcps.size(), result.getLooResiduals().size());
+            double sumSquared = 0.0;
+            for (int i = 0; i < gcps.size(); i++) {
+                double expected = leaveOneOutResidual(gcps, i, degree);
+                assertEquals(expected, result.getLooResiduals().get(i), 1e-6);
+                assertTrue(result.getLooResiduals().get(i) >= result.getResiduals().get(i) - 1e-9);
+                sumSquared += expected * expected;
+            }
+            assertEquals(Math.sqrt(sumSquared / gcps.size()), result.getLooRmse(), 1e-6);
+        }
+    }
+
+    @Test
+    void testComputeResiduals_ThinPlateSplineInterpolatesAndReportsLeaveOneOut() {
+        List<GcpDto> gcps = createScatteredGcps(20);
+        ResidualsResult result = residualsService.computeResiduals(gcps, TransformationType.THIN_PLATE_SPLINE,
+                Srid._3857, ResidualMode.LEAVE_ONE_OUT);
+
+        assertEquals(0.0, result.getRmse(), 1e-6);
+        assertEquals(gcps.size(), result.getLooResiduals().size());
+        assertTrue(result.getLooRmse() > 0.0);
+    }
+
+    @Test
+    void testComputeResiduals_PiecewiseAffineInterpolatesAndReportsLeaveOneOut() {
+        List<GcpDto> gcps = createScatteredGcps(25);
+        ResidualsResult result = residualsService.computeResiduals(gcps, TransformationType.PIECEWISE_AFFINE,
+                Srid._3857, ResidualMode.LEAVE_ONE_OUT);
+
+        assertEquals(3, residualsService.getMinimumPointsRequired(TransformationType.PIECEWISE_AFFINE));
+        assertEquals(0.0, result.getRmse(), 1e-6);
+        assertEquals(gcps.size(), result.getLooResiduals().size());
+        assertTrue(result.getLooRmse() > 0.0);
+    }
+
+    @Test
+    void testComputeResiduals_ClassicModeHasNoLeaveOneOut() {
+        List<GcpDto> gcps = createScatteredGcps(12);
+        ResidualsResult result = residualsService.computeResiduals(gcps, TransformationType.POLYNOMIALE_2,
+                Srid._3857, ResidualMode.CLASSIC);
+
+        assertEquals(null, result.getLooResiduals());
+        assertEquals(null, result.getLooRmse());
+    }
+
+    @Test
+    void testSelectPolynomialDegree_MatchesSeparateFitsAndRecommendsLowestLooRmse() {
+        List<GcpDto> gcps = createScatteredGcps(20);
+        DegreeSelectionResult selection = residualsService.selectPolynomialDegree(gcps, Srid._3857);
+
+        assertEquals(3, selection.getFits().size());
+        DegreeFit best = selection.getFits().get(0);
+        for (DegreeFit fit : selection.getFits()) {
+            ResidualsResult separate = residualsService.computeResiduals(gcps, fit.getType(), Srid._3857,
+                    ResidualMode.LEAVE_ONE_OUT);
+            assertEquals(separate.getRmse(), fit.getRmse(), 1e-6);
+            assertEquals(separate.getLooRmse(), fit.getLooRmse(), 1e-6);
+            assertNotNull(fit.getAic());
+            assertTrue(fit.getBic() > fit.getAic());
+            if (fit.getLooRmse() < best.getLooRmse()) {
+                best = fit;
+            }
+        }
+        assertEquals(best.getType(), selection.getRecommended());
+    }
+
+    @Test
+    void testInverseTransform_RecoversSourcePixelsOfGcps() {
+        List<GcpDto> gcps = createScatteredGcps(15);
+        UUID imageId = UUID.randomUUID();
+        for (GcpDto gcp : gcps) {
+            gcp.setId(UUID.randomUUID());
+            gcp.setImageId(imageId);
+        }
+        PolynomialFit fit = PolynomialFit.fit(
+                gcps.stream().mapToDouble(GcpDto::getSourceX).toArray(),
+                gcps.stream().mapToDouble(GcpDto::getSourceY).toArray(),
+                gcps.stream().mapToDouble(GcpDto::getMapX).toArray(),
+                gcps.stream().mapToDouble(GcpDto::getMapY).toArray(), 2);
+        double[] mapX = new double[gcps.size()];
+        double[] mapY = new double[gcps.size()];
+        for (int i = 0; i < gcps.size(); i++) {
+            mapX[i] = fit.transformX(gcps.get(i).getSourceX(), gcps.get(i).getSourceY());
+            mapY[i] = fit.transformY(gcps.get(i).getSourceX(), gcps.get(i).getSourceY());
+        }
+
+        InverseTransformResponse first = residualsService.inverseTransform(gcps, TransformationType.POLYNOMIALE_2,
+                mapX, mapY);
+        InverseTransformResponse cached = residualsService.inverseTransform(gcps, TransformationType.POLYNOMIALE_2,
+                mapX, mapY);
+
+        for (int i = 0; i < gcps.size(); i++) {
+            assertTrue(first.getConverged()[i]);
+            assertEquals(gcps.get(i).getSourceX(), first.getSourceX()[i], 1e-6);
+            assertEquals(gcps.get(i).getSourceY(), first.getSourceY()[i], 1e-6);
+            assertEquals(first.getSourceX()[i], cached.getSourceX()[i], 0.0);
+        }
+        assertThrows(IllegalArgumentException.class, () -> residualsService.inverseTransform(gcps,
+                TransformationType.THIN_PLATE_SPLINE, mapX, mapY));
+    }
+
+    @Test
+    void testComputeRobustResiduals_RansacFlagsGrossOutliers() {
+        assertRobustFitIgnoresOutliers(RobustMethod.RANSAC);
+    }
+
+    @Test
+    void testComputeRobustResiduals_HuberFlagsGrossOutliers() {
+        assertRobustFitIgnoresOutliers(RobustMethod.HUBER);
+    }
+
+    @Test
+    void testComputeRobustResiduals_FittedPositionsReproduceRobustFit() {
+        List<GcpDto> gcps = createScatteredGcps(30);
+        gcps.get(7).setMapX(gcps.get(7).getMapX() + 300.0);
+        ResidualsResult robust = residualsService.computeRobustResiduals(gcps, TransformationType.POLYNOMIALE_2,
+                Srid._3857, RobustMethod.HUBER);
+
+        // Un ajustement classique sur les positions robustes retrouve la même transformation
+        List<GcpDto> projected = new ArrayList<>();
+        for (int i = 0; i < gcps.size(); i++) {
+            projected.add(new GcpDto(gcps.get(i).getSourceX(), gcps.get(i).getSourceY(),
+                    robust.getFittedMapX().get(i), robust.getFittedMapY().get(i)));
+        }
+        ResidualsResult replay = residualsService.computeResiduals(projected, TransformationType.POLYNOMIALE_2,
+                Srid._3857);
+
+        assertTrue(replay.getRmse() < 1e-6);
+        assertNotNull(robust.getRobustScale());
+        assertTrue(robust.getRobustScale() < 1.0);
+    }
+
+    @Test
+    void testComputeStatelessResiduals_BypassesIncrementalEngine() {
+        IncrementalResidualsEngine engine = mock(IncrementalResidualsEngine.class);
+        ResidualsServiceImpl service = new ResidualsServiceImpl(LeastSquaresMethod.HOUSEHOLDER, engine,
+                new RobustEstimator(), new ThinPlateSplineEngine(), new PiecewiseAffineEngine(),
+                new InverseTransformEngine(engine), false);
+        UUID imageId = UUID.randomUUID();
+        List<GcpDto> gcps = createScatteredGcps(12);
+        gcps.forEach(gcp -> {
+            gcp.setId(UUID.randomUUID());
+            gcp.setImageId(imageId);
+        });
+
+        ResidualsResult stateless = service.computeStatelessResiduals(gcps, TransformationType.POLYNOMIALE_2,
+                Srid._3857);
+        ResidualsResult expected = residualsService.computeResiduals(gcps, TransformationType.POLYNOMIALE_2,
+                Srid._3857);
+
+        verifyNoInteractions(engine);
+        assertEquals(expected.getRmse(), stateless.getRmse(), 1e-9);
+    }
+
+    @Test
+    void testComputeRobustResiduals_RejectsNonPolynomialTransformations() {
+        List<GcpDto> gcps = createScatteredGcps(12);
+
+        for (TransformationType type : List.of(TransformationType.HELMERT, TransformationType.PROJECTIVE,
+                TransformationType.THIN_PLATE_SPLINE, TransformationType.PIECEWISE_AFFINE)) {
+            assertFalse(residualsService.supportsRobustFit(type));
+            assertThrows(IllegalArgumentException.class, () -> residualsService.computeRobustResiduals(gcps, type,
+                    Srid._3857, RobustMethod.HUBER));
+        }
+    }
+
     // ---------------------------
     // Cas particulier : vérifier comportement pour mauvaise donnée
     // ---------------------------
@@ -144,4 +365,67 @@ public class ResidualServiceTest {
         }
         return gcps;
     }
+
+    private void assertRobustFitIgnoresOutliers(RobustMethod method) {
+        List<GcpDto> gcps = createScatteredGcps(30);
+        List<Integer> outliers = List.of(4, 17, 25);
+        for (int i : outliers) {
+            gcps.get(i).setMapX(gcps.get(i).getMapX() + 250.0);
+            gcps.get(i).setMapY(gcps.get(i).getMapY() - 180.0);
+        }
+
+        ResidualsResult plain = residualsService.computeResiduals(gcps, TransformationType.POLYNOMIALE_2, Srid._3857);
+        ResidualsResult robust = residualsService.computeRobustResiduals(gcps, TransformationType.POLYNOMIALE_2,
+                Srid._3857, method);
+
+        assertEquals(gcps.size(), robust.getInliers().size());
+        assertEquals(gcps.size(), robust.getWeights().size());
+        for (int i = 0; i < gcps.size(); i++) {
+            boolean outlier = outliers.contains(i);
+            assertEquals(!outlier, robust.getInliers().get(i), "GCP " + i);
+            if (outlier) {
+                assertTrue(robust.getResiduals().get(i) > 200.0);
+                assertTrue(robust.getWeights().get(i) < 0.1);
+            } else {
+                assertTrue(robust.getResiduals().get(i) < 1.0);
+            }
+        }
+        assertTrue(robust.getRmse() < 1.0);
+        assertTrue(plain.getRmse() > 10.0);
+    }
+
+    private double leaveOneOutResidual(List<GcpDto> gcps, int excluded, int degree) {
+        List<GcpDto> others = new ArrayList<>(gcps);
+        GcpDto left = others.remove(excluded);
+        int n = others.size();
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = others.get(i).getSourceX();
+            y[i] = others.get(i).getSourceY();
+            mapX[i] = others.get(i).getMapX();
+            mapY[i] = others.get(i).getMapY();
+        }
+        PolynomialFit fit = PolynomialFit.fit(x, y, mapX, mapY, degree);
+        double dx = left.getMapX() - fit.transformX(left.getSourceX(), left.getSourceY());
+        double dy = left.getMapY() - fit.transformY(left.getSourceX(), left.getSourceY());
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private List<GcpDto> createScatteredGcps(int count) {
+        List<GcpDto> gcps = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double x = 37.0 * (i % 7) + 3.1 * i;
+            double y = 23.0 * (i % 5) + 1.7 * i;
+            double noise = ((i * 7919) % 13 - 6) * 0.05;
+            gcps.add(new GcpDto(
+                    x,
+                    y,
+                    1000 + 0.5 * x - 0.1 * y + 1e-4 * x * y + noise,
+                    2000 + 0.2 * x + 0.4 * y - 1e-4 * x * x - noise));
+        }
+        return gcps;
+    }
 }
@@ -0,0 +1,185 @@
+package com.amine.pfe.georef_module.gcp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.codec.ServerSentEvent;
+
+import com.amine.pfe.georef_module.entity.GeorefImage;
+import com.amine.pfe.georef_module.enums.Srid;
+import com.amine.pfe.georef_module.enums.TransformationType;
+import com.amine.pfe.georef_module.exception.ImageNotFoundException;
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.dto.ImageGcps;
+import com.amine.pfe.georef_module.gcp.dto.ImageResidualsResponse;
+import com.amine.pfe.georef_module.gcp.repository.GcpBatchRepository;
+import com.amine.pfe.georef_module.gcp.service.impl.GcpWorkingSetCache;
+import com.amine.pfe.georef_module.gcp.service.impl.ResidualsServiceImpl;
+import com.amine.pfe.georef_module.image.repository.GeorefImageRepository;
+
+import reactor.core.Disposable;
+
+class ResidualsStreamServiceTest {
+
+    private GeorefImageRepository imageRepository;
+    private GcpBatchRepository gcpBatchRepository;
+    private GcpWorkingSetCache gcpWorkingSetCache;
+    private ResidualsStreamService residualsStreamService;
+    private Consumer<UUID> changeListener;
+    private UUID imageId;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        imageRepository = mock(GeorefImageRepository.class);
+        gcpBatchRepository = mock(GcpBatchRepository.class);
+        gcpWorkingSetCache = mock(GcpWorkingSetCache.class);
+        BatchResidualsService batchResidualsService = new BatchResidualsService(gcpBatchRepository,
+                new ResidualsServiceImpl(), gcpWorkingSetCache);
+        residualsStreamService = new ResidualsStreamService(imageRepository, gcpBatchRepository,
+                gcpWorkingSetCache, batchResidualsService, 50);
+
+        ArgumentCaptor<Consumer<UUID>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(gcpWorkingSetCache).addChangeListener(listener.capture());
+        changeListener = listener.getValue();
+        imageId = UUID.randomUUID();
+    }
+
+    @Test
+    @DisplayName("should share one debounced computation between all subscribers")
+    void shouldShareDebouncedComputation() throws InterruptedException {
+        // Given
+        when(imageRepository.existsById(imageId)).thenReturn(true);
+        when(gcpBatchRepository.findByImageIds(anyCollection())).thenReturn(Map.of(imageId,
+                new ImageGcps(imageId, TransformationType.POLYNOMIALE_1, Srid._3857, createGcps(6))));
+        // Image hors cache : chargement en une requête puis mise en cache
+        when(gcpWorkingSetCache.get(imageId)).thenReturn(null);
+        when(gcpWorkingSetCache.put(eq(imageId), anyList(), anyLong())).thenAnswer(call -> call.getArgument(1));
+
+        List<ImageResidualsResponse> first = new CopyOnWriteArrayList<>();
+        List<ImageResidualsResponse> second = new CopyOnWriteArrayList<>();
+        Disposable firstSubscription = subscribe(first);
+        awaitSize(first, 1);
+
+        // When : un second abonné reçoit le dernier état sans nouveau calcul
+        Disposable secondSubscription = subscribe(second);
+        awaitSize(second, 1);
+        for (int i = 0; i < 5; i++) {
+            changeListener.accept(imageId);
+        }
+        awaitSize(first, 2);
+        awaitSize(second, 2);
+        Thread.sleep(150);
+
+        // Then
+        verify(gcpBatchRepository, times(2)).findByImageIds(anyCollection());
+        assertEquals(2, first.size());
+        assertEquals(2, second.size());
+        assertTrue(first.get(1).isSuccess());
+        assertNotNull(first.get(1).getRmse());
+        assertEquals(6, first.get(1).getGcpDtos().size());
+
+        // When : le canal est fermé au départ du dernier abonné
+        firstSubscription.dispose();
+        secondSubscription.dispose();
+        changeListener.accept(imageId);
+        Thread.sleep(150);
+
+        // Then
+        verify(gcpBatchRepository, times(2)).findByImageIds(anyCollection());
+    }
+
+    @Test
+    @DisplayName("should compute from the cached working set without reloading the GCPs")
+    void shouldComputeFromCachedWorkingSet() {
+        // Given : image en cours d'édition, déplacements en attente compris dans le cache
+        GeorefImage image = new GeorefImage();
+        image.setTransformationType(TransformationType.POLYNOMIALE_1);
+        image.setSrid(Srid._3857);
+        when(imageRepository.existsById(imageId)).thenReturn(true);
+        when(imageRepository.findById(imageId)).thenReturn(Optional.of(image));
+        when(gcpWorkingSetCache.get(imageId)).thenReturn(createGcps(6));
+
+        // When
+        ImageResidualsResponse response = residualsStreamService.subscribe(imageId)
+                .map(ServerSentEvent::data)
+                .filter(data -> data != null)
+                .blockFirst(Duration.ofSeconds(5));
+
+        // Then
+        assertNotNull(response);
+        assertTrue(response.isSuccess());
+        assertEquals(6, response.getGcpDtos().size());
+        verify(gcpWorkingSetCache, never()).flush(any());
+        verify(gcpBatchRepository, never()).findByImageIds(anyCollection());
+    }
+
+    @Test
+    @DisplayName("should reject a stream on an unknown image")
+    void shouldRejectUnknownImage() {
+        // Given
+        when(imageRepository.existsById(any())).thenReturn(false);
+
+        // When + Then
+        assertThrows(ImageNotFoundException.class, () -> residualsStreamService.subscribe(imageId));
+        assertThrows(IllegalArgumentException.class, () -> residualsStreamService.subscribe(null));
+    }
+
+    private Disposable subscribe(List<ImageResidualsResponse> received) {
+        return residualsStreamService.subscribe(imageId)
+                .map(ServerSentEvent::data)
+                .filter(data -> data != null)
+                .subscribe(received::add);
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (list.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(list.size() >= size, "Événements reçus : " + list.size() + ", attendus : " + size);
+    }
+
+    private List<GcpDto> createGcps(int count) {
+        List<GcpDto> gcps = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double x = 37.0 * (i % 4) + 3.1 * i;
+            double y = 23.0 * (i % 3) + 1.7 * i;
+            gcps.add(GcpDto.builder()
+                    .id(UUID.randomUUID())
+                    .imageId(imageId)
+                    .sourceX(x)
+                    .sourceY(y)
+                    .mapX(1000 + 0.5 * x - 0.1 * y)
+                    .mapY(2000 + 0.2 * x + 0.4 * y)
+                    .index(i + 1)
+                    .build());
+        }
+        return gcps;
+    }
+}
@@ -0,0 +1,102 @@
+package com.amine.pfe.georef_module.gcp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.amine.pfe.georef_module.gcp.service.impl.ThinPlateSplineEngine;
+import com.amine.pfe.georef_module.gcp.solver.ThinPlateSpline;
+
+class ThinPlateSplineEngineTest {
+
+    @Test
+    @DisplayName("should bound the cache by the total size of the factored matrices")
+    void shouldBoundCacheByMatrixSize() {
+        // Given : de quoi garder deux systèmes de 10 points, (10+3)² cellules chacun
+        ThinPlateSplineEngine engine = new ThinPlateSplineEngine(2 * 13 * 13);
+
+        // When
+        for (int offset = 0; offset < 3; offset++) {
+            fit(engine, points(10, offset));
+        }
+
+        // Then : le plus ancien a été évincé
+        assertEquals(2 * 13 * 13, engine.cachedCells());
+
+        // When : un système plus grand que la borne n'est pas conservé
+        fit(engine, points(30, 0));
+
+        // Then
+        assertEquals(2 * 13 * 13, engine.cachedCells());
+    }
+
+    @Test
+    @DisplayName("should factor once for concurrent requests on the same source points")
+    void shouldShareFactorizationBetweenConcurrentRequests() throws Exception {
+        // Given
+        ThinPlateSplineEngine engine = new ThinPlateSplineEngine();
+        double[][] source = points(200, 0);
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<ThinPlateSpline>> fits = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 8; i++) {
+            fits.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return fit(engine, source);
+            }));
+        }
+        start.countDown();
+        for (CompletableFuture<ThinPlateSpline> fit : fits) {
+            fit.get();
+        }
+
+        // Then : une seule entrée
+        assertEquals(203L * 203L, engine.cachedCells());
+    }
+
+    @Test
+    @DisplayName("should not keep a failed factorization")
+    void shouldNotCacheFailedFactorization() {
+        // Given : points alignés
+        ThinPlateSplineEngine engine = new ThinPlateSplineEngine();
+        double[] x = { 0.0, 1.0, 2.0, 3.0 };
+        double[] y = { 0.0, 1.0, 2.0, 3.0 };
+
+        // When + Then
+        assertThrows(IllegalArgumentException.class, () -> engine.fit(x, y, x, y));
+        assertThrows(IllegalArgumentException.class, () -> engine.fit(x, y, x, y));
+        assertEquals(0L, engine.cachedCells());
+    }
+
+    private static ThinPlateSpline fit(ThinPlateSplineEngine engine, double[][] source) {
+        double[] mapX = new double[source[0].length];
+        double[] mapY = new double[source[0].length];
+        for (int i = 0; i < mapX.length; i++) {
+            mapX[i] = 1000.0 + 0.5 * source[0][i];
+            mapY[i] = 2000.0 - 0.5 * source[1][i];
+        }
+        return engine.fit(source[0], source[1], mapX, mapY);
+    }
+
+    private static double[][] points(int n, int offset) {
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = 37.0 * (i % 7) + 3.1 * i + offset;
+            y[i] = 23.0 * (i % 5) + 1.7 * i * i * 0.01 + 0.3 * i;
+        }
+        return new double[][] { x, y };
+    }
+}
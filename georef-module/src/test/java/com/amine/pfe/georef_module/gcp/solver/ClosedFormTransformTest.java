@@ -0,0 +1,127 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ClosedFormTransformTest {
+
+    private static final double[] HOMOGRAPHY = { 1.8, 0.25, 500000.0, -0.15, 2.1, 4000000.0, 2e-4, -1e-4, 1.0 };
+
+    @Test
+    @DisplayName("should recover an exact similarity from two points")
+    void shouldRecoverSimilarityFromTwoPoints() {
+        // Given : rotation 30°, échelle 2, translation
+        double a = 2.0 * Math.cos(Math.PI / 6);
+        double b = 2.0 * Math.sin(Math.PI / 6);
+        double[] x = { 10.0, 250.0 };
+        double[] y = { 20.0, 180.0 };
+        double[] mapX = new double[2];
+        double[] mapY = new double[2];
+        for (int i = 0; i < 2; i++) {
+            mapX[i] = a * x[i] - b * y[i] + 500000.0;
+            mapY[i] = b * x[i] + a * y[i] + 4000000.0;
+        }
+
+        // When
+        double[] params = new double[Helmert.PARAMETERS];
+        Helmert.fit(x, y, mapX, mapY, params);
+
+        // Then
+        assertEquals(a, params[0], 1e-9);
+        assertEquals(b, params[1], 1e-9);
+        assertEquals(500000.0, params[2], 1e-6);
+        assertEquals(4000000.0, params[3], 1e-6);
+    }
+
+    @Test
+    @DisplayName("should match explicit Helmert refits in leave-one-out mode")
+    void shouldMatchExplicitHelmertLeaveOneOut() {
+        // Given
+        int n = 12;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = 40.0 * (i % 4) + 3.3 * i;
+            y[i] = 25.0 * (i / 4) + 1.9 * i;
+            mapX[i] = 500000 + 1.5 * x[i] - 0.4 * y[i] + Math.sin(i);
+            mapY[i] = 4000000 + 0.4 * x[i] + 1.5 * y[i] + Math.cos(i);
+        }
+
+        // When
+        double[] errX = new double[n];
+        double[] errY = new double[n];
+        Helmert.leaveOneOutErrors(x, y, mapX, mapY, errX, errY);
+
+        // Then
+        double[] params = new double[Helmert.PARAMETERS];
+        for (int k = 0; k < n; k++) {
+            Helmert.fit(without(x, k), without(y, k), without(mapX, k), without(mapY, k), params);
+            assertEquals(mapX[k] - Helmert.transformX(params, x[k], y[k]), errX[k], 1e-6);
+            assertEquals(mapY[k] - Helmert.transformY(params, x[k], y[k]), errY[k], 1e-6);
+        }
+    }
+
+    @Test
+    @DisplayName("should recover an exact homography and match explicit leave-one-out refits")
+    void shouldRecoverHomography() {
+        // Given
+        int n = 10;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = 120.0 * (i % 4) + 7.3 * i;
+            y[i] = 90.0 * (i / 4) + 3.1 * i;
+            mapX[i] = ProjectiveDlt.transformX(HOMOGRAPHY, x[i], y[i]);
+            mapY[i] = ProjectiveDlt.transformY(HOMOGRAPHY, x[i], y[i]);
+        }
+        ProjectiveDlt dlt = new ProjectiveDlt();
+
+        // When
+        double[] h = new double[ProjectiveDlt.PARAMETERS];
+        dlt.fit(x, y, mapX, mapY, -1, h);
+        double[] errX = new double[n];
+        double[] errY = new double[n];
+        dlt.leaveOneOutErrors(x, y, mapX, mapY, errX, errY);
+
+        // Then
+        for (int k = 0; k < ProjectiveDlt.PARAMETERS; k++) {
+            assertEquals(HOMOGRAPHY[k], h[k], Math.abs(HOMOGRAPHY[k]) * 1e-6 + 1e-9);
+        }
+        for (int i = 0; i < n; i++) {
+            assertEquals(0.0, errX[i], 1e-4);
+            assertEquals(0.0, errY[i], 1e-4);
+        }
+    }
+
+    @Test
+    @DisplayName("should reject degenerate configurations")
+    void shouldRejectDegenerateConfigurations() {
+        double[] map = { 1.0, 2.0, 3.0, 4.0 };
+        ProjectiveDlt dlt = new ProjectiveDlt();
+        double[] h = new double[ProjectiveDlt.PARAMETERS];
+
+        assertThrows(IllegalArgumentException.class,
+                () -> Helmert.fit(new double[] { 5, 5 }, new double[] { 7, 7 }, map, map, new double[4]));
+        assertThrows(IllegalArgumentException.class,
+                () -> dlt.fit(new double[] { 0, 1, 2, 3 }, new double[] { 0, 1, 2, 3 }, map, map, -1, h));
+        assertThrows(IllegalArgumentException.class,
+                () -> dlt.fit(new double[] { 0, 1, 0 }, new double[] { 0, 0, 1 }, map, map, -1, h));
+    }
+
+    private static double[] without(double[] values, int excluded) {
+        double[] out = new double[values.length - 1];
+        for (int i = 0, j = 0; i < values.length; i++) {
+            if (i != excluded) {
+                out[j++] = values[i];
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,68 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class DistortionGridTest {
+
+    @Test
+    @DisplayName("should report constant scale and rotation for an affine fit")
+    void shouldReportAffineScaleAndRotation() {
+        // Given : rotation 30°, échelle 2 en x et 0.5 en y, lignes en sourceY négatif
+        double c = Math.cos(Math.PI / 6);
+        double s = Math.sin(Math.PI / 6);
+        int n = 12;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = 800.0 * (i % 4) + 13.0 * i;
+            y[i] = -(600.0 * (i / 4) + 7.0 * i);
+            mapX[i] = 500000 + 2.0 * c * x[i] - 0.5 * s * y[i] + Math.sin(i);
+            mapY[i] = 4000000 + 2.0 * s * x[i] + 0.5 * c * y[i] + Math.cos(i);
+        }
+        PolynomialFit fit = PolynomialFit.fit(x, y, mapX, mapY, 1);
+
+        // When
+        DistortionGrid grid = DistortionGrid.evaluate(fit, 0.25, 3000.0, 1800.0, 30, 18);
+
+        // Then
+        double cellX = 3000.0 / 30 * 4.5;
+        double cellY = -1800.0 / 18 * 7.5;
+        assertEquals(1.0, grid.scale(0, 0), 1e-2);
+        assertEquals(30.0, grid.rotation(29, 17), 0.1);
+        assertEquals(grid.scale(0, 0), grid.scale(29, 17), 1e-5);
+        assertEquals(Math.sqrt(2.0 * 0.25 * fit.leverage(cellX, cellY)), grid.sigma(4, 7), 1e-6);
+    }
+
+    @Test
+    @DisplayName("should encode the header and the three bands in little-endian order")
+    void shouldEncodeGrid() {
+        // Given
+        double[] x = { 0, 100, 0, 100, 50, 30 };
+        double[] y = { 0, 0, -100, -100, -50, -80 };
+        double[] mapX = { 0, 200, 0, 200, 100, 61 };
+        double[] mapY = { 0, 0, 200, 200, 100, 159 };
+        DistortionGrid grid = DistortionGrid.evaluate(PolynomialFit.fit(x, y, mapX, mapY, 1), 1.0,
+                100.0, 100.0, 3, 2);
+
+        // When
+        ByteBuffer buffer = ByteBuffer.wrap(grid.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+
+        // Then
+        assertEquals(DistortionGrid.HEADER_BYTES + 3 * 6 * Float.BYTES, buffer.capacity());
+        assertEquals(3, buffer.getInt());
+        assertEquals(2, buffer.getInt());
+        assertEquals(100.0f / 3, buffer.getFloat(), 1e-5);
+        assertEquals(50.0f, buffer.getFloat(), 1e-5);
+        assertEquals(grid.scale(0, 0), buffer.getFloat(DistortionGrid.HEADER_BYTES));
+        assertEquals(grid.rotation(2, 1), buffer.getFloat(DistortionGrid.HEADER_BYTES + (6 + 5) * Float.BYTES));
+        assertEquals(grid.sigma(1, 0), buffer.getFloat(DistortionGrid.HEADER_BYTES + (12 + 1) * Float.BYTES));
+    }
+}
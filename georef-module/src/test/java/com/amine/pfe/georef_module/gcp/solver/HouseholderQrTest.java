@@ -0,0 +1,69 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class HouseholderQrTest {
+
+    @Test
+    @DisplayName("should solve an overdetermined system for two right-hand sides")
+    void shouldSolveLeastSquaresForTwoRightHandSides() {
+        // Given : b1 = 2 + 3t, b2 = -1 + 0.5t (exact), colonnes [1, t]
+        int m = 5;
+        double[] a = new double[m * 2];
+        double[] b1 = new double[m];
+        double[] b2 = new double[m];
+        for (int i = 0; i < m; i++) {
+            double t = i;
+            a[i] = 1.0;
+            a[m + i] = t;
+            b1[i] = 2 + 3 * t;
+            b2[i] = -1 + 0.5 * t;
+        }
+
+        // When
+        HouseholderQr qr = new HouseholderQr(a, m, 2, false);
+        double[] x1 = new double[2];
+        double[] x2 = new double[2];
+        qr.solve(b1, b2, x1, x2);
+
+        // Then
+        assertTrue(qr.isFullRank());
+        assertEquals(2.0, x1[0], 1e-12);
+        assertEquals(3.0, x1[1], 1e-12);
+        assertEquals(-1.0, x2[0], 1e-12);
+        assertEquals(0.5, x2[1], 1e-12);
+    }
+
+    @Test
+    @DisplayName("should zero the parameter of a dependent column when pivoting")
+    void shouldHandleRankDeficientMatrixWithPivoting() {
+        // Given : la 3e colonne est égale à la 2e
+        int m = 4;
+        double[] a = new double[m * 3];
+        double[] b = new double[m];
+        for (int i = 0; i < m; i++) {
+            a[i] = 1.0;
+            a[m + i] = i;
+            a[2 * m + i] = i;
+            b[i] = 1 + 2.0 * i;
+        }
+
+        // When
+        HouseholderQr qr = new HouseholderQr(a, m, 3, true);
+        double[] x = new double[3];
+        qr.applyQt(b);
+        qr.backSubstitute(b, x);
+
+        // Then
+        assertFalse(qr.isFullRank());
+        assertEquals(2, qr.rank());
+        for (int i = 0; i < m; i++) {
+            assertEquals(1 + 2.0 * i, x[0] + (x[1] + x[2]) * i, 1e-10);
+        }
+    }
+}
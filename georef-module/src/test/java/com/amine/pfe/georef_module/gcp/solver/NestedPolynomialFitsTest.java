@@ -0,0 +1,67 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class NestedPolynomialFitsTest {
+
+    @Test
+    @DisplayName("should match separate fits and their leave-one-out errors for every degree")
+    void shouldMatchSeparateFits() {
+        // Given
+        int n = 18;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = 150.0 * (i % 5) + 11.7 * i;
+            y[i] = 110.0 * (i / 5) + 4.3 * i;
+            mapX[i] = 500000 + 1.2 * x[i] - 0.3 * y[i] + 1e-4 * x[i] * y[i] + Math.sin(i);
+            mapY[i] = 4000000 + 0.3 * x[i] + 1.2 * y[i] - 2e-4 * y[i] * y[i] + Math.cos(i);
+        }
+
+        // When
+        NestedPolynomialFits fits = NestedPolynomialFits.fit(x, y, mapX, mapY, PolynomialBasis.MAX_DEGREE);
+
+        // Then
+        assertEquals(3, fits.getMaxDegree());
+        double[] estX = new double[n];
+        double[] estY = new double[n];
+        double[] errX = new double[n];
+        double[] errY = new double[n];
+        for (int degree = 1; degree <= 3; degree++) {
+            PolynomialFit separate = PolynomialFit.fit(x, y, mapX, mapY, degree);
+            fits.transform(degree, x, y, estX, estY);
+            fits.leaveOneOutErrors(degree, x, y, mapX, mapY, 1e-8, errX, errY);
+            for (int i = 0; i < n; i++) {
+                assertEquals(separate.transformX(x[i], y[i]), estX[i], 1e-6);
+                assertEquals(separate.transformY(x[i], y[i]), estY[i], 1e-6);
+                double oneMinusH = 1.0 - separate.leverage(x[i], y[i]);
+                assertEquals((mapX[i] - estX[i]) / oneMinusH, errX[i], 1e-6);
+                assertEquals((mapY[i] - estY[i]) / oneMinusH, errY[i], 1e-6);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("should stop at the highest degree the points can determine")
+    void shouldLimitDegreeToPointCount() {
+        // Given : 7 points, assez pour le degré 2 mais pas pour le degré 3
+        double[] x = { 0, 100, 0, 100, 50, 20, 80 };
+        double[] y = { 0, 0, 100, 100, 50, 70, 30 };
+        double[] mapX = new double[x.length];
+        double[] mapY = new double[x.length];
+        for (int i = 0; i < x.length; i++) {
+            mapX[i] = 2 * x[i] + y[i];
+            mapY[i] = x[i] - y[i];
+        }
+
+        // When / Then
+        assertEquals(2, NestedPolynomialFits.fit(x, y, mapX, mapY, 3).getMaxDegree());
+        assertEquals(0, NestedPolynomialFits.fit(new double[] { 0, 1, 2 }, new double[] { 0, 1, 2 },
+                new double[] { 0, 1, 2 }, new double[] { 0, 1, 2 }, 3).getMaxDegree());
+    }
+}
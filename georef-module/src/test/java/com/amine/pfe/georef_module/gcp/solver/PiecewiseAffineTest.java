@@ -0,0 +1,147 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class PiecewiseAffineTest {
+
+    @Test
+    @DisplayName("should keep the empty-circumcircle property through insertions and removals")
+    void shouldStayDelaunayAfterInsertionsAndRemovals() {
+        // Given
+        SplittableRandom random = new SplittableRandom(42);
+        DelaunayTriangulation dt = new DelaunayTriangulation();
+        List<Integer> vertices = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            vertices.add(dt.insert(random.nextDouble(-1.0, 1.0), random.nextDouble(-1.0, 1.0)));
+        }
+        assertDelaunay(dt, vertices);
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            dt.remove(vertices.remove(random.nextInt(vertices.size())));
+        }
+
+        // Then
+        assertDelaunay(dt, vertices);
+        assertEquals(-1, dt.insert(dt.x(vertices.get(0)), dt.y(vertices.get(0))));
+    }
+
+    @Test
+    @DisplayName("should interpolate control points and reproduce affine maps inside and outside the hull")
+    void shouldInterpolateAndReproduceAffineMaps() {
+        // Given
+        int n = 500;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = (i * 7919) % 1013 + 0.37 * i;
+            y[i] = (i * 104729) % 877 + 0.11 * i;
+            mapX[i] = 500000 + 2.5 * x[i] - 0.3 * y[i];
+            mapY[i] = 4000000 + 0.2 * x[i] + 2.5 * y[i];
+        }
+
+        // When
+        PiecewiseAffine transform = PiecewiseAffine.fit(x, y, mapX, mapY);
+        int m = 2000;
+        double[] qx = new double[m];
+        double[] qy = new double[m];
+        for (int i = 0; i < m; i++) {
+            qx[i] = -200.0 + (i % 50) * 30.0;
+            qy[i] = -150.0 + (i / 50) * 30.0;
+        }
+        double[] outX = new double[m];
+        double[] outY = new double[m];
+        transform.transform(qx, qy, outX, outY);
+
+        // Then
+        for (int i = 0; i < m; i++) {
+            assertEquals(500000 + 2.5 * qx[i] - 0.3 * qy[i], outX[i], 1e-5);
+            assertEquals(4000000 + 0.2 * qx[i] + 2.5 * qy[i], outY[i], 1e-5);
+            assertEquals(outX[i], transform.transformX(qx[i], qy[i]), 1e-9);
+            assertEquals(outY[i], transform.transformY(qx[i], qy[i]), 1e-9);
+        }
+    }
+
+    @Test
+    @DisplayName("should pass exactly through every control point of a non-affine map")
+    void shouldPassThroughControlPoints() {
+        // Given
+        int n = 80;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = 40.0 * (i % 9) + 3.3 * i;
+            y[i] = 25.0 * (i / 9) + 1.9 * i;
+            mapX[i] = 1000 + x[i] + 0.002 * x[i] * y[i] + Math.sin(i);
+            mapY[i] = 2000 + y[i] - 0.001 * x[i] * x[i] + Math.cos(i);
+        }
+
+        // When
+        PiecewiseAffine transform = PiecewiseAffine.fit(x, y, mapX, mapY);
+        double[] estX = new double[n];
+        double[] estY = new double[n];
+        transform.transform(x, y, estX, estY);
+
+        // Then
+        assertTrue(transform.triangleCount() > 0);
+        for (int i = 0; i < n; i++) {
+            assertEquals(mapX[i], estX[i], 1e-6);
+            assertEquals(mapY[i], estY[i], 1e-6);
+        }
+    }
+
+    @Test
+    @DisplayName("should reject duplicated or collinear source points")
+    void shouldRejectDegenerateSources() {
+        double[] map = { 1.0, 2.0, 3.0 };
+
+        assertThrows(IllegalArgumentException.class,
+                () -> PiecewiseAffine.fit(new double[] { 0, 1, 1 }, new double[] { 0, 0, 0 }, map, map));
+        assertThrows(IllegalArgumentException.class,
+                () -> PiecewiseAffine.fit(new double[] { 0, 1, 2 }, new double[] { 0, 1, 2 }, map, map));
+    }
+
+    private void assertDelaunay(DelaunayTriangulation dt, List<Integer> vertices) {
+        int[] triangles = dt.triangles();
+        assertFalse(triangles.length == 0);
+        for (int t = 0; t < triangles.length; t += 3) {
+            int a = triangles[t];
+            int b = triangles[t + 1];
+            int c = triangles[t + 2];
+            assertTrue(DelaunayTriangulation.orient(dt.x(a), dt.y(a), dt.x(b), dt.y(b), dt.x(c), dt.y(c)) > 0.0);
+            for (int v : vertices) {
+                if (v == a || v == b || v == c) {
+                    continue;
+                }
+                assertFalse(inCircle(dt, a, b, c, v), "sommet " + v + " dans le cercle du triangle " + t / 3);
+            }
+        }
+    }
+
+    private boolean inCircle(DelaunayTriangulation dt, int a, int b, int c, int d) {
+        double adx = dt.x(a) - dt.x(d);
+        double ady = dt.y(a) - dt.y(d);
+        double bdx = dt.x(b) - dt.x(d);
+        double bdy = dt.y(b) - dt.y(d);
+        double cdx = dt.x(c) - dt.x(d);
+        double cdy = dt.y(c) - dt.y(d);
+        double det = (adx * adx + ady * ady) * (bdx * cdy - cdx * bdy)
+                + (bdx * bdx + bdy * bdy) * (cdx * ady - adx * cdy)
+                + (cdx * cdx + cdy * cdy) * (adx * bdy - bdx * ady);
+        return det > 1e-12;
+    }
+}
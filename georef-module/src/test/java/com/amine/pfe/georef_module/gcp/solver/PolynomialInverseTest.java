@@ -0,0 +1,56 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class PolynomialInverseTest {
+
+    @Test
+    @DisplayName("should map forward-transformed pixels back onto themselves")
+    void shouldInvertCubicFit() {
+        // Given
+        int n = 30;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = 400.0 * (i % 6) + 17.0 * i;
+            y[i] = 350.0 * (i / 6) + 9.0 * i;
+            mapX[i] = 500000 + 1.5 * x[i] - 0.2 * y[i] + 2e-5 * x[i] * x[i] - 1e-8 * x[i] * x[i] * y[i]
+                    + Math.sin(i);
+            mapY[i] = 4000000 + 0.2 * x[i] + 1.4 * y[i] - 3e-5 * y[i] * y[i] + 1e-8 * y[i] * y[i] * y[i]
+                    + Math.cos(i);
+        }
+        PolynomialInverse inverse = PolynomialInverse.fit(x, y, mapX, mapY, 3);
+        PolynomialFit forward = inverse.getForward();
+
+        int k = 50;
+        double[] pixelX = new double[k];
+        double[] pixelY = new double[k];
+        for (int i = 0; i < k; i++) {
+            pixelX[i] = 23.0 + 47.0 * i;
+            pixelY[i] = 2000.0 - 31.0 * i;
+        }
+        double[] targetX = new double[k];
+        double[] targetY = new double[k];
+        forward.transform(pixelX, pixelY, targetX, targetY);
+
+        // When
+        double[] outX = new double[k];
+        double[] outY = new double[k];
+        boolean[] converged = new boolean[k];
+        int count = inverse.invert(targetX, targetY, outX, outY, converged);
+
+        // Then
+        assertEquals(k, count);
+        for (int i = 0; i < k; i++) {
+            assertTrue(converged[i]);
+            assertEquals(pixelX[i], outX[i], 1e-6);
+            assertEquals(pixelY[i], outY[i], 1e-6);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ResidualKernelsTest {
+
+    // Taille volontairement non multiple de la largeur vectorielle, pour couvrir la fin de lot
+    private static final int N = 37;
+
+    @Test
+    @DisplayName("should fall back to scalar kernels when vectorization is not requested")
+    void shouldFallBackToScalar() {
+        assertSame(ResidualKernels.scalar(), ResidualKernels.create(false));
+    }
+
+    @Test
+    @DisplayName("should match scalar kernels for design matrix, evaluation and distances")
+    void shouldMatchScalarKernels() {
+        // Given
+        ResidualKernels scalar = ResidualKernels.scalar();
+        ResidualKernels vector = ResidualKernels.create(true);
+        assumeTrue(vector != scalar, "noyaux vectoriels : profil Maven simd");
+        double[] x = new double[N];
+        double[] y = new double[N];
+        double[] lon = new double[N];
+        double[] lat = new double[N];
+        for (int i = 0; i < N; i++) {
+            x[i] = 120.0 * (i % 6) + 13.7 * i;
+            y[i] = 80.0 * (i / 6) - 5.1 * i;
+            lon[i] = 10.0 + 0.01 * i;
+            lat[i] = 36.0 + 0.02 * (i % 5);
+        }
+        double[] paramsX = { 500000, 1.2, -0.3, 1e-3, 2e-3, -1e-3, 1e-5, 2e-5, -3e-5, 4e-5 };
+        double[] paramsY = { 4000000, 0.3, 1.1, -2e-3, 1e-3, 3e-3, -1e-5, 5e-5, 2e-5, -4e-5 };
+
+        for (int degree = 1; degree <= 3; degree++) {
+            // When
+            int p = PolynomialBasis.termCount(degree);
+            double[] expected = new double[N * p];
+            double[] actual = new double[N * p];
+            scalar.designMatrix(x, y, N, degree, 300.0, 100.0, 450.0, expected);
+            vector.designMatrix(x, y, N, degree, 300.0, 100.0, 450.0, actual);
+
+            double[] expX = new double[N];
+            double[] expY = new double[N];
+            double[] actX = new double[N];
+            double[] actY = new double[N];
+            scalar.evaluate(paramsX, paramsY, degree, 300.0, 100.0, 450.0, x, y, expX, expY);
+            vector.evaluate(paramsX, paramsY, degree, 300.0, 100.0, 450.0, x, y, actX, actY);
+
+            // Then
+            for (int k = 0; k < expected.length; k++) {
+                assertEquals(expected[k], actual[k], 1e-15);
+            }
+            for (int i = 0; i < N; i++) {
+                assertEquals(expX[i], actX[i], 1e-8);
+                assertEquals(expY[i], actY[i], 1e-8);
+            }
+        }
+
+        double[] shiftedLon = new double[N];
+        double[] shiftedLat = new double[N];
+        for (int i = 0; i < N; i++) {
+            shiftedLon[i] = lon[i] + 1e-4 * (i % 7);
+            shiftedLat[i] = lat[i] - 2e-4 * (i % 3);
+        }
+        double[] expected = new double[N];
+        double[] actual = new double[N];
+        scalar.haversine(lon, lat, shiftedLon, shiftedLat, expected);
+        vector.haversine(lon, lat, shiftedLon, shiftedLat, actual);
+        for (int i = 0; i < N; i++) {
+            assertEquals(expected[i], actual[i], 1e-6);
+        }
+        scalar.euclidean(x, y, lon, lat, expected);
+        vector.euclidean(x, y, lon, lat, actual);
+        for (int i = 0; i < N; i++) {
+            assertEquals(expected[i], actual[i], 1e-9);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.amine.pfe.georef_module.gcp.solver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ThinPlateSplineTest {
+
+    @Test
+    @DisplayName("should interpolate every control point and reproduce affine maps")
+    void shouldInterpolateControlPointsAndReproduceAffineMaps() {
+        // Given
+        int n = 300;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = (i * 7919) % 1013 + 0.37 * i;
+            y[i] = (i * 104729) % 877 + 0.11 * i;
+            mapX[i] = 500000 + 2.5 * x[i] - 0.3 * y[i];
+            mapY[i] = 4000000 + 0.2 * x[i] + 2.5 * y[i];
+        }
+
+        // When
+        ThinPlateSpline spline = ThinPlateSpline.fit(x, y, mapX, mapY);
+        double[] estX = new double[n];
+        double[] estY = new double[n];
+        spline.transform(x, y, estX, estY);
+
+        // Then
+        for (int i = 0; i < n; i++) {
+            assertEquals(mapX[i], estX[i], 1e-5);
+            assertEquals(mapY[i], estY[i], 1e-5);
+        }
+        assertEquals(500000 + 2.5 * 333.3 - 0.3 * 444.4, spline.transformX(333.3, 444.4), 1e-5);
+        assertEquals(4000000 + 0.2 * 333.3 + 2.5 * 444.4, spline.transformY(333.3, 444.4), 1e-5);
+    }
+
+    @Test
+    @DisplayName("should match explicit leave-one-out refits with Rippa's formula")
+    void shouldMatchExplicitLeaveOneOut() {
+        // Given
+        int n = 15;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] mapX = new double[n];
+        double[] mapY = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = 40.0 * (i % 5) + 3.3 * i;
+            y[i] = 25.0 * (i / 5) + 1.9 * i;
+            mapX[i] = 1000 + x[i] + 0.002 * x[i] * y[i] + Math.sin(i);
+            mapY[i] = 2000 + y[i] - 0.001 * x[i] * x[i] + Math.cos(i);
+        }
+
+        // When
+        ThinPlateSpline spline = ThinPlateSpline.fit(x, y, mapX, mapY);
+        double[] errX = new double[n];
+        double[] errY = new double[n];
+        spline.leaveOneOutErrors(errX, errY);
+
+        // Then
+        for (int k = 0; k < n; k++) {
+            double[] rx = new double[n - 1];
+            double[] ry = new double[n - 1];
+            double[] rmx = new double[n - 1];
+            double[] rmy = new double[n - 1];
+            for (int i = 0, j = 0; i < n; i++) {
+                if (i != k) {
+                    rx[j] = x[i];
+                    ry[j] = y[i];
+                    rmx[j] = mapX[i];
+                    rmy[j] = mapY[i];
+                    j++;
+                }
+            }
+            ThinPlateSpline without = ThinPlateSpline.fit(rx, ry, rmx, rmy);
+            assertEquals(mapX[k] - without.transformX(x[k], y[k]), errX[k], 1e-6);
+            assertEquals(mapY[k] - without.transformY(x[k], y[k]), errY[k], 1e-6);
+        }
+    }
+
+    @Test
+    @DisplayName("should reject collinear source points")
+    void shouldRejectCollinearPoints() {
+        double[] x = { 0.0, 1.0, 2.0, 3.0 };
+        double[] y = { 0.0, 1.0, 2.0, 3.0 };
+        double[] map = { 5.0, 6.0, 7.0, 8.0 };
+
+        assertThrows(IllegalArgumentException.class, () -> ThinPlateSpline.fit(x, y, map, map));
+    }
+}
@@ -0,0 +1,64 @@
+package com.amine.pfe.georef_module.image.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.amine.pfe.georef_module.entity.GeorefImage;
+import com.amine.pfe.georef_module.entity.GeorefLayer;
+import com.amine.pfe.georef_module.enums.LayerStatus;
+import com.amine.pfe.georef_module.image.dto.GeorefLayerDto;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class GeorefLayerRepositoryTest {
+
+    @Autowired
+    private GeorefLayerRepository georefLayerRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("should list all layers as DTOs in a single statement")
+    void shouldListLayerDtosInSingleStatement() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            GeorefImage image = entityManager.persist(
+                    GeorefImage.builder().hash("h" + i).filepathOriginal(i + ".tif").build());
+            entityManager.persist(GeorefLayer.builder()
+                    .image(image)
+                    .workspace("georef")
+                    .storeName("store_" + i)
+                    .layerName("layer_" + i)
+                    .wmsUrl("http://localhost:8080/geoserver/georef/wms")
+                    .status(LayerStatus.values()[0])
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // When
+        List<GeorefLayerDto> layers = georefLayerRepository.findAllDtos();
+
+        // Then
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(3, layers.size());
+        assertEquals("georef", layers.get(0).getWorkspace());
+    }
+}
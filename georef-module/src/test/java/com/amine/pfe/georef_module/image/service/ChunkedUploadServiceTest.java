@@ -0,0 +1,134 @@
+package com.amine.pfe.georef_module.image.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import com.amine.pfe.georef_module.config.StorageConfig;
+import com.amine.pfe.georef_module.image.dto.GeorefImageDto;
+import com.amine.pfe.georef_module.image.dto.UploadSessionDto;
+import com.amine.pfe.georef_module.image.exceptions.UploadOffsetMismatchException;
+import com.amine.pfe.georef_module.image.exceptions.UploadSessionNotFoundException;
+import com.amine.pfe.georef_module.image.service.impl.LocalFileStorageService;
+import com.amine.pfe.georef_module.image.service.port.StagedFile;
+import com.amine.pfe.georef_module.image.util.FileUtils;
+
+class ChunkedUploadServiceTest {
+
+    @TempDir
+    private Path originalDir;
+
+    private GeorefImageService imageService;
+    private ChunkedUploadService chunkedUploadService;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() {
+        StorageConfig storageConfig = mock(StorageConfig.class);
+        when(storageConfig.getOriginalDir()).thenReturn(originalDir);
+        imageService = mock(GeorefImageService.class);
+        chunkedUploadService = new ChunkedUploadService(new LocalFileStorageService(storageConfig), imageService,
+                1_000_000, 24);
+
+        content = new byte[150_000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+    }
+
+    @Test
+    @DisplayName("doit assembler les morceaux et finaliser avec l'empreinte du fichier complet")
+    void shouldAppendChunksAndFinalize() throws IOException {
+        // Given
+        UploadSessionDto session = chunkedUploadService.createSession("scan.tif", "image/tiff", (long) content.length);
+        UUID uploadId = session.getUploadId();
+        GeorefImageDto expected = new GeorefImageDto();
+        when(imageService.registerStagedFile(any(StagedFile.class), eq("scan.tif"))).thenReturn(expected);
+
+        // When
+        UploadSessionDto afterFirst = chunkedUploadService.appendChunk(uploadId, 0,
+                new ByteArrayInputStream(Arrays.copyOfRange(content, 0, 100_000)));
+        UploadSessionDto afterSecond = chunkedUploadService.appendChunk(uploadId, 100_000,
+                new ByteArrayInputStream(Arrays.copyOfRange(content, 100_000, content.length)));
+        GeorefImageDto result = chunkedUploadService.finalizeUpload(uploadId);
+
+        // Then
+        assertEquals(100_000, afterFirst.getOffset());
+        assertEquals(content.length, afterSecond.getOffset());
+        assertSame(expected, result);
+
+        ArgumentCaptor<StagedFile> staged = ArgumentCaptor.forClass(StagedFile.class);
+        verify(imageService).validateUpload("image/tiff", "scan.tif");
+        verify(imageService).registerStagedFile(staged.capture(), eq("scan.tif"));
+        assertEquals(FileUtils.toHex(FileUtils.newSha256Digest().digest(content)), staged.getValue().getHash());
+        assertEquals(content.length, staged.getValue().getSize());
+        assertArrayEquals(content, Files.readAllBytes(staged.getValue().getTempPath()));
+        assertThrows(UploadSessionNotFoundException.class, () -> chunkedUploadService.getSession(uploadId));
+    }
+
+    @Test
+    @DisplayName("doit refuser un morceau qui ne commence pas à l'offset courant")
+    void shouldRejectChunkAtWrongOffset() throws IOException {
+        // Given
+        UUID uploadId = chunkedUploadService.createSession("scan.tif", "image/tiff", null).getUploadId();
+        chunkedUploadService.appendChunk(uploadId, 0, new ByteArrayInputStream(Arrays.copyOfRange(content, 0, 1000)));
+
+        // When + Then
+        assertThrows(UploadOffsetMismatchException.class, () -> chunkedUploadService.appendChunk(uploadId, 500,
+                new ByteArrayInputStream(Arrays.copyOfRange(content, 500, 1000))));
+        assertEquals(1000, chunkedUploadService.getSession(uploadId).getOffset());
+    }
+
+    @Test
+    @DisplayName("ne doit pas finaliser un import incomplet")
+    void shouldNotFinalizeIncompleteUpload() throws IOException {
+        // Given
+        UUID uploadId = chunkedUploadService.createSession("scan.tif", "image/tiff", (long) content.length)
+                .getUploadId();
+        chunkedUploadService.appendChunk(uploadId, 0, new ByteArrayInputStream(Arrays.copyOfRange(content, 0, 1000)));
+
+        // When + Then
+        assertThrows(UploadOffsetMismatchException.class, () -> chunkedUploadService.finalizeUpload(uploadId));
+        verify(imageService, never()).registerStagedFile(any(), any());
+        assertEquals(1000, chunkedUploadService.getSession(uploadId).getOffset());
+    }
+
+    @Test
+    @DisplayName("doit supprimer le fichier temporaire et fermer la session si l'enregistrement échoue")
+    void shouldDiscardStagedFileWhenRegistrationFails() throws IOException {
+        // Given
+        UUID uploadId = chunkedUploadService.createSession("scan.tif", "image/tiff", (long) content.length)
+                .getUploadId();
+        chunkedUploadService.appendChunk(uploadId, 0, new ByteArrayInputStream(content));
+        when(imageService.registerStagedFile(any(StagedFile.class), eq("scan.tif")))
+                .thenThrow(new IllegalStateException("base indisponible"));
+
+        // When + Then
+        assertThrows(IllegalStateException.class, () -> chunkedUploadService.finalizeUpload(uploadId));
+        assertThrows(UploadSessionNotFoundException.class, () -> chunkedUploadService.getSession(uploadId));
+        try (Stream<Path> files = Files.list(originalDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -40,7 +40,7 @@ import com.amine.pfe.georef_module.image.exceptions.UnsupportedImageFormatExcept
 import com.amine.pfe.georef_module.image.repository.GeorefImageRepository;
 import com.amine.pfe.georef_module.image.service.port.FileStorageService;
 import com.amine.pfe.georef_module.image.service.port.GeorefImageFactory;
-import com.amine.pfe.georef_module.image.service.port.HashCalculator;
+import com.amine.pfe.georef_module.image.service.port.StagedFile;
 
 @ExtendWith(MockitoExtension.class)
 class GeorefImageServiceTest {
@@ -51,9 +51,6 @@ class GeorefImageServiceTest {
     @Mock
     private GeorefImageRepository repository;
 
-    @Mock
-    private HashCalculator hashCalculator;
-
     @Mock
     private FileStorageService fileStorageService;
 
@@ -87,9 +84,12 @@ class GeorefImageServiceTest {
         savedImage.setUploadingDate(now);
         savedImage.setStatus(GeorefStatus.UPLOADED);
 
-        when(hashCalculator.calculate(file)).thenReturn(hash);
-        when(repository.existsByHash(hash)).thenReturn(false);
-        when(fileStorageService.saveOriginalFile(file, filename)).thenReturn(mockPath);
+        StagedFile stagedFile = new StagedFile(hash, Paths.get("georef-storage", "originals", ".upload-1.tmp"),
+                content.length);
+
+        when(fileStorageService.stageOriginalFile(any())).thenReturn(stagedFile);
+        when(repository.findFirstByHashOrderByUploadingDateAsc(hash)).thenReturn(Optional.empty());
+        when(fileStorageService.promoteStagedFile(stagedFile, filename)).thenReturn(mockPath);
         when(georefImageFactory.create(hash, mockPath, file.getOriginalFilename())).thenReturn(imageToSave);
         when(repository.save(imageToSave)).thenReturn(savedImage);
 
@@ -103,8 +103,9 @@ class GeorefImageServiceTest {
         assertEquals(file.getOriginalFilename(), result.getFilepathOriginal());
         assertEquals(GeorefStatus.UPLOADED, result.getStatus());
 
-        verify(hashCalculator, times(1)).calculate(file);
-        verify(fileStorageService, times(1)).saveOriginalFile(file, filename);
+        verify(fileStorageService, times(1)).stageOriginalFile(any());
+        verify(fileStorageService, times(1)).promoteStagedFile(stagedFile, filename);
+        verify(fileStorageService, never()).discardStagedFile(any());
         verify(repository, times(1)).save(imageToSave);
     }
 
@@ -128,9 +129,10 @@ class GeorefImageServiceTest {
         existingImage.setFilepathOriginal(path);
         existingImage.setStatus(GeorefStatus.UPLOADED);
 
-        when(hashCalculator.calculate(file)).thenReturn(hash);
-        when(repository.existsByHash(hash)).thenReturn(true);
-        when(repository.findByHash(hash)).thenReturn(existingImage);
+        StagedFile stagedFile = new StagedFile(hash, Paths.get("originals", ".upload-2.tmp"), content.length);
+
+        when(fileStorageService.stageOriginalFile(any())).thenReturn(stagedFile);
+        when(repository.findFirstByHashOrderByUploadingDateAsc(hash)).thenReturn(Optional.of(existingImage));
 
         // WHEN
         GeorefImageDto result = georefImageService.uploadImage(file);
@@ -143,9 +145,9 @@ class GeorefImageServiceTest {
         assertEquals(GeorefStatus.UPLOADED, result.getStatus());
         assertTrue(result.getUploadingDate().isBefore(LocalDateTime.now()));
 
-        verify(hashCalculator, times(1)).calculate(file);
+        verify(fileStorageService, times(1)).discardStagedFile(stagedFile);
         verify(repository, never()).save(any());
-        verify(fileStorageService, never()).saveOriginalFile(any(), any());
+        verify(fileStorageService, never()).promoteStagedFile(any(), any());
         verify(georefImageFactory, never()).create(any(), any(), any());
     }
 
@@ -168,7 +170,7 @@ class GeorefImageServiceTest {
 
         // WHEN + THEN
         assertThrows(UnsupportedImageFormatException.class, () -> georefImageService.uploadImage(invalidFile));
-        verifyNoInteractions(hashCalculator, fileStorageService, georefImageFactory, repository);
+        verifyNoInteractions(fileStorageService, georefImageFactory, repository);
     }
 
     @Test
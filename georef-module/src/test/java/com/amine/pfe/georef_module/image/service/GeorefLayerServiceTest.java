@@ -1,11 +1,15 @@
 package com.amine.pfe.georef_module.image.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -17,7 +21,16 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import com.amine.pfe.georef_module.entity.GeorefImage;
 import com.amine.pfe.georef_module.entity.GeorefLayer;
+import com.amine.pfe.georef_module.enums.GeorefSettings;
+import com.amine.pfe.georef_module.enums.RobustMethod;
+import com.amine.pfe.georef_module.enums.TransformationType;
 import com.amine.pfe.georef_module.exception.GeorefLayerNotFoundException;
+import com.amine.pfe.georef_module.gcp.dto.GcpDto;
+import com.amine.pfe.georef_module.gcp.service.GcpService;
+import com.amine.pfe.georef_module.gcp.service.port.ResidualsService;
+import com.amine.pfe.georef_module.image.dto.GeorefRequest;
+import com.amine.pfe.georef_module.image.dto.RegeorefResponse;
+import com.amine.pfe.georef_module.image.repository.GeorefImageRepository;
 import com.amine.pfe.georef_module.image.repository.GeorefLayerRepository;
 import com.amine.pfe.georef_module.image.service.port.CartographicServer;
 import com.amine.pfe.georef_module.image.service.port.FileStorageService;
@@ -44,6 +57,34 @@ class GeorefLayerServiceTest {
     @Mock
     private CartographicServer cartographicServer;
 
+    @Mock
+    private GeorefImageRepository georefImageRepository;
+
+    @Mock
+    private GcpService gcpService;
+
+    @Mock
+    private ResidualsService residualsService;
+
+    @Test
+    void georeferenceImage_shouldRejectRobustMethodOnNonPolynomialTransformation() {
+        // Given
+        UUID imageId = UUID.randomUUID();
+        GeorefSettings settings = new GeorefSettings();
+        settings.setTransformationType(TransformationType.HELMERT);
+        settings.setRobustMethod(RobustMethod.HUBER);
+        GeorefRequest request = new GeorefRequest();
+        request.setGeorefSettings(settings);
+        when(residualsService.supportsRobustFit(TransformationType.HELMERT)).thenReturn(false);
+
+        // When + Then
+        assertThrows(IllegalArgumentException.class,
+                () -> georefLayerService.georeferenceImage(request, imageId));
+
+        verifyNoInteractions(georefImageRepository, geospatialServer);
+        verify(gcpService, never()).flushPendingEdits(any());
+    }
+
     @Test
     void deleteGeorefLayer_shouldThrowException_whenLayerNotFound() {
         // Given
@@ -87,4 +128,33 @@ class GeorefLayerServiceTest {
         verify(georefLayerRepository).delete(layer);
     }
 
-}
\ No newline at end of file
+    @Test
+    void prepareRegeoref_shouldCloneGcpsInBulkWithoutRereading() {
+        // Given
+        UUID sourceId = UUID.randomUUID();
+        UUID targetId = UUID.randomUUID();
+        GeorefImage source = GeorefImage.builder()
+                .id(sourceId)
+                .filepathOriginal("/path/to/original.tif")
+                .build();
+        GeorefImage saved = GeorefImage.builder()
+                .id(targetId)
+                .filepathOriginal("/path/to/original.tif")
+                .build();
+        List<GcpDto> clones = List.of(new GcpDto(UUID.randomUUID(), targetId, 1.0, -2.0, 3.0, 4.0, 1, null, null));
+
+        when(georefImageRepository.findById(sourceId)).thenReturn(Optional.of(source));
+        when(georefImageRepository.saveAndFlush(any(GeorefImage.class))).thenReturn(saved);
+        when(gcpService.cloneGcps(sourceId, targetId)).thenReturn(clones);
+
+        // When
+        RegeorefResponse response = georefLayerService.prepareRegeoref(sourceId);
+
+        // Then
+        assertEquals(clones, response.getGcpDtos());
+        assertEquals(targetId, response.getGeorefImageDto().getId());
+        verify(gcpService).flushPendingEdits(sourceId);
+        verify(gcpService, never()).addGcp(any());
+        verify(gcpService, never()).getGcpsByImageId(any());
+    }
+}
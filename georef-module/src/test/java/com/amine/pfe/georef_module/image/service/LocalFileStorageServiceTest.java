@@ -1,17 +1,27 @@
 package com.amine.pfe.georef_module.image.service;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -20,6 +30,8 @@ import org.springframework.web.multipart.MultipartFile;
 
 import com.amine.pfe.georef_module.config.StorageConfig;
 import com.amine.pfe.georef_module.image.service.impl.LocalFileStorageService;
+import com.amine.pfe.georef_module.image.service.port.StagedFile;
+import com.amine.pfe.georef_module.image.util.FileUtils;
 
 @ExtendWith(MockitoExtension.class)
 public class LocalFileStorageServiceTest {
@@ -80,4 +92,66 @@ public class LocalFileStorageServiceTest {
         // THEN
         assertEquals(fullPath, filePath);
     }
+
+    @Test
+    @DisplayName("should stage an upload with its SHA-256 and promote it atomically")
+    void shouldStageAndPromoteUpload(@TempDir Path originalDir) throws IOException {
+        // GIVEN
+        byte[] content = new byte[200_000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        String expectedHash = FileUtils.toHex(FileUtils.newSha256Digest().digest(content));
+
+        when(storageConfig.getOriginalDir()).thenReturn(originalDir);
+
+        // WHEN
+        StagedFile stagedFile = localFileStorageService.stageOriginalFile(new ByteArrayInputStream(content));
+        Path storedPath = localFileStorageService.promoteStagedFile(stagedFile, expectedHash + "_mock.png");
+
+        // THEN
+        assertEquals(expectedHash, stagedFile.getHash());
+        assertEquals(content.length, stagedFile.getSize());
+        assertEquals(originalDir.resolve(expectedHash + "_mock.png"), storedPath);
+        assertArrayEquals(content, Files.readAllBytes(storedPath));
+        assertFalse(Files.exists(stagedFile.getTempPath()));
+    }
+
+    @Test
+    @DisplayName("should delete a discarded staged upload")
+    void shouldDiscardStagedUpload(@TempDir Path originalDir) throws IOException {
+        // GIVEN
+        when(storageConfig.getOriginalDir()).thenReturn(originalDir);
+        StagedFile stagedFile = localFileStorageService
+                .stageOriginalFile(new ByteArrayInputStream("image content".getBytes(StandardCharsets.UTF_8)));
+
+        // WHEN
+        localFileStorageService.discardStagedFile(stagedFile);
+
+        // THEN
+        try (Stream<Path> files = Files.list(originalDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    @DisplayName("should purge only the staging files older than the given age")
+    void shouldPurgeOldStagingFiles(@TempDir Path originalDir) throws IOException {
+        // GIVEN
+        when(storageConfig.getOriginalDir()).thenReturn(originalDir);
+        Path orphan = localFileStorageService.createStagingFile();
+        Files.setLastModifiedTime(orphan, FileTime.from(Instant.now().minus(Duration.ofHours(25))));
+        Path inProgress = localFileStorageService.createStagingFile();
+        Path stored = Files.writeString(originalDir.resolve("hash_mock.png"), "image");
+        Files.setLastModifiedTime(stored, FileTime.from(Instant.now().minus(Duration.ofHours(25))));
+
+        // WHEN
+        int deleted = localFileStorageService.purgeStagingFiles(Duration.ofHours(24));
+
+        // THEN
+        assertEquals(1, deleted);
+        assertFalse(Files.exists(orphan));
+        assertTrue(Files.exists(inProgress));
+        assertTrue(Files.exists(stored));
+    }
 }